@@ -3,11 +3,13 @@ package com.anfealta.ecommerce.ecomerce_backend.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 @Configuration 
 @EnableJpaAuditing
+@EnableScheduling
 public class AppConfig {
 
     @Bean 
@@ -0,0 +1,84 @@
+package com.anfealta.ecommerce.ecomerce_backend.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool principal con una reserva para las conexiones anidadas: las que pide un hilo que ya tiene otra abierta.
+ * <p>
+ * Los {@code @TableGenerator} de {@code Orden}, {@code OrdenDetalle} e {@code Inventario} piden cada bloque de IDs
+ * en una conexión aislada sin soltar el optimizador, mientras las demás transacciones que necesitan un ID lo
+ * esperan con su conexión tomada. Con tantas órdenes en curso como conexiones tiene el pool, el bloque no consigue
+ * la suya hasta que vence el timeout de Hikari y todas esas órdenes fallan. Una transacción {@code REQUIRES_NEW}
+ * abierta dentro de otra se traba igual. Las conexiones anidadas salen de la reserva, que nadie retiene mientras
+ * espera otra conexión, así que las de primer nivel no pueden agotarla.
+ */
+public class DataSourceConReserva extends DelegatingDataSource implements Closeable {
+
+    private final DataSource reserva;
+    private final ThreadLocal<AtomicInteger> abiertas = ThreadLocal.withInitial(AtomicInteger::new);
+
+    public DataSourceConReserva(DataSource principal, DataSource reserva) {
+        super(principal);
+        this.reserva = reserva;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        AtomicInteger delHilo = abiertas.get();
+        DataSource origen = delHilo.get() > 0 ? reserva : obtainTargetDataSource();
+        return registrar(origen.getConnection(), delHilo);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        AtomicInteger delHilo = abiertas.get();
+        DataSource origen = delHilo.get() > 0 ? reserva : obtainTargetDataSource();
+        return registrar(origen.getConnection(username, password), delHilo);
+    }
+
+    /**
+     * Cuenta la conexión como abierta por el hilo que la pidió hasta que se cierre, aunque la cierre otro hilo.
+     */
+    private static Connection registrar(Connection conexion, AtomicInteger delHilo) {
+        delHilo.incrementAndGet();
+        AtomicBoolean cerrada = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, metodo, argumentos) -> switch (metodo.getName()) {
+                    case "equals" -> proxy == argumentos[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> {
+                        if (metodo.getName().equals("close") && cerrada.compareAndSet(false, true)) {
+                            delHilo.decrementAndGet();
+                        }
+                        try {
+                            yield metodo.invoke(conexion, argumentos);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (reserva instanceof Closeable cerrable) {
+                cerrable.close();
+            }
+        } finally {
+            if (obtainTargetDataSource() instanceof Closeable cerrable) {
+                cerrable.close();
+            }
+        }
+    }
+}
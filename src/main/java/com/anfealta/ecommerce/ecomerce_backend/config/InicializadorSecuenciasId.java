@@ -0,0 +1,59 @@
+package com.anfealta.ecommerce.ecomerce_backend.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Siembra la tabla {@code secuencias_id} que usan los generadores de ID agrupados de {@code Orden},
+ * {@code OrdenDetalle} e {@code Inventario}.
+ * <p>
+ * Esas entidades usaban columnas autoincrementales; si Hibernate creara la fila de cada secuencia con su valor
+ * inicial, los nuevos IDs chocarían con los existentes. Antes de que la aplicación atienda peticiones, se crea
+ * la fila de cada secuencia que aún no existe a partir del mayor ID de su tabla. Con el optimizador
+ * {@code pooled}, el valor guardado es el último ID del bloque, por eso se suma el tamaño del bloque.
+ */
+@Component
+public class InicializadorSecuenciasId implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(InicializadorSecuenciasId.class);
+
+    /** Debe coincidir con {@code allocationSize} de los {@code @TableGenerator} de las entidades. */
+    static final int TAMANO_BLOQUE = 50;
+
+    /** Nombre de cada secuencia ({@code pkColumnValue}); coincide con el nombre de su tabla. */
+    static final List<String> SECUENCIAS = List.of("ordenes", "orden_detalles", "inventarios");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public InicializadorSecuenciasId(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (String secuencia : SECUENCIAS) {
+            try {
+                sembrar(secuencia);
+            } catch (DataAccessException e) {
+                log.warn("No se pudo sembrar la secuencia de IDs '{}': {}", secuencia, e.getMessage());
+            }
+        }
+    }
+
+    void sembrar(String secuencia) {
+        Integer existentes = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM secuencias_id WHERE nombre = ?", Integer.class, secuencia);
+        if (existentes != null && existentes > 0) {
+            return;
+        }
+        jdbcTemplate.update("INSERT INTO secuencias_id (nombre, valor) SELECT ?, COALESCE(MAX(id), 0) + ? FROM " + secuencia,
+                secuencia, TAMANO_BLOQUE);
+        log.info("Secuencia de IDs '{}' sembrada a partir de los registros existentes", secuencia);
+    }
+}
@@ -0,0 +1,34 @@
+package com.anfealta.ecommerce.ecomerce_backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Envuelve el pool de Hikari en un {@link DataSourceConReserva}. La reserva copia la configuración del pool
+ * principal, con hasta {@code app.conexiones.reserva-anidadas.tamano} conexiones que se abren solo cuando hacen
+ * falta; con 0 se usa el pool tal cual.
+ */
+@Component
+public class ReservaConexionesAnidadas implements BeanPostProcessor {
+
+    private final int tamano;
+
+    public ReservaConexionesAnidadas(@Value("${app.conexiones.reserva-anidadas.tamano:4}") int tamano) {
+        this.tamano = tamano;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (tamano <= 0 || !(bean instanceof HikariDataSource principal)) {
+            return bean;
+        }
+        HikariDataSource reserva = new HikariDataSource();
+        principal.copyStateTo(reserva);
+        reserva.setPoolName((principal.getPoolName() != null ? principal.getPoolName() : "HikariPool") + "-reserva");
+        reserva.setMaximumPoolSize(tamano);
+        reserva.setMinimumIdle(0);
+        return new DataSourceConReserva(principal, reserva);
+    }
+}
@@ -76,10 +76,14 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.PUT, "/api/users/{id}").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.DELETE, "/api/users/{id}").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.POST, "/api/ordenes").hasAnyRole("USER", "ADMIN")
+                .requestMatchers(HttpMethod.POST, "/api/ordenes/batch").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.GET, "/api/ordenes").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.GET, "/api/ordenes/export").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.GET, "/api/ordenes/buscar").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.GET, "/api/ordenes/{id}").hasAnyRole("USER", "ADMIN") 
                 .requestMatchers(HttpMethod.GET, "/api/ordenes/usuario/{usuarioId}").hasAnyRole("USER", "ADMIN") 
                 .requestMatchers(HttpMethod.PUT, "/api/ordenes/{id}/estado").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.PUT, "/api/ordenes/estado").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.DELETE, "/api/ordenes/{id}").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.POST, "/api/inventarios").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.GET, "/api/inventarios/{id}").hasRole("ADMIN")
@@ -88,6 +92,9 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.PUT, "/api/inventarios/{id}").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.DELETE, "/api/inventarios/{id}").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.GET, "/api/productos/reportes/top5-vendidos").hasAnyRole("USER", "ADMIN")
+                .requestMatchers(HttpMethod.GET, "/api/productos/reportes/top-vendidos").hasAnyRole("USER", "ADMIN")
+                .requestMatchers(HttpMethod.GET, "/api/usuarios/reportes/top-frecuentes").hasRole("ADMIN")
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
 
                 .anyRequest().authenticated()
             )
@@ -105,6 +112,7 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(List.of("http://localhost:4200")); // Orígenes permitidos
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS")); // Métodos permitidos
         configuration.setAllowedHeaders(List.of("*")); // Cabeceras permitidas
+        configuration.setExposedHeaders(List.of("Idempotent-Replayed", "Location", "X-Next-Cursor", "ETag")); // Cabeceras legibles por el cliente
         configuration.setAllowCredentials(true); // Permitir credenciales (JWT)
         configuration.setMaxAge(3600L); // Max age para cache de pre-vuelo
 
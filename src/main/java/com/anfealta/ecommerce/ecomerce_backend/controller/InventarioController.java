@@ -3,6 +3,7 @@ package com.anfealta.ecommerce.ecomerce_backend.controller;
 import com.anfealta.ecommerce.ecomerce_backend.dto.InventarioRequest;
 import com.anfealta.ecommerce.ecomerce_backend.dto.InventarioResponse;
 import com.anfealta.ecommerce.ecomerce_backend.service.InventarioService;
+import com.anfealta.ecommerce.ecomerce_backend.service.ReintentadorOptimista;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -17,10 +18,12 @@ import java.util.Optional;
 public class InventarioController {
 
     private final InventarioService inventarioService;
+    private final ReintentadorOptimista reintentador;
 
     
-    public InventarioController(InventarioService inventarioService) {
+    public InventarioController(InventarioService inventarioService, ReintentadorOptimista reintentador) {
         this.inventarioService = inventarioService;
+        this.reintentador = reintentador;
     }
 
     /**
@@ -87,9 +90,12 @@ public class InventarioController {
     @PutMapping("/{id}")
     public ResponseEntity<InventarioResponse> actualizarInventario(@PathVariable Long id, @Valid @RequestBody InventarioRequest request) {
         try {
-            Optional<InventarioResponse> inventarioActualizado = inventarioService.actualizarInventario(id, request);
+            Optional<InventarioResponse> inventarioActualizado = reintentador.ejecutar("actualizarInventario",
+                    () -> inventarioService.actualizarInventario(id, request));
             return inventarioActualizado.map(ResponseEntity::ok)
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Registro de inventario no encontrado con ID: " + id));
+        } catch (ResponseStatusException e) {
+            throw e;
         } catch (RuntimeException e) {
             
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
@@ -1,15 +1,36 @@
 package com.anfealta.ecommerce.ecomerce_backend.controller;
 
+import com.anfealta.ecommerce.ecomerce_backend.dto.FiltroOrdenes;
 import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
 import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.PaginaOrdenesResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.TransicionEstadoRequest;
+import com.anfealta.ecommerce.ecomerce_backend.dto.TransicionEstadoResponse;
 import com.anfealta.ecommerce.ecomerce_backend.entity.Orden; // Para el enum EstadoOrden
+import com.anfealta.ecommerce.ecomerce_backend.service.ExportacionOrdenes;
+import com.anfealta.ecommerce.ecomerce_backend.service.IdempotenciaOrdenes;
+import com.anfealta.ecommerce.ecomerce_backend.service.ImportacionOrdenes;
+import com.anfealta.ecommerce.ecomerce_backend.service.IngestaOrdenes;
 import com.anfealta.ecommerce.ecomerce_backend.service.OrdenService;
+import com.anfealta.ecommerce.ecomerce_backend.service.ReintentadorOptimista;
+import com.anfealta.ecommerce.ecomerce_backend.service.RespuestasOrden;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,23 +39,50 @@ import java.util.Optional;
 public class OrdenController {
 
     private final OrdenService ordenService;
+    private final ReintentadorOptimista reintentador;
+    private final IngestaOrdenes ingestaOrdenes;
+    private final IdempotenciaOrdenes idempotenciaOrdenes;
+    private final ImportacionOrdenes importacionOrdenes;
+    private final ExportacionOrdenes exportacionOrdenes;
+    private final RespuestasOrden respuestasOrden;
 
     
-    public OrdenController(OrdenService ordenService) {
+    public OrdenController(OrdenService ordenService, ReintentadorOptimista reintentador, IngestaOrdenes ingestaOrdenes,
+                           IdempotenciaOrdenes idempotenciaOrdenes, ImportacionOrdenes importacionOrdenes,
+                           ExportacionOrdenes exportacionOrdenes, RespuestasOrden respuestasOrden) {
         this.ordenService = ordenService;
+        this.reintentador = reintentador;
+        this.ingestaOrdenes = ingestaOrdenes;
+        this.idempotenciaOrdenes = idempotenciaOrdenes;
+        this.importacionOrdenes = importacionOrdenes;
+        this.exportacionOrdenes = exportacionOrdenes;
+        this.respuestasOrden = respuestasOrden;
     }
 
     /**
      * Endpoint para crear una nueva orden de compra. (CRUD: CREATE)
      * Requiere autenticación.
+     * Si se envía la cabecera {@code Idempotency-Key}, los reintentos con la misma clave devuelven la orden
+     * ya creada (con la cabecera {@code Idempotent-Replayed: true}) sin volver a descontar inventario.
      * @param request El DTO con los datos de la orden (usuarioId y detalles de productos).
-     * @return ResponseEntity con el OrdenResponse de la orden creada y status 201.
+     * @param claveIdempotencia Clave opcional para deduplicar reintentos del cliente.
+     * En modo de ingesta asíncrono responde 202 con la orden ACEPTADA; su progreso se consulta en
+     * {@code GET /api/ordenes/{id}}.
+     * @return ResponseEntity con el OrdenResponse de la orden creada y status 201, o 202 si fue aceptada.
      */
     @PostMapping
-    public ResponseEntity<OrdenResponse> crearOrden(@Valid @RequestBody OrdenRequest request) {
+    public ResponseEntity<OrdenResponse> crearOrden(@Valid @RequestBody OrdenRequest request,
+                                                    @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia) {
         try {
-            OrdenResponse nuevaOrden = ordenService.crearOrden(request);
-            return ResponseEntity.status(HttpStatus.CREATED).body(nuevaOrden);
+            if (claveIdempotencia == null) {
+                OrdenResponse nuevaOrden = ingestaOrdenes.crearOrden(request);
+                return respuestaCreacion(nuevaOrden).body(nuevaOrden);
+            }
+            IdempotenciaOrdenes.Resultado resultado = idempotenciaOrdenes.ejecutar(claveIdempotencia, request,
+                    () -> ingestaOrdenes.crearOrden(request));
+            return respuestaCreacion(resultado.orden())
+                    .header("Idempotent-Replayed", String.valueOf(resultado.repetida()))
+                    .body(resultado.orden());
         } catch (ResponseStatusException e) {
             
             throw e;
@@ -43,44 +91,198 @@ public class OrdenController {
         }
     }
 
+    private static ResponseEntity.BodyBuilder respuestaCreacion(OrdenResponse orden) {
+        if (orden.getEstado() == Orden.EstadoOrden.ACEPTADA) {
+            return ResponseEntity.accepted().location(URI.create("/api/ordenes/" + orden.getId()));
+        }
+        return ResponseEntity.status(HttpStatus.CREATED);
+    }
+
+    /**
+     * Endpoint para importar órdenes en bloque.
+     * Requiere rol ADMIN.
+     * @param cuerpo Flujo NDJSON con una OrdenRequest por línea; se lee a medida que se procesa.
+     * @return ResponseEntity que transmite en NDJSON el resultado de cada orden a medida que se confirma su bloque.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> importarOrdenes(InputStream cuerpo) {
+        StreamingResponseBody resultados = salida -> importacionOrdenes.importar(cuerpo, salida);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(resultados);
+    }
+
+    /**
+     * Endpoint para exportar órdenes con sus líneas.
+     * Requiere rol ADMIN.
+     * @param formato "ndjson" (una orden por línea, por defecto) o "csv" (una fila por línea de orden).
+     * @param desde Fecha de creación mínima (inclusive, ISO-8601), opcional.
+     * @param hasta Fecha de creación máxima (exclusive, ISO-8601), opcional.
+     * @param estado Estado de las órdenes, opcional.
+     * @return ResponseEntity que transmite las órdenes a medida que se leen de la base de datos.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportarOrdenes(
+            @RequestParam(defaultValue = "ndjson") String formato,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(required = false) String estado) {
+        ExportacionOrdenes.Formato formatoEnum;
+        try {
+            formatoEnum = ExportacionOrdenes.Formato.valueOf(formato.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Formato de exportación inválido: " + formato + ". Formatos permitidos: ndjson, csv");
+        }
+        Orden.EstadoOrden filtroEstado = estadoOpcional(estado);
+        StreamingResponseBody cuerpo = salida -> exportacionOrdenes.exportar(desde, hasta, filtroEstado, formatoEnum, salida);
+        MediaType tipo = formatoEnum == ExportacionOrdenes.Formato.CSV ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.APPLICATION_NDJSON;
+        return ResponseEntity.ok()
+                .contentType(tipo)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"ordenes." + formatoEnum.name().toLowerCase() + "\"")
+                .body(cuerpo);
+    }
+
+    /**
+     * Endpoint para buscar órdenes por cualquier combinación de filtros.
+     * Requiere rol ADMIN.
+     * Paginado igual que {@code GET /api/ordenes}, de la más reciente a la más antigua.
+     * @param estado Estado de las órdenes, opcional.
+     * @param desde Fecha de creación mínima (inclusive, ISO-8601), opcional.
+     * @param hasta Fecha de creación máxima (exclusive, ISO-8601), opcional.
+     * @param totalMinimo Total mínimo (inclusive), opcional.
+     * @param totalMaximo Total máximo (inclusive), opcional.
+     * @param usuarioId ID del usuario, opcional.
+     * @param sku SKU de un producto que la orden debe contener, opcional.
+     * @param cursor Cursor de la página anterior; se omite para la primera página.
+     * @param limite Cantidad máxima de órdenes por página.
+     * @param vista "completa" (por defecto) o "resumen".
+     * @return ResponseEntity con una lista de OrdenResponse u OrdenResumenResponse y status 200.
+     */
+    @GetMapping("/buscar")
+    public ResponseEntity<List<?>> buscarOrdenes(
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(required = false) BigDecimal totalMinimo,
+            @RequestParam(required = false) BigDecimal totalMaximo,
+            @RequestParam(required = false) Long usuarioId,
+            @RequestParam(required = false) String sku,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "${app.ordenes.paginacion.limite-defecto:50}") int limite,
+            @RequestParam(defaultValue = "completa") String vista) {
+        FiltroOrdenes filtro = FiltroOrdenes.builder()
+                .estado(estadoOpcional(estado))
+                .desde(desde)
+                .hasta(hasta)
+                .totalMinimo(totalMinimo)
+                .totalMaximo(totalMaximo)
+                .usuarioId(usuarioId)
+                .skuProducto(sku == null || sku.isBlank() ? null : sku.trim())
+                .build();
+        return respuestaPagina(esVistaResumen(vista)
+                ? ordenService.buscarResumenes(filtro, cursor, limite)
+                : ordenService.buscarOrdenes(filtro, cursor, limite));
+    }
+
+    private static Orden.EstadoOrden estadoOpcional(String estado) {
+        if (estado == null) {
+            return null;
+        }
+        try {
+            return Orden.EstadoOrden.valueOf(estado.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Estado de orden inválido: " + estado + ". Estados permitidos: " + Arrays.toString(Orden.EstadoOrden.values()));
+        }
+    }
+
     /**
      * Endpoint para obtener una orden por su ID. (CRUD: READ)
      * Requiere autenticación.
+     * La respuesta trae la cabecera {@code ETag}; si se envía en {@code If-None-Match} y la orden no cambió,
+     * responde 304 sin cuerpo.
      * @param id El ID de la orden.
-     * @return ResponseEntity con el OrdenResponse si se encuentra, y status 200, o 404 si no.
+     * @return ResponseEntity con el OrdenResponse en JSON si se encuentra, y status 200, 304 si no cambió, o 404 si no existe.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<OrdenResponse> obtenerOrdenPorId(@PathVariable Long id) {
-        Optional<OrdenResponse> orden = ordenService.obtenerOrdenPorId(id);
-        return orden.map(ResponseEntity::ok)
+    public ResponseEntity<byte[]> obtenerOrdenPorId(@PathVariable Long id, WebRequest request) {
+        RespuestasOrden.Respuesta respuesta = respuestasOrden.leer(id, request::checkNotModified)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Orden no encontrada con ID: " + id));
+        if (respuesta.cuerpo() == null) {
+            return null; // checkNotModified ya preparó el 304
+        }
+        return ResponseEntity.ok()
+                .eTag(respuesta.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(respuesta.cuerpo());
     }
 
     /**
      * Endpoint para obtener todas las órdenes. (CRUD: READ ALL)
      * Requiere autenticación.
-     * @return ResponseEntity con una lista de OrdenResponse y status 200.
+     * Las órdenes se devuelven paginadas, de la más reciente a la más antigua. Si hay más páginas, la respuesta
+     * trae la cabecera {@code X-Next-Cursor}, que se envía como {@code cursor} para pedir la siguiente.
+     * @param cursor Cursor de la página anterior; se omite para la primera página.
+     * @param limite Cantidad máxima de órdenes por página.
+     * @param todas Si es true, devuelve todas las órdenes sin paginar (comportamiento anterior).
+     * @param vista "completa" (por defecto, OrdenResponse con sus líneas) o "resumen" (OrdenResumenResponse, sin líneas).
+     * @return ResponseEntity con una lista de OrdenResponse u OrdenResumenResponse y status 200.
      */
     @GetMapping
-    public ResponseEntity<List<OrdenResponse>> obtenerTodasLasOrdenes() {
-        List<OrdenResponse> ordenes = ordenService.obtenerTodasLasOrdenes();
-        return ResponseEntity.ok(ordenes);
+    public ResponseEntity<List<?>> obtenerTodasLasOrdenes(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "${app.ordenes.paginacion.limite-defecto:50}") int limite,
+            @RequestParam(defaultValue = "false") boolean todas,
+            @RequestParam(defaultValue = "completa") String vista) {
+        boolean resumen = esVistaResumen(vista);
+        if (todas) {
+            return ResponseEntity.ok(resumen ? ordenService.obtenerResumenes() : ordenService.obtenerTodasLasOrdenes());
+        }
+        return respuestaPagina(resumen ? ordenService.obtenerPaginaResumenes(cursor, limite) : ordenService.obtenerPaginaOrdenes(cursor, limite));
     }
 
     /**
      * Endpoint para obtener todas las órdenes de un usuario específico.
      * Requiere autenticación.
+     * Paginado igual que {@code GET /api/ordenes}.
      * @param usuarioId El ID del usuario.
-     * @return ResponseEntity con una lista de OrdenResponse del usuario y status 200.
+     * @param cursor Cursor de la página anterior; se omite para la primera página.
+     * @param limite Cantidad máxima de órdenes por página.
+     * @param todas Si es true, devuelve todas las órdenes del usuario sin paginar (comportamiento anterior).
+     * @param vista "completa" (por defecto) o "resumen".
+     * @return ResponseEntity con una lista de OrdenResponse u OrdenResumenResponse del usuario y status 200.
      */
     @GetMapping("/usuario/{usuarioId}")
-    public ResponseEntity<List<OrdenResponse>> obtenerOrdenesPorUsuario(@PathVariable Long usuarioId) {
-        try {
-            List<OrdenResponse> ordenes = ordenService.obtenerOrdenesPorUsuario(usuarioId);
-            return ResponseEntity.ok(ordenes);
-        } catch (ResponseStatusException e) {
-            throw e; 
+    public ResponseEntity<List<?>> obtenerOrdenesPorUsuario(
+            @PathVariable Long usuarioId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "${app.ordenes.paginacion.limite-defecto:50}") int limite,
+            @RequestParam(defaultValue = "false") boolean todas,
+            @RequestParam(defaultValue = "completa") String vista) {
+        boolean resumen = esVistaResumen(vista);
+        if (todas) {
+            return ResponseEntity.ok(resumen
+                    ? ordenService.obtenerResumenesPorUsuario(usuarioId)
+                    : ordenService.obtenerOrdenesPorUsuario(usuarioId));
+        }
+        return respuestaPagina(resumen
+                ? ordenService.obtenerPaginaResumenesPorUsuario(usuarioId, cursor, limite)
+                : ordenService.obtenerPaginaOrdenesPorUsuario(usuarioId, cursor, limite));
+    }
+
+    private static boolean esVistaResumen(String vista) {
+        if ("resumen".equalsIgnoreCase(vista)) {
+            return true;
+        }
+        if ("completa".equalsIgnoreCase(vista)) {
+            return false;
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Vista inválida: " + vista + ". Vistas permitidas: completa, resumen");
+    }
+
+    private static ResponseEntity<List<?>> respuestaPagina(PaginaOrdenesResponse<?> pagina) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+        if (pagina.getSiguienteCursor() != null) {
+            respuesta.header("X-Next-Cursor", pagina.getSiguienteCursor());
         }
+        return respuesta.body(pagina.getOrdenes());
     }
 
     /**
@@ -88,13 +290,15 @@ public class OrdenController {
      * Requiere autenticación.
      * @param id El ID de la orden a actualizar.
      * @param nuevoEstado El nuevo estado (ej. "COMPLETADA", "ENVIADA").
-     * @return ResponseEntity con el OrdenResponse de la orden actualizada y status 200, o 404 si no.
+     * @return ResponseEntity con el OrdenResponse de la orden actualizada y status 200, 404 si no existe,
+     *         o 409 si su estado actual no permite pasar al nuevo.
      */
     @PutMapping("/{id}/estado")
     public ResponseEntity<OrdenResponse> actualizarEstadoOrden(@PathVariable Long id, @RequestParam String nuevoEstado) {
         try {
             Orden.EstadoOrden estadoEnum = Orden.EstadoOrden.valueOf(nuevoEstado.toUpperCase()); // Convertir String a Enum
-            Optional<OrdenResponse> ordenActualizada = ordenService.actualizarEstadoOrden(id, estadoEnum);
+            Optional<OrdenResponse> ordenActualizada = reintentador.ejecutar("actualizarEstadoOrden",
+                    () -> ordenService.actualizarEstadoOrden(id, estadoEnum));
             return ordenActualizada.map(ResponseEntity::ok)
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Orden no encontrada con ID: " + id));
         } catch (IllegalArgumentException e) {
@@ -105,6 +309,19 @@ public class OrdenController {
         }
     }
 
+    /**
+     * Endpoint para cambiar el estado de varias órdenes a la vez.
+     * Requiere rol ADMIN.
+     * Solo se aplican las transiciones permitidas desde el estado de cada orden; las demás se informan sin cambiarlas.
+     * @param request El estado destino y la lista de IDs o el filtro (como en {@code GET /api/ordenes/buscar}) que selecciona las órdenes.
+     * @return ResponseEntity con el resultado de cada orden y status 200.
+     */
+    @PutMapping("/estado")
+    public ResponseEntity<TransicionEstadoResponse> actualizarEstadoOrdenes(@Valid @RequestBody TransicionEstadoRequest request) {
+        return ResponseEntity.ok(reintentador.ejecutar("actualizarEstadoOrdenes",
+                () -> ordenService.actualizarEstadoOrdenes(request.getIds(), request.getFiltro(), request.getEstado())));
+    }
+
     /**
      * Endpoint para eliminar una orden por su ID. (CRUD: DELETE)
      * Requiere autenticación.
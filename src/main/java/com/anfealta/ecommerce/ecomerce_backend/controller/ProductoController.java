@@ -2,6 +2,7 @@ package com.anfealta.ecommerce.ecomerce_backend.controller;
 
 import com.anfealta.ecommerce.ecomerce_backend.dto.ProductoRequest;
 import com.anfealta.ecommerce.ecomerce_backend.dto.ProductoResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.TopSoldProductResponse;
 import com.anfealta.ecommerce.ecomerce_backend.service.ProductoService;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
@@ -153,4 +154,23 @@ public class ProductoController {
         List<ProductoResponse> productos = productoService.obtenerTop5ProductosMasVendidos();
         return ResponseEntity.ok(productos);
     }
+
+    /**
+     * Endpoint para obtener los productos más vendidos en una ventana reciente, en total o por categoría.
+     * Las unidades son estimaciones en memoria de este nodo: nunca menores que las reales y, salvo con
+     * probabilidad muy baja, no mayores que las reales más maxError.
+     * Requiere rol ADMIN o USER.
+     * @param ventana Duración de la ventana: 30m, 1h, 1d, 7d...
+     * @param categoria Categoría de los productos (opcional).
+     * @param k Cantidad de productos.
+     * @return Lista de TopSoldProductResponse de más a menos vendido.
+     */
+    @GetMapping("/reportes/top-vendidos")
+    @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
+    public ResponseEntity<List<TopSoldProductResponse>> obtenerTopVendidos(
+            @RequestParam(defaultValue = "1h") String ventana,
+            @RequestParam(required = false) String categoria,
+            @RequestParam(defaultValue = "10") int k) {
+        return ResponseEntity.ok(productoService.obtenerTopVendidos(ventana, categoria, k));
+    }
 }
\ No newline at end of file
@@ -4,14 +4,17 @@ import com.anfealta.ecommerce.ecomerce_backend.dto.TopFrequentCustomerResponse;
 import com.anfealta.ecommerce.ecomerce_backend.dto.UsuarioRequest;
 import com.anfealta.ecommerce.ecomerce_backend.dto.UsuarioResponse;
 import com.anfealta.ecommerce.ecomerce_backend.dto.UsuarioUpdateRequest;
+import com.anfealta.ecommerce.ecomerce_backend.service.RespuestasOrden;
 import com.anfealta.ecommerce.ecomerce_backend.service.UsuarioService;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,9 +23,11 @@ import java.util.Optional;
 public class UsuarioController {
 
     private final UsuarioService usuarioService;
+    private final RespuestasOrden respuestasOrden;
 
-    public UsuarioController(UsuarioService usuarioService) {
+    public UsuarioController(UsuarioService usuarioService, RespuestasOrden respuestasOrden) {
         this.usuarioService = usuarioService;
+        this.respuestasOrden = respuestasOrden;
     }
 
     /**
@@ -99,6 +104,8 @@ public class UsuarioController {
     public ResponseEntity<Void> eliminarUsuario(@PathVariable Long id) {
         boolean eliminado = usuarioService.eliminarUsuario(id);
         if (eliminado) {
+            // Ya confirmada la eliminación: las respuestas guardadas de sus órdenes archivadas no se vuelven a validar.
+            respuestasOrden.descartarUsuario(id);
             return ResponseEntity.noContent().build(); 
         } else {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado con ID: " + id); // 404 Not Found
@@ -116,4 +123,22 @@ public class UsuarioController {
         List<TopFrequentCustomerResponse> clientes = usuarioService.obtenerTop5ClientesFrecuentes();
         return ResponseEntity.ok(clientes);
     }
+
+    /**
+     * Endpoint para obtener los clientes con más órdenes en un rango de días, con sus ingresos.
+     * Se responde desde el resumen diario de actividad, sin recorrer las órdenes.
+     * Requiere rol ADMIN.
+     * @param desde Primer día (ISO, p. ej. 2025-07-01); por defecto, 29 días antes de hasta.
+     * @param hasta Último día, inclusive; por defecto, hoy.
+     * @param k Cantidad de clientes.
+     * @return Lista de TopFrequentCustomerResponse de más a menos órdenes.
+     */
+    @GetMapping("/reportes/top-frecuentes")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<TopFrequentCustomerResponse>> obtenerClientesFrecuentes(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "10") int k) {
+        return ResponseEntity.ok(usuarioService.obtenerClientesFrecuentes(desde, hasta, k));
+    }
 }
@@ -0,0 +1,24 @@
+package com.anfealta.ecommerce.ecomerce_backend.dto;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FiltroOrdenes {
+    private Orden.EstadoOrden estado;
+    private LocalDateTime desde; // inclusive
+    private LocalDateTime hasta; // exclusive
+    private BigDecimal totalMinimo; // inclusive
+    private BigDecimal totalMaximo; // inclusive
+    private Long usuarioId;
+    private String skuProducto; // órdenes con al menos una línea de este producto
+}
@@ -25,5 +25,6 @@ public class OrdenResponse {
     private BigDecimal subtotal;
     private BigDecimal descuentoTotal;
     private BigDecimal total;
+    private String motivoRechazo;
     private List<OrdenDetalleResponse> detalles; 
 }
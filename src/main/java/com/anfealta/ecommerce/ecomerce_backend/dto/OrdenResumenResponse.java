@@ -0,0 +1,30 @@
+package com.anfealta.ecommerce.ecomerce_backend.dto;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Resumen de una orden para las vistas de lista: se arma directamente en la consulta (ver {@code OrdenRepository}),
+ * sin cargar las líneas.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrdenResumenResponse {
+    private Long id;
+    private Long usuarioId;
+    private String nombreUsuario;
+    private LocalDateTime fechaCreacion;
+    private Orden.EstadoOrden estado;
+    private BigDecimal subtotal;
+    private BigDecimal descuentoTotal;
+    private BigDecimal total;
+    private Long cantidadLineas;
+}
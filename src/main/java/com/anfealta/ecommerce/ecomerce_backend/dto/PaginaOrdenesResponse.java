@@ -0,0 +1,17 @@
+package com.anfealta.ecommerce.ecomerce_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaOrdenesResponse<T> {
+    private List<T> ordenes; // OrdenResponse u OrdenResumenResponse
+    private String siguienteCursor; // null en la última página
+}
@@ -1,5 +1,6 @@
 package com.anfealta.ecommerce.ecomerce_backend.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -23,4 +24,8 @@ public class ProductoResponse {
     private Boolean activo;
     private LocalDateTime fechaCreacion; 
     private LocalDateTime fechaActualizacion; 
+
+    /** Unidades vendidas; solo en el reporte de más vendidos. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long totalVendido;
 }
\ No newline at end of file
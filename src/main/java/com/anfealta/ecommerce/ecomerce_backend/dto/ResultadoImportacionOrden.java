@@ -0,0 +1,26 @@
+package com.anfealta.ecommerce.ecomerce_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResultadoImportacionOrden {
+
+    private Integer linea;
+    private EstadoImportacion estado;
+    private OrdenResponse orden;
+    private Integer codigo;
+    private String mensaje;
+
+    public enum EstadoImportacion {
+        CREADA,
+        ERROR
+    }
+}
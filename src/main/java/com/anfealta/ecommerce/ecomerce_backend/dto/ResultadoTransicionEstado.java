@@ -0,0 +1,28 @@
+package com.anfealta.ecommerce.ecomerce_backend.dto;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResultadoTransicionEstado {
+
+    private Long ordenId;
+    private Resultado resultado;
+    private Orden.EstadoOrden estadoAnterior; // null si la orden no existe
+
+    public enum Resultado {
+        ACTUALIZADA,
+        SIN_CAMBIOS, // ya estaba en el estado destino
+        TRANSICION_INVALIDA,
+        NO_ENCONTRADA,
+        CONFLICTO // cambió de estado durante la operación
+    }
+}
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -13,4 +15,5 @@ public class TopFrequentCustomerResponse {
     private Long customerId;
     private String customerUsername;
     private Long totalOrders; 
+    private BigDecimal totalRevenue;
 }
\ No newline at end of file
@@ -13,4 +13,6 @@ public class TopSoldProductResponse {
     private Long productId;
     private String productName;
     private Long totalSold; 
+    /** Sobreestimación máxima de totalSold cuando es una estimación. */
+    private Long maxError;
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.anfealta.ecommerce.ecomerce_backend.dto;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransicionEstadoRequest {
+
+    @NotNull(message = "El estado destino no puede ser nulo.")
+    private Orden.EstadoOrden estado;
+
+    // Se indica una de las dos: la lista de órdenes o el filtro que las selecciona.
+    private List<Long> ids;
+    private FiltroOrdenes filtro;
+}
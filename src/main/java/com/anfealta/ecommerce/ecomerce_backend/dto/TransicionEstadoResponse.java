@@ -0,0 +1,19 @@
+package com.anfealta.ecommerce.ecomerce_backend.dto;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransicionEstadoResponse {
+    private Orden.EstadoOrden estado;
+    private int actualizadas;
+    private List<ResultadoTransicionEstado> resultados; // uno por orden, en el orden pedido
+}
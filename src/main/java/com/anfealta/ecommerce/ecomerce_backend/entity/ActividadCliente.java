@@ -0,0 +1,55 @@
+package com.anfealta.ecommerce.ecomerce_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Actividad de un usuario en un día: cantidad y total de sus órdenes creadas ese día que siguen en firme
+ * (PENDIENTE, COMPLETADA, ENVIADA o ENTREGADA), incluidas las archivadas. Se mantiene en la misma transacción que
+ * crea, cancela o elimina cada orden, y puede reconstruirse desde las órdenes con
+ * {@code ActividadClientes#reconstruir}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@IdClass(ActividadCliente.Clave.class)
+@Table(name = "actividad_clientes", indexes = {
+        // Ranking por rango de días: se resuelve solo con el índice.
+        @Index(name = "idx_actividad_clientes_dia", columnList = "dia, usuario_id, ordenes, ingresos")
+})
+public class ActividadCliente {
+
+    @Id
+    @Column(name = "usuario_id")
+    private Long usuarioId;
+
+    @Id
+    private LocalDate dia;
+
+    @Column(nullable = false)
+    private Long ordenes;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal ingresos;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaActualizacion;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Clave implements Serializable {
+        private Long usuarioId;
+        private LocalDate dia;
+    }
+}
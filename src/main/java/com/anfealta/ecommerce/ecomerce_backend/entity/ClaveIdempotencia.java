@@ -0,0 +1,56 @@
+package com.anfealta.ecommerce.ecomerce_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "claves_idempotencia",
+        uniqueConstraints = @UniqueConstraint(name = "uk_claves_idempotencia_usuario_clave", columnNames = {"usuarioId", "clave"}),
+        indexes = @Index(name = "idx_claves_idempotencia_fecha", columnList = "fechaCreacion"))
+public class ClaveIdempotencia {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long usuarioId;
+
+    @Column(nullable = false, length = 150)
+    private String clave;
+
+    /** SHA-256 en hexadecimal del JSON canónico de la solicitud. */
+    @Column(nullable = false, length = 64)
+    private String huella;
+
+    @Column(nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private EstadoClave estado;
+
+    private Long ordenId;
+
+    /** Cuántas veces se reclamó la clave; cada nuevo dueño de una clave EN_PROCESO vencida lo incrementa. */
+    @Column(nullable = false)
+    private Integer intento;
+
+    /** Hasta cuándo es válido el reclamo EN_PROCESO; después otra petición puede retomarlo. */
+    @Column(nullable = false)
+    private LocalDateTime venceReclamo;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime fechaCreacion;
+
+    public enum EstadoClave {
+        EN_PROCESO,
+        COMPLETADA
+    }
+}
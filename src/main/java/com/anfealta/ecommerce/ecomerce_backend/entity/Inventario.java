@@ -21,7 +21,9 @@ import java.time.LocalDateTime;
 public class Inventario {
 
     @Id 
-    @GeneratedValue(strategy = GenerationType.IDENTITY) 
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "inventarios_id")
+    @TableGenerator(name = "inventarios_id", table = "secuencias_id", pkColumnName = "nombre",
+            valueColumnName = "valor", pkColumnValue = "inventarios", allocationSize = 50)
     private Long id;
 
     @OneToOne(fetch = FetchType.LAZY)
@@ -37,6 +39,10 @@ public class Inventario {
     @Column(nullable = false)
     private Integer cantidadMinima; 
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime fechaCreacion;
@@ -19,12 +19,23 @@ import java.util.List;
 @NoArgsConstructor 
 @AllArgsConstructor 
 @Entity 
-@Table(name = "ordenes") 
+@Table(name = "ordenes", indexes = {
+        @Index(name = "idx_ordenes_fecha_creacion_id", columnList = "fechaCreacion, id"),
+        // Historial del usuario y conteo de cliente frecuente: rango por usuario y fecha (InnoDB agrega el id al final).
+        @Index(name = "idx_ordenes_usuario_fecha_creacion", columnList = "usuario_id, fechaCreacion"),
+        // Filtros de la búsqueda de órdenes (OrdenSpecifications).
+        @Index(name = "idx_ordenes_estado_fecha_creacion", columnList = "estado, fechaCreacion"),
+        // Barrido de reservas vencidas (ExpiradorReservas).
+        @Index(name = "idx_ordenes_estado_fecha_reserva", columnList = "estado, fechaReserva"),
+        @Index(name = "idx_ordenes_total", columnList = "total")
+})
 @EntityListeners(AuditingEntityListener.class) 
 public class Orden {
 
     @Id 
-    @GeneratedValue(strategy = GenerationType.IDENTITY) 
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "ordenes_id")
+    @TableGenerator(name = "ordenes_id", table = "secuencias_id", pkColumnName = "nombre",
+            valueColumnName = "valor", pkColumnValue = "ordenes", allocationSize = 50)
     private Long id;
 
     
@@ -53,15 +64,48 @@ public class Orden {
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal total; 
 
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean stockReservado = false; 
+
+    // Cuándo se reservó el stock; las reservas vencen contando desde aquí, no desde fechaCreacion.
+    private LocalDateTime fechaReserva;
+
+    @Column(length = 500)
+    private String motivoRechazo;
+
+    // OrdenRequest en JSON de una orden ACEPTADA, hasta que se procesa.
+    @Column(columnDefinition = "TEXT")
+    private String solicitud;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @OneToMany(mappedBy = "orden", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<OrdenDetalle> detalles = new ArrayList<>(); 
 
     public enum EstadoOrden {
+        ACEPTADA,
+        RECHAZADA,
         PENDIENTE,
         COMPLETADA,
         CANCELADA,
         ENVIADA,
-        ENTREGADA
+        ENTREGADA;
+
+        /**
+         * Transiciones que se pueden aplicar a mano. ACEPTADA solo sale por el procesamiento de órdenes aceptadas;
+         * ENTREGADA, CANCELADA y RECHAZADA son finales.
+         */
+        public boolean puedePasarA(EstadoOrden destino) {
+            return switch (this) {
+                case PENDIENTE -> destino == COMPLETADA || destino == ENVIADA || destino == CANCELADA;
+                case COMPLETADA -> destino == ENVIADA || destino == CANCELADA;
+                case ENVIADA -> destino == ENTREGADA;
+                default -> false;
+            };
+        }
     }
 
     public void addDetalle(OrdenDetalle detalle) {
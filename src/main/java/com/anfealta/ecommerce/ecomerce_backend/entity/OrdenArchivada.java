@@ -0,0 +1,67 @@
+package com.anfealta.ecommerce.ecomerce_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Orden ENTREGADA o CANCELADA movida fuera de {@code ordenes} por el archivador. Conserva el ID y los datos de
+ * la orden original; las filas se escriben con INSERT ... SELECT, así que no tiene generador ni auditoría.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "ordenes_archivadas", indexes = {
+        @Index(name = "idx_ordenes_archivadas_usuario_fecha_creacion", columnList = "usuario_id, fechaCreacion")
+})
+public class OrdenArchivada {
+
+    @Id
+    private Long id;
+
+    @Column(name = "usuario_id", nullable = false)
+    private Long usuarioId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "usuario_id", insertable = false, updatable = false)
+    private Usuario usuario;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaActualizacion;
+
+    @Column(nullable = false, length = 50)
+    @Enumerated(EnumType.STRING)
+    private Orden.EstadoOrden estado;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal subtotal;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal descuentoTotal;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal total;
+
+    @Column(length = 500)
+    private String motivoRechazo;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaArchivado;
+
+    @OneToMany(mappedBy = "orden")
+    @OrderBy("id")
+    @Builder.Default
+    private List<OrdenDetalleArchivada> detalles = new ArrayList<>();
+}
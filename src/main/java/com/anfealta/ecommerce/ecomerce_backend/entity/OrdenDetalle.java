@@ -17,12 +17,15 @@ import java.time.LocalDateTime;
 @NoArgsConstructor 
 @AllArgsConstructor 
 @Entity 
-@Table(name = "orden_detalles") 
+// Búsqueda de órdenes por SKU: del producto a sus órdenes sin leer las filas de las líneas.
+@Table(name = "orden_detalles", indexes = @Index(name = "idx_orden_detalles_producto_orden", columnList = "producto_id, orden_id"))
 @EntityListeners(AuditingEntityListener.class) 
 public class OrdenDetalle {
 
     @Id 
-    @GeneratedValue(strategy = GenerationType.IDENTITY) 
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "orden_detalles_id")
+    @TableGenerator(name = "orden_detalles_id", table = "secuencias_id", pkColumnName = "nombre",
+            valueColumnName = "valor", pkColumnValue = "orden_detalles", allocationSize = 50)
     private Long id;
 
    
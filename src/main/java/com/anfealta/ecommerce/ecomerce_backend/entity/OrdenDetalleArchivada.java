@@ -0,0 +1,53 @@
+package com.anfealta.ecommerce.ecomerce_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "orden_detalles_archivadas", indexes = {
+        @Index(name = "idx_orden_detalles_archivadas_orden", columnList = "orden_id")
+})
+public class OrdenDetalleArchivada {
+
+    @Id
+    private Long id;
+
+    @Column(name = "orden_id", nullable = false)
+    private Long ordenId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "orden_id", insertable = false, updatable = false)
+    private OrdenArchivada orden;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "producto_id", insertable = false, updatable = false)
+    private Producto producto;
+
+    @Column(nullable = false)
+    private Integer cantidad;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal precioUnitario;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal subtotalLinea;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaActualizacion;
+}
@@ -0,0 +1,35 @@
+package com.anfealta.ecommerce.ecomerce_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Unidades vendidas de un producto: la suma de las líneas de sus órdenes no canceladas, incluidas las archivadas.
+ * {@code VentasProductos} la escribe por detrás: acumula lo confirmado por cada orden y lo vuelca en lotes, y
+ * puede reconstruirse desde las líneas con {@code VentasProductos#reconstruir}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "producto_ventas", indexes = {
+        @Index(name = "idx_producto_ventas_unidades", columnList = "unidadesVendidas, producto_id")
+})
+public class ProductoVentas {
+
+    @Id
+    @Column(name = "producto_id")
+    private Long productoId;
+
+    @Column(nullable = false)
+    private Long unidadesVendidas;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaActualizacion;
+}
@@ -0,0 +1,44 @@
+package com.anfealta.ecommerce.ecomerce_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Unidades que un carril de stock descontó para una orden que todavía no se confirmó. {@code CarrilesStock}
+ * la escribe en la misma transacción que descuenta el inventario; la transacción de la orden la borra al
+ * confirmarse, y una devolución la borra al reponer las unidades. Las que quedan (la orden nunca llegó a
+ * confirmarse, p. ej. por una caída del servicio) se devuelven en un barrido periódico.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "tomas_carriles", indexes = {
+        @Index(name = "idx_tomas_carriles_token", columnList = "token"),
+        @Index(name = "idx_tomas_carriles_fecha", columnList = "fechaCreacion")
+})
+public class TomaCarril {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Identifica la asignación de una orden; es el mismo en todos los carriles que la atendieron. */
+    @Column(nullable = false, length = 36)
+    private String token;
+
+    @Column(nullable = false)
+    private Long productoId;
+
+    @Column(nullable = false)
+    private Integer cantidad;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime fechaCreacion;
+}
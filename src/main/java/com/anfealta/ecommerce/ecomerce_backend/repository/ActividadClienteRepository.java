@@ -0,0 +1,28 @@
+package com.anfealta.ecommerce.ecomerce_backend.repository;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.ActividadCliente;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ActividadClienteRepository extends JpaRepository<ActividadCliente, ActividadCliente.Clave> {
+
+    @Modifying
+    @Query("DELETE FROM ActividadCliente a WHERE a.usuarioId = :usuarioId")
+    int eliminarPorUsuario(Long usuarioId);
+
+    /** Filas (usuarioId, ordenes, ingresos) de los usuarios con órdenes entre ambos días, de más a menos órdenes. */
+    @Query("SELECT a.usuarioId, SUM(a.ordenes), SUM(a.ingresos) FROM ActividadCliente a WHERE a.dia BETWEEN :desde AND :hasta " +
+           "GROUP BY a.usuarioId HAVING SUM(a.ordenes) > 0 ORDER BY SUM(a.ordenes) DESC, SUM(a.ingresos) DESC, a.usuarioId")
+    List<Object[]> findMasFrecuentes(LocalDate desde, LocalDate hasta, Pageable pageable);
+
+    @Query("SELECT a.usuarioId, SUM(a.ordenes), SUM(a.ingresos) FROM ActividadCliente a " +
+           "GROUP BY a.usuarioId HAVING SUM(a.ordenes) > 0 ORDER BY SUM(a.ordenes) DESC, SUM(a.ingresos) DESC, a.usuarioId")
+    List<Object[]> findMasFrecuentesTotales(Pageable pageable);
+}
@@ -0,0 +1,45 @@
+package com.anfealta.ecommerce.ecomerce_backend.repository;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.ClaveIdempotencia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface ClaveIdempotenciaRepository extends JpaRepository<ClaveIdempotencia, Long> {
+
+    Optional<ClaveIdempotencia> findByUsuarioIdAndClave(Long usuarioId, String clave);
+
+    /**
+     * Marca la clave como completada, solo si el reclamo {@code intento} sigue siendo el vigente.
+     */
+    @Modifying
+    @Query("UPDATE ClaveIdempotencia c SET c.estado = :estado, c.ordenId = :ordenId WHERE c.id = :id AND c.intento = :intento")
+    int actualizarEstado(Long id, Integer intento, ClaveIdempotencia.EstadoClave estado, Long ordenId);
+
+    /**
+     * Libera la clave, solo si el reclamo {@code intento} sigue siendo el vigente.
+     */
+    @Modifying
+    @Query("DELETE FROM ClaveIdempotencia c WHERE c.id = :id AND c.intento = :intento")
+    int eliminarReclamo(Long id, Integer intento);
+
+    /**
+     * Retoma una clave EN_PROCESO cuyo reclamo venció. Devuelve 0 si otra petición la retomó antes o si
+     * el reclamo sigue vigente.
+     */
+    @Modifying
+    @Query("UPDATE ClaveIdempotencia c SET c.intento = c.intento + 1, c.venceReclamo = :vence " +
+           "WHERE c.id = :id AND c.intento = :intento " +
+           "AND c.estado = com.anfealta.ecommerce.ecomerce_backend.entity.ClaveIdempotencia.EstadoClave.EN_PROCESO " +
+           "AND c.venceReclamo < :ahora")
+    int retomar(Long id, Integer intento, LocalDateTime ahora, LocalDateTime vence);
+
+    @Modifying
+    @Query("DELETE FROM ClaveIdempotencia c WHERE c.fechaCreacion < :limite")
+    int eliminarVencidas(LocalDateTime limite);
+}
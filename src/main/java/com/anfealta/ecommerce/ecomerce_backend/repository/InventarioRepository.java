@@ -1,9 +1,16 @@
 package com.anfealta.ecommerce.ecomerce_backend.repository;
 
 import com.anfealta.ecommerce.ecomerce_backend.entity.Inventario; 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository; 
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository; 
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional; 
 
 @Repository 
@@ -11,5 +18,61 @@ public interface InventarioRepository extends JpaRepository<Inventario, Long> {
     
     Optional<Inventario> findByProductoId(Long productoId);
 
-    
+    List<Inventario> findByProductoIdIn(Collection<Long> productoIds);
+
+    /**
+     * Bloquea las filas de inventario de los productos, siempre en el mismo orden para evitar interbloqueos.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM Inventario i WHERE i.producto.id IN :productoIds ORDER BY i.producto.id")
+    List<Inventario> findParaActualizarByProductoIdIn(Collection<Long> productoIds);
+
+    /**
+     * Descuenta stock disponible en una sola sentencia, solo si alcanza para la cantidad pedida.
+     * @return 1 si se descontó, 0 si no hay inventario o el stock es insuficiente.
+     */
+    @Modifying
+    @Query("UPDATE Inventario i SET i.cantidadDisponible = i.cantidadDisponible - :cantidad, i.fechaActualizacion = :ahora, " +
+           "i.version = i.version + 1 " +
+           "WHERE i.producto.id = :productoId AND i.cantidadDisponible >= :cantidad")
+    int descontarDisponible(Long productoId, int cantidad, LocalDateTime ahora);
+
+    /**
+     * Mueve unidades de disponible a reservada en una sola sentencia, solo si alcanza el stock.
+     * @return 1 si se reservó, 0 si no hay inventario o el stock es insuficiente.
+     */
+    @Modifying
+    @Query("UPDATE Inventario i SET i.cantidadDisponible = i.cantidadDisponible - :cantidad, " +
+           "i.cantidadReservada = i.cantidadReservada + :cantidad, i.fechaActualizacion = :ahora, i.version = i.version + 1 " +
+           "WHERE i.producto.id = :productoId AND i.cantidadDisponible >= :cantidad")
+    int reservarDisponible(Long productoId, int cantidad, LocalDateTime ahora);
+
+    /**
+     * Confirma unidades reservadas (salen definitivamente del inventario).
+     * @return 1 si se confirmó, 0 si la cantidad reservada no alcanza.
+     */
+    @Modifying
+    @Query("UPDATE Inventario i SET i.cantidadReservada = i.cantidadReservada - :cantidad, " +
+           "i.fechaActualizacion = :ahora, i.version = i.version + 1 " +
+           "WHERE i.producto.id = :productoId AND i.cantidadReservada >= :cantidad")
+    int confirmarReservada(Long productoId, int cantidad, LocalDateTime ahora);
+
+    /**
+     * Devuelve unidades reservadas a disponible.
+     * @return 1 si se liberó, 0 si la cantidad reservada no alcanza.
+     */
+    @Modifying
+    @Query("UPDATE Inventario i SET i.cantidadReservada = i.cantidadReservada - :cantidad, " +
+           "i.cantidadDisponible = i.cantidadDisponible + :cantidad, i.fechaActualizacion = :ahora, i.version = i.version + 1 " +
+           "WHERE i.producto.id = :productoId AND i.cantidadReservada >= :cantidad")
+    int liberarReservada(Long productoId, int cantidad, LocalDateTime ahora);
+
+    /**
+     * Aplica deltas ya validados en memoria (libro de stock caliente) sin condición de stock.
+     */
+    @Modifying
+    @Query("UPDATE Inventario i SET i.cantidadDisponible = i.cantidadDisponible + :deltaDisponible, " +
+           "i.cantidadReservada = i.cantidadReservada + :deltaReservada, i.fechaActualizacion = :ahora, i.version = i.version + 1 " +
+           "WHERE i.producto.id = :productoId")
+    int ajustarStock(Long productoId, int deltaDisponible, int deltaReservada, LocalDateTime ahora);
 }
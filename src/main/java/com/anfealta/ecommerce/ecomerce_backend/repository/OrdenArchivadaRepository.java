@@ -0,0 +1,63 @@
+package com.anfealta.ecommerce.ecomerce_backend.repository;
+
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResumenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.entity.OrdenArchivada;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Lecturas de las órdenes archivadas; mismas consultas que {@link OrdenRepository} para las lecturas por ID
+ * y por usuario, que recurren al archivo cuando la orden ya no está en {@code ordenes}.
+ */
+@Repository
+public interface OrdenArchivadaRepository extends JpaRepository<OrdenArchivada, Long> {
+
+    @EntityGraph(attributePaths = {"usuario", "detalles", "detalles.producto", "detalles.producto.inventario"})
+    Optional<OrdenArchivada> findConDetallesById(Long id);
+
+    @Query("SELECT o.fechaActualizacion FROM OrdenArchivada o WHERE o.id = :id")
+    Optional<LocalDateTime> findFechaActualizacionById(Long id);
+
+    @EntityGraph(attributePaths = {"usuario", "detalles", "detalles.producto", "detalles.producto.inventario"})
+    List<OrdenArchivada> findConDetallesByIdIn(Collection<Long> ids);
+
+    @EntityGraph(attributePaths = {"usuario", "detalles", "detalles.producto", "detalles.producto.inventario"})
+    List<OrdenArchivada> findConDetallesByUsuarioIdOrderByIdAsc(Long usuarioId);
+
+    String SELECT_RESUMEN = "SELECT new com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResumenResponse(" +
+            "o.id, u.id, u.nombreUsuario, o.fechaCreacion, o.estado, o.subtotal, o.descuentoTotal, o.total, " +
+            "(SELECT COUNT(d) FROM OrdenDetalleArchivada d WHERE d.orden = o)) FROM OrdenArchivada o JOIN o.usuario u ";
+
+    @Query(SELECT_RESUMEN + "WHERE o.id IN :ids")
+    List<OrdenResumenResponse> findResumenesByIdIn(Collection<Long> ids);
+
+    @Query(SELECT_RESUMEN + "WHERE u.id = :usuarioId ORDER BY o.id")
+    List<OrdenResumenResponse> findResumenesByUsuarioId(Long usuarioId);
+
+    // (id, fechaCreacion) para mezclar las páginas por cursor con las de OrdenRepository.
+    @Query("SELECT o.id, o.fechaCreacion FROM OrdenArchivada o WHERE o.usuarioId = :usuarioId " +
+           "ORDER BY o.fechaCreacion DESC, o.id DESC")
+    List<Object[]> findClavesPrimeraPaginaByUsuarioId(Long usuarioId, Pageable pageable);
+
+    @Query("SELECT o.id, o.fechaCreacion FROM OrdenArchivada o WHERE o.usuarioId = :usuarioId AND (o.fechaCreacion < :fechaCreacion " +
+           "OR (o.fechaCreacion = :fechaCreacion AND o.id < :id)) ORDER BY o.fechaCreacion DESC, o.id DESC")
+    List<Object[]> findClavesPaginaDespuesDeByUsuarioId(Long usuarioId, LocalDateTime fechaCreacion, Long id, Pageable pageable);
+
+    // El archivo no tiene cascada desde Usuario: al eliminar un usuario se borran primero las líneas y luego las órdenes.
+    @Modifying
+    @Query("DELETE FROM OrdenDetalleArchivada d WHERE d.ordenId IN (SELECT o.id FROM OrdenArchivada o WHERE o.usuarioId = :usuarioId)")
+    int eliminarDetallesPorUsuario(Long usuarioId);
+
+    @Modifying
+    @Query("DELETE FROM OrdenArchivada o WHERE o.usuarioId = :usuarioId")
+    int eliminarPorUsuario(Long usuarioId);
+}
@@ -6,9 +6,9 @@ import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -16,8 +16,19 @@ public interface OrdenDetalleRepository extends JpaRepository<OrdenDetalle, Long
     List<OrdenDetalle> findByOrden(Orden orden); 
     List<OrdenDetalle> findByProducto(Producto producto); 
 
-    @Query("SELECT od.producto.id, od.producto.nombre, SUM(od.cantidad) AS totalVendido " +
-           "FROM OrdenDetalle od GROUP BY od.producto.id, od.producto.nombre " +
-           "ORDER BY totalVendido DESC")
-    List<Object[]> findTop5MostSoldProducts(Pageable pageable);
-}
\ No newline at end of file
+    /** Filas (productoId, unidades) de las líneas de las órdenes indicadas. */
+    @Query("SELECT d.producto.id, SUM(d.cantidad) FROM OrdenDetalle d WHERE d.orden.id IN :ordenIds GROUP BY d.producto.id")
+    List<Object[]> sumarCantidadesPorProductoDeOrdenes(Collection<Long> ordenIds);
+
+    /** Filas (productoId, unidades) de las líneas de las órdenes no canceladas del usuario. */
+    @Query("SELECT d.producto.id, SUM(d.cantidad) FROM OrdenDetalle d WHERE d.orden.usuario.id = :usuarioId " +
+           "AND d.orden.estado <> com.anfealta.ecommerce.ecomerce_backend.entity.Orden.EstadoOrden.CANCELADA " +
+           "GROUP BY d.producto.id")
+    List<Object[]> sumarCantidadesPorProductoDeUsuario(Long usuarioId);
+
+    /** Filas (productoId, unidades) de las líneas archivadas de las órdenes no canceladas del usuario. */
+    @Query("SELECT d.productoId, SUM(d.cantidad) FROM OrdenDetalleArchivada d WHERE d.orden.usuarioId = :usuarioId " +
+           "AND d.orden.estado <> com.anfealta.ecommerce.ecomerce_backend.entity.Orden.EstadoOrden.CANCELADA " +
+           "GROUP BY d.productoId")
+    List<Object[]> sumarCantidadesArchivadasPorProductoDeUsuario(Long usuarioId);
+}
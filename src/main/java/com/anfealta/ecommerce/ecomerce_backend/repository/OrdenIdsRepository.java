@@ -0,0 +1,21 @@
+package com.anfealta.ecommerce.ecomerce_backend.repository;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Consultas de solo IDs sobre un {@link Specification}, sin cargar las órdenes.
+ */
+public interface OrdenIdsRepository {
+
+    /**
+     * IDs de las órdenes que cumplen el criterio, en el orden indicado.
+     * @param criterio Condiciones de {@link OrdenSpecifications}.
+     * @param orden Orden de las filas.
+     * @param limite Máximo de IDs a devolver.
+     */
+    List<Long> findIdsBy(Specification<Orden> criterio, Sort orden, int limite);
+}
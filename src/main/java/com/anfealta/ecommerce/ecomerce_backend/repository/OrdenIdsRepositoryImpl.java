@@ -0,0 +1,40 @@
+package com.anfealta.ecommerce.ecomerce_backend.repository;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.List;
+
+/**
+ * Selecciona solo {@code o.id} con un {@code CriteriaQuery<Long>}: la consulta fluida de
+ * {@code JpaSpecificationExecutor} hidrata cada orden para después descartarla.
+ */
+class OrdenIdsRepositoryImpl implements OrdenIdsRepository {
+
+    private final EntityManager entityManager;
+
+    OrdenIdsRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<Long> findIdsBy(Specification<Orden> criterio, Sort orden, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Orden> root = query.from(Orden.class);
+        query.select(root.get("id"));
+        Predicate condicion = criterio.toPredicate(root, query, cb);
+        if (condicion != null) {
+            query.where(condicion);
+        }
+        query.orderBy(QueryUtils.toOrders(orden, root, cb));
+        return entityManager.createQuery(query).setMaxResults(limite).getResultList();
+    }
+}
@@ -1,28 +1,111 @@
 package com.anfealta.ecommerce.ecomerce_backend.repository;
 
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResumenResponse;
 import com.anfealta.ecommerce.ecomerce_backend.entity.Orden; 
 import com.anfealta.ecommerce.ecomerce_backend.entity.Usuario; 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface OrdenRepository extends JpaRepository<Orden, Long> {
+public interface OrdenRepository extends JpaRepository<Orden, Long>, JpaSpecificationExecutor<Orden>, OrdenIdsRepository {
     List<Orden> findByUsuario(Usuario usuario); 
     List<Orden> findByFechaCreacionBetween(LocalDateTime startDate, LocalDateTime endDate); 
     List<Orden> findByEstado(Orden.EstadoOrden estado); 
 
-    @Query("SELECT o.usuario.id, o.usuario.nombreUsuario, COUNT(o.id) AS totalOrdenes " +
-           "FROM Orden o GROUP BY o.usuario.id, o.usuario.nombreUsuario " +
-           "ORDER BY totalOrdenes DESC")
-    List<Object[]> findTop5FrequentCustomers(Pageable pageable);
-
-    @Query("SELECT COUNT(o) FROM Orden o WHERE o.usuario.id = :usuarioId AND o.fechaCreacion >= :fechaDesde")
+    // Las órdenes aún no procesadas (ACEPTADA) o rechazadas no cuentan para el cliente frecuente.
+    @Query("SELECT COUNT(o) FROM Orden o WHERE o.usuario.id = :usuarioId AND o.fechaCreacion >= :fechaDesde " +
+           "AND o.estado NOT IN (com.anfealta.ecommerce.ecomerce_backend.entity.Orden.EstadoOrden.ACEPTADA, " +
+           "com.anfealta.ecommerce.ecomerce_backend.entity.Orden.EstadoOrden.RECHAZADA)")
     long countByUsuarioIdAndFechaCreacionAfter(Long usuarioId, LocalDateTime fechaDesde);
 
+    @Query("SELECT o.id, o.fechaCreacion FROM Orden o WHERE o.usuario.id = :usuarioId AND o.fechaCreacion >= :fechaDesde " +
+           "AND o.estado NOT IN (com.anfealta.ecommerce.ecomerce_backend.entity.Orden.EstadoOrden.ACEPTADA, " +
+           "com.anfealta.ecommerce.ecomerce_backend.entity.Orden.EstadoOrden.RECHAZADA)")
+    List<Object[]> findIdYFechaCreacionByUsuarioIdDesde(Long usuarioId, LocalDateTime fechaDesde);
+
+    @Query("SELECT o.id FROM Orden o WHERE o.estado = :estado AND o.stockReservado = true " +
+           // Reservas anteriores a fechaReserva: su única referencia es la fecha de creación.
+           "AND (o.fechaReserva < :limite OR (o.fechaReserva IS NULL AND o.fechaCreacion < :limite)) ORDER BY o.id")
+    List<Long> findIdsConReservaVencida(Orden.EstadoOrden estado, LocalDateTime limite, Pageable pageable);
+
+    @Query("SELECT o.id FROM Orden o WHERE o.estado = :estado AND o.fechaCreacion < :limite ORDER BY o.id")
+    List<Long> findIdsByEstadoCreadasAntesDe(Orden.EstadoOrden estado, LocalDateTime limite, Pageable pageable);
+
+    @EntityGraph(attributePaths = "detalles")
+    List<Orden> findByIdIn(Collection<Long> ids);
+
+    // Versión de la orden para el ETag, sin cargarla.
+    @Query("SELECT o.fechaActualizacion FROM Orden o WHERE o.id = :id")
+    Optional<LocalDateTime> findFechaActualizacionById(Long id);
+
+    @Query("SELECT o.id, o.estado, o.stockReservado FROM Orden o WHERE o.id IN :ids")
+    List<Object[]> findEstadosByIdIn(Collection<Long> ids);
+
+    // Lo que necesita el resumen de actividad de clientes, sin cargar las órdenes.
+    @Query("SELECT o.usuario.id, o.fechaCreacion, o.total FROM Orden o WHERE o.id IN :ids")
+    List<Object[]> findUsuarioFechaCreacionYTotalByIdIn(Collection<Long> ids);
+
+    // Cambio de estado en bloque: vuelve a exigir un estado de origen válido, así que no pisa una orden que
+    // cambió después de leerla, e incrementa la versión para que fallen las escrituras optimistas en curso.
+    @Modifying
+    @Query("UPDATE Orden o SET o.estado = :destino, o.fechaActualizacion = :ahora, o.version = o.version + 1 " +
+           "WHERE o.id IN :ids AND o.estado IN :origenes AND o.stockReservado = false")
+    int actualizarEstados(Collection<Long> ids, Collection<Orden.EstadoOrden> origenes, Orden.EstadoOrden destino, LocalDateTime ahora);
+
+    // Lecturas para la respuesta de la API: traen en la misma consulta el usuario, las líneas y sus productos
+    // (con el inventario, que Hibernate cargaría aparte por ser el lado inverso del uno a uno).
+    @EntityGraph(attributePaths = {"usuario", "detalles", "detalles.producto", "detalles.producto.inventario"})
+    Optional<Orden> findConDetallesById(Long id);
+
+    @EntityGraph(attributePaths = {"usuario", "detalles", "detalles.producto", "detalles.producto.inventario"})
+    List<Orden> findConDetallesByUsuarioIdOrderByIdAsc(Long usuarioId);
+
+    @EntityGraph(attributePaths = {"usuario", "detalles", "detalles.producto", "detalles.producto.inventario"})
+    @Query("SELECT o FROM Orden o ORDER BY o.id")
+    List<Orden> findAllConDetalles();
+
+    @EntityGraph(attributePaths = {"usuario", "detalles", "detalles.producto", "detalles.producto.inventario"})
+    List<Orden> findConDetallesByIdIn(Collection<Long> ids);
+
+    // Resúmenes para las vistas de lista: una fila por orden, con la cantidad de líneas contada en la base de datos.
+    String SELECT_RESUMEN = "SELECT new com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResumenResponse(" +
+            "o.id, u.id, u.nombreUsuario, o.fechaCreacion, o.estado, o.subtotal, o.descuentoTotal, o.total, " +
+            "(SELECT COUNT(d) FROM OrdenDetalle d WHERE d.orden = o)) FROM Orden o JOIN o.usuario u ";
+
+    @Query(SELECT_RESUMEN + "WHERE o.id IN :ids")
+    List<OrdenResumenResponse> findResumenesByIdIn(Collection<Long> ids);
+
+    @Query(SELECT_RESUMEN + "ORDER BY o.id")
+    List<OrdenResumenResponse> findAllResumenes();
+
+    @Query(SELECT_RESUMEN + "WHERE u.id = :usuarioId ORDER BY o.id")
+    List<OrdenResumenResponse> findResumenesByUsuarioId(Long usuarioId);
+
+    // Paginación por cursor (seek) sobre (fechaCreacion, id), de la más reciente a la más antigua: cada página
+    // continúa desde la última orden de la anterior, así que cuesta lo mismo que la primera.
+    @Query("SELECT o.id FROM Orden o ORDER BY o.fechaCreacion DESC, o.id DESC")
+    List<Long> findIdsPrimeraPagina(Pageable pageable);
+
+    @Query("SELECT o.id FROM Orden o WHERE o.fechaCreacion < :fechaCreacion " +
+           "OR (o.fechaCreacion = :fechaCreacion AND o.id < :id) ORDER BY o.fechaCreacion DESC, o.id DESC")
+    List<Long> findIdsPaginaDespuesDe(LocalDateTime fechaCreacion, Long id, Pageable pageable);
+
+    // Las de un usuario traen también la fecha, para mezclarlas con las órdenes archivadas del usuario.
+    @Query("SELECT o.id, o.fechaCreacion FROM Orden o WHERE o.usuario.id = :usuarioId ORDER BY o.fechaCreacion DESC, o.id DESC")
+    List<Object[]> findClavesPrimeraPaginaByUsuarioId(Long usuarioId, Pageable pageable);
+
+    @Query("SELECT o.id, o.fechaCreacion FROM Orden o WHERE o.usuario.id = :usuarioId AND (o.fechaCreacion < :fechaCreacion " +
+           "OR (o.fechaCreacion = :fechaCreacion AND o.id < :id)) ORDER BY o.fechaCreacion DESC, o.id DESC")
+    List<Object[]> findClavesPaginaDespuesDeByUsuarioId(Long usuarioId, LocalDateTime fechaCreacion, Long id, Pageable pageable);
 
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.anfealta.ecommerce.ecomerce_backend.repository;
+
+import com.anfealta.ecommerce.ecomerce_backend.dto.FiltroOrdenes;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.entity.OrdenDetalle;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Criterios de búsqueda de órdenes. Cada filtro presente se traduce en una condición sobre columnas indexadas
+ * de {@code ordenes} (ver los índices de {@link Orden}); el SKU se resuelve con un EXISTS sobre las líneas.
+ */
+public final class OrdenSpecifications {
+
+    private OrdenSpecifications() {
+    }
+
+    /** Combina con AND los filtros presentes; sin filtros, todas las órdenes. */
+    public static Specification<Orden> conFiltro(FiltroOrdenes filtro) {
+        return (root, query, cb) -> {
+            List<Predicate> condiciones = new ArrayList<>();
+            if (filtro.getEstado() != null) {
+                condiciones.add(cb.equal(root.get("estado"), filtro.getEstado()));
+            }
+            if (filtro.getDesde() != null) {
+                condiciones.add(cb.greaterThanOrEqualTo(root.get("fechaCreacion"), filtro.getDesde()));
+            }
+            if (filtro.getHasta() != null) {
+                condiciones.add(cb.lessThan(root.get("fechaCreacion"), filtro.getHasta()));
+            }
+            if (filtro.getTotalMinimo() != null) {
+                condiciones.add(cb.greaterThanOrEqualTo(root.get("total"), filtro.getTotalMinimo()));
+            }
+            if (filtro.getTotalMaximo() != null) {
+                condiciones.add(cb.lessThanOrEqualTo(root.get("total"), filtro.getTotalMaximo()));
+            }
+            if (filtro.getUsuarioId() != null) {
+                condiciones.add(cb.equal(root.get("usuario").get("id"), filtro.getUsuarioId()));
+            }
+            if (filtro.getSkuProducto() != null) {
+                // EXISTS en lugar de JOIN: una orden con varias líneas del producto no se repite.
+                Subquery<Long> lineas = query.subquery(Long.class);
+                var detalle = lineas.from(OrdenDetalle.class);
+                lineas.select(detalle.get("id"))
+                        .where(cb.equal(detalle.get("orden"), root),
+                                cb.equal(detalle.get("producto").get("sku"), filtro.getSkuProducto()));
+                condiciones.add(cb.exists(lineas));
+            }
+            return cb.and(condiciones.toArray(new Predicate[0]));
+        };
+    }
+
+    /** Órdenes posteriores al cursor en el orden (fechaCreacion DESC, id DESC) de las páginas. */
+    public static Specification<Orden> despuesDe(LocalDateTime fechaCreacion, Long id) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("fechaCreacion"), fechaCreacion),
+                cb.and(cb.equal(root.get("fechaCreacion"), fechaCreacion), cb.lessThan(root.get("id"), id)));
+    }
+}
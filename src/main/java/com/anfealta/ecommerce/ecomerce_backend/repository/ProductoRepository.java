@@ -2,7 +2,9 @@ package com.anfealta.ecommerce.ecomerce_backend.repository;
 
 import com.anfealta.ecommerce.ecomerce_backend.entity.Producto; 
 import org.springframework.data.jpa.repository.JpaRepository; 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository; 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,4 +22,11 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
 
     List<Producto> findByCategoriaIgnoreCaseAndActivoTrue(String categoria); 
 
+    /**
+     * Carga en una sola consulta los productos indicados junto con su inventario,
+     * evitando una consulta por producto (y por inventario) al armar una orden.
+     */
+    @Query("SELECT p FROM Producto p LEFT JOIN FETCH p.inventario WHERE p.id IN :ids")
+    List<Producto> findAllConInventarioByIdIn(Collection<Long> ids);
+
 }
\ No newline at end of file
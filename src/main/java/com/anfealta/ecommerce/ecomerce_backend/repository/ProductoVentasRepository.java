@@ -0,0 +1,36 @@
+package com.anfealta.ecommerce.ecomerce_backend.repository;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.ProductoVentas;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ProductoVentasRepository extends JpaRepository<ProductoVentas, Long> {
+
+    /**
+     * Suma (o resta, con unidades negativas) unidades vendidas al producto sin leer la fila.
+     * @return 1 si el producto tiene fila en {@code producto_ventas}; 0 si no.
+     */
+    @Modifying
+    @Query("UPDATE ProductoVentas v SET v.unidadesVendidas = v.unidadesVendidas + :unidades, " +
+           "v.fechaActualizacion = :ahora WHERE v.productoId = :productoId")
+    int sumarUnidades(Long productoId, long unidades, LocalDateTime ahora);
+
+    @Modifying
+    @Query("DELETE FROM ProductoVentas v WHERE v.productoId = :productoId")
+    int eliminarPorProducto(Long productoId);
+
+    /** Filas (productoId, unidadesVendidas) de los productos con ventas, de más a menos vendido. */
+    @Query("SELECT v.productoId, v.unidadesVendidas FROM ProductoVentas v WHERE v.unidadesVendidas > 0 " +
+           "ORDER BY v.unidadesVendidas DESC, v.productoId")
+    List<Object[]> findVendidos(Pageable pageable);
+
+    @Query("SELECT v.productoId, v.unidadesVendidas FROM ProductoVentas v WHERE v.unidadesVendidas > 0")
+    List<Object[]> findTodosVendidos();
+}
@@ -0,0 +1,35 @@
+package com.anfealta.ecommerce.ecomerce_backend.repository;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.TomaCarril;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TomaCarrilRepository extends JpaRepository<TomaCarril, Long> {
+
+    /**
+     * Borra las tomas de una asignación. Quien borra las filas es el único que decide su destino: la orden que
+     * se confirma o la devolución que repone las unidades.
+     * @return Cantidad de filas borradas; 0 si la asignación ya se confirmó o se devolvió.
+     */
+    @Modifying
+    @Query("DELETE FROM TomaCarril t WHERE t.token = :token")
+    int eliminarPorToken(String token);
+
+    /**
+     * Borra las tomas de una asignación en los productos de un carril.
+     * @return Cantidad de filas borradas; 0 si la asignación ya se confirmó o se devolvió.
+     */
+    @Modifying
+    @Query("DELETE FROM TomaCarril t WHERE t.token = :token AND t.productoId IN :productoIds")
+    int eliminarPorTokenYProductos(String token, Collection<Long> productoIds);
+
+    List<TomaCarril> findByFechaCreacionBeforeOrderById(LocalDateTime limite, Pageable pageable);
+}
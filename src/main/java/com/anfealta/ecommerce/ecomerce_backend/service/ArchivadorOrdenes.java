@@ -0,0 +1,157 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Barrido periódico que mueve las órdenes ENTREGADA y CANCELADA más antiguas que
+ * {@code app.ordenes.archivo.edad-dias} (con sus líneas) a {@code ordenes_archivadas} y
+ * {@code orden_detalles_archivadas}, para que {@code ordenes} solo tenga la historia reciente.
+ * <p>
+ * Cada lote es una transacción con cuatro sentencias por conjuntos (INSERT ... SELECT de órdenes y líneas y
+ * DELETE de ambas); si alguna orden del lote cambió de estado entre tanto, el lote se revierte entero y se
+ * reintenta en el próximo barrido. Las lecturas por ID y por usuario recurren al archivo.
+ */
+@Component
+public class ArchivadorOrdenes {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchivadorOrdenes.class);
+
+    private static final List<Orden.EstadoOrden> ESTADOS_ARCHIVABLES = List.of(Orden.EstadoOrden.ENTREGADA, Orden.EstadoOrden.CANCELADA);
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean habilitado;
+    private final long edadDias;
+    private final int tamanoLote;
+    private final int maxLotes;
+    private final Timer duracionLote;
+    private final Counter ordenesArchivadas;
+    private final Counter lineasArchivadas;
+
+    public ArchivadorOrdenes(EntityManager entityManager,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.ordenes.archivo.habilitado:false}") boolean habilitado,
+                             @Value("${app.ordenes.archivo.edad-dias:180}") long edadDias,
+                             @Value("${app.descuentos.cliente-frecuente.periodo-dias:30}") long periodoClienteFrecuenteDias,
+                             @Value("${app.ordenes.archivo.tamano-lote:500}") int tamanoLote,
+                             @Value("${app.ordenes.archivo.max-lotes:100}") int maxLotes) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.habilitado = habilitado;
+        // El conteo de cliente frecuente solo mira ordenes: no se archiva nada que todavía cuente.
+        if (edadDias < periodoClienteFrecuenteDias) {
+            log.warn("app.ordenes.archivo.edad-dias ({}) es menor que el período de cliente frecuente; se usan {} días",
+                    edadDias, periodoClienteFrecuenteDias);
+        }
+        this.edadDias = Math.max(edadDias, periodoClienteFrecuenteDias);
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.maxLotes = Math.max(1, maxLotes);
+
+        this.duracionLote = Timer.builder("app.ordenes.archivo.lote.duracion")
+                .description("Duración de la transacción de un lote de archivo")
+                .register(meterRegistry);
+        this.ordenesArchivadas = Counter.builder("app.ordenes.archivo.filas")
+                .description("Filas movidas al archivo")
+                .tag("tabla", "ordenes")
+                .register(meterRegistry);
+        this.lineasArchivadas = Counter.builder("app.ordenes.archivo.filas")
+                .description("Filas movidas al archivo")
+                .tag("tabla", "orden_detalles")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.ordenes.archivo.barrido-ms:3600000}")
+    public void archivar() {
+        if (habilitado) {
+            archivarCreadasAntesDe(LocalDateTime.now().minusDays(edadDias));
+        }
+    }
+
+    /**
+     * Archiva en lotes, como mucho {@code app.ordenes.archivo.max-lotes} por barrido.
+     * @return Cantidad de órdenes archivadas.
+     */
+    public int archivarCreadasAntesDe(LocalDateTime limite) {
+        int total = 0;
+        int archivadas;
+        int lotes = 0;
+        try {
+            do {
+                archivadas = archivarLote(limite);
+                total += archivadas;
+            } while (archivadas == tamanoLote && ++lotes < maxLotes);
+        } catch (OptimisticLockingFailureException e) {
+            log.info("Lote de archivo en conflicto con otra actualización; se reintentará en el próximo barrido");
+        }
+        if (total > 0) {
+            log.info("Archivo de órdenes terminado: {} órdenes creadas antes de {}", total, limite);
+        }
+        return total;
+    }
+
+    private int archivarLote(LocalDateTime limite) {
+        long inicio = System.nanoTime();
+        int[] filas = transactionTemplate.execute(status -> {
+            List<Long> ids = entityManager.createQuery("SELECT o.id FROM Orden o WHERE o.estado IN :estados " +
+                            "AND o.fechaCreacion < :limite ORDER BY o.fechaCreacion, o.id", Long.class)
+                    .setParameter("estados", ESTADOS_ARCHIVABLES)
+                    .setParameter("limite", limite)
+                    .setMaxResults(tamanoLote)
+                    .getResultList();
+            if (ids.isEmpty()) {
+                return new int[]{0, 0};
+            }
+            int ordenes = entityManager.createQuery("INSERT INTO OrdenArchivada (id, usuarioId, fechaCreacion, fechaActualizacion, " +
+                            "estado, subtotal, descuentoTotal, total, motivoRechazo, fechaArchivado) " +
+                            "SELECT o.id, o.usuario.id, o.fechaCreacion, o.fechaActualizacion, o.estado, o.subtotal, " +
+                            "o.descuentoTotal, o.total, o.motivoRechazo, :ahora FROM Orden o WHERE o.id IN :ids AND o.estado IN :estados")
+                    .setParameter("ahora", LocalDateTime.now())
+                    .setParameter("ids", ids)
+                    .setParameter("estados", ESTADOS_ARCHIVABLES)
+                    .executeUpdate();
+            int lineas = entityManager.createQuery("INSERT INTO OrdenDetalleArchivada (id, ordenId, productoId, cantidad, " +
+                            "precioUnitario, subtotalLinea, fechaCreacion, fechaActualizacion) " +
+                            "SELECT d.id, d.orden.id, d.producto.id, d.cantidad, d.precioUnitario, d.subtotalLinea, " +
+                            "d.fechaCreacion, d.fechaActualizacion FROM OrdenDetalle d WHERE d.orden.id IN :ids")
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+            int lineasBorradas = entityManager.createQuery("DELETE FROM OrdenDetalle d WHERE d.orden.id IN :ids")
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+            int ordenesBorradas = entityManager.createQuery("DELETE FROM Orden o WHERE o.id IN :ids AND o.estado IN :estados")
+                    .setParameter("ids", ids)
+                    .setParameter("estados", ESTADOS_ARCHIVABLES)
+                    .executeUpdate();
+            if (ordenes != ids.size() || ordenesBorradas != ids.size() || lineasBorradas != lineas) {
+                // Alguna orden cambió de estado o se eliminó después de elegirla: se revierte el lote completo.
+                throw new OptimisticLockingFailureException("Lote de archivo modificado durante el archivo");
+            }
+            return new int[]{ordenes, lineas};
+        });
+        long duracion = System.nanoTime() - inicio;
+        if (filas[0] > 0) {
+            duracionLote.record(duracion, TimeUnit.NANOSECONDS);
+            ordenesArchivadas.increment(filas[0]);
+            lineasArchivadas.increment(filas[1]);
+            log.info("Lote archivado: {} órdenes y {} líneas en {} ms", filas[0], filas[1], TimeUnit.NANOSECONDS.toMillis(duracion));
+        }
+        return filas[0];
+    }
+}
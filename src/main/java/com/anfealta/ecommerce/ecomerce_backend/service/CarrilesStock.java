@@ -0,0 +1,475 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Inventario;
+import com.anfealta.ecommerce.ecomerce_backend.entity.TomaCarril;
+import com.anfealta.ecommerce.ecomerce_backend.repository.InventarioRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.TomaCarrilRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Carriles de asignación de stock con un único escritor por producto.
+ * <p>
+ * Cada producto se asigna a uno de {@code app.inventario.carriles.cantidad} carriles según su ID. Cada carril es
+ * un hilo que atiende su cola en orden: toma hasta {@code app.inventario.carriles.lote-max} operaciones, bloquea
+ * una sola vez las filas de {@code inventarios} involucradas, aplica las asignaciones una tras otra en memoria y
+ * escribe una actualización por producto en una única transacción. Así, los hilos de las peticiones no esperan
+ * bloqueos de fila entre sí y cada commit cubre muchas compras del mismo producto.
+ * <p>
+ * Una orden con productos de varios carriles envía su parte a cada uno; si alguno no tiene stock suficiente,
+ * lo tomado en los demás se devuelve. La base de datos sigue siendo la fuente de verdad: las unidades se
+ * descuentan al confirmarse el lote del carril, y se devuelven si la transacción de la orden se revierte.
+ * Las devoluciones de un lote se aplican en su propia transacción, antes que las tomas, y se reintentan hasta
+ * {@code app.inventario.carriles.reintentos-devolucion} veces: una toma que falla no arrastra unidades ya
+ * vendidas de vuelta al vacío. Si aun así no se aplican, se registran como error para conciliarlas a mano.
+ * Los productos del {@link LibroStockCaliente} no pasan por los carriles.
+ * <p>
+ * El carril confirma su lote antes que la orden. Para que una caída entre ambos commits no pierda unidades,
+ * cada toma deja una {@link TomaCarril} en la transacción del carril y la orden la borra en la suya con
+ * {@link #confirmar}. Una devolución solo repone lo que todavía tiene su fila, así que nunca se aplica dos
+ * veces ni sobre una orden ya confirmada; las filas con más de {@code app.inventario.carriles.vencimiento-tomas-ms}
+ * se devuelven en un barrido periódico, y si su orden aún intenta confirmarse, falla con 409.
+ * <p>
+ * Cada carril ocupa una conexión del pool mientras aplica su lote. {@code crearOrden} asigna el stock antes de
+ * abrir la transacción de la orden, sin retener una conexión mientras espera; la ingesta por lotes, la
+ * importación y el procesador de órdenes aceptadas sí esperan dentro de su transacción. Por eso
+ * {@code spring.datasource.hikari.maximum-pool-size} debe superar {@code app.inventario.carriles.cantidad} más
+ * los hilos de esos procesos; si no, los carriles esperan una conexión que no se libera hasta que vence
+ * {@code app.inventario.carriles.timeout-ms} y las compras terminan en 503.
+ */
+@Component
+public class CarrilesStock {
+
+    private static final Logger log = LoggerFactory.getLogger(CarrilesStock.class);
+
+    private final InventarioRepository inventarioRepository;
+    private final TomaCarrilRepository tomaCarrilRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean habilitado;
+    private final int cantidadCarriles;
+    private final int loteMax;
+    private final long timeoutMs;
+    private final int reintentosDevolucion;
+    private final long vencimientoTomasMs;
+    private final boolean reservasHabilitadas;
+    private final DistributionSummary tamanoLote;
+
+    private Carril[] carriles = new Carril[0];
+
+    public CarrilesStock(InventarioRepository inventarioRepository,
+                         TomaCarrilRepository tomaCarrilRepository,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.inventario.carriles.habilitado:false}") boolean habilitado,
+                         @Value("${app.inventario.carriles.cantidad:4}") int cantidadCarriles,
+                         @Value("${app.inventario.carriles.lote-max:100}") int loteMax,
+                         @Value("${app.inventario.carriles.timeout-ms:5000}") long timeoutMs,
+                         @Value("${app.inventario.carriles.reintentos-devolucion:5}") int reintentosDevolucion,
+                         @Value("${app.inventario.carriles.vencimiento-tomas-ms:900000}") long vencimientoTomasMs,
+                         @Value("${app.inventario.reservas.habilitadas:false}") boolean reservasHabilitadas) {
+        this.inventarioRepository = inventarioRepository;
+        this.tomaCarrilRepository = tomaCarrilRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.habilitado = habilitado;
+        this.cantidadCarriles = Math.max(1, cantidadCarriles);
+        this.loteMax = Math.max(1, loteMax);
+        this.timeoutMs = timeoutMs;
+        this.reintentosDevolucion = Math.max(1, reintentosDevolucion);
+        this.vencimientoTomasMs = vencimientoTomasMs;
+        this.reservasHabilitadas = reservasHabilitadas;
+        this.tamanoLote = DistributionSummary.builder("app.inventario.carriles.lote.tamano")
+                .description("Operaciones de stock aplicadas por transacción de un carril")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        if (!habilitado) {
+            return;
+        }
+        carriles = new Carril[cantidadCarriles];
+        for (int i = 0; i < cantidadCarriles; i++) {
+            carriles[i] = new Carril(i);
+            carriles[i].hilo.start();
+        }
+        log.info("Carriles de stock activos: {} carriles, lote máximo {}", cantidadCarriles, loteMax);
+    }
+
+    @PreDestroy
+    public void detener() {
+        for (Carril carril : carriles) {
+            carril.detener();
+        }
+    }
+
+    public boolean habilitado() {
+        return habilitado;
+    }
+
+    /**
+     * Toma las unidades de varios productos como una sola operación. Si la transacción en curso se revierte,
+     * las unidades se devuelven automáticamente; sin transacción, quien llama debe devolverlas si la orden no
+     * se crea. Las unidades tomadas deben confirmarse con {@link #confirmar} en la transacción de la orden.
+     * @param cantidades Cantidad por ID de producto.
+     * @return La asignación; si algún producto no alcanzó, no queda nada tomado.
+     * @throws ResponseStatusException 503 si los carriles no responden a tiempo.
+     */
+    public Asignacion tomarTodos(Map<Long, Integer> cantidades) {
+        String token = UUID.randomUUID().toString();
+        Map<Carril, Map<Long, Integer>> partes = new TreeMap<>((a, b) -> Integer.compare(a.indice, b.indice));
+        cantidades.forEach((productoId, cantidad) ->
+                partes.computeIfAbsent(carril(productoId), c -> new TreeMap<>()).put(productoId, cantidad));
+
+        Map<Carril, Operacion> enviadas = new HashMap<>();
+        partes.forEach((carril, parte) -> enviadas.put(carril, carril.enviar(parte, token, false)));
+
+        Long faltante = null;
+        List<Map.Entry<Carril, Operacion>> tomadas = new ArrayList<>();
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        RuntimeException error = null;
+        for (Map.Entry<Carril, Operacion> enviada : enviadas.entrySet()) {
+            Operacion operacion = enviada.getValue();
+            try {
+                Optional<Long> sinStock = operacion.resultado.get(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (sinStock.isPresent()) {
+                    faltante = sinStock.get();
+                } else {
+                    tomadas.add(enviada);
+                }
+            } catch (TimeoutException e) {
+                // Si el carril la aplica más tarde, se devuelve en cuanto termine.
+                operacion.resultado.thenAccept(sinStock -> {
+                    if (sinStock.isEmpty()) {
+                        enviada.getKey().enviar(operacion.cantidades, token, true);
+                    }
+                });
+                error = new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "No se pudo asignar el stock a tiempo, intente nuevamente.");
+            } catch (ExecutionException e) {
+                error = e.getCause() instanceof RuntimeException causa ? causa : new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Asignación de stock interrumpida", e);
+            }
+        }
+
+        Asignacion asignacion = new Asignacion(token, cantidades, tomadas, faltante);
+        if (error != null || faltante != null) {
+            asignacion.devolver();
+            if (error != null) {
+                throw error;
+            }
+            return asignacion;
+        }
+        EfectosTransaccion.alRevertir(asignacion::devolver);
+        return asignacion;
+    }
+
+    /**
+     * Confirma la asignación en la transacción de la orden: desde su commit, las unidades ya no se devuelven.
+     * @throws ResponseStatusException 409 si las unidades ya se devolvieron porque la toma venció.
+     */
+    public void confirmar(Asignacion asignacion) {
+        int tomas = asignacion.tomadas.stream().mapToInt(tomada -> tomada.getValue().cantidades.size()).sum();
+        if (tomas > 0 && tomaCarrilRepository.eliminarPorToken(asignacion.token) != tomas) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "La asignación de stock venció antes de confirmar la orden, intente nuevamente.");
+        }
+    }
+
+    /**
+     * Devuelve las tomas que ninguna orden confirmó a tiempo, p. ej. porque el servicio se detuvo entre el commit
+     * del carril y el de la orden. Las devoluciones pasan por el carril de cada producto, como las demás.
+     */
+    @Scheduled(fixedDelayString = "${app.inventario.carriles.barrido-ms:60000}")
+    public void devolverTomasVencidas() {
+        if (carriles.length == 0) {
+            return;
+        }
+        LocalDateTime limite = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(vencimientoTomasMs));
+        List<TomaCarril> vencidas = tomaCarrilRepository.findByFechaCreacionBeforeOrderById(limite, PageRequest.of(0, loteMax));
+        if (vencidas.isEmpty()) {
+            return;
+        }
+        Map<String, Map<Carril, Map<Long, Integer>>> porToken = new LinkedHashMap<>();
+        for (TomaCarril toma : vencidas) {
+            porToken.computeIfAbsent(toma.getToken(), t -> new HashMap<>())
+                    .computeIfAbsent(carril(toma.getProductoId()), c -> new TreeMap<>())
+                    .put(toma.getProductoId(), toma.getCantidad());
+        }
+        log.warn("Devolviendo {} asignaciones de stock que ninguna orden confirmó", porToken.size());
+        porToken.forEach((token, partes) -> partes.forEach((carril, parte) -> carril.enviar(parte, token, true)));
+    }
+
+    private Carril carril(Long productoId) {
+        if (carriles.length == 0) {
+            throw new IllegalStateException("Los carriles de stock no están habilitados");
+        }
+        return carriles[Math.floorMod(Long.hashCode(productoId), carriles.length)];
+    }
+
+    /**
+     * Resultado de {@link #tomarTodos}. {@link #devolver()} puede llamarse más de una vez: solo la primera
+     * devuelve las unidades.
+     */
+    public static final class Asignacion {
+
+        private final String token;
+        private final Map<Long, Integer> cantidades;
+        private final List<Map.Entry<Carril, Operacion>> tomadas;
+        private final Long faltante;
+        private final AtomicBoolean devuelta = new AtomicBoolean();
+
+        private Asignacion(String token, Map<Long, Integer> cantidades, List<Map.Entry<Carril, Operacion>> tomadas, Long faltante) {
+            this.token = token;
+            this.cantidades = cantidades;
+            this.tomadas = tomadas;
+            this.faltante = faltante;
+        }
+
+        /**
+         * @return Las cantidades pedidas por ID de producto.
+         */
+        public Map<Long, Integer> cantidades() {
+            return cantidades;
+        }
+
+        /**
+         * @return El ID de un producto sin stock suficiente, o vacío si se tomaron todas las unidades.
+         */
+        public Optional<Long> faltante() {
+            return Optional.ofNullable(faltante);
+        }
+
+        public void devolver() {
+            if (devuelta.compareAndSet(false, true)) {
+                tomadas.forEach(tomada -> tomada.getKey().enviar(tomada.getValue().cantidades, token, true));
+            }
+        }
+    }
+
+    /**
+     * Operación encolada en un carril: tomar o devolver unidades de productos del carril para la asignación
+     * {@code token}. El resultado es el ID de un producto sin stock (solo al tomar) o vacío si se aplicó.
+     */
+    private record Operacion(Map<Long, Integer> cantidades, String token, boolean devolucion,
+                             CompletableFuture<Optional<Long>> resultado) {
+    }
+
+    private final class Carril {
+
+        private final int indice;
+        private final BlockingQueue<Operacion> cola = new LinkedBlockingQueue<>();
+        private final Thread hilo;
+        private volatile boolean activo = true;
+
+        Carril(int indice) {
+            this.indice = indice;
+            this.hilo = new Thread(this::bucle, "carril-stock-" + indice);
+            this.hilo.setDaemon(true);
+        }
+
+        Operacion enviar(Map<Long, Integer> cantidades, String token, boolean devolucion) {
+            Operacion operacion = new Operacion(cantidades, token, devolucion, new CompletableFuture<>());
+            if (!activo) {
+                if (devolucion) {
+                    log.error("Devolución de stock no aplicada en el carril {}, detenido: {}", indice, cantidades);
+                }
+                operacion.resultado.completeExceptionally(
+                        new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "El servicio se está deteniendo, intente nuevamente."));
+                return operacion;
+            }
+            cola.add(operacion);
+            return operacion;
+        }
+
+        void detener() {
+            activo = false;
+            hilo.interrupt();
+            try {
+                hilo.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<Operacion> restantes = new ArrayList<>();
+            cola.drainTo(restantes);
+            if (!restantes.isEmpty()) {
+                // Las devoluciones pendientes deben llegar a la base de datos aunque el servicio se detenga.
+                procesar(restantes);
+            }
+        }
+
+        private void bucle() {
+            List<Operacion> lote = new ArrayList<>(loteMax);
+            while (activo) {
+                try {
+                    lote.add(cola.take());
+                    cola.drainTo(lote, loteMax - 1);
+                    procesar(lote);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    log.error("Error inesperado en el carril de stock {}", indice, e);
+                } finally {
+                    lote.clear();
+                }
+            }
+        }
+
+        /**
+         * Aplica primero las devoluciones del lote y luego las tomas, cada grupo en su transacción. Si la de
+         * las tomas falla, solo ellas terminan con error; las devoluciones se reintentan hasta aplicarse.
+         */
+        private void procesar(List<Operacion> lote) {
+            tamanoLote.record(lote.size());
+            List<Operacion> devoluciones = new ArrayList<>();
+            List<Operacion> tomas = new ArrayList<>();
+            lote.forEach(operacion -> (operacion.devolucion ? devoluciones : tomas).add(operacion));
+            if (!devoluciones.isEmpty()) {
+                devolver(devoluciones);
+            }
+            if (tomas.isEmpty()) {
+                return;
+            }
+            List<Optional<Long>> resultados;
+            try {
+                resultados = ejecutar(tomas);
+            } catch (RuntimeException e) {
+                log.warn("Falló la transacción de un lote de {} tomas del carril de stock {}", tomas.size(), indice, e);
+                tomas.forEach(operacion -> operacion.resultado.completeExceptionally(e));
+                return;
+            }
+            for (int i = 0; i < tomas.size(); i++) {
+                tomas.get(i).resultado.complete(resultados.get(i));
+            }
+        }
+
+        private void devolver(List<Operacion> devoluciones) {
+            for (int intento = 1; ; intento++) {
+                try {
+                    ejecutar(devoluciones);
+                    devoluciones.forEach(operacion -> operacion.resultado.complete(Optional.empty()));
+                    return;
+                } catch (RuntimeException e) {
+                    if (intento >= reintentosDevolucion) {
+                        // Las unidades ya no volverán solas al inventario: quedan en el log para conciliarlas.
+                        devoluciones.forEach(operacion -> log.error("Devolución de stock no aplicada en el carril {}: {}",
+                                indice, operacion.cantidades));
+                        log.error("Fallaron {} intentos de devolver stock en el carril {}", intento, indice, e);
+                        devoluciones.forEach(operacion -> operacion.resultado.completeExceptionally(e));
+                        return;
+                    }
+                    log.warn("Falló la devolución de stock en el carril {} (intento {} de {})", indice, intento, reintentosDevolucion, e);
+                    esperar(intento);
+                }
+            }
+        }
+
+        private void esperar(int intento) {
+            if (Thread.currentThread().isInterrupted()) {
+                // Deteniéndose: se reintenta sin esperar para no perder las devoluciones.
+                return;
+            }
+            try {
+                Thread.sleep(50L * intento);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Aplica las operaciones en una transacción: bloquea las filas una vez, aplica cada operación en orden
+         * sobre el stock leído y escribe una sola actualización por producto, junto con las tomas de la
+         * asignación de cada orden.
+         */
+        private List<Optional<Long>> ejecutar(List<Operacion> operaciones) {
+            List<Optional<Long>> resultados = new ArrayList<>(operaciones.size());
+            transactionTemplate.executeWithoutResult(status -> {
+                resultados.clear();
+                Set<Long> productoIds = new TreeSet<>();
+                operaciones.forEach(operacion -> productoIds.addAll(operacion.cantidades.keySet()));
+                Map<Long, Inventario> inventarios = new HashMap<>();
+                for (Inventario inventario : inventarioRepository.findParaActualizarByProductoIdIn(productoIds)) {
+                    inventarios.put(inventario.getProducto().getId(), inventario);
+                }
+                LocalDateTime ahora = LocalDateTime.now();
+                List<TomaCarril> tomas = new ArrayList<>();
+                for (Operacion operacion : operaciones) {
+                    Optional<Long> resultado = aplicar(operacion, inventarios);
+                    if (!operacion.devolucion && resultado.isEmpty()) {
+                        operacion.cantidades.forEach((productoId, cantidad) -> tomas.add(TomaCarril.builder()
+                                .token(operacion.token)
+                                .productoId(productoId)
+                                .cantidad(cantidad)
+                                .fechaCreacion(ahora)
+                                .build()));
+                    }
+                    resultados.add(resultado);
+                }
+                if (!tomas.isEmpty()) {
+                    tomaCarrilRepository.saveAll(tomas);
+                }
+            });
+            return resultados;
+        }
+
+        private Optional<Long> aplicar(Operacion operacion, Map<Long, Inventario> inventarios) {
+            int signo = operacion.devolucion ? 1 : -1;
+            if (operacion.devolucion
+                    && tomaCarrilRepository.eliminarPorTokenYProductos(operacion.token, operacion.cantidades.keySet()) == 0) {
+                // La orden ya se confirmó o las unidades ya se devolvieron.
+                return Optional.empty();
+            }
+            if (!operacion.devolucion) {
+                for (Map.Entry<Long, Integer> cantidad : operacion.cantidades.entrySet()) {
+                    Inventario inventario = inventarios.get(cantidad.getKey());
+                    if (inventario == null || inventario.getCantidadDisponible() < cantidad.getValue()) {
+                        return Optional.of(cantidad.getKey());
+                    }
+                }
+            }
+            operacion.cantidades.forEach((productoId, cantidad) -> {
+                Inventario inventario = inventarios.get(productoId);
+                if (inventario == null) {
+                    return;
+                }
+                inventario.setCantidadDisponible(inventario.getCantidadDisponible() + signo * cantidad);
+                if (reservasHabilitadas) {
+                    inventario.setCantidadReservada(inventario.getCantidadReservada() - signo * cantidad);
+                }
+            });
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Contador en memoria de las órdenes recientes de cada usuario, para decidir si es cliente frecuente
+ * sin contar sus órdenes en la base de datos en cada compra.
+ * <p>
+ * Cada usuario tiene un anillo de baldes de {@code app.clientes-frecuentes.balde-minutos} minutos que cubre
+ * el periodo {@code app.descuentos.cliente-frecuente.periodo-dias}. El anillo se siembra desde la base de datos
+ * en el primer acceso y luego se actualiza al confirmarse la creación o eliminación de una orden. Los baldes
+ * completamente dentro del periodo se cuentan exactos; solo si la decisión depende de las órdenes del balde que
+ * cruza el límite del periodo se recurre a la consulta en la base de datos. Se conservan como máximo
+ * {@code app.clientes-frecuentes.max-usuarios} usuarios, descartando los menos usados.
+ */
+@Component
+public class ContadorClientesFrecuentes {
+
+    /** Estados que no cuentan, los mismos que excluye {@link OrdenRepository#countByUsuarioIdAndFechaCreacionAfter}. */
+    private static final Set<Orden.EstadoOrden> ESTADOS_SIN_CONTAR = EnumSet.of(Orden.EstadoOrden.ACEPTADA, Orden.EstadoOrden.RECHAZADA);
+
+    private final OrdenRepository ordenRepository;
+    private final boolean habilitado;
+    private final int diasPeriodo;
+    private final long segundosBalde;
+    private final int cantidadBaldes;
+    private final Map<Long, Ventana> ventanas;
+
+    public ContadorClientesFrecuentes(OrdenRepository ordenRepository,
+                                      @Value("${app.clientes-frecuentes.cache.habilitada:true}") boolean habilitado,
+                                      @Value("${app.descuentos.cliente-frecuente.periodo-dias}") int diasPeriodo,
+                                      @Value("${app.clientes-frecuentes.balde-minutos:360}") int minutosBalde,
+                                      @Value("${app.clientes-frecuentes.max-usuarios:10000}") int maxUsuarios) {
+        this.ordenRepository = ordenRepository;
+        this.habilitado = habilitado;
+        this.diasPeriodo = diasPeriodo;
+        this.segundosBalde = Duration.ofMinutes(Math.max(1, minutosBalde)).toSeconds();
+        this.cantidadBaldes = (int) (Duration.ofDays(diasPeriodo).toSeconds() / segundosBalde) + 2;
+        this.ventanas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Ventana> eldest) {
+                return size() > maxUsuarios;
+            }
+        };
+    }
+
+    /**
+     * Indica si el usuario tiene al menos {@code minOrdenes} órdenes creadas desde {@code ahora - diasPeriodo}.
+     * Equivale a {@link OrdenRepository#countByUsuarioIdAndFechaCreacionAfter} comparado con {@code minOrdenes}.
+     */
+    public boolean esClienteFrecuente(Long usuarioId, int minOrdenes, int diasPeriodo, LocalDateTime ahora) {
+        LocalDateTime fechaDesde = ahora.minusDays(diasPeriodo);
+        if (!habilitado || diasPeriodo != this.diasPeriodo) {
+            return ordenRepository.countByUsuarioIdAndFechaCreacionAfter(usuarioId, fechaDesde) >= minOrdenes;
+        }
+        Ventana ventana = obtenerVentana(usuarioId, fechaDesde);
+        long baldeLimite = balde(fechaDesde);
+        int seguras;
+        int enLimite;
+        synchronized (ventana) {
+            seguras = ventana.contarDesde(baldeLimite + 1);
+            enLimite = ventana.contarBalde(baldeLimite);
+        }
+        if (seguras >= minOrdenes) {
+            return true;
+        }
+        if (seguras + enLimite < minOrdenes) {
+            return false;
+        }
+        return ordenRepository.countByUsuarioIdAndFechaCreacionAfter(usuarioId, fechaDesde) >= minOrdenes;
+    }
+
+    /**
+     * Si una orden en el estado indicado cuenta para el cliente frecuente: las aceptadas sin procesar y las
+     * rechazadas nunca se sumaron, así que tampoco se descuentan.
+     */
+    public static boolean cuenta(Orden.EstadoOrden estado) {
+        return !ESTADOS_SIN_CONTAR.contains(estado);
+    }
+
+    /**
+     * Suma una orden nueva al contador del usuario cuando se confirma la transacción en curso.
+     */
+    public void registrarOrden(Long usuarioId, Long ordenId, LocalDateTime fechaCreacion) {
+        EfectosTransaccion.alConfirmar(() -> ajustar(usuarioId, ordenId, fechaCreacion, 1));
+    }
+
+    /**
+     * Descuenta una orden eliminada del contador del usuario cuando se confirma la transacción en curso.
+     */
+    public void eliminarOrden(Long usuarioId, Long ordenId, LocalDateTime fechaCreacion) {
+        EfectosTransaccion.alConfirmar(() -> ajustar(usuarioId, ordenId, fechaCreacion, -1));
+    }
+
+    private void ajustar(Long usuarioId, Long ordenId, LocalDateTime fechaCreacion, int delta) {
+        if (!habilitado || fechaCreacion == null) {
+            return;
+        }
+        Ventana ventana;
+        synchronized (ventanas) {
+            ventana = ventanas.get(usuarioId);
+        }
+        if (ventana == null) {
+            // Se sembrará desde la base de datos en su próximo acceso.
+            return;
+        }
+        synchronized (ventana) {
+            // La siembra ya incluye las órdenes confirmadas antes de ella. Los IDs se asignan por bloques,
+            // así que no basta con compararlos contra el mayor ID sembrado.
+            if (delta > 0 && ordenId != null && ventana.idsSembrados.remove(ordenId)) {
+                return;
+            }
+            ventana.sumar(balde(fechaCreacion), delta);
+        }
+    }
+
+    /**
+     * Devuelve el anillo del usuario, sembrándolo desde la base de datos si no está en memoria. Mientras se
+     * siembra, el anillo queda bloqueado: las órdenes que se confirman en ese lapso esperan y luego se suman
+     * solo si la siembra no las incluyó.
+     */
+    private Ventana obtenerVentana(Long usuarioId, LocalDateTime fechaDesde) {
+        synchronized (ventanas) {
+            Ventana ventana = ventanas.get(usuarioId);
+            if (ventana != null) {
+                return ventana;
+            }
+        }
+        Ventana nueva = new Ventana(cantidadBaldes);
+        synchronized (nueva) {
+            synchronized (ventanas) {
+                Ventana existente = ventanas.putIfAbsent(usuarioId, nueva);
+                if (existente != null) {
+                    return existente;
+                }
+            }
+            try {
+                LocalDateTime inicioBalde = LocalDateTime.ofEpochSecond(balde(fechaDesde) * segundosBalde, 0, ZoneOffset.UTC);
+                for (Object[] orden : ordenRepository.findIdYFechaCreacionByUsuarioIdDesde(usuarioId, inicioBalde)) {
+                    nueva.sumar(balde((LocalDateTime) orden[1]), 1);
+                    nueva.idsSembrados.add((Long) orden[0]);
+                }
+            } catch (RuntimeException e) {
+                synchronized (ventanas) {
+                    ventanas.remove(usuarioId, nueva);
+                }
+                throw e;
+            }
+        }
+        return nueva;
+    }
+
+    /**
+     * Descarta el contador de un usuario (p. ej. al eliminarlo junto con sus órdenes).
+     */
+    public void descartarUsuario(Long usuarioId) {
+        EfectosTransaccion.alConfirmar(() -> {
+            synchronized (ventanas) {
+                ventanas.remove(usuarioId);
+            }
+        });
+    }
+
+    private long balde(LocalDateTime fecha) {
+        return Math.floorDiv(fecha.toEpochSecond(ZoneOffset.UTC), segundosBalde);
+    }
+
+    /**
+     * Anillo de baldes de un usuario. Cada posición guarda el número de balde al que pertenece su conteo,
+     * de modo que las posiciones de baldes ya vencidos se reconocen y se reutilizan.
+     */
+    static final class Ventana {
+
+        private final long[] baldes;
+        private final int[] conteos;
+        private final Set<Long> idsSembrados = new HashSet<>();
+
+        Ventana(int cantidadBaldes) {
+            this.baldes = new long[cantidadBaldes];
+            this.conteos = new int[cantidadBaldes];
+            Arrays.fill(baldes, Long.MIN_VALUE);
+        }
+
+        void sumar(long balde, int delta) {
+            int i = (int) Math.floorMod(balde, (long) baldes.length);
+            if (baldes[i] != balde) {
+                if (balde < baldes[i]) {
+                    // Más antiguo que lo que guarda el anillo: ya está fuera de cualquier periodo consultable.
+                    return;
+                }
+                baldes[i] = balde;
+                conteos[i] = 0;
+            }
+            conteos[i] = Math.max(0, conteos[i] + delta);
+        }
+
+        int contarDesde(long balde) {
+            int total = 0;
+            for (int i = 0; i < baldes.length; i++) {
+                if (baldes[i] >= balde) {
+                    total += conteos[i];
+                }
+            }
+            return total;
+        }
+
+        int contarBalde(long balde) {
+            int i = (int) Math.floorMod(balde, (long) baldes.length);
+            return baldes[i] == balde ? conteos[i] : 0;
+        }
+    }
+}
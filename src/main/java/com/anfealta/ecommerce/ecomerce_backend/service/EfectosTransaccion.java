@@ -0,0 +1,122 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Efectos en memoria (contadores, rankings, stock caliente, carriles) atados al resultado de la transacción en curso.
+ * <p>
+ * Fuera de un {@link Ambito}, {@link #alConfirmar} se ejecuta al confirmarse la transacción y {@link #alRevertir}
+ * si se revierte. Un punto de guardado revierte solo el SQL: para que lo ocurrido en memoria siga al punto de
+ * guardado, quien lo crea abre un ámbito en el mismo hilo. Los efectos registrados mientras está abierto quedan
+ * en el ámbito; al liberar el punto de guardado pasan a la transacción con {@link Ambito#confirmar()}, y al volver
+ * a él se descartan los de confirmación y se ejecutan de inmediato los de reversión con {@link Ambito#revertir()}.
+ */
+public final class EfectosTransaccion {
+
+    private static final ThreadLocal<Deque<Ambito>> AMBITOS = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private EfectosTransaccion() {
+    }
+
+    /**
+     * Ejecuta la acción cuando se confirme la transacción en curso, o de inmediato si no hay una.
+     */
+    public static void alConfirmar(Runnable accion) {
+        Ambito ambito = AMBITOS.get().peek();
+        if (ambito != null) {
+            ambito.alConfirmar.add(accion);
+        } else if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    /**
+     * Ejecuta la acción si la transacción en curso se revierte; sin transacción no hace nada.
+     */
+    public static void alRevertir(Runnable accion) {
+        Ambito ambito = AMBITOS.get().peek();
+        if (ambito != null) {
+            ambito.alRevertir.add(accion);
+        } else if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        accion.run();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Abre un ámbito para los efectos del punto de guardado que se acaba de crear. Debe cerrarse en el mismo
+     * hilo con {@link Ambito#confirmar()} o {@link Ambito#revertir()}; {@code close()} sin confirmar revierte.
+     */
+    public static Ambito abrirAmbito() {
+        Ambito ambito = new Ambito();
+        AMBITOS.get().push(ambito);
+        return ambito;
+    }
+
+    /** Efectos registrados mientras un punto de guardado está abierto. */
+    public static final class Ambito implements AutoCloseable {
+
+        private final List<Runnable> alConfirmar = new ArrayList<>();
+        private final List<Runnable> alRevertir = new ArrayList<>();
+        private boolean cerrado;
+
+        private Ambito() {
+        }
+
+        /** El punto de guardado se liberó: los efectos pasan al ámbito exterior o a la transacción. */
+        public void confirmar() {
+            cerrar();
+            alConfirmar.forEach(EfectosTransaccion::alConfirmar);
+            alRevertir.forEach(EfectosTransaccion::alRevertir);
+        }
+
+        /** Se volvió al punto de guardado: se deshace lo ya hecho en memoria, en orden inverso. */
+        public void revertir() {
+            cerrar();
+            for (int i = alRevertir.size() - 1; i >= 0; i--) {
+                alRevertir.get(i).run();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!cerrado) {
+                revertir();
+            }
+        }
+
+        private void cerrar() {
+            if (cerrado) {
+                throw new IllegalStateException("El ámbito ya está cerrado");
+            }
+            cerrado = true;
+            Deque<Ambito> ambitos = AMBITOS.get();
+            if (ambitos.peek() != this) {
+                throw new IllegalStateException("Los ámbitos deben cerrarse en orden inverso al de apertura");
+            }
+            ambitos.pop();
+            if (ambitos.isEmpty()) {
+                AMBITOS.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Barrido periódico que cancela las órdenes PENDIENTE con reserva de stock vencida,
+ * procesándolas en lotes (una transacción por lote) para no retener stock indefinidamente.
+ */
+@Component
+public class ExpiradorReservas {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpiradorReservas.class);
+
+    private final OrdenService ordenService;
+
+    @Value("${app.inventario.reservas.expiracion-minutos:30}")
+    private long expiracionMinutos;
+    @Value("${app.inventario.reservas.tamano-lote:100}")
+    private int tamanoLote;
+
+    public ExpiradorReservas(OrdenService ordenService) {
+        this.ordenService = ordenService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventario.reservas.barrido-ms:60000}")
+    public void expirarReservasVencidas() {
+        LocalDateTime limite = LocalDateTime.now().minusMinutes(expiracionMinutos);
+        int total = 0;
+        int procesadas;
+        try {
+            do {
+                procesadas = ordenService.expirarReservasVencidas(limite, tamanoLote);
+                total += procesadas;
+            } while (procesadas == tamanoLote);
+        } catch (OptimisticLockingFailureException e) {
+            log.info("Lote de reservas vencidas en conflicto con otra actualización; se reintentará en el próximo barrido");
+        }
+        if (total > 0) {
+            log.info("Reservas vencidas expiradas: {} órdenes canceladas", total);
+        }
+    }
+}
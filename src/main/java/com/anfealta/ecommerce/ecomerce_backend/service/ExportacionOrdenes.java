@@ -0,0 +1,210 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenDetalleResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Exporta órdenes con sus líneas en NDJSON (una {@link OrdenResponse} por línea) o CSV (una fila por línea de orden).
+ * <p>
+ * Las filas se leen con un cursor de solo avance ({@code app.ordenes.exportacion.fetch-size}; con MySQL,
+ * {@code Integer.MIN_VALUE} hace que el driver las entregue de a una en lugar de cargar todo el resultado) y se
+ * escriben a medida que llegan. La consulta es una proyección, no carga entidades, así que el contexto de
+ * persistencia no crece: en memoria solo está la orden en curso.
+ */
+@Component
+public class ExportacionOrdenes {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportacionOrdenes.class);
+
+    private static final String ENCABEZADO_CSV = "orden_id,usuario_id,nombre_usuario,fecha_creacion,fecha_actualizacion,estado,"
+            + "subtotal,descuento_total,total,detalle_id,producto_id,sku_producto,nombre_producto,cantidad,precio_unitario,subtotal_linea";
+
+    public enum Formato { NDJSON, CSV }
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public ExportacionOrdenes(EntityManager entityManager,
+                              PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              @Value("${app.ordenes.exportacion.fetch-size:-2147483648}") int fetchSize) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Escribe en la salida las órdenes que cumplen los filtros, ordenadas por ID.
+     * @param desde Fecha de creación mínima (inclusive), o null.
+     * @param hasta Fecha de creación máxima (exclusive), o null.
+     * @param estado Estado de las órdenes, o null para todos.
+     * @return Cantidad de órdenes exportadas.
+     */
+    public long exportar(LocalDateTime desde, LocalDateTime hasta, Orden.EstadoOrden estado, Formato formato,
+                         OutputStream salida) throws IOException {
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+        long inicio = System.nanoTime();
+        long exportadas;
+        try {
+            exportadas = transactionTemplate.execute(status -> {
+                try (Stream<Object[]> filas = consulta(desde, hasta, estado).getResultStream()) {
+                    return formato == Formato.CSV ? escribirCsv(filas.iterator(), escritor) : escribirNdjson(filas.iterator(), escritor);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        escritor.flush();
+        log.info("Exportación de órdenes terminada: {} órdenes en {} ms", exportadas, (System.nanoTime() - inicio) / 1_000_000);
+        return exportadas;
+    }
+
+    private TypedQuery<Object[]> consulta(LocalDateTime desde, LocalDateTime hasta, Orden.EstadoOrden estado) {
+        StringBuilder jpql = new StringBuilder("SELECT o.id, u.id, u.nombreUsuario, o.fechaCreacion, o.fechaActualizacion, o.estado, "
+                + "o.subtotal, o.descuentoTotal, o.total, d.id, p.id, p.sku, p.nombre, d.cantidad, d.precioUnitario, d.subtotalLinea "
+                + "FROM Orden o JOIN o.usuario u LEFT JOIN o.detalles d LEFT JOIN d.producto p WHERE 1 = 1");
+        if (desde != null) {
+            jpql.append(" AND o.fechaCreacion >= :desde");
+        }
+        if (hasta != null) {
+            jpql.append(" AND o.fechaCreacion < :hasta");
+        }
+        if (estado != null) {
+            jpql.append(" AND o.estado = :estado");
+        }
+        jpql.append(" ORDER BY o.id, d.id");
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        if (desde != null) {
+            query.setParameter("desde", desde);
+        }
+        if (hasta != null) {
+            query.setParameter("hasta", hasta);
+        }
+        if (estado != null) {
+            query.setParameter("estado", estado);
+        }
+        return query;
+    }
+
+    /**
+     * Agrupa las filas consecutivas de cada orden (vienen ordenadas por ID) y escribe una orden por línea.
+     */
+    private long escribirNdjson(Iterator<Object[]> filas, Writer escritor) throws IOException {
+        long exportadas = 0;
+        OrdenResponse actual = null;
+        while (filas.hasNext()) {
+            Object[] fila = filas.next();
+            Long ordenId = (Long) fila[0];
+            if (actual == null || !actual.getId().equals(ordenId)) {
+                if (actual != null) {
+                    escribirLinea(actual, escritor);
+                    exportadas++;
+                }
+                actual = OrdenResponse.builder()
+                        .id(ordenId)
+                        .usuarioId((Long) fila[1])
+                        .nombreUsuario((String) fila[2])
+                        .fechaCreacion((LocalDateTime) fila[3])
+                        .fechaActualizacion((LocalDateTime) fila[4])
+                        .estado((Orden.EstadoOrden) fila[5])
+                        .subtotal((BigDecimal) fila[6])
+                        .descuentoTotal((BigDecimal) fila[7])
+                        .total((BigDecimal) fila[8])
+                        .detalles(new ArrayList<>())
+                        .build();
+            }
+            if (fila[9] != null) {
+                actual.getDetalles().add(OrdenDetalleResponse.builder()
+                        .id((Long) fila[9])
+                        .productoId((Long) fila[10])
+                        .skuProducto((String) fila[11])
+                        .nombreProducto((String) fila[12])
+                        .cantidad((Integer) fila[13])
+                        .precioUnitario((BigDecimal) fila[14])
+                        .subtotalLinea((BigDecimal) fila[15])
+                        .build());
+            }
+        }
+        if (actual != null) {
+            escribirLinea(actual, escritor);
+            exportadas++;
+        }
+        return exportadas;
+    }
+
+    private void escribirLinea(OrdenResponse orden, Writer escritor) throws IOException {
+        escritor.write(objectMapper.writeValueAsString(orden));
+        escritor.write('\n');
+    }
+
+    /**
+     * Escribe una fila por línea de orden, repitiendo los datos de la orden; una orden sin líneas ocupa una fila
+     * con las columnas de la línea vacías.
+     */
+    private static long escribirCsv(Iterator<Object[]> filas, Writer escritor) throws IOException {
+        escritor.write(ENCABEZADO_CSV);
+        escritor.write('\n');
+        long exportadas = 0;
+        Long anterior = null;
+        List<String> columnas = new ArrayList<>(16);
+        while (filas.hasNext()) {
+            Object[] fila = filas.next();
+            if (!fila[0].equals(anterior)) {
+                exportadas++;
+                anterior = (Long) fila[0];
+            }
+            columnas.clear();
+            for (Object valor : fila) {
+                columnas.add(campoCsv(valor));
+            }
+            escritor.write(String.join(",", columnas));
+            escritor.write('\n');
+        }
+        return exportadas;
+    }
+
+    private static String campoCsv(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        String texto = valor instanceof BigDecimal decimal ? decimal.toPlainString() : valor.toString();
+        if (texto.indexOf(',') >= 0 || texto.indexOf('"') >= 0 || texto.indexOf('\n') >= 0 || texto.indexOf('\r') >= 0) {
+            return '"' + texto.replace("\"", "\"\"") + '"';
+        }
+        return texto;
+    }
+}
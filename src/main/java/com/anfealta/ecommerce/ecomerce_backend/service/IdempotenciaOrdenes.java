@@ -0,0 +1,239 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.entity.ClaveIdempotencia;
+import com.anfealta.ecommerce.ecomerce_backend.repository.ClaveIdempotenciaRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Deduplica la creación de órdenes por {@code Idempotency-Key}, con un espacio de claves por usuario.
+ * <p>
+ * La primera petición con una clave la reclama en la tabla {@code claves_idempotencia} (única por usuario y clave,
+ * compartida entre nodos), crea la orden y registra su ID. Las repeticiones devuelven la orden ya creada sin volver
+ * a tocar el inventario; mientras la primera sigue en proceso responden 409. Cada repetición debe traer el mismo
+ * contenido: se compara el SHA-256 del JSON canónico de la solicitud. Las claves recientes y su respuesta se guardan
+ * además en memoria (LRU acotado con vencimiento), para resolver los reintentos sin consultar la base de datos.
+ * Si la creación falla, la clave se libera para que el cliente pueda reintentar.
+ * <p>
+ * El reclamo EN_PROCESO vence a los {@code app.idempotencia.reclamo-ms}: si el nodo que lo tenía se cayó, la
+ * siguiente repetición lo retoma y crea la orden. El dueño anterior ya no puede completarlo ni liberarlo.
+ */
+@Component
+public class IdempotenciaOrdenes {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotenciaOrdenes.class);
+
+    static final int LONGITUD_MAXIMA_CLAVE = 150;
+
+    public record Resultado(OrdenResponse orden, boolean repetida) {
+    }
+
+    private final ClaveIdempotenciaRepository claveIdempotenciaRepository;
+    private final OrdenService ordenService;
+    private final ObjectMapper canonico;
+    private final TransactionTemplate transaccionPropia;
+    private final Duration vigencia;
+    private final Duration duracionReclamo;
+    private final Map<Alcance, Registro> recientes;
+
+    public IdempotenciaOrdenes(ClaveIdempotenciaRepository claveIdempotenciaRepository,
+                               OrdenService ordenService,
+                               ObjectMapper objectMapper,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.idempotencia.vigencia-horas:24}") long vigenciaHoras,
+                               @Value("${app.idempotencia.reclamo-ms:60000}") long reclamoMs,
+                               @Value("${app.idempotencia.max-claves:10000}") int maxClaves) {
+        this.claveIdempotenciaRepository = claveIdempotenciaRepository;
+        this.ordenService = ordenService;
+        this.canonico = objectMapper.copy().setConfig(objectMapper.getSerializationConfig()
+                .with(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+                .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS));
+        this.transaccionPropia = new TransactionTemplate(transactionManager);
+        this.transaccionPropia.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.vigencia = Duration.ofHours(vigenciaHoras);
+        this.duracionReclamo = Duration.ofMillis(reclamoMs);
+        this.recientes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Alcance, Registro> eldest) {
+                return size() > maxClaves;
+            }
+        };
+    }
+
+    /**
+     * Crea la orden una sola vez por usuario y clave.
+     * @param clave Valor de la cabecera {@code Idempotency-Key}.
+     * @param request DTO de la orden; las repeticiones deben enviar el mismo contenido.
+     * @param creacion Crea la orden si la clave es nueva.
+     * @return La orden y si corresponde a una repetición.
+     * @throws ResponseStatusException 400 si la clave es inválida, 409 si la petición original sigue en proceso
+     *         y 422 si la clave ya se usó con otro contenido.
+     */
+    public Resultado ejecutar(String clave, OrdenRequest request, Supplier<OrdenResponse> creacion) {
+        if (clave.isBlank() || clave.length() > LONGITUD_MAXIMA_CLAVE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "La cabecera Idempotency-Key debe tener entre 1 y " + LONGITUD_MAXIMA_CLAVE + " caracteres.");
+        }
+        Alcance alcance = new Alcance(request.getUsuarioId(), clave);
+        String huella = huella(request);
+        Registro registro = buscarReciente(alcance);
+        if (registro != null) {
+            verificarHuella(registro.huella(), huella);
+            return new Resultado(registro.orden(), true);
+        }
+        ClaveIdempotencia reclamo = reclamar(alcance, huella);
+        if (reclamo == null) {
+            ClaveIdempotencia existente = claveIdempotenciaRepository.findByUsuarioIdAndClave(alcance.usuarioId(), clave)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT,
+                            "La solicitud original con esta Idempotency-Key falló; intente nuevamente."));
+            verificarHuella(existente.getHuella(), huella);
+            if (existente.getEstado() == ClaveIdempotencia.EstadoClave.COMPLETADA) {
+                return repetida(alcance, huella, existente);
+            }
+            reclamo = retomar(existente);
+        }
+
+        Long id = reclamo.getId();
+        Integer intento = reclamo.getIntento();
+        OrdenResponse orden;
+        try {
+            orden = creacion.get();
+        } catch (RuntimeException e) {
+            transaccionPropia.executeWithoutResult(status -> claveIdempotenciaRepository.eliminarReclamo(id, intento));
+            throw e;
+        }
+        Integer actualizadas = transaccionPropia.execute(status ->
+                claveIdempotenciaRepository.actualizarEstado(id, intento, ClaveIdempotencia.EstadoClave.COMPLETADA, orden.getId()));
+        if (actualizadas == null || actualizadas == 0) {
+            log.warn("La Idempotency-Key {} del usuario {} fue retomada por otra petición mientras se creaba la orden {}",
+                    clave, alcance.usuarioId(), orden.getId());
+        }
+        guardarReciente(alcance, huella, orden);
+        return new Resultado(orden, false);
+    }
+
+    /**
+     * Elimina de la base de datos las claves más antiguas que la vigencia configurada.
+     */
+    @Scheduled(fixedDelayString = "${app.idempotencia.purga-ms:3600000}")
+    public void purgarVencidas() {
+        Integer eliminadas = transaccionPropia.execute(status ->
+                claveIdempotenciaRepository.eliminarVencidas(LocalDateTime.now().minus(vigencia)));
+        if (eliminadas != null && eliminadas > 0) {
+            log.info("Claves de idempotencia vencidas eliminadas: {}", eliminadas);
+        }
+    }
+
+    /**
+     * SHA-256 del JSON canónico de la solicitud: propiedades y mapas ordenados por nombre.
+     */
+    String huella(OrdenRequest request) {
+        try {
+            byte[] resumen = MessageDigest.getInstance("SHA-256").digest(canonico.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(resumen);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No se pudo calcular la huella de la solicitud", e);
+        }
+    }
+
+    /**
+     * @return La clave reclamada, o {@code null} si ya existía.
+     */
+    private ClaveIdempotencia reclamar(Alcance alcance, String huella) {
+        LocalDateTime ahora = LocalDateTime.now();
+        try {
+            return transaccionPropia.execute(status -> claveIdempotenciaRepository.saveAndFlush(ClaveIdempotencia.builder()
+                    .usuarioId(alcance.usuarioId())
+                    .clave(alcance.clave())
+                    .huella(huella)
+                    .estado(ClaveIdempotencia.EstadoClave.EN_PROCESO)
+                    .intento(1)
+                    .venceReclamo(ahora.plus(duracionReclamo))
+                    .fechaCreacion(ahora)
+                    .build()));
+        } catch (DataIntegrityViolationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Toma una clave EN_PROCESO cuyo reclamo venció porque la petición original no terminó.
+     * @throws ResponseStatusException 409 si el reclamo sigue vigente o lo retomó otra petición.
+     */
+    private ClaveIdempotencia retomar(ClaveIdempotencia existente) {
+        LocalDateTime ahora = LocalDateTime.now();
+        Integer retomadas = existente.getVenceReclamo().isBefore(ahora)
+                ? transaccionPropia.execute(status -> claveIdempotenciaRepository.retomar(
+                        existente.getId(), existente.getIntento(), ahora, ahora.plus(duracionReclamo)))
+                : Integer.valueOf(0);
+        if (retomadas == null || retomadas == 0) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Ya hay una solicitud en proceso con esta Idempotency-Key.");
+        }
+        log.warn("Reclamo vencido de la Idempotency-Key {} del usuario {}; se retoma la creación de la orden",
+                existente.getClave(), existente.getUsuarioId());
+        existente.setIntento(existente.getIntento() + 1);
+        return existente;
+    }
+
+    private Resultado repetida(Alcance alcance, String huella, ClaveIdempotencia existente) {
+        OrdenResponse orden = ordenService.obtenerOrdenPorId(existente.getOrdenId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT,
+                        "La orden creada con esta Idempotency-Key ya no existe: " + existente.getOrdenId()));
+        guardarReciente(alcance, huella, orden);
+        return new Resultado(orden, true);
+    }
+
+    private static void verificarHuella(String registrada, String recibida) {
+        if (!registrada.equals(recibida)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "La Idempotency-Key ya se usó con una orden diferente.");
+        }
+    }
+
+    private Registro buscarReciente(Alcance alcance) {
+        synchronized (recientes) {
+            Registro registro = recientes.get(alcance);
+            if (registro != null && registro.vence().isBefore(LocalDateTime.now())) {
+                recientes.remove(alcance);
+                return null;
+            }
+            return registro;
+        }
+    }
+
+    private void guardarReciente(Alcance alcance, String huella, OrdenResponse orden) {
+        synchronized (recientes) {
+            recientes.put(alcance, new Registro(huella, orden, LocalDateTime.now().plus(vigencia)));
+        }
+    }
+
+    private record Alcance(Long usuarioId, String clave) {
+    }
+
+    private record Registro(String huella, OrdenResponse orden, LocalDateTime vence) {
+    }
+}
@@ -0,0 +1,163 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
+import com.anfealta.ecommerce.ecomerce_backend.dto.ResultadoImportacionOrden;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Importa órdenes desde un flujo NDJSON (una {@link OrdenRequest} por línea).
+ * <p>
+ * Las líneas se leen de a una y se agrupan en bloques de {@code app.ordenes.importacion.tamano-bloque} órdenes;
+ * cada bloque se registra en su propia transacción con {@link RegistroLoteOrdenes}, aplicando las mismas reglas
+ * de precios y stock que {@code POST /api/ordenes}. El resultado de cada línea se escribe en la salida, también
+ * en NDJSON, al terminar su bloque. Solo se mantiene en memoria el bloque en curso.
+ */
+@Component
+public class ImportacionOrdenes {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportacionOrdenes.class);
+
+    private final RegistroLoteOrdenes registroLote;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int tamanoBloque;
+
+    public ImportacionOrdenes(RegistroLoteOrdenes registroLote,
+                              ObjectMapper objectMapper,
+                              Validator validator,
+                              @Value("${app.ordenes.importacion.tamano-bloque:100}") int tamanoBloque) {
+        this.registroLote = registroLote;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.tamanoBloque = Math.max(1, tamanoBloque);
+    }
+
+    /**
+     * Importa todas las órdenes de la entrada.
+     * @param entrada Flujo NDJSON con una orden por línea; las líneas en blanco se ignoran.
+     * @param salida Flujo donde se escribe un {@link ResultadoImportacionOrden} por cada orden.
+     */
+    public void importar(InputStream entrada, OutputStream salida) throws IOException {
+        BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+        List<Linea> bloque = new ArrayList<>(tamanoBloque);
+        int numero = 0;
+        int creadas = 0;
+        int procesadas = 0;
+        String texto;
+        while ((texto = lector.readLine()) != null) {
+            numero++;
+            if (texto.isBlank()) {
+                continue;
+            }
+            bloque.add(leer(numero, texto));
+            if (bloque.size() == tamanoBloque) {
+                creadas += procesarBloque(bloque, escritor);
+                procesadas += bloque.size();
+                bloque.clear();
+            }
+        }
+        if (!bloque.isEmpty()) {
+            creadas += procesarBloque(bloque, escritor);
+            procesadas += bloque.size();
+        }
+        escritor.flush();
+        log.info("Importación de órdenes terminada: {} creadas, {} con error", creadas, procesadas - creadas);
+    }
+
+    private Linea leer(int numero, String texto) {
+        OrdenRequest request;
+        try {
+            request = objectMapper.readValue(texto, OrdenRequest.class);
+        } catch (JsonProcessingException e) {
+            return new Linea(numero, null, error(numero, HttpStatus.BAD_REQUEST.value(), "JSON inválido: " + e.getOriginalMessage()));
+        }
+        if (request == null) {
+            return new Linea(numero, null, error(numero, HttpStatus.BAD_REQUEST.value(), "La línea no contiene una orden."));
+        }
+        var violaciones = validator.validate(request);
+        if (!violaciones.isEmpty()) {
+            String mensaje = violaciones.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(" "));
+            return new Linea(numero, null, error(numero, HttpStatus.BAD_REQUEST.value(), mensaje));
+        }
+        return new Linea(numero, request, null);
+    }
+
+    /**
+     * Registra las órdenes válidas del bloque y escribe el resultado de cada línea en el orden de entrada.
+     * @return Cantidad de órdenes creadas.
+     */
+    private int procesarBloque(List<Linea> bloque, Writer escritor) throws IOException {
+        List<OrdenRequest> requests = bloque.stream()
+                .filter(linea -> linea.request() != null)
+                .map(Linea::request)
+                .toList();
+        List<RegistroLoteOrdenes.Resultado> registradas = requests.isEmpty() ? List.of() : registroLote.registrar(requests);
+        int creadas = 0;
+        int siguiente = 0;
+        for (Linea linea : bloque) {
+            ResultadoImportacionOrden resultado = linea.error();
+            if (resultado == null) {
+                RegistroLoteOrdenes.Resultado registrada = registradas.get(siguiente++);
+                resultado = registrada.error() == null
+                        ? ResultadoImportacionOrden.builder()
+                                .linea(linea.numero())
+                                .estado(ResultadoImportacionOrden.EstadoImportacion.CREADA)
+                                .orden(registrada.orden())
+                                .build()
+                        : error(linea.numero(), registrada.error());
+                if (registrada.error() == null) {
+                    creadas++;
+                }
+            }
+            escritor.write(objectMapper.writeValueAsString(resultado));
+            escritor.write('\n');
+        }
+        escritor.flush();
+        return creadas;
+    }
+
+    private static ResultadoImportacionOrden error(int numero, RuntimeException e) {
+        if (e instanceof ResponseStatusException rse) {
+            return error(numero, rse.getStatusCode().value(), rse.getReason());
+        }
+        return error(numero, HttpStatus.INTERNAL_SERVER_ERROR.value(), "Error al crear la orden: " + e.getMessage());
+    }
+
+    private static ResultadoImportacionOrden error(int numero, int codigo, String mensaje) {
+        return ResultadoImportacionOrden.builder()
+                .linea(numero)
+                .estado(ResultadoImportacionOrden.EstadoImportacion.ERROR)
+                .codigo(codigo)
+                .mensaje(mensaje)
+                .build();
+    }
+
+    private record Linea(int numero, OrdenRequest request, ResultadoImportacionOrden error) {
+    }
+}
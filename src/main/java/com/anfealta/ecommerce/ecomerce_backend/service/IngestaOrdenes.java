@@ -0,0 +1,252 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Punto de entrada de la creación de órdenes.
+ * <p>
+ * En modo {@code SINCRONO} cada petición abre su propia transacción. En modo {@code LOTES} las peticiones
+ * se encolan y un único hilo las agrupa (hasta {@code app.ordenes.ingesta.lote-max} órdenes o
+ * {@code app.ordenes.ingesta.espera-max-ms} milisegundos) para procesarlas en una sola transacción, de modo
+ * que comparten un único commit (ver {@link RegistroLoteOrdenes}). Las respuestas se entregan a cada llamador
+ * después del commit. En modo {@code ASINCRONO} la orden solo se registra como ACEPTADA y se completa en segundo
+ * plano (ver {@link ProcesadorOrdenesAceptadas}).
+ */
+@Component
+public class IngestaOrdenes {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestaOrdenes.class);
+
+    public enum Modo {
+        SINCRONO,
+        LOTES,
+        ASINCRONO
+    }
+
+    private final OrdenService ordenService;
+    private final ReintentadorOptimista reintentador;
+    private final RegistroLoteOrdenes registroLote;
+    private final ProcesadorOrdenesAceptadas procesadorAceptadas;
+    private final Modo modo;
+    private final int loteMax;
+    private final long esperaMaxNanos;
+    private final long timeoutMs;
+    private final BlockingQueue<Pendiente> cola;
+
+    private final DistributionSummary tamanoLote;
+    private final Timer esperaEnCola;
+    private final Timer duracionLote;
+    private final Timer latencia;
+
+    private volatile boolean activo;
+    private Thread hilo;
+
+    public IngestaOrdenes(OrdenService ordenService,
+                          ReintentadorOptimista reintentador,
+                          RegistroLoteOrdenes registroLote,
+                          ProcesadorOrdenesAceptadas procesadorAceptadas,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.ordenes.ingesta.modo:SINCRONO}") Modo modo,
+                          @Value("${app.ordenes.ingesta.lote-max:50}") int loteMax,
+                          @Value("${app.ordenes.ingesta.espera-max-ms:5}") long esperaMaxMs,
+                          @Value("${app.ordenes.ingesta.capacidad-cola:1000}") int capacidadCola,
+                          @Value("${app.ordenes.ingesta.timeout-ms:10000}") long timeoutMs) {
+        this.ordenService = ordenService;
+        this.reintentador = reintentador;
+        this.registroLote = registroLote;
+        this.procesadorAceptadas = procesadorAceptadas;
+        this.modo = modo;
+        this.loteMax = Math.max(1, loteMax);
+        this.esperaMaxNanos = TimeUnit.MILLISECONDS.toNanos(esperaMaxMs);
+        this.timeoutMs = timeoutMs;
+        this.cola = new ArrayBlockingQueue<>(Math.max(1, capacidadCola));
+
+        this.tamanoLote = DistributionSummary.builder("app.ordenes.ingesta.lote.tamano")
+                .description("Órdenes procesadas por transacción")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.esperaEnCola = Timer.builder("app.ordenes.ingesta.espera")
+                .description("Tiempo que una orden espera en la cola antes de procesarse")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.duracionLote = Timer.builder("app.ordenes.ingesta.lote.duracion")
+                .description("Duración de la transacción de un lote")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.latencia = Timer.builder("app.ordenes.ingesta.latencia")
+                .description("Latencia de creación de una orden vista por el llamador")
+                .tag("modo", modo.name())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        if (modo != Modo.LOTES) {
+            return;
+        }
+        activo = true;
+        hilo = new Thread(this::bucle, "ingesta-ordenes");
+        hilo.setDaemon(true);
+        hilo.start();
+        log.info("Ingesta de órdenes por lotes activa (lote máximo {}, espera máxima {} ms)",
+                loteMax, TimeUnit.NANOSECONDS.toMillis(esperaMaxNanos));
+    }
+
+    @PreDestroy
+    public void detener() {
+        activo = false;
+        if (hilo != null) {
+            hilo.interrupt();
+            try {
+                hilo.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Pendiente pendiente;
+        while ((pendiente = cola.poll()) != null) {
+            pendiente.resultado.completeExceptionally(
+                    new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "El servicio se está deteniendo, intente nuevamente."));
+        }
+    }
+
+    /**
+     * Crea una orden según el modo de ingesta configurado.
+     * @param request DTO con los datos de la orden.
+     * @return La orden creada, o ACEPTADA en modo {@code ASINCRONO}.
+     * @throws ResponseStatusException 503 si la cola está llena o la orden no empezó a procesarse a tiempo.
+     */
+    public OrdenResponse crearOrden(OrdenRequest request) {
+        long inicio = System.nanoTime();
+        try {
+            return switch (modo) {
+                case SINCRONO -> reintentador.ejecutar("crearOrden", () -> ordenService.crearOrden(request));
+                case LOTES -> encolar(request);
+                case ASINCRONO -> procesadorAceptadas.aceptar(request);
+            };
+        } finally {
+            latencia.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private OrdenResponse encolar(OrdenRequest request) {
+        Pendiente pendiente = new Pendiente(request);
+        if (!cola.offer(pendiente)) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Demasiadas órdenes en espera, intente nuevamente.");
+        }
+        try {
+            try {
+                return pendiente.resultado.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (pendiente.reclamada.compareAndSet(false, true)) {
+                    throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "La orden no pudo procesarse a tiempo, intente nuevamente.");
+                }
+                // El lote ya la tomó: hay que esperar su resultado para no perder una orden creada.
+                return pendiente.resultado.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Creación de la orden interrumpida", e);
+        }
+    }
+
+    private void bucle() {
+        while (activo) {
+            try {
+                procesarSiguienteLote();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Error inesperado en la ingesta de órdenes por lotes", e);
+            }
+        }
+    }
+
+    /**
+     * Espera la primera orden de la cola y agrupa las siguientes hasta llenar el lote o agotar la espera máxima.
+     */
+    void procesarSiguienteLote() throws InterruptedException {
+        List<Pendiente> lote = new ArrayList<>(loteMax);
+        lote.add(cola.take());
+        long limite = System.nanoTime() + esperaMaxNanos;
+        while (lote.size() < loteMax) {
+            long restante = limite - System.nanoTime();
+            Pendiente siguiente = restante > 0 ? cola.poll(restante, TimeUnit.NANOSECONDS) : cola.poll();
+            if (siguiente == null) {
+                break;
+            }
+            lote.add(siguiente);
+        }
+        lote.removeIf(pendiente -> !pendiente.reclamada.compareAndSet(false, true));
+        if (!lote.isEmpty()) {
+            procesarLote(lote);
+        }
+    }
+
+    void procesarLote(List<Pendiente> lote) {
+        long ahora = System.nanoTime();
+        tamanoLote.record(lote.size());
+        lote.forEach(pendiente -> esperaEnCola.record(ahora - pendiente.encolada, TimeUnit.NANOSECONDS));
+        try {
+            List<RegistroLoteOrdenes.Resultado> resultados = duracionLote.record(
+                    () -> registroLote.registrar(lote.stream().map(pendiente -> pendiente.request).toList()));
+            for (int i = 0; i < lote.size(); i++) {
+                RegistroLoteOrdenes.Resultado resultado = resultados.get(i);
+                if (resultado.error() != null) {
+                    lote.get(i).resultado.completeExceptionally(resultado.error());
+                } else {
+                    lote.get(i).resultado.complete(resultado.orden());
+                }
+            }
+        } catch (Throwable e) {
+            // Quien espera una orden ya reclamada lo hace sin timeout: nunca puede quedar sin resultado.
+            lote.forEach(pendiente -> pendiente.resultado.completeExceptionally(e));
+            throw e;
+        }
+    }
+
+    static final class Pendiente {
+
+        private final OrdenRequest request;
+        private final long encolada = System.nanoTime();
+        private final CompletableFuture<OrdenResponse> resultado = new CompletableFuture<>();
+        private final AtomicBoolean reclamada = new AtomicBoolean();
+
+        Pendiente(OrdenRequest request) {
+            this.request = request;
+        }
+
+        CompletableFuture<OrdenResponse> resultado() {
+            return resultado;
+        }
+    }
+}
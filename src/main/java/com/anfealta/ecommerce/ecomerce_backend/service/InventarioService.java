@@ -20,11 +20,14 @@ public class InventarioService {
 
     private final InventarioRepository inventarioRepository;
     private final ProductoRepository productoRepository; 
+    private final LibroStockCaliente libroStockCaliente;
 
     @Autowired
-    public InventarioService(InventarioRepository inventarioRepository, ProductoRepository productoRepository) {
+    public InventarioService(InventarioRepository inventarioRepository, ProductoRepository productoRepository,
+                             LibroStockCaliente libroStockCaliente) {
         this.inventarioRepository = inventarioRepository;
         this.productoRepository = productoRepository;
+        this.libroStockCaliente = libroStockCaliente;
     }
 
     /**
@@ -117,6 +120,10 @@ public class InventarioService {
                     inventarioExistente.setFechaActualizacion(LocalDateTime.now());
 
                     Inventario inventarioActualizado = inventarioRepository.save(inventarioExistente);
+                    Long productoId = inventarioActualizado.getProducto().getId();
+                    if (libroStockCaliente.gestiona(productoId)) {
+                        libroStockCaliente.recargar(productoId, inventarioActualizado.getCantidadDisponible());
+                    }
                     return mapToInventarioResponse(inventarioActualizado);
                 });
     }
@@ -0,0 +1,335 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Inventario;
+import com.anfealta.ecommerce.ecomerce_backend.repository.InventarioRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Libro de stock en memoria para productos "calientes" (ventas flash).
+ * <p>
+ * El stock disponible de cada producto configurado se reparte en franjas atómicas, de modo que
+ * los hilos que compran el mismo producto no compiten por un único contador ni por la fila de
+ * {@code inventarios}. Las unidades tomadas o devueltas se acumulan y se escriben en la base de
+ * datos (write-behind) cada {@code app.inventario.caliente.flush-ms} milisegundos, o antes si un
+ * producto supera {@code app.inventario.caliente.flush-umbral} unidades pendientes.
+ * Al arrancar, el libro se carga desde la base de datos; hasta entonces ningún producto es gestionado.
+ */
+@Component
+public class LibroStockCaliente {
+
+    private static final Logger log = LoggerFactory.getLogger(LibroStockCaliente.class);
+
+    private final InventarioRepository inventarioRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean habilitado;
+    private final Set<Long> productosCalientes;
+    private final int cantidadFranjas;
+    private final long flushMs;
+    private final int flushUmbral;
+    private final boolean reservasHabilitadas;
+
+    private final Map<Long, Entrada> entradas = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushProgramado = new AtomicBoolean();
+    private ScheduledExecutorService planificador;
+
+    public LibroStockCaliente(InventarioRepository inventarioRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.inventario.caliente.habilitado:false}") boolean habilitado,
+                              @Value("${app.inventario.caliente.productos:}") Set<Long> productosCalientes,
+                              @Value("${app.inventario.caliente.franjas:8}") int cantidadFranjas,
+                              @Value("${app.inventario.caliente.flush-ms:200}") long flushMs,
+                              @Value("${app.inventario.caliente.flush-umbral:50}") int flushUmbral,
+                              @Value("${app.inventario.reservas.habilitadas:false}") boolean reservasHabilitadas) {
+        this.inventarioRepository = inventarioRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.habilitado = habilitado;
+        this.productosCalientes = Set.copyOf(productosCalientes);
+        this.cantidadFranjas = Math.max(1, cantidadFranjas);
+        this.flushMs = flushMs;
+        this.flushUmbral = flushUmbral;
+        this.reservasHabilitadas = reservasHabilitadas;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!habilitado || productosCalientes.isEmpty()) {
+            return;
+        }
+        recuperar();
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "libro-stock-caliente-flush");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::flushSeguro, flushMs, flushMs, TimeUnit.MILLISECONDS);
+        log.info("Libro de stock caliente activo para {} productos", entradas.size());
+    }
+
+    /**
+     * Carga desde la base de datos el stock disponible de los productos calientes.
+     */
+    public void recuperar() {
+        List<Inventario> inventarios = inventarioRepository.findByProductoIdIn(productosCalientes);
+        for (Inventario inventario : inventarios) {
+            entradas.put(inventario.getProducto().getId(), new Entrada(cantidadFranjas, inventario.getCantidadDisponible()));
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (planificador != null) {
+            planificador.shutdown();
+        }
+        flushSeguro();
+    }
+
+    public boolean gestiona(Long productoId) {
+        return entradas.containsKey(productoId);
+    }
+
+    /**
+     * Intenta tomar unidades del stock en memoria. Si la transacción en curso se revierte,
+     * las unidades se devuelven automáticamente.
+     * @return true si había stock suficiente y se tomó.
+     */
+    public boolean tomar(Long productoId, int cantidad) {
+        return tomarTodos(Map.of(productoId, cantidad)).isEmpty();
+    }
+
+    /**
+     * Toma las unidades de varios productos como una sola operación: si alguno no alcanza, lo ya
+     * tomado se devuelve de inmediato. Si la transacción en curso se revierte, también se devuelven.
+     * @return El ID del primer producto sin stock suficiente, o vacío si se tomaron todas las unidades.
+     */
+    public Optional<Long> tomarTodos(Map<Long, Integer> cantidades) {
+        Map<Entrada, Integer> tomadas = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> cantidad : cantidades.entrySet()) {
+            Entrada entrada = entradas.get(cantidad.getKey());
+            if (entrada == null || !entrada.tomar(cantidad.getValue())) {
+                tomadas.forEach(Entrada::devolver);
+                return Optional.of(cantidad.getKey());
+            }
+            tomadas.put(entrada, cantidad.getValue());
+        }
+        tomadas.forEach((entrada, cantidad) -> {
+            entrada.pendienteTomado.add(cantidad);
+            EfectosTransaccion.alRevertir(() -> aplicarDevolucion(entrada, cantidad));
+            if (entrada.pendienteTomado.sum() >= flushUmbral) {
+                programarFlush();
+            }
+        });
+        return Optional.empty();
+    }
+
+    /**
+     * Devuelve unidades a disponible (cancelación de una reserva). Se aplica al confirmar la transacción.
+     */
+    public void devolver(Long productoId, int cantidad) {
+        Entrada entrada = entradas.get(productoId);
+        if (entrada != null) {
+            EfectosTransaccion.alConfirmar(() -> aplicarDevolucion(entrada, cantidad));
+        }
+    }
+
+    /**
+     * Confirma unidades reservadas (salen de cantidadReservada). Se aplica al confirmar la transacción.
+     */
+    public void confirmar(Long productoId, int cantidad) {
+        Entrada entrada = entradas.get(productoId);
+        if (entrada != null) {
+            EfectosTransaccion.alConfirmar(() -> entrada.pendienteConfirmado.add(cantidad));
+        }
+    }
+
+    /**
+     * Reemplaza el stock en memoria por un valor fijado externamente (p. ej. un ajuste manual de inventario),
+     * descartando los deltas pendientes que ese valor ya supera. Se aplica al confirmar la transacción.
+     */
+    public void recargar(Long productoId, int cantidadDisponible) {
+        Entrada entrada = entradas.get(productoId);
+        if (entrada != null) {
+            EfectosTransaccion.alConfirmar(() -> entrada.reiniciar(cantidadDisponible));
+        }
+    }
+
+    public Integer disponible(Long productoId) {
+        Entrada entrada = entradas.get(productoId);
+        return entrada == null ? null : entrada.disponible();
+    }
+
+    /**
+     * Escribe en la base de datos, en una sola transacción, los deltas acumulados de cada producto.
+     * Si la escritura falla, los deltas se conservan para el siguiente intento.
+     */
+    public void flush() {
+        Map<Long, long[]> deltas = new HashMap<>();
+        entradas.forEach((productoId, entrada) -> {
+            long tomado = entrada.pendienteTomado.sumThenReset();
+            long confirmado = entrada.pendienteConfirmado.sumThenReset();
+            if (tomado != 0 || confirmado != 0) {
+                deltas.put(productoId, new long[]{tomado, confirmado});
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        try {
+            transactionTemplate.executeWithoutResult(status -> deltas.forEach((productoId, delta) -> {
+                long deltaReservada = reservasHabilitadas ? delta[0] - delta[1] : 0;
+                inventarioRepository.ajustarStock(productoId, (int) -delta[0], (int) deltaReservada, ahora);
+            }));
+        } catch (RuntimeException e) {
+            deltas.forEach((productoId, delta) -> {
+                Entrada entrada = entradas.get(productoId);
+                entrada.pendienteTomado.add(delta[0]);
+                entrada.pendienteConfirmado.add(delta[1]);
+            });
+            log.warn("No se pudo escribir el stock caliente en la base de datos; se reintentará", e);
+        }
+    }
+
+    private void flushSeguro() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Error inesperado en el flush del libro de stock caliente", e);
+        }
+    }
+
+    private void programarFlush() {
+        if (planificador != null && flushProgramado.compareAndSet(false, true)) {
+            planificador.execute(() -> {
+                flushProgramado.set(false);
+                flushSeguro();
+            });
+        }
+    }
+
+    private void aplicarDevolucion(Entrada entrada, int cantidad) {
+        entrada.devolver(cantidad);
+        entrada.pendienteTomado.add(-cantidad);
+    }
+
+    /**
+     * Stock de un producto repartido en franjas. Cada hilo empieza por su propia franja; si ninguna
+     * alcanza por sí sola, se reúne la cantidad entre varias bajo el monitor de la entrada.
+     */
+    static final class Entrada {
+
+        private final AtomicIntegerArray franjas;
+        private final LongAdder pendienteTomado = new LongAdder();
+        private final LongAdder pendienteConfirmado = new LongAdder();
+
+        Entrada(int cantidadFranjas, int disponible) {
+            this.franjas = new AtomicIntegerArray(cantidadFranjas);
+            repartir(disponible);
+        }
+
+        boolean tomar(int cantidad) {
+            int n = franjas.length();
+            int inicio = franjaPropia();
+            for (int k = 0; k < n; k++) {
+                if (tomarDeFranja((inicio + k) % n, cantidad)) {
+                    return true;
+                }
+            }
+            synchronized (this) {
+                return tomarRepartido(cantidad);
+            }
+        }
+
+        void devolver(int cantidad) {
+            franjas.addAndGet(franjaPropia(), cantidad);
+        }
+
+        int disponible() {
+            int total = 0;
+            for (int i = 0; i < franjas.length(); i++) {
+                total += franjas.get(i);
+            }
+            return total;
+        }
+
+        synchronized void reiniciar(int disponible) {
+            pendienteTomado.reset();
+            pendienteConfirmado.reset();
+            repartir(disponible);
+        }
+
+        private void repartir(int disponible) {
+            int n = franjas.length();
+            for (int i = 0; i < n; i++) {
+                franjas.set(i, disponible / n + (i < disponible % n ? 1 : 0));
+            }
+        }
+
+        private boolean tomarDeFranja(int i, int cantidad) {
+            while (true) {
+                int actual = franjas.get(i);
+                if (actual < cantidad) {
+                    return false;
+                }
+                if (franjas.compareAndSet(i, actual, actual - cantidad)) {
+                    return true;
+                }
+            }
+        }
+
+        private boolean tomarRepartido(int cantidad) {
+            int n = franjas.length();
+            int[] tomado = new int[n];
+            int restante = cantidad;
+            for (int i = 0; i < n && restante > 0; i++) {
+                while (true) {
+                    int actual = franjas.get(i);
+                    int parte = Math.min(actual, restante);
+                    if (parte <= 0) {
+                        break;
+                    }
+                    if (franjas.compareAndSet(i, actual, actual - parte)) {
+                        tomado[i] = parte;
+                        restante -= parte;
+                        break;
+                    }
+                }
+            }
+            if (restante > 0) {
+                for (int i = 0; i < n; i++) {
+                    if (tomado[i] > 0) {
+                        franjas.addAndGet(i, tomado[i]);
+                    }
+                }
+                return false;
+            }
+            return true;
+        }
+
+        private int franjaPropia() {
+            return (int) (Thread.currentThread().getId() % franjas.length());
+        }
+    }
+}
@@ -1,16 +1,36 @@
 package com.anfealta.ecommerce.ecomerce_backend.service;
 
+import com.anfealta.ecommerce.ecomerce_backend.dto.FiltroOrdenes;
 import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
 import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResumenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.PaginaOrdenesResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.TransicionEstadoResponse;
 import com.anfealta.ecommerce.ecomerce_backend.entity.Orden; 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 public interface OrdenService {
     OrdenResponse crearOrden(OrdenRequest request);
+    OrdenResponse registrarOrden(OrdenRequest request);
+    OrdenResponse aceptarOrden(OrdenRequest request);
+    Optional<OrdenResponse> completarOrdenAceptada(Long id);
+    Optional<OrdenResponse> rechazarOrdenAceptada(Long id, String motivo);
+    List<Long> obtenerIdsOrdenesAceptadas(LocalDateTime creadasAntesDe, int limite);
     Optional<OrdenResponse> obtenerOrdenPorId(Long id);
     List<OrdenResponse> obtenerTodasLasOrdenes();
     List<OrdenResponse> obtenerOrdenesPorUsuario(Long usuarioId);
+    PaginaOrdenesResponse<OrdenResponse> obtenerPaginaOrdenes(String cursor, int limite);
+    PaginaOrdenesResponse<OrdenResponse> obtenerPaginaOrdenesPorUsuario(Long usuarioId, String cursor, int limite);
+    List<OrdenResumenResponse> obtenerResumenes();
+    List<OrdenResumenResponse> obtenerResumenesPorUsuario(Long usuarioId);
+    PaginaOrdenesResponse<OrdenResumenResponse> obtenerPaginaResumenes(String cursor, int limite);
+    PaginaOrdenesResponse<OrdenResumenResponse> obtenerPaginaResumenesPorUsuario(Long usuarioId, String cursor, int limite);
+    PaginaOrdenesResponse<OrdenResponse> buscarOrdenes(FiltroOrdenes filtro, String cursor, int limite);
+    PaginaOrdenesResponse<OrdenResumenResponse> buscarResumenes(FiltroOrdenes filtro, String cursor, int limite);
     Optional<OrdenResponse> actualizarEstadoOrden(Long id, Orden.EstadoOrden nuevoEstado);
+    TransicionEstadoResponse actualizarEstadoOrdenes(List<Long> ids, FiltroOrdenes filtro, Orden.EstadoOrden destino);
     boolean eliminarOrden(Long id);
+    int expirarReservasVencidas(LocalDateTime limite, int tamanoLote);
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creación asíncrona de órdenes: la petición solo registra la orden como ACEPTADA y un grupo de
+ * {@code app.ordenes.aceptadas.hilos} hilos toma el stock y calcula los precios en segundo plano, dejándola
+ * PENDIENTE o RECHAZADA (con su motivo). La cola de trabajo admite {@code app.ordenes.aceptadas.capacidad-cola}
+ * órdenes; si está llena, la petición se rechaza con 503 antes de registrar nada.
+ * <p>
+ * Solo un error 4xx distinto de 409 (sin stock, producto inexistente) rechaza la orden. Las que quedan ACEPTADA por un reinicio,
+ * una cola saturada o cualquier otro error se recuperan con un barrido periódico.
+ * El grupo de hilos publica sus métricas como {@code app.executor.*} con la etiqueta {@code name=ordenes-aceptadas}.
+ */
+@Component
+public class ProcesadorOrdenesAceptadas {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcesadorOrdenesAceptadas.class);
+
+    private final OrdenService ordenService;
+    private final ReintentadorOptimista reintentador;
+    private final ThreadPoolExecutor grupo;
+    private final ExecutorService ejecutor;
+    private final Set<Long> enCurso = ConcurrentHashMap.newKeySet();
+    private final Duration gracia;
+    private final int tamanoLote;
+    private final Counter completadas;
+    private final Counter rechazadas;
+
+    public ProcesadorOrdenesAceptadas(OrdenService ordenService,
+                                      ReintentadorOptimista reintentador,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${app.ordenes.aceptadas.hilos:8}") int hilos,
+                                      @Value("${app.ordenes.aceptadas.capacidad-cola:1000}") int capacidadCola,
+                                      @Value("${app.ordenes.aceptadas.gracia-ms:30000}") long graciaMs,
+                                      @Value("${app.ordenes.aceptadas.tamano-lote:100}") int tamanoLote) {
+        this.ordenService = ordenService;
+        this.reintentador = reintentador;
+        this.gracia = Duration.ofMillis(graciaMs);
+        this.tamanoLote = Math.max(1, tamanoLote);
+        AtomicInteger numeroHilo = new AtomicInteger();
+        this.grupo = new ThreadPoolExecutor(Math.max(1, hilos), Math.max(1, hilos), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, capacidadCola)), tarea -> {
+                    Thread hilo = new Thread(tarea, "ordenes-aceptadas-" + numeroHilo.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+        this.ejecutor = ExecutorServiceMetrics.monitor(meterRegistry, grupo, "ordenes-aceptadas", "app");
+        this.completadas = Counter.builder("app.ordenes.aceptadas.procesadas")
+                .description("Órdenes aceptadas procesadas en segundo plano")
+                .tag("resultado", "completada")
+                .register(meterRegistry);
+        this.rechazadas = Counter.builder("app.ordenes.aceptadas.procesadas")
+                .description("Órdenes aceptadas procesadas en segundo plano")
+                .tag("resultado", "rechazada")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void detener() {
+        grupo.shutdown();
+        try {
+            if (!grupo.awaitTermination(5, TimeUnit.SECONDS)) {
+                // Las que no alcanzaron a procesarse siguen ACEPTADA y se recuperan al reiniciar.
+                grupo.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Registra la orden como ACEPTADA y la encola para procesarla en segundo plano.
+     * @param request DTO con los datos de la orden.
+     * @return La orden ACEPTADA, con su ID.
+     * @throws ResponseStatusException 503 si la cola de trabajo está llena.
+     */
+    public OrdenResponse aceptar(OrdenRequest request) {
+        if (grupo.getQueue().remainingCapacity() == 0) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Demasiadas órdenes en espera, intente nuevamente.");
+        }
+        OrdenResponse aceptada = ordenService.aceptarOrden(request);
+        encolar(aceptada.getId());
+        return aceptada;
+    }
+
+    /**
+     * Encola las órdenes que siguen ACEPTADA después del tiempo de gracia (reinicios, colas saturadas).
+     */
+    @Scheduled(fixedDelayString = "${app.ordenes.aceptadas.barrido-ms:30000}")
+    public void recuperarAceptadas() {
+        List<Long> ids = ordenService.obtenerIdsOrdenesAceptadas(LocalDateTime.now().minus(gracia), tamanoLote);
+        int encoladas = 0;
+        for (Long id : ids) {
+            if (grupo.getQueue().remainingCapacity() == 0) {
+                break;
+            }
+            if (encolar(id)) {
+                encoladas++;
+            }
+        }
+        if (encoladas > 0) {
+            log.info("Órdenes aceptadas recuperadas para su procesamiento: {}", encoladas);
+        }
+    }
+
+    private boolean encolar(Long ordenId) {
+        if (!enCurso.add(ordenId)) {
+            return false;
+        }
+        try {
+            ejecutor.execute(() -> procesar(ordenId));
+            return true;
+        } catch (RejectedExecutionException e) {
+            enCurso.remove(ordenId);
+            log.warn("Cola de órdenes aceptadas llena; la orden {} se procesará en el próximo barrido", ordenId);
+            return false;
+        }
+    }
+
+    void procesar(Long ordenId) {
+        try {
+            reintentador.ejecutar("completarOrdenAceptada", () -> ordenService.completarOrdenAceptada(ordenId))
+                    .ifPresent(orden -> completadas.increment());
+        } catch (ResponseStatusException e) {
+            // 409 es un conflicto optimista que agotó sus reintentos: puede salir bien en el próximo barrido.
+            if (e.getStatusCode().is4xxClientError() && e.getStatusCode() != HttpStatus.CONFLICT) {
+                rechazar(ordenId, e.getReason());
+            } else {
+                log.warn("No se pudo completar la orden aceptada {} ({}); se reintentará en el próximo barrido",
+                        ordenId, e.getStatusCode(), e);
+            }
+        } catch (RuntimeException e) {
+            // Un fallo transitorio (conexión, bloqueo, carriles saturados) no es motivo para rechazar la orden.
+            log.error("Error inesperado al procesar la orden aceptada {}; se reintentará en el próximo barrido", ordenId, e);
+        } finally {
+            enCurso.remove(ordenId);
+        }
+    }
+
+    private void rechazar(Long ordenId, String motivo) {
+        try {
+            ordenService.rechazarOrdenAceptada(ordenId, motivo).ifPresent(orden -> rechazadas.increment());
+        } catch (RuntimeException e) {
+            log.error("No se pudo rechazar la orden aceptada {}; se reintentará en el próximo barrido", ordenId, e);
+        }
+    }
+}
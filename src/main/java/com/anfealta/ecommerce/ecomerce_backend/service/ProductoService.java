@@ -2,6 +2,7 @@ package com.anfealta.ecommerce.ecomerce_backend.service;
 
 import com.anfealta.ecommerce.ecomerce_backend.dto.ProductoRequest;
 import com.anfealta.ecommerce.ecomerce_backend.dto.ProductoResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.TopSoldProductResponse;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,4 +16,5 @@ public interface ProductoService {
     List<ProductoResponse> buscarPorCategoria(String categoria);
     List<ProductoResponse> obtenerProductosActivos();
     List<ProductoResponse> obtenerTop5ProductosMasVendidos();
+    List<TopSoldProductResponse> obtenerTopVendidos(String ventana, String categoria, int k);
 }
\ No newline at end of file
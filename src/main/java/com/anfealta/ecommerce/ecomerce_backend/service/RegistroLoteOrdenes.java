@@ -0,0 +1,119 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registra varias órdenes en una sola transacción, aislando cada una con un punto de guardado: si una falla,
+ * solo se revierte ella, incluidos sus efectos en memoria (ver {@link EfectosTransaccion}). Si la transacción completa no puede confirmarse, o una orden falla por un conflicto
+ * de concurrencia, esas órdenes se crean de forma individual con reintentos.
+ * <p>
+ * Al terminar, el contexto de persistencia se vacía: con {@code spring.jpa.open-in-view} el mismo
+ * {@link EntityManager} vive durante toda la importación y, si no, cada orden ya confirmada seguiría administrada
+ * y se revisaría en cada flush de los bloques siguientes.
+ */
+@Component
+public class RegistroLoteOrdenes {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistroLoteOrdenes.class);
+
+    /** Resultado de una orden del lote: la orden creada o el error que la impidió. */
+    public record Resultado(OrdenResponse orden, RuntimeException error) {
+    }
+
+    private final OrdenService ordenService;
+    private final ReintentadorOptimista reintentador;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+
+    public RegistroLoteOrdenes(OrdenService ordenService,
+                               ReintentadorOptimista reintentador,
+                               PlatformTransactionManager transactionManager,
+                               EntityManager entityManager) {
+        this.ordenService = ordenService;
+        this.reintentador = reintentador;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Registra las órdenes del lote.
+     * @param requests Órdenes a crear.
+     * @return Un resultado por orden, en el mismo orden; se devuelven después del commit.
+     */
+    public List<Resultado> registrar(List<OrdenRequest> requests) {
+        try {
+            return registrarEnLote(requests);
+        } finally {
+            entityManager.clear();
+        }
+    }
+
+    private List<Resultado> registrarEnLote(List<OrdenRequest> requests) {
+        List<Resultado> resultados = new ArrayList<>(requests.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                resultados.clear();
+                for (OrdenRequest request : requests) {
+                    Savepoint puntoGuardado = sesion().doReturningWork(Connection::setSavepoint);
+                    // Si la orden falla, close() deshace lo que ya tomó en memoria antes de volver al punto de guardado.
+                    try (EfectosTransaccion.Ambito efectos = EfectosTransaccion.abrirAmbito()) {
+                        OrdenResponse orden = ordenService.registrarOrden(request);
+                        entityManager.flush();
+                        sesion().doWork(conexion -> conexion.releaseSavepoint(puntoGuardado));
+                        efectos.confirmar();
+                        resultados.add(new Resultado(orden, null));
+                    } catch (RuntimeException e) {
+                        // Las órdenes anteriores ya se enviaron con flush; se descarta lo que quedó de esta.
+                        entityManager.clear();
+                        sesion().doWork(conexion -> conexion.rollback(puntoGuardado));
+                        resultados.add(new Resultado(null, e));
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Falló la transacción de un lote de {} órdenes; se procesan de forma individual", requests.size(), e);
+            entityManager.clear();
+            return requests.stream().map(this::registrarIndividual).toList();
+        }
+        // Los reintentos deben leer el estado confirmado, no las entidades que dejó el lote.
+        entityManager.clear();
+        for (int i = 0; i < resultados.size(); i++) {
+            RuntimeException error = resultados.get(i).error();
+            if (error instanceof OptimisticLockingFailureException || error instanceof OptimisticLockException) {
+                resultados.set(i, registrarIndividual(requests.get(i)));
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * Sesión de la transacción en curso. Los puntos de guardado se toman sobre su conexión JDBC porque
+     * {@code JpaTransactionManager} no los admite con el dialecto de Hibernate.
+     */
+    private Session sesion() {
+        return entityManager.unwrap(Session.class);
+    }
+
+    private Resultado registrarIndividual(OrdenRequest request) {
+        try {
+            return new Resultado(reintentador.ejecutar("crearOrden", () -> ordenService.crearOrden(request)), null);
+        } catch (RuntimeException e) {
+            return new Resultado(null, e);
+        }
+    }
+}
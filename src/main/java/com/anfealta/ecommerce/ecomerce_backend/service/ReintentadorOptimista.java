@@ -0,0 +1,77 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Re-ejecuta operaciones transaccionales que fallan por bloqueo optimista (@Version).
+ * Debe invocarse por fuera de la transacción, para que cada intento abra una nueva
+ * y vuelva a leer el estado actual de las filas.
+ */
+@Component
+public class ReintentadorOptimista {
+
+    private final MeterRegistry meterRegistry;
+    private final int maxIntentos;
+    private final long esperaBaseMs;
+    private final long esperaMaxMs;
+
+    public ReintentadorOptimista(MeterRegistry meterRegistry,
+                                 @Value("${app.reintentos.max-intentos:4}") int maxIntentos,
+                                 @Value("${app.reintentos.espera-base-ms:10}") long esperaBaseMs,
+                                 @Value("${app.reintentos.espera-max-ms:200}") long esperaMaxMs) {
+        this.meterRegistry = meterRegistry;
+        this.maxIntentos = Math.max(1, maxIntentos);
+        this.esperaBaseMs = esperaBaseMs;
+        this.esperaMaxMs = esperaMaxMs;
+    }
+
+    /**
+     * Ejecuta la operación, reintentando ante conflictos optimistas con espera exponencial y jitter.
+     * @param operacion Nombre de la operación, usado como etiqueta de las métricas.
+     * @param accion La operación transaccional a ejecutar.
+     * @return El resultado de la operación.
+     * @throws ResponseStatusException 409 si se agotan los intentos.
+     */
+    public <T> T ejecutar(String operacion, Supplier<T> accion) {
+        for (int intento = 1; ; intento++) {
+            try {
+                return accion.get();
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                if (intento >= maxIntentos) {
+                    contador("app.reintentos.agotados", operacion).increment();
+                    throw new ResponseStatusException(HttpStatus.CONFLICT,
+                            "La operación entró en conflicto con una actualización concurrente, intente nuevamente.", e);
+                }
+                contador("app.reintentos.optimistas", operacion).increment();
+                esperar(intento);
+            }
+        }
+    }
+
+    private void esperar(int intento) {
+        long tope = Math.min(esperaMaxMs, esperaBaseMs << Math.min(intento - 1, 20));
+        if (tope <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(tope + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Reintento interrumpido", e);
+        }
+    }
+
+    private Counter contador(String nombre, String operacion) {
+        return meterRegistry.counter(nombre, "operacion", operacion);
+    }
+}
@@ -0,0 +1,136 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenArchivadaRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Respuestas de {@code GET /api/ordenes/{id}} con ETag fuerte ({@code id} + {@code fechaActualizacion}).
+ * <p>
+ * La versión se consulta con una proyección de una columna, sin cargar la orden ni sus líneas, así que un
+ * {@code If-None-Match} vigente se responde con 304 sin más trabajo. El JSON de las órdenes ENTREGADA y CANCELADA
+ * se guarda ya serializado en memoria (LRU acotado): mientras la versión coincida, se devuelve sin cargar la orden
+ * ni pasar por Jackson. Las órdenes archivadas no cambian nunca, así que ni siquiera se consulta su versión.
+ */
+@Component
+public class RespuestasOrden {
+
+    private static final Set<Orden.EstadoOrden> ESTADOS_FINALES = EnumSet.of(Orden.EstadoOrden.ENTREGADA, Orden.EstadoOrden.CANCELADA);
+
+    /** Respuesta a una lectura; sin cuerpo si el cliente ya tiene esta versión. */
+    public record Respuesta(String etag, byte[] cuerpo) {
+    }
+
+    private final OrdenService ordenService;
+    private final OrdenRepository ordenRepository;
+    private final OrdenArchivadaRepository ordenArchivadaRepository;
+    private final ObjectMapper objectMapper;
+    private final Map<Long, Entrada> serializadas;
+
+    public RespuestasOrden(OrdenService ordenService,
+                           OrdenRepository ordenRepository,
+                           OrdenArchivadaRepository ordenArchivadaRepository,
+                           ObjectMapper objectMapper,
+                           @Value("${app.ordenes.respuestas.max-ordenes:10000}") int maxOrdenes) {
+        this.ordenService = ordenService;
+        this.ordenRepository = ordenRepository;
+        this.ordenArchivadaRepository = ordenArchivadaRepository;
+        this.objectMapper = objectMapper;
+        this.serializadas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entrada> eldest) {
+                return size() > maxOrdenes;
+            }
+        };
+    }
+
+    /**
+     * Lee la orden en JSON.
+     * @param noModificada Recibe el ETag actual y dice si el cliente ya tiene esa versión
+     *                     (por ejemplo {@code WebRequest::checkNotModified}).
+     * @return La respuesta, o vacío si la orden no existe.
+     */
+    public Optional<Respuesta> leer(Long id, Predicate<String> noModificada) {
+        Entrada entrada = buscar(id);
+        if (entrada != null && entrada.archivada()) {
+            return Optional.of(new Respuesta(entrada.etag(), noModificada.test(entrada.etag()) ? null : entrada.cuerpo()));
+        }
+
+        Optional<LocalDateTime> fechaActualizacion = ordenRepository.findFechaActualizacionById(id);
+        boolean archivada = fechaActualizacion.isEmpty();
+        if (archivada) {
+            fechaActualizacion = ordenArchivadaRepository.findFechaActualizacionById(id);
+        }
+        if (fechaActualizacion.isEmpty()) {
+            return Optional.empty();
+        }
+        String etag = etag(id, fechaActualizacion.get());
+        if (noModificada.test(etag)) {
+            return Optional.of(new Respuesta(etag, null));
+        }
+        if (entrada != null && entrada.etag().equals(etag)) {
+            return Optional.of(new Respuesta(etag, entrada.cuerpo()));
+        }
+        return ordenService.obtenerOrdenPorId(id).map(orden -> serializar(orden, archivada));
+    }
+
+    /**
+     * Olvida las respuestas guardadas de las órdenes de un usuario que va a eliminarse; las archivadas se
+     * devolverían sin consultar la base de datos.
+     */
+    public void descartarUsuario(Long usuarioId) {
+        synchronized (serializadas) {
+            serializadas.values().removeIf(entrada -> usuarioId.equals(entrada.usuarioId()));
+        }
+    }
+
+    private Respuesta serializar(OrdenResponse orden, boolean archivada) {
+        byte[] cuerpo;
+        try {
+            cuerpo = objectMapper.writeValueAsBytes(orden);
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "No se pudo serializar la orden: " + e.getOriginalMessage());
+        }
+        // El ETag sale de la orden serializada, por si cambió después de consultar la versión.
+        String etag = etag(orden.getId(), orden.getFechaActualizacion());
+        if (archivada || ESTADOS_FINALES.contains(orden.getEstado())) {
+            synchronized (serializadas) {
+                serializadas.put(orden.getId(), new Entrada(etag, cuerpo, archivada, orden.getUsuarioId()));
+            }
+        }
+        return new Respuesta(etag, cuerpo);
+    }
+
+    private Entrada buscar(Long id) {
+        synchronized (serializadas) {
+            return serializadas.get(id);
+        }
+    }
+
+    // Microsegundos: la precisión con la que la base de datos guarda la fecha.
+    static String etag(Long id, LocalDateTime fechaActualizacion) {
+        LocalDateTime fecha = fechaActualizacion.truncatedTo(ChronoUnit.MICROS);
+        long micros = ChronoUnit.MICROS.between(LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC), fecha);
+        return "\"" + id + "-" + Long.toString(micros, 36) + "\"";
+    }
+
+    private record Entrada(String etag, byte[] cuerpo, boolean archivada, Long usuarioId) {
+    }
+}
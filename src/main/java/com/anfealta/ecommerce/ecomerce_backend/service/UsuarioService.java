@@ -7,6 +7,7 @@ import com.anfealta.ecommerce.ecomerce_backend.dto.UsuarioUpdateRequest;
 
 import org.springframework.security.core.userdetails.UserDetailsService; 
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,5 +19,6 @@ public interface UsuarioService extends UserDetailsService {
     boolean eliminarUsuario(Long id);
 
     List<TopFrequentCustomerResponse> obtenerTop5ClientesFrecuentes();
+    List<TopFrequentCustomerResponse> obtenerClientesFrecuentes(LocalDate desde, LocalDate hasta, int k);
     boolean esClienteFrecuente(Long usuarioId, int minOrders, int daysPeriod);
 }
\ No newline at end of file
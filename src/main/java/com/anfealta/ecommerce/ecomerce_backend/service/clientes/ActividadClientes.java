@@ -0,0 +1,290 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.clientes;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.ActividadCliente;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.repository.ActividadClienteRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resumen diario de la actividad de cada cliente ({@code actividad_clientes}) para el ranking de clientes
+ * frecuentes por rango de fechas, sin agrupar la tabla de órdenes en cada consulta.
+ * <p>
+ * La fila (usuario, día) se crea o se suma con un upsert en la misma transacción que crea, cancela o elimina la
+ * orden, en orden de usuario y día. {@link #reconstruir} recalcula la tabla desde las órdenes activas y archivadas, por bloques de
+ * {@code app.clientes.actividad.reconstruccion.tamano-bloque} usuarios en
+ * {@code app.clientes.actividad.reconstruccion.hilos} hilos.
+ */
+@Component
+public class ActividadClientes {
+
+    private static final Logger log = LoggerFactory.getLogger(ActividadClientes.class);
+
+    /** Órdenes que cuentan en el resumen. */
+    private static final List<Orden.EstadoOrden> ESTADOS_EN_FIRME = List.of(Orden.EstadoOrden.PENDIENTE,
+            Orden.EstadoOrden.COMPLETADA, Orden.EstadoOrden.ENVIADA, Orden.EstadoOrden.ENTREGADA);
+
+    private static final Comparator<ActividadCliente.Clave> POR_USUARIO_Y_DIA = Comparator
+            .comparing(ActividadCliente.Clave::getUsuarioId)
+            .thenComparing(ActividadCliente.Clave::getDia);
+
+    private static final int FILAS_POR_VACIADO = 500;
+
+    /** Órdenes e ingresos de un cliente en un rango de días. */
+    public record ClienteFrecuente(Long usuarioId, long ordenes, BigDecimal ingresos) {
+    }
+
+    private record Ajuste(long ordenes, BigDecimal ingresos) {
+
+        Ajuste sumar(Ajuste otro) {
+            return new Ajuste(ordenes + otro.ordenes, ingresos.add(otro.ingresos));
+        }
+    }
+
+    private final ActividadClienteRepository actividadClienteRepository;
+    private final OrdenRepository ordenRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxClientes;
+    private final int maxDias;
+    private final int tamanoBloque;
+    private final int hilos;
+
+    public ActividadClientes(ActividadClienteRepository actividadClienteRepository,
+                             OrdenRepository ordenRepository,
+                             EntityManager entityManager,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.clientes.actividad.max-clientes:100}") int maxClientes,
+                             @Value("${app.clientes.actividad.max-dias:366}") int maxDias,
+                             @Value("${app.clientes.actividad.reconstruccion.tamano-bloque:500}") int tamanoBloque,
+                             @Value("${app.clientes.actividad.reconstruccion.hilos:4}") int hilos) {
+        this.actividadClienteRepository = actividadClienteRepository;
+        this.ordenRepository = ordenRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxClientes = Math.max(1, maxClientes);
+        this.maxDias = Math.max(1, maxDias);
+        this.tamanoBloque = Math.max(1, tamanoBloque);
+        this.hilos = Math.max(1, hilos);
+    }
+
+    /** Máximo de clientes que puede pedir una consulta. */
+    public int maxClientes() {
+        return maxClientes;
+    }
+
+    /** Máximo de días que puede abarcar una consulta. */
+    public int maxDias() {
+        return maxDias;
+    }
+
+    /**
+     * Si una orden en el estado indicado cuenta en el resumen: las aceptadas sin procesar, rechazadas y
+     * canceladas no cuentan.
+     */
+    public static boolean cuenta(Orden.EstadoOrden estado) {
+        return ESTADOS_EN_FIRME.contains(estado);
+    }
+
+    /**
+     * Los {@code limite} clientes con más órdenes creadas entre ambos días (inclusive), desempatando por ingresos.
+     */
+    public List<ClienteFrecuente> masFrecuentes(LocalDate desde, LocalDate hasta, int limite) {
+        return clientes(actividadClienteRepository.findMasFrecuentes(desde, hasta, PageRequest.of(0, limite)));
+    }
+
+    /**
+     * Los {@code limite} clientes con más órdenes desde siempre, desempatando por ingresos.
+     */
+    public List<ClienteFrecuente> masFrecuentes(int limite) {
+        return clientes(actividadClienteRepository.findMasFrecuentesTotales(PageRequest.of(0, limite)));
+    }
+
+    private static List<ClienteFrecuente> clientes(List<Object[]> filas) {
+        return filas.stream()
+                .map(fila -> new ClienteFrecuente((Long) fila[0], ((Number) fila[1]).longValue(), (BigDecimal) fila[2]))
+                .toList();
+    }
+
+    /**
+     * Suma una orden nueva (o que vuelve a contar) al día de su creación, dentro de la transacción en curso.
+     */
+    public void registrarOrden(Orden orden) {
+        ajustar(Map.of(clave(orden.getUsuario().getId(), orden.getFechaCreacion()), new Ajuste(1, orden.getTotal())));
+    }
+
+    /**
+     * Resta una orden cancelada o eliminada del día de su creación, dentro de la transacción en curso.
+     */
+    public void descontarOrden(Orden orden) {
+        ajustar(Map.of(clave(orden.getUsuario().getId(), orden.getFechaCreacion()), new Ajuste(-1, orden.getTotal().negate())));
+    }
+
+    /**
+     * Resta las órdenes indicadas, leyendo solo su usuario, fecha y total (para cambios de estado en bloque que
+     * no cargan las órdenes).
+     */
+    public void descontarOrdenes(Collection<Long> ordenIds) {
+        if (ordenIds.isEmpty()) {
+            return;
+        }
+        Map<ActividadCliente.Clave, Ajuste> ajustes = new HashMap<>();
+        for (Object[] fila : ordenRepository.findUsuarioFechaCreacionYTotalByIdIn(ordenIds)) {
+            ajustes.merge(clave((Long) fila[0], (LocalDateTime) fila[1]), new Ajuste(-1, ((BigDecimal) fila[2]).negate()), Ajuste::sumar);
+        }
+        ajustar(ajustes);
+    }
+
+    /**
+     * Elimina las filas de un usuario que va a eliminarse junto con sus órdenes.
+     */
+    public void descartarUsuario(Long usuarioId) {
+        actividadClienteRepository.eliminarPorUsuario(usuarioId);
+    }
+
+    private void ajustar(Map<ActividadCliente.Clave, Ajuste> ajustes) {
+        LocalDateTime ahora = LocalDateTime.now();
+        Map<ActividadCliente.Clave, Ajuste> ordenados = new TreeMap<>(POR_USUARIO_Y_DIA);
+        ordenados.putAll(ajustes);
+        // Un solo upsert por fila (ON DUPLICATE KEY UPDATE en MySQL): la primera orden del día crea la fila y las
+        // siguientes la suman, sin consultarla antes ni abrir otra conexión.
+        ordenados.forEach((clave, ajuste) -> entityManager.createQuery(
+                        "INSERT INTO ActividadCliente (usuarioId, dia, ordenes, ingresos, fechaActualizacion) " +
+                        "VALUES (:usuarioId, :dia, :ordenes, :ingresos, :ahora) " +
+                        "ON CONFLICT (usuarioId, dia) DO UPDATE SET ordenes = ordenes + excluded.ordenes, " +
+                        "ingresos = ingresos + excluded.ingresos, fechaActualizacion = excluded.fechaActualizacion")
+                .setParameter("usuarioId", clave.getUsuarioId())
+                .setParameter("dia", clave.getDia())
+                .setParameter("ordenes", ajuste.ordenes())
+                .setParameter("ingresos", ajuste.ingresos())
+                .setParameter("ahora", ahora)
+                .executeUpdate());
+    }
+
+    private static ActividadCliente.Clave clave(Long usuarioId, LocalDateTime fechaCreacion) {
+        return new ActividadCliente.Clave(usuarioId, fechaCreacion.toLocalDate());
+    }
+
+    /**
+     * Recalcula {@code actividad_clientes} desde las órdenes (activas y archivadas) en firme. Cada bloque de usuarios
+     * es una transacción que borra primero sus filas, con lo que las órdenes de esos usuarios que se registren
+     * mientras tanto esperan a que termine, y después las vuelve a insertar agrupando las órdenes por día. Si un
+     * bloque falla, los anteriores quedan reconstruidos y puede repetirse la operación completa.
+     * @return Cantidad de filas (usuario, día) escritas.
+     */
+    public int reconstruir() {
+        long inicio = System.nanoTime();
+        Object[] rango = entityManager.createQuery("SELECT MIN(u.id), MAX(u.id) FROM Usuario u", Object[].class).getSingleResult();
+        List<long[]> bloques = new ArrayList<>();
+        if (rango[0] != null) {
+            for (long desde = (Long) rango[0]; desde <= (Long) rango[1]; desde += tamanoBloque) {
+                bloques.add(new long[]{desde, Math.min(desde + tamanoBloque - 1, (Long) rango[1])});
+            }
+        }
+
+        int filas = 0;
+        if (hilos == 1 || bloques.size() <= 1) {
+            for (long[] bloque : bloques) {
+                filas += reconstruirBloque(bloque[0], bloque[1]);
+            }
+        } else {
+            AtomicInteger numeroHilo = new AtomicInteger();
+            ExecutorService ejecutor = Executors.newFixedThreadPool(Math.min(hilos, bloques.size()), tarea -> {
+                Thread hilo = new Thread(tarea, "actividad-clientes-" + numeroHilo.incrementAndGet());
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            try {
+                List<Future<Integer>> resultados = new ArrayList<>(bloques.size());
+                for (long[] bloque : bloques) {
+                    resultados.add(ejecutor.submit(() -> reconstruirBloque(bloque[0], bloque[1])));
+                }
+                for (Future<Integer> resultado : resultados) {
+                    filas += resultado.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Reconstrucción de actividad_clientes interrumpida", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Falló la reconstrucción de actividad_clientes", e.getCause());
+            } finally {
+                ejecutor.shutdownNow();
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createQuery("DELETE FROM ActividadCliente a WHERE a.usuarioId NOT IN (SELECT u.id FROM Usuario u)")
+                .executeUpdate());
+        log.info("actividad_clientes reconstruida: {} filas en {} bloques en {} ms", filas, bloques.size(),
+                (System.nanoTime() - inicio) / 1_000_000);
+        return filas;
+    }
+
+    private int reconstruirBloque(long desde, long hasta) {
+        return transactionTemplate.execute(status -> {
+            entityManager.createQuery("DELETE FROM ActividadCliente a WHERE a.usuarioId BETWEEN :desde AND :hasta")
+                    .setParameter("desde", desde)
+                    .setParameter("hasta", hasta)
+                    .executeUpdate();
+            Map<ActividadCliente.Clave, Ajuste> dias = new TreeMap<>(POR_USUARIO_Y_DIA);
+            acumular(dias, entityManager.createQuery("SELECT o.usuario.id, cast(o.fechaCreacion as LocalDate), COUNT(o), SUM(o.total) " +
+                    "FROM Orden o WHERE o.usuario.id BETWEEN :desde AND :hasta AND o.estado IN :estados " +
+                    "GROUP BY o.usuario.id, cast(o.fechaCreacion as LocalDate)", Object[].class), desde, hasta);
+            acumular(dias, entityManager.createQuery("SELECT a.usuarioId, cast(a.fechaCreacion as LocalDate), COUNT(a), SUM(a.total) " +
+                    "FROM OrdenArchivada a WHERE a.usuarioId BETWEEN :desde AND :hasta AND a.estado IN :estados " +
+                    "GROUP BY a.usuarioId, cast(a.fechaCreacion as LocalDate)", Object[].class), desde, hasta);
+
+            LocalDateTime ahora = LocalDateTime.now();
+            int escritas = 0;
+            for (Map.Entry<ActividadCliente.Clave, Ajuste> dia : dias.entrySet()) {
+                entityManager.persist(ActividadCliente.builder()
+                        .usuarioId(dia.getKey().getUsuarioId())
+                        .dia(dia.getKey().getDia())
+                        .ordenes(dia.getValue().ordenes())
+                        .ingresos(dia.getValue().ingresos())
+                        .fechaActualizacion(ahora)
+                        .build());
+                if (++escritas % FILAS_POR_VACIADO == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+            return escritas;
+        });
+    }
+
+    private static void acumular(Map<ActividadCliente.Clave, Ajuste> dias, TypedQuery<Object[]> consulta,
+                                 long desde, long hasta) {
+        for (Object[] fila : consulta.setParameter("desde", desde)
+                .setParameter("hasta", hasta)
+                .setParameter("estados", ESTADOS_EN_FIRME)
+                .getResultList()) {
+            dias.merge(new ActividadCliente.Clave((Long) fila[0], (LocalDate) fila[1]),
+                    new Ajuste((Long) fila[2], (BigDecimal) fila[3]), Ajuste::sumar);
+        }
+    }
+}
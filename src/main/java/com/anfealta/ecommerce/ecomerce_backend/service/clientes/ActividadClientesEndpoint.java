@@ -0,0 +1,37 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.clientes;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Endpoint de actuator ({@code /actuator/clientes}) para consultar los clientes más frecuentes de los últimos 30
+ * días según {@code actividad_clientes} y reconstruir la tabla desde las órdenes (p. ej. al desplegarla por
+ * primera vez o si quedó desalineada).
+ */
+@Component
+@Endpoint(id = "clientes")
+public class ActividadClientesEndpoint {
+
+    private final ActividadClientes actividadClientes;
+
+    public ActividadClientesEndpoint(ActividadClientes actividadClientes) {
+        this.actividadClientes = actividadClientes;
+    }
+
+    @ReadOperation
+    public List<ActividadClientes.ClienteFrecuente> masFrecuentes() {
+        LocalDate hoy = LocalDate.now();
+        return actividadClientes.masFrecuentes(hoy.minusDays(29), hoy, 10);
+    }
+
+    @WriteOperation
+    public Map<String, Object> reconstruir() {
+        return Map.of("filas", actividadClientes.reconstruir());
+    }
+}
@@ -0,0 +1,9 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.descuentos;
+
+import java.time.LocalDateTime;
+
+/**
+ * Datos de una orden que las reglas de descuento necesitan para evaluarse.
+ */
+public record ContextoDescuento(LocalDateTime fecha, boolean aplicarDescuentoAleatorio, boolean clienteFrecuente) {
+}
@@ -0,0 +1,58 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.descuentos;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+/**
+ * Endpoint de actuator ({@code /actuator/descuentos}) para consultar la política de descuentos vigente
+ * y recompilarla con una nueva configuración sin reiniciar. Los parámetros omitidos conservan su valor actual;
+ * una configuración inválida se rechaza con 400 y no reemplaza la vigente.
+ */
+@Component
+@Endpoint(id = "descuentos")
+public class DescuentosEndpoint {
+
+    private final PoliticaDescuentos politicaDescuentos;
+
+    public DescuentosEndpoint(PoliticaDescuentos politicaDescuentos) {
+        this.politicaDescuentos = politicaDescuentos;
+    }
+
+    @ReadOperation
+    public Map<String, Object> configuracion() {
+        RangoFechas rango = politicaDescuentos.getRangoFechas();
+        return Map.of(
+                "fechaInicio", rango.inicio(),
+                "fechaFin", rango.fin(),
+                "probabilidadAleatorio", politicaDescuentos.getProbabilidadAleatorio());
+    }
+
+    @WriteOperation
+    public Map<String, Object> recargar(@Nullable String fechaInicio, @Nullable String fechaFin,
+                                        @Nullable Double probabilidadAleatorio) {
+        RangoFechas rango = politicaDescuentos.getRangoFechas();
+        politicaDescuentos.recargar(
+                fechaInicio != null ? fecha("fechaInicio", fechaInicio) : rango.inicio(),
+                fechaFin != null ? fecha("fechaFin", fechaFin) : rango.fin(),
+                probabilidadAleatorio != null ? probabilidadAleatorio : politicaDescuentos.getProbabilidadAleatorio());
+        return configuracion();
+    }
+
+    private static LocalDateTime fecha(String parametro, String valor) {
+        try {
+            return LocalDateTime.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "El parámetro '" + parametro + "' debe tener el formato yyyy-MM-ddTHH:mm:ss: " + valor);
+        }
+    }
+}
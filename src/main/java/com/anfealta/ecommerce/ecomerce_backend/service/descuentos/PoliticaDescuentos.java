@@ -0,0 +1,114 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.descuentos;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Política de descuentos de las órdenes.
+ * <p>
+ * La configuración {@code app.descuentos.*} se compila una sola vez (al arrancar y en cada recarga)
+ * en una cadena inmutable de reglas: 10% dentro del periodo de vigencia, 50% aleatorio si la orden lo
+ * solicita dentro del periodo, y 5% para clientes frecuentes, seguidas de las reglas adicionales
+ * registradas como bean. Evaluar una orden no parsea fechas ni crea tasas, y el sorteo usa
+ * {@link ThreadLocalRandom}, sin contención entre hilos.
+ */
+@Component
+public class PoliticaDescuentos {
+
+    private static final Logger log = LoggerFactory.getLogger(PoliticaDescuentos.class);
+
+    static final BigDecimal TASA_RANGO_FECHAS = BigDecimal.valueOf(0.10);
+    static final BigDecimal TASA_ALEATORIA = BigDecimal.valueOf(0.50);
+    static final BigDecimal TASA_CLIENTE_FRECUENTE = BigDecimal.valueOf(0.05);
+
+    private final List<ReglaDescuento> reglasAdicionales;
+    private final DoubleSupplier aleatorio;
+
+    private volatile Cadena cadena;
+
+    @Autowired
+    public PoliticaDescuentos(@Value("${app.descuentos.fecha-inicio}") String fechaInicio,
+                              @Value("${app.descuentos.fecha-fin}") String fechaFin,
+                              @Value("${app.descuentos.probabilidad-aleatorio}") double probabilidadAleatorio,
+                              ObjectProvider<ReglaDescuento> reglasAdicionales) {
+        this(LocalDateTime.parse(fechaInicio), LocalDateTime.parse(fechaFin), probabilidadAleatorio,
+                reglasAdicionales.orderedStream().toList(), () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    public PoliticaDescuentos(LocalDateTime fechaInicio, LocalDateTime fechaFin, double probabilidadAleatorio,
+                              List<ReglaDescuento> reglasAdicionales, DoubleSupplier aleatorio) {
+        this.reglasAdicionales = List.copyOf(reglasAdicionales);
+        this.aleatorio = aleatorio;
+        recargar(fechaInicio, fechaFin, probabilidadAleatorio);
+    }
+
+    /**
+     * Compila una nueva cadena de reglas y la publica de forma atómica; las órdenes en curso
+     * terminan de evaluarse con la cadena anterior.
+     * @throws ResponseStatusException 400 si el inicio no es anterior al fin o la probabilidad no está
+     *         entre 0 y 1; la cadena vigente no cambia.
+     */
+    public void recargar(LocalDateTime fechaInicio, LocalDateTime fechaFin, double probabilidadAleatorio) {
+        if (fechaInicio == null || fechaFin == null || !fechaInicio.isBefore(fechaFin)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "La fecha de inicio de los descuentos debe ser anterior a la fecha de fin");
+        }
+        if (!(probabilidadAleatorio >= 0 && probabilidadAleatorio <= 1)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "La probabilidad del descuento aleatorio debe estar entre 0 y 1: " + probabilidadAleatorio);
+        }
+        RangoFechas rango = new RangoFechas(fechaInicio, fechaFin);
+        List<ReglaDescuento> reglas = new ArrayList<>();
+        reglas.add(new ReglaRangoFechas(rango, TASA_RANGO_FECHAS));
+        reglas.add(new ReglaAleatoria(rango, probabilidadAleatorio, aleatorio, TASA_ALEATORIA));
+        reglas.add(new ReglaClienteFrecuente(TASA_CLIENTE_FRECUENTE));
+        reglas.addAll(reglasAdicionales);
+        cadena = new Cadena(rango, probabilidadAleatorio, List.copyOf(reglas));
+        log.info("Política de descuentos compilada: vigencia {} - {}, probabilidad aleatoria {}, {} reglas",
+                fechaInicio, fechaFin, probabilidadAleatorio, reglas.size());
+    }
+
+    /**
+     * Aplica la cadena de reglas sobre el subtotal de una orden.
+     * @param subtotal Subtotal de la orden.
+     * @param contexto Datos de la orden relevantes para los descuentos.
+     * @return El descuento acumulado y el total resultante.
+     */
+    public ResultadoDescuento aplicar(BigDecimal subtotal, ContextoDescuento contexto) {
+        BigDecimal total = subtotal;
+        BigDecimal descuentoTotal = BigDecimal.ZERO;
+        for (ReglaDescuento regla : cadena.reglas()) {
+            BigDecimal tasa = regla.tasa(contexto);
+            if (tasa != null) {
+                BigDecimal descuento = total.multiply(tasa);
+                total = total.subtract(descuento);
+                descuentoTotal = descuentoTotal.add(descuento);
+            }
+        }
+        return new ResultadoDescuento(descuentoTotal, total);
+    }
+
+    public RangoFechas getRangoFechas() {
+        return cadena.rango();
+    }
+
+    public double getProbabilidadAleatorio() {
+        return cadena.probabilidadAleatorio();
+    }
+
+    private record Cadena(RangoFechas rango, double probabilidadAleatorio, List<ReglaDescuento> reglas) {
+    }
+}
@@ -0,0 +1,13 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.descuentos;
+
+import java.time.LocalDateTime;
+
+/**
+ * Periodo de vigencia de los descuentos, con ambos extremos excluidos.
+ */
+public record RangoFechas(LocalDateTime inicio, LocalDateTime fin) {
+
+    public boolean contiene(LocalDateTime fecha) {
+        return fecha.isAfter(inicio) && fecha.isBefore(fin);
+    }
+}
@@ -0,0 +1,32 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.descuentos;
+
+import java.math.BigDecimal;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Descuento sorteado entre las órdenes que lo solicitan dentro del periodo de vigencia.
+ * El número aleatorio solo se extrae si la orden puede optar al descuento.
+ */
+public final class ReglaAleatoria implements ReglaDescuento {
+
+    private final RangoFechas rango;
+    private final double probabilidad;
+    private final DoubleSupplier aleatorio;
+    private final BigDecimal tasa;
+
+    public ReglaAleatoria(RangoFechas rango, double probabilidad, DoubleSupplier aleatorio, BigDecimal tasa) {
+        this.rango = rango;
+        this.probabilidad = probabilidad;
+        this.aleatorio = aleatorio;
+        this.tasa = tasa;
+    }
+
+    @Override
+    public BigDecimal tasa(ContextoDescuento contexto) {
+        if (contexto.aplicarDescuentoAleatorio() && rango.contiene(contexto.fecha())
+                && aleatorio.getAsDouble() < probabilidad) {
+            return tasa;
+        }
+        return null;
+    }
+}
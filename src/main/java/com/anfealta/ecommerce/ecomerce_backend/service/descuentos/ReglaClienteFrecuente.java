@@ -0,0 +1,20 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.descuentos;
+
+import java.math.BigDecimal;
+
+/**
+ * Descuento para los clientes frecuentes.
+ */
+public final class ReglaClienteFrecuente implements ReglaDescuento {
+
+    private final BigDecimal tasa;
+
+    public ReglaClienteFrecuente(BigDecimal tasa) {
+        this.tasa = tasa;
+    }
+
+    @Override
+    public BigDecimal tasa(ContextoDescuento contexto) {
+        return contexto.clienteFrecuente() ? tasa : null;
+    }
+}
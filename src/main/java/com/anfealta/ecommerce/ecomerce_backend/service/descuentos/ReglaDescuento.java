@@ -0,0 +1,17 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.descuentos;
+
+import java.math.BigDecimal;
+
+/**
+ * Regla de la cadena de descuentos. Las reglas se evalúan en orden y cada una descuenta
+ * sobre el total que dejó la anterior. Para agregar una regla basta con registrarla como bean;
+ * se ejecuta después de las reglas base, según su {@code @Order}.
+ */
+public interface ReglaDescuento {
+
+    /**
+     * @param contexto Datos de la orden relevantes para los descuentos.
+     * @return La fracción del total actual a descontar (p. ej. 0.10), o null si la regla no aplica.
+     */
+    BigDecimal tasa(ContextoDescuento contexto);
+}
@@ -0,0 +1,22 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.descuentos;
+
+import java.math.BigDecimal;
+
+/**
+ * Descuento para las órdenes creadas dentro del periodo de vigencia.
+ */
+public final class ReglaRangoFechas implements ReglaDescuento {
+
+    private final RangoFechas rango;
+    private final BigDecimal tasa;
+
+    public ReglaRangoFechas(RangoFechas rango, BigDecimal tasa) {
+        this.rango = rango;
+        this.tasa = tasa;
+    }
+
+    @Override
+    public BigDecimal tasa(ContextoDescuento contexto) {
+        return rango.contiene(contexto.fecha()) ? tasa : null;
+    }
+}
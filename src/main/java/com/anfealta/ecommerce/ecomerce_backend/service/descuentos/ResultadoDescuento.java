@@ -0,0 +1,9 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.descuentos;
+
+import java.math.BigDecimal;
+
+/**
+ * Resultado de aplicar la cadena de descuentos a un subtotal.
+ */
+public record ResultadoDescuento(BigDecimal descuentoTotal, BigDecimal total) {
+}
@@ -1,63 +1,129 @@
 package com.anfealta.ecommerce.ecomerce_backend.service.impl;
 
+import com.anfealta.ecommerce.ecomerce_backend.dto.FiltroOrdenes;
 import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenDetalleRequest;
 import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenDetalleResponse;
 import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
 import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
-import com.anfealta.ecommerce.ecomerce_backend.entity.Inventario;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResumenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.PaginaOrdenesResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.ResultadoTransicionEstado;
+import com.anfealta.ecommerce.ecomerce_backend.dto.TransicionEstadoResponse;
 import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.entity.OrdenArchivada;
 import com.anfealta.ecommerce.ecomerce_backend.entity.OrdenDetalle;
 import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
 import com.anfealta.ecommerce.ecomerce_backend.entity.Usuario;
 import com.anfealta.ecommerce.ecomerce_backend.repository.InventarioRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenArchivadaRepository;
 import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenSpecifications;
 import com.anfealta.ecommerce.ecomerce_backend.repository.ProductoRepository;
 import com.anfealta.ecommerce.ecomerce_backend.repository.UsuarioRepository;
+import com.anfealta.ecommerce.ecomerce_backend.service.CarrilesStock;
+import com.anfealta.ecommerce.ecomerce_backend.service.ContadorClientesFrecuentes;
+import com.anfealta.ecommerce.ecomerce_backend.service.LibroStockCaliente;
 import com.anfealta.ecommerce.ecomerce_backend.service.OrdenService;
 import com.anfealta.ecommerce.ecomerce_backend.service.UsuarioService; 
+import com.anfealta.ecommerce.ecomerce_backend.service.descuentos.ContextoDescuento;
+import com.anfealta.ecommerce.ecomerce_backend.service.descuentos.PoliticaDescuentos;
+import com.anfealta.ecommerce.ecomerce_backend.service.descuentos.ResultadoDescuento;
+import com.anfealta.ecommerce.ecomerce_backend.service.clientes.ActividadClientes;
+import com.anfealta.ecommerce.ecomerce_backend.service.ventas.TopVendidos;
+import com.anfealta.ecommerce.ecomerce_backend.service.ventas.VentasProductos;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value; 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Random; 
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class OrdenServiceImpl implements OrdenService {
 
+    private static final Logger log = LoggerFactory.getLogger(OrdenServiceImpl.class);
+
+    // Mismo orden que las consultas de paginación de OrdenRepository.
+    private static final Sort ORDEN_PAGINA = Sort.by(Sort.Direction.DESC, "fechaCreacion", "id");
+
     private final OrdenRepository ordenRepository;
+    private final OrdenArchivadaRepository ordenArchivadaRepository;
     private final UsuarioRepository usuarioRepository;
     private final ProductoRepository productoRepository;
     private final InventarioRepository inventarioRepository;
     private final UsuarioService usuarioService; 
+    private final LibroStockCaliente libroStockCaliente;
+    private final CarrilesStock carrilesStock;
+    private final PoliticaDescuentos politicaDescuentos;
+    private final ContadorClientesFrecuentes contadorClientesFrecuentes;
+    private final VentasProductos ventasProductos;
+    private final TopVendidos topVendidos;
+    private final ActividadClientes actividadClientes;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
 
-    @Value("${app.descuentos.fecha-inicio}")
-    private String descuentoFechaInicioStr;
-    @Value("${app.descuentos.fecha-fin}")
-    private String descuentoFechaFinStr;
-    @Value("${app.descuentos.probabilidad-aleatorio}")
-    private double probabilidadDescuentoAleatorio;
     @Value("${app.descuentos.cliente-frecuente.min-ordenes}")
     private int minOrdersForFrequentCustomer;
     @Value("${app.descuentos.cliente-frecuente.periodo-dias}")
     private int frequentCustomerPeriodDays;
-
-    private final Random random = new Random();
-
-    public OrdenServiceImpl(OrdenRepository ordenRepository, UsuarioRepository usuarioRepository,
+    @Value("${app.inventario.reservas.habilitadas:false}")
+    private boolean reservasHabilitadas;
+    @Value("${app.ordenes.paginacion.limite-max:500}")
+    private int limiteMaximoPagina;
+    @Value("${app.ordenes.transiciones.max-ordenes:1000}")
+    private int maxOrdenesTransicion;
+
+    public OrdenServiceImpl(OrdenRepository ordenRepository, OrdenArchivadaRepository ordenArchivadaRepository,
+                            UsuarioRepository usuarioRepository,
                             ProductoRepository productoRepository, InventarioRepository inventarioRepository,
-                            UsuarioService usuarioService) {
+                            UsuarioService usuarioService, LibroStockCaliente libroStockCaliente, CarrilesStock carrilesStock,
+                            PoliticaDescuentos politicaDescuentos, ContadorClientesFrecuentes contadorClientesFrecuentes,
+                            VentasProductos ventasProductos, TopVendidos topVendidos,
+                            ActividadClientes actividadClientes, ObjectMapper objectMapper,
+                            PlatformTransactionManager transactionManager) {
         this.ordenRepository = ordenRepository;
+        this.ordenArchivadaRepository = ordenArchivadaRepository;
         this.usuarioRepository = usuarioRepository;
         this.productoRepository = productoRepository;
         this.inventarioRepository = inventarioRepository;
         this.usuarioService = usuarioService;
+        this.libroStockCaliente = libroStockCaliente;
+        this.carrilesStock = carrilesStock;
+        this.politicaDescuentos = politicaDescuentos;
+        this.contadorClientesFrecuentes = contadorClientesFrecuentes;
+        this.ventasProductos = ventasProductos;
+        this.topVendidos = topVendidos;
+        this.actividadClientes = actividadClientes;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     private OrdenResponse mapToDto(Orden orden) {
@@ -83,39 +149,193 @@ public class OrdenServiceImpl implements OrdenService {
                 .subtotal(orden.getSubtotal())
                 .descuentoTotal(orden.getDescuentoTotal())
                 .total(orden.getTotal())
+                .motivoRechazo(orden.getMotivoRechazo())
                 .detalles(detallesDto)
                 .build();
     }
 
+    private OrdenResponse mapToDto(OrdenArchivada orden) {
+        List<OrdenDetalleResponse> detallesDto = orden.getDetalles().stream()
+                .map(detalle -> OrdenDetalleResponse.builder()
+                        .id(detalle.getId())
+                        .productoId(detalle.getProductoId())
+                        .nombreProducto(detalle.getProducto().getNombre())
+                        .skuProducto(detalle.getProducto().getSku())
+                        .cantidad(detalle.getCantidad())
+                        .precioUnitario(detalle.getPrecioUnitario())
+                        .subtotalLinea(detalle.getSubtotalLinea())
+                        .build())
+                .collect(Collectors.toList());
+
+        return OrdenResponse.builder()
+                .id(orden.getId())
+                .usuarioId(orden.getUsuarioId())
+                .nombreUsuario(orden.getUsuario().getNombreUsuario())
+                .fechaCreacion(orden.getFechaCreacion())
+                .fechaActualizacion(orden.getFechaActualizacion())
+                .estado(orden.getEstado())
+                .subtotal(orden.getSubtotal())
+                .descuentoTotal(orden.getDescuentoTotal())
+                .total(orden.getTotal())
+                .motivoRechazo(orden.getMotivoRechazo())
+                .detalles(detallesDto)
+                .build();
+    }
+
+    /**
+     * Con los carriles de stock habilitados, el stock se asigna antes de abrir la transacción de la orden: así
+     * la petición no retiene una conexión del pool mientras espera a los carriles, que necesitan la suya.
+     */
     @Override
-    @Transactional
     public OrdenResponse crearOrden(OrdenRequest request) {
+        if (!carrilesStock.habilitado()) {
+            return transactionTemplate.execute(status -> registrarOrden(request));
+        }
+        Map<Long, Integer> cantidadesCarriles = new TreeMap<>();
+        for (OrdenDetalleRequest detalle : request.getDetalles()) {
+            if (!libroStockCaliente.gestiona(detalle.getProductoId())) {
+                cantidadesCarriles.merge(detalle.getProductoId(), detalle.getCantidad(), Integer::sum);
+            }
+        }
+        CarrilesStock.Asignacion asignacion = cantidadesCarriles.isEmpty() ? null : carrilesStock.tomarTodos(cantidadesCarriles);
+        try {
+            return transactionTemplate.execute(status -> registrar(request, asignacion));
+        } catch (RuntimeException e) {
+            if (asignacion != null) {
+                asignacion.devolver();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Crea la orden dentro de la transacción en curso, sin demarcar una propia. La ingesta por lotes
+     * la usa para procesar varias órdenes en una sola transacción, aislando cada una con un punto de guardado.
+     */
+    @Override
+    public OrdenResponse registrarOrden(OrdenRequest request) {
+        return registrar(request, null);
+    }
+
+    private OrdenResponse registrar(OrdenRequest request, CarrilesStock.Asignacion asignacionPrevia) {
         Usuario usuario = usuarioRepository.findById(request.getUsuarioId())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado con ID: " + request.getUsuarioId()));
 
         Orden nuevaOrden = new Orden();
         nuevaOrden.setUsuario(usuario);
         nuevaOrden.setEstado(Orden.EstadoOrden.PENDIENTE); 
+        completar(nuevaOrden, request, asignacionPrevia);
+
+        nuevaOrden = ordenRepository.save(nuevaOrden);
+        contadorClientesFrecuentes.registrarOrden(usuario.getId(), nuevaOrden.getId(), nuevaOrden.getFechaCreacion());
+        ventasProductos.registrarVenta(cantidadesPorProducto(nuevaOrden));
+        topVendidos.registrarOrden(nuevaOrden);
+        actividadClientes.registrarOrden(nuevaOrden);
+        return mapToDto(nuevaOrden);
+    }
+
+    /**
+     * Registra una orden ACEPTADA con la solicitud original, sin tomar stock ni calcular precios.
+     * Un procesador en segundo plano la completa luego con {@link #completarOrdenAceptada}.
+     */
+    @Override
+    @Transactional
+    public OrdenResponse aceptarOrden(OrdenRequest request) {
+        Usuario usuario = usuarioRepository.findById(request.getUsuarioId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado con ID: " + request.getUsuarioId()));
+
+        Orden orden = new Orden();
+        orden.setUsuario(usuario);
+        orden.setEstado(Orden.EstadoOrden.ACEPTADA);
+        orden.setStockReservado(false);
+        orden.setSubtotal(BigDecimal.ZERO);
+        orden.setDescuentoTotal(BigDecimal.ZERO);
+        orden.setTotal(BigDecimal.ZERO);
+        try {
+            orden.setSolicitud(objectMapper.writeValueAsString(request));
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No se pudo registrar la solicitud de la orden: " + e.getOriginalMessage());
+        }
+        return mapToDto(ordenRepository.save(orden));
+    }
 
+    /**
+     * Toma el stock y calcula los precios de una orden ACEPTADA, que pasa a PENDIENTE.
+     * @return La orden completada, o vacío si ya no existe o no está ACEPTADA (p. ej. la procesó otro nodo).
+     * @throws ResponseStatusException si la orden no puede crearse (stock insuficiente, producto inexistente...).
+     */
+    @Override
+    @Transactional
+    public Optional<OrdenResponse> completarOrdenAceptada(Long id) {
+        Optional<Orden> aceptada = ordenRepository.findById(id).filter(orden -> orden.getEstado() == Orden.EstadoOrden.ACEPTADA);
+        if (aceptada.isEmpty()) {
+            return Optional.empty();
+        }
+        Orden orden = aceptada.get();
+        OrdenRequest request;
+        try {
+            request = objectMapper.readValue(orden.getSolicitud(), OrdenRequest.class);
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La solicitud registrada de la orden es inválida: " + e.getOriginalMessage());
+        }
+        completar(orden, request, null);
+        orden.setEstado(Orden.EstadoOrden.PENDIENTE);
+        orden.setSolicitud(null);
+
+        orden = ordenRepository.save(orden);
+        contadorClientesFrecuentes.registrarOrden(orden.getUsuario().getId(), orden.getId(), orden.getFechaCreacion());
+        ventasProductos.registrarVenta(cantidadesPorProducto(orden));
+        topVendidos.registrarOrden(orden);
+        actividadClientes.registrarOrden(orden);
+        return Optional.of(mapToDto(orden));
+    }
+
+    @Override
+    @Transactional
+    public Optional<OrdenResponse> rechazarOrdenAceptada(Long id, String motivo) {
+        return ordenRepository.findById(id)
+                .filter(orden -> orden.getEstado() == Orden.EstadoOrden.ACEPTADA)
+                .map(orden -> {
+                    orden.setEstado(Orden.EstadoOrden.RECHAZADA);
+                    orden.setMotivoRechazo(motivo != null && motivo.length() > 500 ? motivo.substring(0, 500) : motivo);
+                    orden.setSolicitud(null);
+                    return mapToDto(ordenRepository.save(orden));
+                });
+    }
+
+    @Override
+    public List<Long> obtenerIdsOrdenesAceptadas(LocalDateTime creadasAntesDe, int limite) {
+        return ordenRepository.findIdsByEstadoCreadasAntesDe(Orden.EstadoOrden.ACEPTADA, creadasAntesDe, PageRequest.of(0, limite));
+    }
+
+    /**
+     * Agrega los detalles de la solicitud a la orden, toma su stock y calcula subtotal, descuentos y total.
+     * @param asignacionPrevia Stock ya tomado en los carriles para esta solicitud, o null para tomarlo aquí.
+     */
+    private void completar(Orden nuevaOrden, OrdenRequest request, CarrilesStock.Asignacion asignacionPrevia) {
+        Usuario usuario = nuevaOrden.getUsuario();
         BigDecimal subtotalCalculado = BigDecimal.ZERO;
-        BigDecimal descuentoTotalAplicado = BigDecimal.ZERO;
         LocalDateTime ahora = LocalDateTime.now();
-
-        LocalDateTime fechaInicioDescuento = LocalDateTime.parse(descuentoFechaInicioStr);
-        LocalDateTime fechaFinDescuento = LocalDateTime.parse(descuentoFechaFinStr);
-        boolean isWithinTimeRange = ahora.isAfter(fechaInicioDescuento) && ahora.isBefore(fechaFinDescuento);
+        nuevaOrden.setStockReservado(reservasHabilitadas);
+        nuevaOrden.setFechaReserva(reservasHabilitadas ? ahora : null);
 
         boolean isFrequentCustomer = usuarioService.esClienteFrecuente(usuario.getId(), minOrdersForFrequentCustomer, frequentCustomerPeriodDays);
 
-        for (OrdenDetalleRequest detalleRequest : request.getDetalles()) {
-            Producto producto = productoRepository.findById(detalleRequest.getProductoId())
-                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Producto no encontrado con ID: " + detalleRequest.getProductoId()));
+        Set<Long> productoIds = request.getDetalles().stream()
+                .map(OrdenDetalleRequest::getProductoId)
+                .collect(Collectors.toSet());
+        Map<Long, Producto> productosPorId = productoRepository.findAllConInventarioByIdIn(productoIds).stream()
+                .collect(Collectors.toMap(Producto::getId, Function.identity()));
+        Map<Long, Integer> cantidadesPorProducto = new TreeMap<>();
 
-            Inventario inventario = inventarioRepository.findByProductoId(producto.getId())
-                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Inventario no encontrado para el producto con ID: " + producto.getId()));
+        for (OrdenDetalleRequest detalleRequest : request.getDetalles()) {
+            Producto producto = productosPorId.get(detalleRequest.getProductoId());
+            if (producto == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Producto no encontrado con ID: " + detalleRequest.getProductoId());
+            }
 
-            if (inventario.getCantidadDisponible() < detalleRequest.getCantidad()) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No hay suficiente stock para el producto " + producto.getNombre());
+            if (producto.getInventario() == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Inventario no encontrado para el producto con ID: " + producto.getId());
             }
 
             OrdenDetalle detalle = new OrdenDetalle();
@@ -127,76 +347,514 @@ public class OrdenServiceImpl implements OrdenService {
             nuevaOrden.addDetalle(detalle); 
             subtotalCalculado = subtotalCalculado.add(detalle.getSubtotalLinea());
 
-            inventario.setCantidadDisponible(inventario.getCantidadDisponible() - detalleRequest.getCantidad());
-            inventarioRepository.save(inventario);
+            cantidadesPorProducto.merge(producto.getId(), detalleRequest.getCantidad(), Integer::sum);
         }
 
-        nuevaOrden.setSubtotal(subtotalCalculado);
-
-        BigDecimal totalOrden = subtotalCalculado;
-
-        if (isWithinTimeRange) {
-            BigDecimal descuento10Porc = totalOrden.multiply(BigDecimal.valueOf(0.10));
-            totalOrden = totalOrden.subtract(descuento10Porc);
-            descuentoTotalAplicado = descuentoTotalAplicado.add(descuento10Porc);
+        // Ordenado por ID de producto para que órdenes concurrentes bloqueen las filas en el mismo orden.
+        // El resto se valida con un UPDATE condicional (o en los carriles de stock, si están habilitados);
+        // los productos calientes, al final y en memoria.
+        Map<Long, Integer> cantidadesCalientes = new TreeMap<>();
+        Map<Long, Integer> cantidadesCarriles = new TreeMap<>();
+        for (Map.Entry<Long, Integer> entrada : cantidadesPorProducto.entrySet()) {
+            if (asignacionPrevia != null && asignacionPrevia.cantidades().containsKey(entrada.getKey())) {
+                continue;
+            }
+            if (libroStockCaliente.gestiona(entrada.getKey())) {
+                cantidadesCalientes.put(entrada.getKey(), entrada.getValue());
+                continue;
+            }
+            if (carrilesStock.habilitado()) {
+                cantidadesCarriles.put(entrada.getKey(), entrada.getValue());
+                continue;
+            }
+            Producto producto = productosPorId.get(entrada.getKey());
+            if (!tomarStock(producto, entrada.getValue(), ahora)) {
+                throw sinStock(producto);
+            }
         }
-
-        if (isWithinTimeRange && request.getAplicarDescuentoAleatorio() && random.nextDouble() < probabilidadDescuentoAleatorio) {
-            BigDecimal descuento50Porc = totalOrden.multiply(BigDecimal.valueOf(0.50)); // Aplica sobre el subtotal ya con 10%
-            totalOrden = totalOrden.subtract(descuento50Porc);
-            descuentoTotalAplicado = descuentoTotalAplicado.add(descuento50Porc);
+        CarrilesStock.Asignacion asignacion = asignacionPrevia;
+        if (asignacion == null && !cantidadesCarriles.isEmpty()) {
+            asignacion = carrilesStock.tomarTodos(cantidadesCarriles);
         }
-
-        if (isFrequentCustomer) {
-            BigDecimal descuento5Porc = totalOrden.multiply(BigDecimal.valueOf(0.05)); // Aplica sobre el total actual
-            totalOrden = totalOrden.subtract(descuento5Porc);
-            descuentoTotalAplicado = descuentoTotalAplicado.add(descuento5Porc);
+        if (asignacion != null) {
+            asignacion.faltante().ifPresent(productoId -> {
+                throw sinStock(productosPorId.get(productoId));
+            });
+        }
+        if (!cantidadesCalientes.isEmpty()) {
+            Optional<Long> faltante = libroStockCaliente.tomarTodos(cantidadesCalientes);
+            if (faltante.isPresent()) {
+                if (asignacion != null) {
+                    asignacion.devolver();
+                }
+                throw sinStock(productosPorId.get(faltante.get()));
+            }
+        }
+        if (asignacion != null) {
+            // Al final: si algo anterior falla, las filas de la asignación no quedan bloqueadas por esta transacción
+            // (un punto de guardado no libera sus bloqueos) y la devolución no tiene que esperar a que termine.
+            carrilesStock.confirmar(asignacion);
         }
 
-        nuevaOrden.setDescuentoTotal(descuentoTotalAplicado);
-        nuevaOrden.setTotal(totalOrden);
+        nuevaOrden.setSubtotal(subtotalCalculado);
 
-        nuevaOrden = ordenRepository.save(nuevaOrden);
-        return mapToDto(nuevaOrden);
+        ResultadoDescuento descuento = politicaDescuentos.aplicar(subtotalCalculado, new ContextoDescuento(
+                ahora, Boolean.TRUE.equals(request.getAplicarDescuentoAleatorio()), isFrequentCustomer));
+        nuevaOrden.setDescuentoTotal(descuento.descuentoTotal());
+        nuevaOrden.setTotal(descuento.total());
     }
 
     @Override
     public Optional<OrdenResponse> obtenerOrdenPorId(Long id) {
-        return ordenRepository.findById(id).map(this::mapToDto);
+        Optional<OrdenResponse> orden = ordenRepository.findConDetallesById(id).map(this::mapToDto);
+        return orden.isPresent() ? orden : ordenArchivadaRepository.findConDetallesById(id).map(this::mapToDto);
     }
 
     @Override
     public List<OrdenResponse> obtenerTodasLasOrdenes() {
-        return ordenRepository.findAll().stream()
+        return ordenRepository.findAllConDetalles().stream()
                 .map(this::mapToDto)
                 .collect(Collectors.toList());
     }
 
     @Override
     public List<OrdenResponse> obtenerOrdenesPorUsuario(Long usuarioId) {
-        Usuario usuario = usuarioRepository.findById(usuarioId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado con ID: " + usuarioId));
-        return ordenRepository.findByUsuario(usuario).stream()
-                .map(this::mapToDto)
+        List<OrdenResponse> ordenes = Stream.concat(
+                        ordenRepository.findConDetallesByUsuarioIdOrderByIdAsc(usuarioId).stream().map(this::mapToDto),
+                        ordenArchivadaRepository.findConDetallesByUsuarioIdOrderByIdAsc(usuarioId).stream().map(this::mapToDto))
+                .sorted(Comparator.comparing(OrdenResponse::getId))
+                .collect(Collectors.toList());
+        // Solo sin órdenes hace falta distinguir entre usuario sin historial y usuario inexistente.
+        if (ordenes.isEmpty() && !usuarioRepository.existsById(usuarioId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado con ID: " + usuarioId);
+        }
+        return ordenes;
+    }
+
+    @Override
+    public List<OrdenResumenResponse> obtenerResumenes() {
+        return ordenRepository.findAllResumenes();
+    }
+
+    @Override
+    public List<OrdenResumenResponse> obtenerResumenesPorUsuario(Long usuarioId) {
+        List<OrdenResumenResponse> resumenes = Stream.concat(
+                        ordenRepository.findResumenesByUsuarioId(usuarioId).stream(),
+                        ordenArchivadaRepository.findResumenesByUsuarioId(usuarioId).stream())
+                .sorted(Comparator.comparing(OrdenResumenResponse::getId))
+                .collect(Collectors.toList());
+        if (resumenes.isEmpty() && !usuarioRepository.existsById(usuarioId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado con ID: " + usuarioId);
+        }
+        return resumenes;
+    }
+
+    /**
+     * Página de órdenes, de la más reciente a la más antigua.
+     * @param cursor Cursor devuelto por la página anterior, o null para la primera página.
+     */
+    @Override
+    public PaginaOrdenesResponse<OrdenResponse> obtenerPaginaOrdenes(String cursor, int limite) {
+        return armarPagina(idsPagina(null, cursor, limite), limite, this::cargarOrdenes,
+                orden -> new CursorOrden(orden.getFechaCreacion(), orden.getId()));
+    }
+
+    @Override
+    public PaginaOrdenesResponse<OrdenResponse> obtenerPaginaOrdenesPorUsuario(Long usuarioId, String cursor, int limite) {
+        return armarPagina(idsPagina(usuarioId, cursor, limite), limite, this::cargarOrdenes,
+                orden -> new CursorOrden(orden.getFechaCreacion(), orden.getId()));
+    }
+
+    @Override
+    public PaginaOrdenesResponse<OrdenResumenResponse> obtenerPaginaResumenes(String cursor, int limite) {
+        return armarPagina(idsPagina(null, cursor, limite), limite, this::cargarResumenes,
+                resumen -> new CursorOrden(resumen.getFechaCreacion(), resumen.getId()));
+    }
+
+    @Override
+    public PaginaOrdenesResponse<OrdenResumenResponse> obtenerPaginaResumenesPorUsuario(Long usuarioId, String cursor, int limite) {
+        return armarPagina(idsPagina(usuarioId, cursor, limite), limite, this::cargarResumenes,
+                resumen -> new CursorOrden(resumen.getFechaCreacion(), resumen.getId()));
+    }
+
+    /**
+     * Búsqueda de órdenes por los filtros presentes, paginada igual que {@link #obtenerPaginaOrdenes}.
+     */
+    @Override
+    public PaginaOrdenesResponse<OrdenResponse> buscarOrdenes(FiltroOrdenes filtro, String cursor, int limite) {
+        return armarPagina(idsBusqueda(filtro, cursor, limite), limite, this::cargarOrdenes,
+                orden -> new CursorOrden(orden.getFechaCreacion(), orden.getId()));
+    }
+
+    @Override
+    public PaginaOrdenesResponse<OrdenResumenResponse> buscarResumenes(FiltroOrdenes filtro, String cursor, int limite) {
+        return armarPagina(idsBusqueda(filtro, cursor, limite), limite, this::cargarResumenes,
+                resumen -> new CursorOrden(resumen.getFechaCreacion(), resumen.getId()));
+    }
+
+    private List<Long> idsBusqueda(FiltroOrdenes filtro, String cursor, int limite) {
+        validarFiltro(filtro);
+        int tamano = validarLimite(limite) + 1;
+        Specification<Orden> criterio = OrdenSpecifications.conFiltro(filtro);
+        if (cursor != null) {
+            CursorOrden desde = decodificarCursor(cursor);
+            criterio = criterio.and(OrdenSpecifications.despuesDe(desde.fechaCreacion(), desde.id()));
+        }
+        return idsPorCriterio(criterio, tamano);
+    }
+
+    private List<Long> idsPorCriterio(Specification<Orden> criterio, int limite) {
+        return ordenRepository.findIdsBy(criterio, ORDEN_PAGINA, limite);
+    }
+
+    private static void validarFiltro(FiltroOrdenes filtro) {
+        if (filtro.getDesde() != null && filtro.getHasta() != null && !filtro.getDesde().isBefore(filtro.getHasta())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La fecha 'desde' debe ser anterior a 'hasta'");
+        }
+        if (filtro.getTotalMinimo() != null && filtro.getTotalMaximo() != null
+                && filtro.getTotalMinimo().compareTo(filtro.getTotalMaximo()) > 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El total mínimo no puede ser mayor que el total máximo");
+        }
+    }
+
+    /**
+     * IDs de la página (uno más que el límite, para saber si hay otra página), de todas las órdenes
+     * o de las de un usuario; las de un usuario incluyen sus órdenes archivadas.
+     */
+    private List<Long> idsPagina(Long usuarioId, String cursor, int limite) {
+        PageRequest pagina = PageRequest.of(0, validarLimite(limite) + 1);
+        CursorOrden desde = cursor == null ? null : decodificarCursor(cursor);
+        if (usuarioId == null) {
+            return desde == null
+                    ? ordenRepository.findIdsPrimeraPagina(pagina)
+                    : ordenRepository.findIdsPaginaDespuesDe(desde.fechaCreacion(), desde.id(), pagina);
+        }
+        List<Object[]> claves = new ArrayList<>(desde == null
+                ? ordenRepository.findClavesPrimeraPaginaByUsuarioId(usuarioId, pagina)
+                : ordenRepository.findClavesPaginaDespuesDeByUsuarioId(usuarioId, desde.fechaCreacion(), desde.id(), pagina));
+        claves.addAll(desde == null
+                ? ordenArchivadaRepository.findClavesPrimeraPaginaByUsuarioId(usuarioId, pagina)
+                : ordenArchivadaRepository.findClavesPaginaDespuesDeByUsuarioId(usuarioId, desde.fechaCreacion(), desde.id(), pagina));
+        // Cada lista viene ordenada por (fechaCreacion, id) descendente: la página son las primeras de ambas juntas.
+        claves.sort(Comparator.comparing((Object[] clave) -> (LocalDateTime) clave[1])
+                .thenComparing(clave -> (Long) clave[0])
+                .reversed());
+        List<Long> ids = claves.stream()
+                .limit(pagina.getPageSize())
+                .map(clave -> (Long) clave[0])
                 .collect(Collectors.toList());
+        // Solo una página vacía necesita distinguir entre usuario sin órdenes y usuario inexistente.
+        if (ids.isEmpty() && !usuarioRepository.existsById(usuarioId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado con ID: " + usuarioId);
+        }
+        return ids;
+    }
+
+    private int validarLimite(int limite) {
+        if (limite < 1 || limite > limiteMaximoPagina) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El límite debe estar entre 1 y " + limiteMaximoPagina);
+        }
+        return limite;
+    }
+
+    // Las que no están en ordenes se buscan en el archivo (del usuario, o archivadas entre las dos consultas).
+    private Map<Long, OrdenResponse> cargarOrdenes(List<Long> ids) {
+        Map<Long, OrdenResponse> ordenes = ordenRepository.findConDetallesByIdIn(ids).stream()
+                .collect(Collectors.toMap(Orden::getId, this::mapToDto));
+        List<Long> faltantes = faltantes(ids, ordenes);
+        if (!faltantes.isEmpty()) {
+            ordenArchivadaRepository.findConDetallesByIdIn(faltantes).forEach(orden -> ordenes.put(orden.getId(), mapToDto(orden)));
+        }
+        return ordenes;
+    }
+
+    private Map<Long, OrdenResumenResponse> cargarResumenes(List<Long> ids) {
+        Map<Long, OrdenResumenResponse> resumenes = ordenRepository.findResumenesByIdIn(ids).stream()
+                .collect(Collectors.toMap(OrdenResumenResponse::getId, Function.identity()));
+        List<Long> faltantes = faltantes(ids, resumenes);
+        if (!faltantes.isEmpty()) {
+            ordenArchivadaRepository.findResumenesByIdIn(faltantes).forEach(resumen -> resumenes.put(resumen.getId(), resumen));
+        }
+        return resumenes;
+    }
+
+    private static List<Long> faltantes(List<Long> ids, Map<Long, ?> encontradas) {
+        return ids.stream().filter(id -> !encontradas.containsKey(id)).collect(Collectors.toList());
+    }
+
+    /**
+     * Carga los elementos de la página en una sola consulta, en el orden de los IDs,
+     * y arma el cursor a partir del último.
+     */
+    private <T> PaginaOrdenesResponse<T> armarPagina(List<Long> ids, int limite, Function<List<Long>, Map<Long, T>> cargar,
+                                                     Function<T, CursorOrden> cursorDe) {
+        boolean hayMas = ids.size() > limite;
+        List<Long> idsPagina = hayMas ? ids.subList(0, limite) : ids;
+        Map<Long, T> porId = idsPagina.isEmpty() ? Map.of() : cargar.apply(idsPagina);
+        List<T> elementos = idsPagina.stream()
+                .map(porId::get)
+                .filter(Objects::nonNull) // eliminada entre las dos consultas
+                .collect(Collectors.toList());
+        String siguienteCursor = hayMas && !elementos.isEmpty()
+                ? codificarCursor(cursorDe.apply(elementos.get(elementos.size() - 1)))
+                : null;
+        return PaginaOrdenesResponse.<T>builder().ordenes(elementos).siguienteCursor(siguienteCursor).build();
+    }
+
+    private record CursorOrden(LocalDateTime fechaCreacion, Long id) {
+    }
+
+    // El cursor es opaco para el cliente: "fechaCreacion|id" en Base64 URL-safe.
+    private static String codificarCursor(CursorOrden cursor) {
+        String valor = cursor.fechaCreacion() + "|" + cursor.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static CursorOrden decodificarCursor(String cursor) {
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separador = valor.lastIndexOf('|');
+            return new CursorOrden(LocalDateTime.parse(valor.substring(0, separador)), Long.valueOf(valor.substring(separador + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor de paginación inválido");
+        }
     }
 
     @Override
     @Transactional
     public Optional<OrdenResponse> actualizarEstadoOrden(Long id, Orden.EstadoOrden nuevoEstado) {
         return ordenRepository.findById(id).map(orden -> {
-            orden.setEstado(nuevoEstado);
+            if (orden.getEstado() == nuevoEstado) {
+                return mapToDto(orden);
+            }
+            if (!orden.getEstado().puedePasarA(nuevoEstado)) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "La orden " + id + " no puede pasar de " + orden.getEstado() + " a " + nuevoEstado);
+            }
+            aplicarEstado(orden, nuevoEstado, LocalDateTime.now());
             return mapToDto(ordenRepository.save(orden));
         });
     }
 
+    /**
+     * Pasa al estado destino las órdenes indicadas, o las que cumplen el filtro, sin cargarlas: lee su estado
+     * con una proyección y las cambia con un solo UPDATE, aplicando solo las transiciones de
+     * {@link Orden.EstadoOrden#puedePasarA}. Las órdenes con stock reservado sí se cargan, porque la reserva
+     * se confirma o se libera línea por línea igual que en {@link #actualizarEstadoOrden}.
+     * @return El resultado de cada orden, en el orden pedido.
+     */
+    @Override
+    @Transactional
+    public TransicionEstadoResponse actualizarEstadoOrdenes(List<Long> ids, FiltroOrdenes filtro, Orden.EstadoOrden destino) {
+        List<Long> objetivo = idsTransicion(ids, filtro);
+        Map<Long, ResultadoTransicionEstado> resultados = new LinkedHashMap<>();
+        objetivo.forEach(id -> resultados.put(id, resultadoTransicion(id, ResultadoTransicionEstado.Resultado.NO_ENCONTRADA, null)));
+
+        List<Long> sinReserva = new ArrayList<>();
+        List<Long> conReserva = new ArrayList<>();
+        for (Object[] fila : ordenRepository.findEstadosByIdIn(objetivo)) {
+            Long id = (Long) fila[0];
+            Orden.EstadoOrden estado = (Orden.EstadoOrden) fila[1];
+            ResultadoTransicionEstado.Resultado resultado;
+            if (estado == destino) {
+                resultado = ResultadoTransicionEstado.Resultado.SIN_CAMBIOS;
+            } else if (!estado.puedePasarA(destino)) {
+                resultado = ResultadoTransicionEstado.Resultado.TRANSICION_INVALIDA;
+            } else {
+                resultado = ResultadoTransicionEstado.Resultado.ACTUALIZADA;
+                (Boolean.TRUE.equals(fila[2]) ? conReserva : sinReserva).add(id);
+            }
+            resultados.put(id, resultadoTransicion(id, resultado, estado));
+        }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        if (!sinReserva.isEmpty()) {
+            List<Orden.EstadoOrden> origenes = Arrays.stream(Orden.EstadoOrden.values())
+                    .filter(estado -> estado.puedePasarA(destino))
+                    .collect(Collectors.toList());
+            int filas = ordenRepository.actualizarEstados(sinReserva, origenes, destino, ahora);
+            if (filas < sinReserva.size()) {
+                // Alguna cambió (o se eliminó) entre la lectura y el UPDATE: solo las que quedaron en el destino
+                // se actualizaron aquí.
+                Set<Long> enDestino = ordenRepository.findEstadosByIdIn(sinReserva).stream()
+                        .filter(fila -> fila[1] == destino)
+                        .map(fila -> (Long) fila[0])
+                        .collect(Collectors.toSet());
+                sinReserva.stream()
+                        .filter(id -> !enDestino.contains(id))
+                        .forEach(id -> resultados.get(id).setResultado(ResultadoTransicionEstado.Resultado.CONFLICTO));
+            }
+            if (destino == Orden.EstadoOrden.CANCELADA) {
+                List<Long> canceladas = sinReserva.stream()
+                        .filter(id -> resultados.get(id).getResultado() == ResultadoTransicionEstado.Resultado.ACTUALIZADA)
+                        .toList();
+                ventasProductos.descontarVentaOrdenes(canceladas);
+                actividadClientes.descontarOrdenes(canceladas);
+            }
+        }
+        if (!conReserva.isEmpty()) {
+            for (Orden orden : ordenRepository.findByIdIn(conReserva)) {
+                if (orden.getEstado().puedePasarA(destino)) {
+                    aplicarEstado(orden, destino, ahora);
+                } else {
+                    resultados.get(orden.getId()).setResultado(ResultadoTransicionEstado.Resultado.CONFLICTO);
+                }
+            }
+        }
+
+        int actualizadas = (int) resultados.values().stream()
+                .filter(resultado -> resultado.getResultado() == ResultadoTransicionEstado.Resultado.ACTUALIZADA)
+                .count();
+        log.info("Cambio de estado en bloque a {}: {} de {} órdenes actualizadas", destino, actualizadas, objetivo.size());
+        return TransicionEstadoResponse.builder()
+                .estado(destino)
+                .actualizadas(actualizadas)
+                .resultados(new ArrayList<>(resultados.values()))
+                .build();
+    }
+
+    /**
+     * IDs sin repetir de la lista o, si no hay lista, los que selecciona el filtro; en ambos casos como mucho
+     * {@code app.ordenes.transiciones.max-ordenes}.
+     */
+    private List<Long> idsTransicion(List<Long> ids, FiltroOrdenes filtro) {
+        if ((ids == null || ids.isEmpty()) == (filtro == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Debe indicar la lista de órdenes o un filtro, pero no ambos");
+        }
+        List<Long> objetivo;
+        if (filtro != null) {
+            validarFiltro(filtro);
+            objetivo = idsPorCriterio(OrdenSpecifications.conFiltro(filtro), maxOrdenesTransicion + 1);
+        } else {
+            objetivo = new ArrayList<>(new LinkedHashSet<>(ids));
+        }
+        if (objetivo.size() > maxOrdenesTransicion) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Se pueden cambiar como mucho " + maxOrdenesTransicion + " órdenes por solicitud");
+        }
+        return objetivo;
+    }
+
+    private static ResultadoTransicionEstado resultadoTransicion(Long id, ResultadoTransicionEstado.Resultado resultado,
+                                                                 Orden.EstadoOrden estadoAnterior) {
+        return ResultadoTransicionEstado.builder().ordenId(id).resultado(resultado).estadoAnterior(estadoAnterior).build();
+    }
+
+    private void aplicarEstado(Orden orden, Orden.EstadoOrden nuevoEstado, LocalDateTime ahora) {
+        boolean cancelada = orden.getEstado() == Orden.EstadoOrden.CANCELADA;
+        if (!cancelada && nuevoEstado == Orden.EstadoOrden.CANCELADA) {
+            ventasProductos.descontarVenta(cantidadesPorProducto(orden));
+        } else if (cancelada && nuevoEstado != Orden.EstadoOrden.CANCELADA) {
+            ventasProductos.registrarVenta(cantidadesPorProducto(orden));
+        }
+        if (ActividadClientes.cuenta(orden.getEstado()) && !ActividadClientes.cuenta(nuevoEstado)) {
+            actividadClientes.descontarOrden(orden);
+        } else if (!ActividadClientes.cuenta(orden.getEstado()) && ActividadClientes.cuenta(nuevoEstado)) {
+            actividadClientes.registrarOrden(orden);
+        }
+        if (Boolean.TRUE.equals(orden.getStockReservado())) {
+            if (nuevoEstado == Orden.EstadoOrden.CANCELADA) {
+                liberarReserva(orden, ahora);
+            } else if (nuevoEstado != Orden.EstadoOrden.PENDIENTE) {
+                confirmarReserva(orden, ahora);
+            }
+        }
+        orden.setEstado(nuevoEstado);
+    }
+
     @Override
     @Transactional
     public boolean eliminarOrden(Long id) {
-        if (ordenRepository.existsById(id)) {
-            ordenRepository.deleteById(id);
+        return ordenRepository.findById(id).map(orden -> {
+            if (Boolean.TRUE.equals(orden.getStockReservado())) {
+                liberarReserva(orden, LocalDateTime.now());
+            }
+            if (orden.getEstado() != Orden.EstadoOrden.CANCELADA) {
+                ventasProductos.descontarVenta(cantidadesPorProducto(orden));
+            }
+            if (ActividadClientes.cuenta(orden.getEstado())) {
+                actividadClientes.descontarOrden(orden);
+            }
+            ordenRepository.delete(orden);
+            if (ContadorClientesFrecuentes.cuenta(orden.getEstado())) {
+                contadorClientesFrecuentes.eliminarOrden(orden.getUsuario().getId(), orden.getId(), orden.getFechaCreacion());
+            }
             return true;
+        }).orElse(false);
+    }
+
+    /**
+     * Expira un lote de órdenes PENDIENTE cuya reserva de stock es anterior al límite:
+     * las cancela y devuelve sus unidades reservadas a disponible con una sentencia por producto.
+     * @return Cantidad de órdenes expiradas en el lote.
+     */
+    @Override
+    @Transactional
+    public int expirarReservasVencidas(LocalDateTime limite, int tamanoLote) {
+        List<Long> ids = ordenRepository.findIdsConReservaVencida(Orden.EstadoOrden.PENDIENTE, limite, PageRequest.of(0, tamanoLote));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Orden> ordenes = ordenRepository.findByIdIn(ids);
+        Map<Long, Integer> cantidadesALiberar = new TreeMap<>();
+        for (Orden orden : ordenes) {
+            cantidadesPorProducto(orden).forEach((productoId, cantidad) -> cantidadesALiberar.merge(productoId, cantidad, Integer::sum));
+            actividadClientes.descontarOrden(orden);
+            orden.setEstado(Orden.EstadoOrden.CANCELADA);
+            orden.setStockReservado(false);
+            orden.setFechaReserva(null);
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        cantidadesALiberar.forEach((productoId, cantidad) -> liberarStock(productoId, cantidad, ahora));
+        ventasProductos.descontarVenta(cantidadesALiberar);
+        return ordenes.size();
+    }
+
+    private boolean tomarStock(Producto producto, int cantidad, LocalDateTime ahora) {
+        if (producto.getInventario().getCantidadDisponible() < cantidad) {
+            return false;
+        }
+        int filas = reservasHabilitadas
+                ? inventarioRepository.reservarDisponible(producto.getId(), cantidad, ahora)
+                : inventarioRepository.descontarDisponible(producto.getId(), cantidad, ahora);
+        return filas == 1;
+    }
+
+    private ResponseStatusException sinStock(Producto producto) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "No hay suficiente stock para el producto " + producto.getNombre());
+    }
+
+    private void confirmarReserva(Orden orden, LocalDateTime ahora) {
+        cantidadesPorProducto(orden).forEach((productoId, cantidad) -> {
+            if (libroStockCaliente.gestiona(productoId)) {
+                libroStockCaliente.confirmar(productoId, cantidad);
+            } else if (inventarioRepository.confirmarReservada(productoId, cantidad, ahora) == 0) {
+                log.warn("Orden {}: no se pudieron confirmar {} unidades reservadas del producto {}", orden.getId(), cantidad, productoId);
+            }
+        });
+        orden.setStockReservado(false);
+        orden.setFechaReserva(null);
+    }
+
+    private void liberarReserva(Orden orden, LocalDateTime ahora) {
+        cantidadesPorProducto(orden).forEach((productoId, cantidad) -> liberarStock(productoId, cantidad, ahora));
+        orden.setStockReservado(false);
+        orden.setFechaReserva(null);
+    }
+
+    private void liberarStock(Long productoId, int cantidad, LocalDateTime ahora) {
+        if (libroStockCaliente.gestiona(productoId)) {
+            libroStockCaliente.devolver(productoId, cantidad);
+        } else if (inventarioRepository.liberarReservada(productoId, cantidad, ahora) == 0) {
+            log.warn("No se pudieron liberar {} unidades reservadas del producto {}", cantidad, productoId);
+        }
+    }
+
+    private Map<Long, Integer> cantidadesPorProducto(Orden orden) {
+        Map<Long, Integer> cantidades = new TreeMap<>();
+        for (OrdenDetalle detalle : orden.getDetalles()) {
+            cantidades.merge(detalle.getProducto().getId(), detalle.getCantidad(), Integer::sum);
         }
-        return false;
+        return cantidades;
     }
 }
\ No newline at end of file
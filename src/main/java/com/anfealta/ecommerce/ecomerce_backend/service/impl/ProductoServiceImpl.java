@@ -2,29 +2,40 @@ package com.anfealta.ecommerce.ecomerce_backend.service.impl;
 
 import com.anfealta.ecommerce.ecomerce_backend.dto.ProductoRequest;
 import com.anfealta.ecommerce.ecomerce_backend.dto.ProductoResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.TopSoldProductResponse;
 import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
 import com.anfealta.ecommerce.ecomerce_backend.repository.ProductoRepository;
-import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenDetalleRepository; 
 import com.anfealta.ecommerce.ecomerce_backend.service.ProductoService;
+import com.anfealta.ecommerce.ecomerce_backend.service.ventas.TopVendidos;
+import com.anfealta.ecommerce.ecomerce_backend.service.ventas.VentasProductos;
 import jakarta.transaction.Transactional;
-import org.springframework.data.domain.PageRequest; 
 import org.springframework.stereotype.Service;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 public class ProductoServiceImpl implements ProductoService {
 
+    private static final Pattern VENTANA = Pattern.compile("(\\d{1,5})([mhd])");
+
     private final ProductoRepository productoRepository;
-    private final OrdenDetalleRepository ordenDetalleRepository; 
+    private final VentasProductos ventasProductos;
+    private final TopVendidos topVendidos;
 
-    public ProductoServiceImpl(ProductoRepository productoRepository, OrdenDetalleRepository ordenDetalleRepository) {
+    public ProductoServiceImpl(ProductoRepository productoRepository, VentasProductos ventasProductos, TopVendidos topVendidos) {
         this.productoRepository = productoRepository;
-        this.ordenDetalleRepository = ordenDetalleRepository;
+        this.ventasProductos = ventasProductos;
+        this.topVendidos = topVendidos;
     }
 
     private ProductoResponse mapToDto(Producto producto) {
@@ -60,6 +71,7 @@ public class ProductoServiceImpl implements ProductoService {
         }
         Producto producto = mapToEntity(request);
         producto = productoRepository.save(producto);
+        ventasProductos.registrarProducto(producto.getId());
         return mapToDto(producto);
     }
 
@@ -96,6 +108,7 @@ public class ProductoServiceImpl implements ProductoService {
     @Transactional
     public boolean eliminarProducto(Long id) {
         if (productoRepository.existsById(id)) {
+            ventasProductos.descartarProducto(id);
             productoRepository.deleteById(id);
             return true;
         }
@@ -125,17 +138,63 @@ public class ProductoServiceImpl implements ProductoService {
 
     @Override
     public List<ProductoResponse> obtenerTop5ProductosMasVendidos() {
-        List<Object[]> results = ordenDetalleRepository.findTop5MostSoldProducts(PageRequest.of(0, 5));
-        return results.stream()
-                .map(result -> {
-                    Long productId = (Long) result[0];
-                    String productName = (String) result[1];
-                    Long totalSold = (Long) result[2]; 
-                    return ProductoResponse.builder()
-                            .id(productId)
-                            .nombre(productName)
-                            .build();
+        List<VentasProductos.ProductoVendido> masVendidos = ventasProductos.masVendidos(5);
+        Map<Long, Producto> productos = productoRepository.findAllById(masVendidos.stream().map(VentasProductos.ProductoVendido::productoId).toList())
+                .stream()
+                .collect(Collectors.toMap(Producto::getId, Function.identity()));
+        return masVendidos.stream()
+                .filter(vendido -> productos.containsKey(vendido.productoId()))
+                .map(vendido -> {
+                    ProductoResponse response = mapToDto(productos.get(vendido.productoId()));
+                    response.setTotalVendido(vendido.unidades());
+                    return response;
                 })
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Productos más vendidos en la ventana reciente, estimados en memoria por {@link TopVendidos}.
+     * @param ventana Duración como {@code 30m}, {@code 1h} o {@code 7d}.
+     * @param categoria Categoría (sin distinguir mayúsculas), o null para todas.
+     */
+    @Override
+    public List<TopSoldProductResponse> obtenerTopVendidos(String ventana, String categoria, int k) {
+        if (!topVendidos.habilitado()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "El reporte de más vendidos por ventana está deshabilitado");
+        }
+        Duration duracion = parsearVentana(ventana);
+        if (k < 1 || k > topVendidos.capacidad()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "k debe estar entre 1 y " + topVendidos.capacidad());
+        }
+        List<TopVendidos.Estimacion> estimaciones = topVendidos.masVendidos(duracion, categoria, k);
+        Map<Long, Producto> productos = productoRepository.findAllById(estimaciones.stream().map(TopVendidos.Estimacion::productoId).toList())
+                .stream()
+                .collect(Collectors.toMap(Producto::getId, Function.identity()));
+        return estimaciones.stream()
+                .filter(estimacion -> productos.containsKey(estimacion.productoId()))
+                .map(estimacion -> TopSoldProductResponse.builder()
+                        .productId(estimacion.productoId())
+                        .productName(productos.get(estimacion.productoId()).getNombre())
+                        .totalSold(estimacion.unidades())
+                        .maxError(estimacion.errorMaximo())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private static Duration parsearVentana(String ventana) {
+        Matcher matcher = VENTANA.matcher(ventana == null ? "" : ventana.trim().toLowerCase(Locale.ROOT));
+        if (!matcher.matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ventana inválida: use minutos, horas o días, p. ej. 30m, 1h o 7d");
+        }
+        long cantidad = Long.parseLong(matcher.group(1));
+        Duration duracion = switch (matcher.group(2)) {
+            case "m" -> Duration.ofMinutes(cantidad);
+            case "h" -> Duration.ofHours(cantidad);
+            default -> Duration.ofDays(cantidad);
+        };
+        if (duracion.isZero() || duracion.compareTo(TopVendidos.VENTANA_MAXIMA) > 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La ventana debe estar entre 1m y 7d");
+        }
+        return duracion;
+    }
 }
\ No newline at end of file
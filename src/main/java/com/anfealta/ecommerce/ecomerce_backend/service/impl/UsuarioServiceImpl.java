@@ -6,13 +6,15 @@ import com.anfealta.ecommerce.ecomerce_backend.dto.UsuarioResponse;
 import com.anfealta.ecommerce.ecomerce_backend.dto.UsuarioUpdateRequest;
 import com.anfealta.ecommerce.ecomerce_backend.entity.RolUsuario;
 import com.anfealta.ecommerce.ecomerce_backend.entity.Usuario;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenArchivadaRepository;
 import com.anfealta.ecommerce.ecomerce_backend.repository.UsuarioRepository;
-import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenRepository; // Importa OrdenRepository
+import com.anfealta.ecommerce.ecomerce_backend.service.ContadorClientesFrecuentes;
 import com.anfealta.ecommerce.ecomerce_backend.service.UsuarioService;
+import com.anfealta.ecommerce.ecomerce_backend.service.clientes.ActividadClientes;
+import com.anfealta.ecommerce.ecomerce_backend.service.ventas.VentasProductos;
 import jakarta.transaction.Transactional;
 
 import org.springframework.context.annotation.Primary;
-import org.springframework.data.domain.PageRequest; // Importa PageRequest
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -20,10 +22,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime; // Importa LocalDateTime
+import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -34,12 +39,20 @@ public class UsuarioServiceImpl implements UsuarioService {
 
     private final UsuarioRepository usuarioRepository;
     private final PasswordEncoder passwordEncoder; 
-    private final OrdenRepository ordenRepository; 
-
-    public UsuarioServiceImpl(UsuarioRepository usuarioRepository, PasswordEncoder passwordEncoder, OrdenRepository ordenRepository) {
+    private final ActividadClientes actividadClientes;
+    private final ContadorClientesFrecuentes contadorClientesFrecuentes;
+    private final VentasProductos ventasProductos;
+    private final OrdenArchivadaRepository ordenArchivadaRepository;
+
+    public UsuarioServiceImpl(UsuarioRepository usuarioRepository, PasswordEncoder passwordEncoder, ActividadClientes actividadClientes,
+                              ContadorClientesFrecuentes contadorClientesFrecuentes, VentasProductos ventasProductos,
+                              OrdenArchivadaRepository ordenArchivadaRepository) {
         this.usuarioRepository = usuarioRepository;
         this.passwordEncoder = passwordEncoder;
-        this.ordenRepository = ordenRepository;
+        this.actividadClientes = actividadClientes;
+        this.contadorClientesFrecuentes = contadorClientesFrecuentes;
+        this.ventasProductos = ventasProductos;
+        this.ordenArchivadaRepository = ordenArchivadaRepository;
     }
 
     private UsuarioResponse mapToDto(Usuario usuario) {
@@ -123,7 +136,13 @@ public class UsuarioServiceImpl implements UsuarioService {
     @Transactional
     public boolean eliminarUsuario(Long id) {
         if (usuarioRepository.existsById(id)) {
+            // Sus órdenes activas se eliminan en cascada; las archivadas, que no están mapeadas desde Usuario, aquí.
+            ventasProductos.descontarVentaUsuario(id);
+            actividadClientes.descartarUsuario(id);
+            ordenArchivadaRepository.eliminarDetallesPorUsuario(id);
+            ordenArchivadaRepository.eliminarPorUsuario(id);
             usuarioRepository.deleteById(id);
+            contadorClientesFrecuentes.descartarUsuario(id);
             return true;
         }
         return false;
@@ -137,25 +156,47 @@ public class UsuarioServiceImpl implements UsuarioService {
 
     @Override
     public List<TopFrequentCustomerResponse> obtenerTop5ClientesFrecuentes() {
-        List<Object[]> results = ordenRepository.findTop5FrequentCustomers(PageRequest.of(0, 5));
-        return results.stream()
-                .map(result -> {
-                    Long customerId = (Long) result[0];
-                    String customerUsername = (String) result[1];
-                    Long totalOrders = (Long) result[2];
-                    return TopFrequentCustomerResponse.builder()
-                            .customerId(customerId)
-                            .customerUsername(customerUsername)
-                            .totalOrders(totalOrders)
-                            .build();
-                })
+        return mapClientes(actividadClientes.masFrecuentes(5));
+    }
+
+    /**
+     * Clientes con más órdenes entre ambos días (inclusive), leídos del resumen diario de actividad.
+     * @param desde Primer día; por defecto, 29 días antes de {@code hasta}.
+     * @param hasta Último día; por defecto, hoy.
+     */
+    @Override
+    public List<TopFrequentCustomerResponse> obtenerClientesFrecuentes(LocalDate desde, LocalDate hasta, int k) {
+        LocalDate ultimo = hasta != null ? hasta : LocalDate.now();
+        LocalDate primero = desde != null ? desde : ultimo.minusDays(29);
+        if (primero.isAfter(ultimo)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La fecha desde no puede ser posterior a la fecha hasta");
+        }
+        if (ChronoUnit.DAYS.between(primero, ultimo) >= actividadClientes.maxDias()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El rango puede abarcar como mucho " + actividadClientes.maxDias() + " días");
+        }
+        if (k < 1 || k > actividadClientes.maxClientes()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "k debe estar entre 1 y " + actividadClientes.maxClientes());
+        }
+        return mapClientes(actividadClientes.masFrecuentes(primero, ultimo, k));
+    }
+
+    private List<TopFrequentCustomerResponse> mapClientes(List<ActividadClientes.ClienteFrecuente> clientes) {
+        Map<Long, Usuario> usuarios = usuarioRepository.findAllById(clientes.stream().map(ActividadClientes.ClienteFrecuente::usuarioId).toList())
+                .stream()
+                .collect(Collectors.toMap(Usuario::getId, usuario -> usuario));
+        return clientes.stream()
+                .filter(cliente -> usuarios.containsKey(cliente.usuarioId()))
+                .map(cliente -> TopFrequentCustomerResponse.builder()
+                        .customerId(cliente.usuarioId())
+                        .customerUsername(usuarios.get(cliente.usuarioId()).getNombreUsuario())
+                        .totalOrders(cliente.ordenes())
+                        .totalRevenue(cliente.ingresos())
+                        .build())
                 .collect(Collectors.toList());
     }
 
     @Override
     public boolean esClienteFrecuente(Long usuarioId, int minOrders, int daysPeriod) {
-        LocalDateTime fechaDesde = LocalDateTime.now().minusDays(daysPeriod);
-        long ordersCount = ordenRepository.countByUsuarioIdAndFechaCreacionAfter(usuarioId, fechaDesde);
-        return ordersCount >= minOrders;
+        return contadorClientesFrecuentes.esClienteFrecuente(usuarioId, minOrders, daysPeriod, LocalDateTime.now());
     }
 }
\ No newline at end of file
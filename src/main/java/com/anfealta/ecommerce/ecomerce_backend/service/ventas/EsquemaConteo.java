@@ -0,0 +1,71 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.ventas;
+
+import java.util.Arrays;
+
+/**
+ * Esquema Count-Min: {@code profundidad} filas de {@code ancho} contadores, cada fila con su propia función hash.
+ * Una clave suma en un contador por fila y su estimación es el mínimo de esos contadores.
+ * <p>
+ * La estimación nunca es menor que el valor real y, con probabilidad al menos {@code 1 - e^-profundidad}, no lo
+ * supera en más de {@code e / ancho} del total sumado ({@link #errorMaximo}). Dos esquemas de igual tamaño se
+ * combinan sumando sus contadores, con las mismas garantías sobre el total combinado. No es seguro para hilos.
+ */
+final class EsquemaConteo {
+
+    private final int profundidad;
+    private final int ancho;
+    private final long[] contadores;
+    private long total;
+
+    EsquemaConteo(int profundidad, int ancho) {
+        this.profundidad = profundidad;
+        this.ancho = ancho;
+        this.contadores = new long[profundidad * ancho];
+    }
+
+    void sumar(long clave, long cantidad) {
+        for (int fila = 0; fila < profundidad; fila++) {
+            contadores[fila * ancho + columna(clave, fila)] += cantidad;
+        }
+        total += cantidad;
+    }
+
+    long estimar(long clave) {
+        long minimo = Long.MAX_VALUE;
+        for (int fila = 0; fila < profundidad; fila++) {
+            minimo = Math.min(minimo, contadores[fila * ancho + columna(clave, fila)]);
+        }
+        return minimo;
+    }
+
+    /** Suma los contadores de otro esquema de igual tamaño a este. */
+    void combinar(EsquemaConteo otro) {
+        for (int i = 0; i < contadores.length; i++) {
+            contadores[i] += otro.contadores[i];
+        }
+        total += otro.total;
+    }
+
+    long total() {
+        return total;
+    }
+
+    /** Sobreestimación máxima de {@link #estimar}, con probabilidad {@code 1 - e^-profundidad}. */
+    long errorMaximo() {
+        return (long) Math.ceil(Math.E / ancho * total);
+    }
+
+    void limpiar() {
+        Arrays.fill(contadores, 0);
+        total = 0;
+    }
+
+    /** Hash de la clave para la fila: la mezcla final de SplitMix64 sobre la clave desplazada por fila. */
+    private int columna(long clave, int fila) {
+        long h = clave + (fila + 1) * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        h ^= h >>> 31;
+        return (int) Math.floorMod(h, (long) ancho);
+    }
+}
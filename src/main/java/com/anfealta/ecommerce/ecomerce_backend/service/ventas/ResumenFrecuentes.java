@@ -0,0 +1,78 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.ventas;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Resumen Space-Saving con pesos: vigila como mucho {@code capacidad} claves. Una clave nueva con el resumen lleno
+ * reemplaza a la de menor cuenta y hereda esa cuenta.
+ * <p>
+ * Toda clave con más de {@code total / capacidad} unidades está vigilada, y la cuenta de una clave vigilada nunca
+ * es menor que su valor real; una clave no vigilada tiene como mucho la menor cuenta del resumen. No es seguro para
+ * hilos.
+ */
+final class ResumenFrecuentes {
+
+    private static final Comparator<Contador> POR_CUENTA = Comparator
+            .comparingLong((Contador contador) -> contador.cuenta)
+            .thenComparingLong(contador -> contador.clave);
+
+    private final int capacidad;
+    private final Map<Long, Contador> contadores;
+    private final NavigableSet<Contador> porCuenta = new TreeSet<>(POR_CUENTA);
+
+    ResumenFrecuentes(int capacidad) {
+        this.capacidad = capacidad;
+        this.contadores = new HashMap<>(capacidad * 2);
+    }
+
+    void sumar(long clave, long cantidad) {
+        Contador contador = contadores.get(clave);
+        if (contador == null) {
+            if (contadores.size() < capacidad) {
+                contador = new Contador(clave);
+            } else {
+                contador = porCuenta.pollFirst();
+                contadores.remove(contador.clave);
+                contador.clave = clave;
+            }
+            contadores.put(clave, contador);
+        } else {
+            porCuenta.remove(contador);
+        }
+        contador.cuenta += cantidad;
+        porCuenta.add(contador);
+    }
+
+    /** Cota superior de las unidades de la clave: su cuenta si está vigilada; si no, la menor cuenta del resumen. */
+    long cota(long clave) {
+        Contador contador = contadores.get(clave);
+        if (contador != null) {
+            return contador.cuenta;
+        }
+        return contadores.size() < capacidad ? 0 : porCuenta.first().cuenta;
+    }
+
+    void agregarClaves(Collection<Long> destino) {
+        destino.addAll(contadores.keySet());
+    }
+
+    void limpiar() {
+        contadores.clear();
+        porCuenta.clear();
+    }
+
+    private static final class Contador {
+
+        private long clave;
+        private long cuenta;
+
+        Contador(long clave) {
+            this.clave = clave;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.ventas;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.entity.OrdenDetalle;
+import com.anfealta.ecommerce.ecomerce_backend.service.EfectosTransaccion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Productos más vendidos en una ventana reciente (última hora, día o semana), en total o por categoría, calculados
+ * en memoria a partir de las líneas de las órdenes creadas, sin consultas de agregación.
+ * <p>
+ * Cada categoría (y el total) tiene tres anillos de baldes: de 10 minutos para la última hora, de 2 horas para el
+ * último día y de 1 día para la última semana. Cada balde guarda un {@link ResumenFrecuentes} de
+ * {@code app.productos.top-vendidos.capacidad} productos y un {@link EsquemaConteo} de
+ * {@code app.productos.top-vendidos.profundidad} x {@code app.productos.top-vendidos.ancho}. Una consulta usa el
+ * anillo más fino que cubre la ventana y los baldes que la cubren (el actual, parcial, incluido), así que la ventana
+ * efectiva se redondea al tamaño del balde.
+ * <p>
+ * Garantías sobre las {@code N} unidades de la ventana: todo producto con más de {@code N / capacidad} unidades es
+ * candidato (lo vigila el resumen de al menos un balde); la estimación de cada candidato nunca es menor que sus
+ * unidades reales y, con probabilidad {@code 1 - e^-profundidad}, no las supera en más de
+ * {@code e / ancho * N}, que se informa como {@code errorMaximo}. Se cuentan las unidades pedidas: las
+ * cancelaciones no se descuentan. Cada nodo ve solo sus propias órdenes.
+ * <p>
+ * Memoria: los baldes se crean al recibir ventas, hasta 25 por categoría, de unos {@code 8 * profundidad * ancho}
+ * bytes más el resumen. Se siguen como mucho {@code app.productos.top-vendidos.max-categorias} categorías; las
+ * ventas de las demás solo cuentan en el total.
+ */
+@Component
+public class TopVendidos {
+
+    private static final Logger log = LoggerFactory.getLogger(TopVendidos.class);
+
+    /** Producto con sus unidades estimadas en la ventana y la sobreestimación máxima de la estimación. */
+    public record Estimacion(Long productoId, long unidades, long errorMaximo) {
+    }
+
+    private record Linea(Long productoId, String categoria, int cantidad) {
+    }
+
+    public static final Duration VENTANA_MAXIMA = Duration.ofDays(7);
+
+    private static final Duration[] DURACION_BALDES = {Duration.ofMinutes(10), Duration.ofHours(2), Duration.ofDays(1)};
+    private static final int[] CANTIDAD_BALDES = {6, 12, 7};
+
+    private static final Comparator<Estimacion> MAS_VENDIDO = Comparator
+            .comparingLong(Estimacion::unidades).reversed()
+            .thenComparing(Estimacion::productoId);
+
+    private final boolean habilitado;
+    private final int capacidad;
+    private final int profundidad;
+    private final int ancho;
+    private final int maxCategorias;
+    private final Motor total;
+    private final Map<String, Motor> categorias = new HashMap<>();
+
+    public TopVendidos(@Value("${app.productos.top-vendidos.habilitado:true}") boolean habilitado,
+                       @Value("${app.productos.top-vendidos.capacidad:100}") int capacidad,
+                       @Value("${app.productos.top-vendidos.profundidad:4}") int profundidad,
+                       @Value("${app.productos.top-vendidos.ancho:1024}") int ancho,
+                       @Value("${app.productos.top-vendidos.max-categorias:50}") int maxCategorias) {
+        this.habilitado = habilitado;
+        this.capacidad = Math.max(1, capacidad);
+        this.profundidad = Math.max(1, profundidad);
+        this.ancho = Math.max(1, ancho);
+        this.maxCategorias = maxCategorias;
+        this.total = new Motor();
+    }
+
+    public boolean habilitado() {
+        return habilitado;
+    }
+
+    /** Máximo de productos que puede pedir una consulta. */
+    public int capacidad() {
+        return capacidad;
+    }
+
+    /**
+     * Registra las líneas de una orden nueva cuando se confirma la transacción en curso.
+     */
+    public void registrarOrden(Orden orden) {
+        if (!habilitado || orden.getDetalles().isEmpty()) {
+            return;
+        }
+        LocalDateTime fecha = orden.getFechaCreacion() != null ? orden.getFechaCreacion() : LocalDateTime.now();
+        List<Linea> lineas = new ArrayList<>(orden.getDetalles().size());
+        for (OrdenDetalle detalle : orden.getDetalles()) {
+            lineas.add(new Linea(detalle.getProducto().getId(), detalle.getProducto().getCategoria(), detalle.getCantidad()));
+        }
+        EfectosTransaccion.alConfirmar(() -> lineas.forEach(linea -> registrar(linea.productoId(), linea.categoria(), linea.cantidad(), fecha)));
+    }
+
+    /**
+     * Suma unidades vendidas de un producto, en el total y en su categoría.
+     */
+    public void registrar(long productoId, String categoria, long cantidad, LocalDateTime fecha) {
+        long segundo = fecha.toEpochSecond(ZoneOffset.UTC);
+        total.sumar(productoId, cantidad, segundo);
+        if (categoria != null) {
+            Motor motor = motorCategoria(clave(categoria), true);
+            if (motor != null) {
+                motor.sumar(productoId, cantidad, segundo);
+            }
+        }
+    }
+
+    /**
+     * Los {@code k} productos más vendidos en la ventana que termina en {@code ahora}.
+     * @param ventana Entre un balde (10 minutos) y {@link #VENTANA_MAXIMA}.
+     * @param categoria Categoría, o null para todas.
+     * @param k Entre 1 y {@link #capacidad()}.
+     */
+    public List<Estimacion> masVendidos(Duration ventana, String categoria, int k, LocalDateTime ahora) {
+        if (ventana.compareTo(VENTANA_MAXIMA) > 0 || k < 1 || k > capacidad) {
+            throw new IllegalArgumentException("Ventana o cantidad fuera de rango: " + ventana + ", " + k);
+        }
+        Motor motor = categoria == null ? total : motorCategoria(clave(categoria), false);
+        if (motor == null) {
+            return List.of();
+        }
+        return motor.masVendidos(ventana, k, ahora.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    public List<Estimacion> masVendidos(Duration ventana, String categoria, int k) {
+        return masVendidos(ventana, categoria, k, LocalDateTime.now());
+    }
+
+    private Motor motorCategoria(String clave, boolean crear) {
+        synchronized (categorias) {
+            Motor motor = categorias.get(clave);
+            if (motor == null && crear) {
+                if (categorias.size() >= maxCategorias) {
+                    return null;
+                }
+                motor = new Motor();
+                categorias.put(clave, motor);
+                if (categorias.size() == maxCategorias) {
+                    log.warn("Se alcanzó el máximo de {} categorías en el top de vendidos; las nuevas solo cuentan en el total",
+                            maxCategorias);
+                }
+            }
+            return motor;
+        }
+    }
+
+    private static String clave(String categoria) {
+        return categoria.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Anillos de baldes de una categoría (o del total). */
+    private final class Motor {
+
+        private final Anillo[] anillos = new Anillo[DURACION_BALDES.length];
+
+        Motor() {
+            for (int i = 0; i < anillos.length; i++) {
+                anillos[i] = new Anillo(DURACION_BALDES[i].toSeconds(), CANTIDAD_BALDES[i]);
+            }
+        }
+
+        synchronized void sumar(long productoId, long cantidad, long segundo) {
+            for (Anillo anillo : anillos) {
+                Balde balde = anillo.balde(Math.floorDiv(segundo, anillo.segundosBalde), true);
+                if (balde != null) {
+                    balde.esquema.sumar(productoId, cantidad);
+                    balde.resumen.sumar(productoId, cantidad);
+                }
+            }
+        }
+
+        synchronized List<Estimacion> masVendidos(Duration ventana, int k, long segundo) {
+            Anillo anillo = anillos[anillos.length - 1];
+            for (Anillo candidato : anillos) {
+                if (candidato.segundosBalde * candidato.baldes.length >= ventana.toSeconds()) {
+                    anillo = candidato;
+                    break;
+                }
+            }
+            long cantidad = Math.max(1, (ventana.toSeconds() + anillo.segundosBalde - 1) / anillo.segundosBalde);
+            long actual = Math.floorDiv(segundo, anillo.segundosBalde);
+
+            EsquemaConteo combinado = new EsquemaConteo(profundidad, ancho);
+            List<Balde> baldes = new ArrayList<>();
+            Set<Long> candidatos = new HashSet<>();
+            for (long indice = actual - cantidad + 1; indice <= actual; indice++) {
+                Balde balde = anillo.balde(indice, false);
+                if (balde != null) {
+                    combinado.combinar(balde.esquema);
+                    balde.resumen.agregarClaves(candidatos);
+                    baldes.add(balde);
+                }
+            }
+
+            long errorMaximo = combinado.errorMaximo();
+            List<Estimacion> estimaciones = new ArrayList<>(candidatos.size());
+            for (Long productoId : candidatos) {
+                // Ambas son cotas superiores: se informa la menor.
+                long cotaResumenes = 0;
+                for (Balde balde : baldes) {
+                    cotaResumenes += balde.resumen.cota(productoId);
+                }
+                estimaciones.add(new Estimacion(productoId, Math.min(combinado.estimar(productoId), cotaResumenes), errorMaximo));
+            }
+            estimaciones.sort(MAS_VENDIDO);
+            return List.copyOf(estimaciones.subList(0, Math.min(k, estimaciones.size())));
+        }
+    }
+
+    /** Baldes consecutivos de igual duración; la posición de un balde se reutiliza cuando su periodo vence. */
+    private final class Anillo {
+
+        private final long segundosBalde;
+        private final Balde[] baldes;
+
+        Anillo(long segundosBalde, int cantidad) {
+            this.segundosBalde = segundosBalde;
+            this.baldes = new Balde[cantidad];
+        }
+
+        Balde balde(long indice, boolean crear) {
+            int posicion = (int) Math.floorMod(indice, (long) baldes.length);
+            Balde balde = baldes[posicion];
+            if (balde != null && balde.indice == indice) {
+                return balde;
+            }
+            if (!crear || (balde != null && indice < balde.indice)) {
+                // No existe, o es más antiguo que lo que guarda el anillo.
+                return null;
+            }
+            if (balde == null) {
+                balde = new Balde(new EsquemaConteo(profundidad, ancho), new ResumenFrecuentes(capacidad));
+                baldes[posicion] = balde;
+            } else {
+                balde.esquema.limpiar();
+                balde.resumen.limpiar();
+            }
+            balde.indice = indice;
+            return balde;
+        }
+    }
+
+    private static final class Balde {
+
+        private final EsquemaConteo esquema;
+        private final ResumenFrecuentes resumen;
+        private long indice;
+
+        Balde(EsquemaConteo esquema, ResumenFrecuentes resumen) {
+            this.esquema = esquema;
+            this.resumen = resumen;
+        }
+    }
+}
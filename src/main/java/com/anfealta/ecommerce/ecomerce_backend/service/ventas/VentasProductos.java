@@ -0,0 +1,334 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.ventas;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.entity.ProductoVentas;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenDetalleRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.ProductoVentasRepository;
+import com.anfealta.ecommerce.ecomerce_backend.service.EfectosTransaccion;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Unidades vendidas por producto para el reporte de más vendidos, sin agrupar todas las líneas de orden en cada
+ * consulta.
+ * <p>
+ * Las unidades de las órdenes creadas, canceladas o eliminadas se acumulan por producto al confirmarse su
+ * transacción y se escriben en {@code producto_ventas} (write-behind) cada {@code app.productos.ventas.flush-ms},
+ * con un UPDATE por producto y en orden de ID en una sola transacción; así la transacción de la orden no bloquea
+ * la fila de los productos más vendidos. Lo pendiente se pierde si la instancia se cae antes de escribirlo, y
+ * {@link #reconstruir} recalcula la tabla desde las líneas. En memoria se guarda además el ranking completo, que
+ * se siembra desde la tabla (más lo pendiente) en el primer acceso y se ajusta con cada confirmación; como otras
+ * instancias también escriben la tabla, se vuelve a sembrar cada {@code app.productos.ventas.resincronizacion-ms}.
+ * Con {@code app.productos.ventas.cache.habilitada=false} el reporte lee la tabla por su índice.
+ */
+@Component
+public class VentasProductos {
+
+    private static final Logger log = LoggerFactory.getLogger(VentasProductos.class);
+
+    /** Unidades vendidas de un producto. */
+    public record ProductoVendido(Long productoId, long unidades) {
+    }
+
+    private static final Comparator<ProductoVendido> MAS_VENDIDO = Comparator
+            .comparingLong(ProductoVendido::unidades).reversed()
+            .thenComparing(ProductoVendido::productoId);
+
+    private final ProductoVentasRepository productoVentasRepository;
+    private final OrdenDetalleRepository ordenDetalleRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean cacheHabilitada;
+
+    // Protegidos por el monitor de ranking.
+    private final NavigableSet<ProductoVendido> ranking = new TreeSet<>(MAS_VENDIDO);
+    private final Map<Long, Long> unidades = new HashMap<>();
+    private final Map<Long, Long> pendientes = new HashMap<>();
+    private volatile boolean cargado;
+
+    // Se toma antes que el de ranking: mientras se escribe lo pendiente no se siembra el ranking desde la tabla.
+    private final Object escritura = new Object();
+
+    public VentasProductos(ProductoVentasRepository productoVentasRepository,
+                           OrdenDetalleRepository ordenDetalleRepository,
+                           EntityManager entityManager,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.productos.ventas.cache.habilitada:true}") boolean cacheHabilitada) {
+        this.productoVentasRepository = productoVentasRepository;
+        this.ordenDetalleRepository = ordenDetalleRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cacheHabilitada = cacheHabilitada;
+    }
+
+    /**
+     * Los {@code limite} productos más vendidos, de más a menos unidades; solo los que tienen ventas.
+     */
+    public List<ProductoVendido> masVendidos(int limite) {
+        if (!cacheHabilitada) {
+            return productoVentasRepository.findVendidos(PageRequest.of(0, limite)).stream()
+                    .map(fila -> new ProductoVendido((Long) fila[0], (Long) fila[1]))
+                    .toList();
+        }
+        if (!cargado) {
+            synchronized (escritura) {
+                synchronized (ranking) {
+                    if (!cargado) {
+                        cargar();
+                    }
+                }
+            }
+        }
+        synchronized (ranking) {
+            return ranking.stream().limit(limite).toList();
+        }
+    }
+
+    /**
+     * Suma las unidades de una orden nueva (o que deja de estar cancelada) al confirmarse la transacción en curso.
+     * @param cantidades Unidades por ID de producto.
+     */
+    public void registrarVenta(Map<Long, Integer> cantidades) {
+        ajustar(cantidades, 1);
+    }
+
+    /**
+     * Resta las unidades de una orden cancelada o eliminada al confirmarse la transacción en curso.
+     * @param cantidades Unidades por ID de producto.
+     */
+    public void descontarVenta(Map<Long, Integer> cantidades) {
+        ajustar(cantidades, -1);
+    }
+
+    /**
+     * Resta las unidades de las órdenes indicadas, leyéndolas agrupadas por producto (para cambios de estado
+     * en bloque que no cargan las órdenes).
+     */
+    public void descontarVentaOrdenes(Collection<Long> ordenIds) {
+        if (!ordenIds.isEmpty()) {
+            ajustar(cantidades(ordenDetalleRepository.sumarCantidadesPorProductoDeOrdenes(ordenIds)), -1);
+        }
+    }
+
+    /**
+     * Resta las unidades de las órdenes no canceladas, activas y archivadas, de un usuario que va a eliminarse
+     * junto con sus órdenes.
+     */
+    public void descontarVentaUsuario(Long usuarioId) {
+        Map<Long, Integer> cantidades = cantidades(ordenDetalleRepository.sumarCantidadesPorProductoDeUsuario(usuarioId));
+        cantidades(ordenDetalleRepository.sumarCantidadesArchivadasPorProductoDeUsuario(usuarioId))
+                .forEach((productoId, cantidad) -> cantidades.merge(productoId, cantidad, Integer::sum));
+        ajustar(cantidades, -1);
+    }
+
+    /**
+     * Crea la fila en cero de un producto nuevo, para que sus ventas solo tengan que actualizarla.
+     */
+    public void registrarProducto(Long productoId) {
+        productoVentasRepository.save(ProductoVentas.builder()
+                .productoId(productoId)
+                .unidadesVendidas(0L)
+                .fechaActualizacion(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * Elimina la fila de un producto que va a eliminarse.
+     */
+    public void descartarProducto(Long productoId) {
+        productoVentasRepository.eliminarPorProducto(productoId);
+        EfectosTransaccion.alConfirmar(() -> {
+            synchronized (ranking) {
+                pendientes.remove(productoId);
+                Long anteriores = unidades.remove(productoId);
+                if (anteriores != null) {
+                    ranking.remove(new ProductoVendido(productoId, anteriores));
+                }
+            }
+        });
+    }
+
+    private void ajustar(Map<Long, Integer> cantidades, int signo) {
+        if (cantidades.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> deltas = new HashMap<>();
+        cantidades.forEach((productoId, cantidad) -> deltas.merge(productoId, (long) signo * cantidad, Long::sum));
+        EfectosTransaccion.alConfirmar(() -> {
+            synchronized (ranking) {
+                deltas.forEach((productoId, delta) -> pendientes.merge(productoId, delta, Long::sum));
+                aplicar(deltas);
+            }
+        });
+    }
+
+    /**
+     * Escribe en {@code producto_ventas} las unidades acumuladas de cada producto, en una sola transacción.
+     * Si la escritura falla, se conservan para el siguiente intento.
+     */
+    @Scheduled(fixedDelayString = "${app.productos.ventas.flush-ms:1000}")
+    public void flush() {
+        synchronized (escritura) {
+            Map<Long, Long> deltas = new TreeMap<>();
+            synchronized (ranking) {
+                pendientes.forEach((productoId, delta) -> {
+                    if (delta != 0) {
+                        deltas.put(productoId, delta);
+                    }
+                });
+                pendientes.clear();
+            }
+            if (deltas.isEmpty()) {
+                return;
+            }
+            LocalDateTime ahora = LocalDateTime.now();
+            try {
+                transactionTemplate.executeWithoutResult(status -> deltas.forEach((productoId, delta) -> {
+                    if (productoVentasRepository.sumarUnidades(productoId, delta, ahora) == 0) {
+                        crearFila(productoId, delta, ahora);
+                    }
+                }));
+            } catch (RuntimeException e) {
+                synchronized (ranking) {
+                    deltas.forEach((productoId, delta) -> pendientes.merge(productoId, delta, Long::sum));
+                }
+                log.warn("No se pudieron escribir las ventas de {} productos en producto_ventas; se reintentará", deltas.size(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        flush();
+    }
+
+    /** Crea la fila de un producto anterior a la tabla y sin reconstruir todavía; nada si el producto ya no existe. */
+    private void crearFila(Long productoId, long delta, LocalDateTime ahora) {
+        int creadas = entityManager.createQuery("INSERT INTO ProductoVentas (productoId, unidadesVendidas, fechaActualizacion) " +
+                        "SELECT p.id, :unidades, :ahora FROM Producto p WHERE p.id = :productoId")
+                .setParameter("unidades", Math.max(0, delta))
+                .setParameter("ahora", ahora)
+                .setParameter("productoId", productoId)
+                .executeUpdate();
+        if (creadas > 0) {
+            log.warn("Producto {} sin fila en producto_ventas; se crea con {} unidades", productoId, Math.max(0, delta));
+        }
+    }
+
+    // Con el monitor de ranking tomado.
+    private void aplicar(Map<Long, Long> deltas) {
+        if (!cargado) {
+            return;
+        }
+        deltas.forEach((productoId, delta) -> {
+            long anteriores = unidades.getOrDefault(productoId, 0L);
+            long nuevas = Math.max(0, anteriores + delta);
+            if (anteriores > 0) {
+                ranking.remove(new ProductoVendido(productoId, anteriores));
+            }
+            if (nuevas > 0) {
+                unidades.put(productoId, nuevas);
+                ranking.add(new ProductoVendido(productoId, nuevas));
+            } else {
+                unidades.remove(productoId);
+            }
+        });
+    }
+
+    /**
+     * Vuelve a sembrar el ranking desde la tabla, para recoger las ventas registradas por otras instancias.
+     */
+    @Scheduled(fixedDelayString = "${app.productos.ventas.resincronizacion-ms:60000}")
+    public void resincronizar() {
+        if (!cacheHabilitada) {
+            return;
+        }
+        synchronized (escritura) {
+            synchronized (ranking) {
+                if (cargado) {
+                    cargar();
+                }
+            }
+        }
+    }
+
+    // Con los monitores de escritura y ranking tomados: lo pendiente aún no está en la tabla.
+    private void cargar() {
+        ranking.clear();
+        unidades.clear();
+        for (Object[] fila : productoVentasRepository.findTodosVendidos()) {
+            unidades.put((Long) fila[0], (Long) fila[1]);
+        }
+        pendientes.forEach((productoId, delta) -> unidades.merge(productoId, delta, Long::sum));
+        unidades.values().removeIf(vendidas -> vendidas <= 0);
+        unidades.forEach((productoId, vendidas) -> ranking.add(new ProductoVendido(productoId, vendidas)));
+        cargado = true;
+    }
+
+    /**
+     * Recalcula {@code producto_ventas} desde las líneas de órdenes (activas y archivadas) no canceladas, con una
+     * fila por producto, y vuelve a sembrar el ranking en memoria.
+     * @return Cantidad de productos con ventas.
+     */
+    public int reconstruir() {
+        synchronized (escritura) {
+            // Las líneas ya incluyen las órdenes confirmadas cuyo ajuste sigue pendiente.
+            synchronized (ranking) {
+                pendientes.clear();
+            }
+            return recalcular();
+        }
+    }
+
+    private int recalcular() {
+        long inicio = System.nanoTime();
+        Integer productos = transactionTemplate.execute(status -> {
+            entityManager.createQuery("DELETE FROM ProductoVentas").executeUpdate();
+            entityManager.createQuery("INSERT INTO ProductoVentas (productoId, unidadesVendidas, fechaActualizacion) " +
+                            "SELECT p.id, " +
+                            "COALESCE((SELECT SUM(d.cantidad) FROM OrdenDetalle d " +
+                            "WHERE d.producto.id = p.id AND d.orden.estado <> :cancelada), 0) + " +
+                            "COALESCE((SELECT SUM(a.cantidad) FROM OrdenDetalleArchivada a " +
+                            "WHERE a.productoId = p.id AND a.orden.estado <> :cancelada), 0), " +
+                            ":ahora FROM Producto p")
+                    .setParameter("cancelada", Orden.EstadoOrden.CANCELADA)
+                    .setParameter("ahora", LocalDateTime.now())
+                    .executeUpdate();
+            return entityManager.createQuery("SELECT COUNT(v) FROM ProductoVentas v WHERE v.unidadesVendidas > 0", Long.class)
+                    .getSingleResult().intValue();
+        });
+        if (cacheHabilitada) {
+            synchronized (ranking) {
+                cargar();
+            }
+        }
+        log.info("producto_ventas reconstruida: {} productos con ventas en {} ms", productos, (System.nanoTime() - inicio) / 1_000_000);
+        return productos;
+    }
+
+    private static Map<Long, Integer> cantidades(List<Object[]> filas) {
+        Map<Long, Integer> cantidades = new TreeMap<>();
+        for (Object[] fila : filas) {
+            cantidades.put((Long) fila[0], ((Number) fila[1]).intValue());
+        }
+        return cantidades;
+    }
+}
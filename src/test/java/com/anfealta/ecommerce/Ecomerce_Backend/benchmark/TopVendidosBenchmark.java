@@ -0,0 +1,158 @@
+package com.anfealta.ecommerce.ecomerce_backend.benchmark;
+
+import com.anfealta.ecommerce.ecomerce_backend.service.ventas.TopVendidos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mide {@link TopVendidos} con un flujo sintético de líneas de orden: 100.000 productos con popularidad Zipf
+ * repartidos en 20 categorías, durante la última semana. {@code registrar} suma una línea ya generada y
+ * {@code consultar} pide los 10 más vendidos de una ventana y categoría al azar.
+ * <p>
+ * {@link #main} compara antes, sobre 5 millones de líneas, los 10 más vendidos de la última hora y de la última
+ * semana con los exactos, e imprime el error observado y el máximo informado.
+ * <p>
+ * No forma parte de la suite de pruebas. Para ejecutarlo, después de {@code mvn test-compile}:
+ * <pre>
+ * mvn dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat cp.txt) org.openjdk.jmh.Main TopVendidosBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class TopVendidosBenchmark {
+
+    private static final int PRODUCTOS = 100_000;
+    private static final int CATEGORIAS = 20;
+    private static final int LINEAS = 1 << 21;
+    private static final LocalDateTime AHORA = LocalDateTime.of(2025, 7, 15, 12, 0);
+    private static final Duration[] VENTANAS = {Duration.ofMinutes(30), Duration.ofHours(1), Duration.ofDays(1), Duration.ofDays(7)};
+
+    private final AtomicInteger siguiente = new AtomicInteger();
+
+    private TopVendidos topVendidos;
+    private long[] productos;
+    private int[] cantidades;
+    private LocalDateTime[] fechas;
+
+    @Setup
+    public void setUp() {
+        topVendidos = new TopVendidos(true, 100, 4, 1024, 50);
+        Random random = new Random(7);
+        double[] acumulados = acumulados();
+        productos = new long[LINEAS];
+        cantidades = new int[LINEAS];
+        fechas = new LocalDateTime[LINEAS];
+        for (int i = 0; i < LINEAS; i++) {
+            productos[i] = productoZipf(random, acumulados);
+            cantidades[i] = 1 + random.nextInt(4);
+            fechas[i] = AHORA.minusMinutes(random.nextInt(7 * 24 * 60));
+            topVendidos.registrar(productos[i], categoria(productos[i]), cantidades[i], fechas[i]);
+        }
+    }
+
+    @Benchmark
+    public void registrar() {
+        int i = siguiente.getAndIncrement() & (LINEAS - 1);
+        topVendidos.registrar(productos[i], categoria(productos[i]), cantidades[i], fechas[i]);
+    }
+
+    @Benchmark
+    public List<TopVendidos.Estimacion> consultar() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String categoria = random.nextBoolean() ? null : "categoria-" + random.nextInt(CATEGORIAS);
+        return topVendidos.masVendidos(VENTANAS[random.nextInt(VENTANAS.length)], categoria, 10, AHORA);
+    }
+
+    private static double[] acumulados() {
+        double[] acumulados = new double[PRODUCTOS];
+        double suma = 0;
+        for (int i = 0; i < PRODUCTOS; i++) {
+            suma += 1.0 / (i + 1);
+            acumulados[i] = suma;
+        }
+        return acumulados;
+    }
+
+    private static long productoZipf(Random random, double[] acumulados) {
+        int posicion = Arrays.binarySearch(acumulados, random.nextDouble() * acumulados[acumulados.length - 1]);
+        return (posicion >= 0 ? posicion : -posicion - 1) + 1;
+    }
+
+    private static String categoria(long productoId) {
+        return "categoria-" + productoId % CATEGORIAS;
+    }
+
+    /** Compara el top 10 estimado con el exacto para una ventana. */
+    private static void verificar(String nombre, TopVendidos topVendidos, Map<Long, Long> exactos, Duration ventana) {
+        List<Long> esperados = exactos.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(10)
+                .map(Map.Entry::getKey)
+                .toList();
+        List<TopVendidos.Estimacion> top = topVendidos.masVendidos(ventana, null, 10, AHORA);
+        long errorObservado = 0;
+        int aciertos = 0;
+        for (TopVendidos.Estimacion estimacion : top) {
+            errorObservado = Math.max(errorObservado, estimacion.unidades() - exactos.getOrDefault(estimacion.productoId(), 0L));
+            if (esperados.contains(estimacion.productoId())) {
+                aciertos++;
+            }
+        }
+        System.out.printf("%s: %d/10 del top exacto, error observado %d, error máximo informado %d%n",
+                nombre, aciertos, errorObservado, top.isEmpty() ? 0 : top.get(0).errorMaximo());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        TopVendidos topVendidos = new TopVendidos(true, 100, 4, 1024, 50);
+        Random random = new Random(11);
+        double[] acumulados = acumulados();
+        Map<Long, Long> ultimaHora = new HashMap<>();
+        Map<Long, Long> ultimaSemana = new HashMap<>();
+        for (int i = 0; i < 5_000_000; i++) {
+            long productoId = productoZipf(random, acumulados);
+            int cantidad = 1 + random.nextInt(4);
+            int minutos = random.nextInt(7 * 24 * 60 - 24 * 60);
+            topVendidos.registrar(productoId, categoria(productoId), cantidad, AHORA.minusMinutes(minutos));
+            ultimaSemana.merge(productoId, (long) cantidad, Long::sum);
+            if (minutos <= 50) {
+                ultimaHora.merge(productoId, (long) cantidad, Long::sum);
+            }
+        }
+        verificar("Última hora", topVendidos, ultimaHora, Duration.ofHours(1));
+        verificar("Última semana", topVendidos, ultimaSemana, Duration.ofDays(7));
+
+        new Runner(new OptionsBuilder()
+                .include(TopVendidosBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,84 @@
+package com.anfealta.ecommerce.ecomerce_backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataSourceConReservaTest {
+
+    private HikariDataSource principal;
+    private HikariDataSource reserva;
+    private DataSourceConReserva dataSource;
+
+    private static HikariDataSource pool(String nombre) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:reserva;DB_CLOSE_DELAY=-1");
+        pool.setPoolName(nombre);
+        pool.setMaximumPoolSize(1);
+        pool.setConnectionTimeout(250);
+        return pool;
+    }
+
+    @BeforeEach
+    void setUp() {
+        principal = pool("principal");
+        reserva = pool("reserva");
+        dataSource = new DataSourceConReserva(principal, reserva);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("getConnection - Con el pool principal agotado, la conexión anidada sale de la reserva")
+    void getConnection_NestedWithPrincipalExhausted_UsesReserve() throws Exception {
+        try (Connection externa = dataSource.getConnection();
+             Connection anidada = dataSource.getConnection()) {
+            assertFalse(externa.isClosed());
+            assertFalse(anidada.isClosed());
+            assertEquals(1, principal.getHikariPoolMXBean().getActiveConnections());
+            assertEquals(1, reserva.getHikariPoolMXBean().getActiveConnections());
+        }
+    }
+
+    @Test
+    @DisplayName("getConnection - Al cerrar la conexión, la siguiente del hilo vuelve al pool principal")
+    void getConnection_AfterClose_UsesPrincipalAgain() throws Exception {
+        Connection primera = dataSource.getConnection();
+        primera.close();
+        primera.close();
+
+        try (Connection segunda = dataSource.getConnection()) {
+            assertEquals(1, principal.getHikariPoolMXBean().getActiveConnections());
+            assertFalse(reserva.isRunning());
+            assertEquals(segunda, segunda);
+        }
+    }
+
+    @Test
+    @DisplayName("getConnection - La conexión abierta por otro hilo no cuenta como anidada")
+    void getConnection_OtherThreadConnection_IsNotNested() throws Exception {
+        try (Connection propia = dataSource.getConnection()) {
+            // El pool principal ya no tiene conexiones, y otro hilo no debe llevarse la de la reserva.
+            CompletableFuture<Boolean> otroHilo = CompletableFuture.supplyAsync(() -> {
+                try (Connection ajena = dataSource.getConnection()) {
+                    return true;
+                } catch (Exception e) {
+                    return false;
+                }
+            });
+            assertFalse(otroHilo.get(5, TimeUnit.SECONDS));
+            assertFalse(reserva.isRunning());
+        }
+    }
+}
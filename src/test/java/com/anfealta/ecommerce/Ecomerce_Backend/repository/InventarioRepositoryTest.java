@@ -0,0 +1,121 @@
+package com.anfealta.ecommerce.ecomerce_backend.repository;
+
+import com.anfealta.ecommerce.ecomerce_backend.config.AppConfig;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Inventario;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Descuentos concurrentes reales contra la base de datos: cada hilo confirma su propia transacción, así que
+ * la prueba no corre dentro de la transacción de {@code @DataJpaTest} y borra lo que creó al terminar.
+ */
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Import(AppConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InventarioRepositoryTest {
+
+    @Autowired
+    private InventarioRepository inventarioRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Producto producto;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        producto = transactionTemplate.execute(status -> {
+            Producto nuevo = productoRepository.save(Producto.builder()
+                    .nombre("Producto concurrente")
+                    .categoria("General")
+                    .sku("CONC-001")
+                    .precio(new BigDecimal("10.00"))
+                    .activo(true)
+                    .build());
+            inventarioRepository.save(Inventario.builder()
+                    .producto(nuevo)
+                    .cantidadDisponible(100)
+                    .cantidadReservada(0)
+                    .cantidadMinima(1)
+                    .build());
+            return nuevo;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionTemplate.executeWithoutResult(status -> {
+            inventarioRepository.findByProductoId(producto.getId()).ifPresent(inventarioRepository::delete);
+            productoRepository.deleteById(producto.getId());
+        });
+    }
+
+    private int disponible() {
+        return inventarioRepository.findByProductoId(producto.getId()).orElseThrow().getCantidadDisponible();
+    }
+
+    @Test
+    @DisplayName("Los descuentos condicionales concurrentes no deben dejar el stock negativo ni vender de más")
+    void descontarDisponible_ConcurrentDecrements_NeverOversells() throws Exception {
+        int hilos = 16;
+        int intentosPorHilo = 10;
+        int cantidad = 3;
+        AtomicInteger exitosos = new AtomicInteger();
+        AtomicInteger minimoVisto = new AtomicInteger(Integer.MAX_VALUE);
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch inicio = new CountDownLatch(1);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            tareas.add(executor.submit(() -> {
+                inicio.await();
+                for (int i = 0; i < intentosPorHilo; i++) {
+                    Integer filas = transactionTemplate.execute(status ->
+                            inventarioRepository.descontarDisponible(producto.getId(), cantidad, LocalDateTime.now()));
+                    if (filas != null && filas == 1) {
+                        exitosos.incrementAndGet();
+                    }
+                    minimoVisto.accumulateAndGet(disponible(), Math::min);
+                }
+                return null;
+            }));
+        }
+        inicio.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // 100 unidades alcanzan para 33 descuentos de 3: sobra 1 y ninguno más puede aplicarse.
+        assertEquals(33, exitosos.get());
+        assertEquals(1, disponible());
+        assertTrue(minimoVisto.get() >= 0);
+    }
+}
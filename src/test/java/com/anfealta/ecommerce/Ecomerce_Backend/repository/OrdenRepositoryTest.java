@@ -0,0 +1,303 @@
+package com.anfealta.ecommerce.ecomerce_backend.repository;
+
+import com.anfealta.ecommerce.ecomerce_backend.config.AppConfig;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResumenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Inventario;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.entity.OrdenDetalle;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
+import com.anfealta.ecommerce.ecomerce_backend.entity.RolUsuario;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Usuario;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cuenta las sentencias SQL de las lecturas de órdenes que alimentan {@code OrdenServiceImpl.mapToDto},
+ * recorriendo las mismas asociaciones que el mapeo, y de la carga de productos al crear una orden.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+@Import(AppConfig.class)
+class OrdenRepositoryTest {
+
+    private static final int ORDENES_POR_USUARIO = 5;
+    private static final int LINEAS_POR_ORDEN = 4;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics estadisticas;
+    private Usuario usuario;
+
+    @BeforeEach
+    void setUp() {
+        estadisticas = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        usuario = usuario("cliente1");
+        Usuario otro = usuario("cliente2");
+        List<Producto> productos = List.of(producto("P-1"), producto("P-2"), producto("P-3"), producto("P-4"));
+        for (int i = 0; i < ORDENES_POR_USUARIO; i++) {
+            orden(usuario, productos);
+            orden(otro, productos);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        estadisticas.clear();
+    }
+
+    private Usuario usuario(String nombre) {
+        Usuario nuevo = Usuario.builder()
+                .nombreUsuario(nombre)
+                .contrasena("secreta")
+                .email(nombre + "@example.com")
+                .roles(Set.of(RolUsuario.USER))
+                .build();
+        entityManager.persist(nuevo);
+        return nuevo;
+    }
+
+    private Producto producto(String sku) {
+        Producto producto = Producto.builder()
+                .nombre("Producto " + sku)
+                .categoria("General")
+                .sku(sku)
+                .precio(new BigDecimal("10.00"))
+                .activo(true)
+                .build();
+        entityManager.persist(producto);
+        entityManager.persist(Inventario.builder().producto(producto).cantidadDisponible(100).cantidadReservada(0).cantidadMinima(1).build());
+        return producto;
+    }
+
+    private void orden(Usuario propietario, List<Producto> productos) {
+        Orden orden = new Orden();
+        orden.setUsuario(propietario);
+        orden.setEstado(Orden.EstadoOrden.PENDIENTE);
+        orden.setSubtotal(new BigDecimal("40.00"));
+        orden.setDescuentoTotal(BigDecimal.ZERO);
+        orden.setTotal(new BigDecimal("40.00"));
+        for (int i = 0; i < LINEAS_POR_ORDEN; i++) {
+            OrdenDetalle detalle = new OrdenDetalle();
+            detalle.setProducto(productos.get(i));
+            detalle.setCantidad(1);
+            detalle.setPrecioUnitario(new BigDecimal("10.00"));
+            detalle.setSubtotalLinea(new BigDecimal("10.00"));
+            orden.addDetalle(detalle);
+        }
+        entityManager.persist(orden);
+    }
+
+    /** Toca las mismas asociaciones que {@code mapToDto}. */
+    private static void recorrer(Orden orden) {
+        orden.getUsuario().getNombreUsuario();
+        for (OrdenDetalle detalle : orden.getDetalles()) {
+            detalle.getProducto().getNombre();
+            detalle.getProducto().getSku();
+        }
+    }
+
+    @Test
+    @DisplayName("Leer una orden con su usuario, líneas y productos debe costar una sola consulta")
+    void findConDetallesById_SingleStatement() {
+        Long id = ordenRepository.findConDetallesByUsuarioIdOrderByIdAsc(usuario.getId()).get(0).getId();
+        entityManager.clear();
+        estadisticas.clear();
+
+        Orden orden = ordenRepository.findConDetallesById(id).orElseThrow();
+        recorrer(orden);
+
+        assertEquals(LINEAS_POR_ORDEN, orden.getDetalles().size());
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Las órdenes de un usuario deben leerse en una sola consulta sin importar cuántas líneas tengan")
+    void findConDetallesByUsuarioId_SingleStatement() {
+        List<Orden> ordenes = ordenRepository.findConDetallesByUsuarioIdOrderByIdAsc(usuario.getId());
+        ordenes.forEach(OrdenRepositoryTest::recorrer);
+
+        assertEquals(ORDENES_POR_USUARIO, ordenes.size());
+        assertTrue(ordenes.stream().allMatch(orden -> orden.getUsuario().getId().equals(usuario.getId())));
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Listar todas las órdenes debe costar una sola consulta y no repetir órdenes por cada línea")
+    void findAllConDetalles_SingleStatement() {
+        List<Orden> ordenes = ordenRepository.findAllConDetalles();
+        ordenes.forEach(OrdenRepositoryTest::recorrer);
+
+        assertEquals(2 * ORDENES_POR_USUARIO, ordenes.size());
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Los resúmenes deben contar las líneas en la base de datos con una sola consulta y sin cargar entidades")
+    void findResumenesByUsuarioId_CountsLinesInSingleStatement() {
+        List<OrdenResumenResponse> resumenes = ordenRepository.findResumenesByUsuarioId(usuario.getId());
+
+        assertEquals(ORDENES_POR_USUARIO, resumenes.size());
+        assertTrue(resumenes.stream().allMatch(resumen -> resumen.getCantidadLineas() == LINEAS_POR_ORDEN));
+        assertTrue(resumenes.stream().allMatch(resumen -> "cliente1".equals(resumen.getNombreUsuario())));
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+        assertEquals(0, estadisticas.getEntityLoadCount());
+    }
+
+    @Test
+    @DisplayName("El historial y el conteo de cliente frecuente deben filtrar por usuario_id sin cargar el usuario, con índice compuesto")
+    void countByUsuarioIdAndFechaCreacionAfter_UsesUserDateIndex() {
+        long recientes = ordenRepository.countByUsuarioIdAndFechaCreacionAfter(usuario.getId(), LocalDateTime.now().minusDays(1));
+
+        assertEquals(ORDENES_POR_USUARIO, recientes);
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+        assertEquals(0, estadisticas.getEntityLoadCount());
+
+        List<?> columnas = entityManager.createNativeQuery("SELECT c.COLUMN_NAME FROM INFORMATION_SCHEMA.INDEX_COLUMNS c "
+                        + "WHERE c.INDEX_NAME = 'IDX_ORDENES_USUARIO_FECHA_CREACION' ORDER BY c.ORDINAL_POSITION")
+                .getResultList();
+        assertEquals(List.of("USUARIO_ID", "FECHA_CREACION"), columnas);
+    }
+
+    @Test
+    @DisplayName("El UPDATE en bloque solo debe cambiar las órdenes en un estado de origen válido y sin reserva, subiendo su versión")
+    void actualizarEstados_OnlyLegalOriginsWithoutReservation() {
+        List<Orden> ordenes = ordenRepository.findAll();
+        ordenes.sort(Comparator.comparing(Orden::getId));
+        ordenes.get(1).setEstado(Orden.EstadoOrden.ENTREGADA);
+        ordenes.get(2).setStockReservado(true);
+        entityManager.flush();
+        Long version = ordenes.get(0).getVersion();
+        List<Long> ids = ordenes.subList(0, 3).stream().map(Orden::getId).toList();
+        entityManager.clear();
+
+        int filas = ordenRepository.actualizarEstados(ids, List.of(Orden.EstadoOrden.PENDIENTE, Orden.EstadoOrden.COMPLETADA),
+                Orden.EstadoOrden.ENVIADA, LocalDateTime.now());
+
+        assertEquals(1, filas);
+        Orden actualizada = ordenRepository.findById(ids.get(0)).orElseThrow();
+        assertEquals(Orden.EstadoOrden.ENVIADA, actualizada.getEstado());
+        assertEquals(version + 1, actualizada.getVersion());
+        assertEquals(Orden.EstadoOrden.ENTREGADA, ordenRepository.findById(ids.get(1)).orElseThrow().getEstado());
+        assertEquals(Orden.EstadoOrden.PENDIENTE, ordenRepository.findById(ids.get(2)).orElseThrow().getEstado());
+    }
+
+    @Test
+    @DisplayName("Una reserva vence contando desde que se tomó, no desde que se creó la orden")
+    void findIdsConReservaVencida_CountsFromReservationTime() {
+        List<Orden> ordenes = ordenRepository.findAll();
+        ordenes.sort(Comparator.comparing(Orden::getId));
+        LocalDateTime ahora = LocalDateTime.now();
+        // Aceptada hace una hora y reservada recién al procesarse en segundo plano.
+        ordenes.get(0).setStockReservado(true);
+        ordenes.get(0).setFechaReserva(ahora.minusMinutes(1));
+        ordenes.get(1).setStockReservado(true);
+        ordenes.get(1).setFechaReserva(ahora.minusMinutes(45));
+        entityManager.flush();
+        entityManager.createQuery("UPDATE Orden o SET o.fechaCreacion = :fecha")
+                .setParameter("fecha", ahora.minusHours(1))
+                .executeUpdate();
+        entityManager.clear();
+
+        List<Long> vencidas = ordenRepository.findIdsConReservaVencida(Orden.EstadoOrden.PENDIENTE, ahora.minusMinutes(30),
+                PageRequest.of(0, 10));
+
+        assertEquals(List.of(ordenes.get(1).getId()), vencidas);
+    }
+
+    @Test
+    @DisplayName("Recorrer las páginas por cursor debe devolver cada orden una vez, desempatando por ID")
+    void findIdsPaginaDespuesDe_WalksAllOrdersOnce() {
+        // La mitad de las órdenes comparte la misma fecha de creación.
+        LocalDateTime mismaFecha = LocalDateTime.of(2025, 7, 1, 10, 0);
+        List<Long> todos = ordenRepository.findAll().stream().map(Orden::getId).sorted().toList();
+        entityManager.createQuery("UPDATE Orden o SET o.fechaCreacion = :fecha WHERE o.id IN :ids")
+                .setParameter("fecha", mismaFecha)
+                .setParameter("ids", todos.subList(0, todos.size() / 2))
+                .executeUpdate();
+        entityManager.clear();
+
+        List<Long> recorridos = new ArrayList<>(ordenRepository.findIdsPrimeraPagina(PageRequest.of(0, 3)));
+        while (recorridos.size() < todos.size()) {
+            Orden ultima = ordenRepository.findById(recorridos.get(recorridos.size() - 1)).orElseThrow();
+            List<Long> pagina = ordenRepository.findIdsPaginaDespuesDe(ultima.getFechaCreacion(), ultima.getId(), PageRequest.of(0, 3));
+            assertFalse(pagina.isEmpty());
+            recorridos.addAll(pagina);
+        }
+
+        // Las empatadas son las más antiguas: van al final, de mayor a menor ID.
+        List<Long> empatadas = new ArrayList<>(todos.subList(0, todos.size() / 2));
+        Collections.reverse(empatadas);
+        assertEquals(todos.size(), Set.copyOf(recorridos).size());
+        assertEquals(empatadas, recorridos.subList(todos.size() - empatadas.size(), todos.size()));
+    }
+
+    @Test
+    @DisplayName("Los productos de una orden y sus inventarios deben leerse en una sola consulta sin importar las líneas")
+    void findAllConInventarioByIdIn_SingleStatementForManyLines() {
+        int lineas = 40;
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < lineas; i++) {
+            ids.add(producto("L-" + i).getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        estadisticas.clear();
+
+        List<Producto> productos = productoRepository.findAllConInventarioByIdIn(ids);
+        // Lo que hace crearOrden con cada línea: leer y validar el stock del inventario.
+        int disponible = productos.stream().mapToInt(producto -> producto.getInventario().getCantidadDisponible()).sum();
+
+        assertEquals(lineas, productos.size());
+        assertEquals(100 * lineas, disponible);
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Sin JOIN FETCH, el inventario perezoso de cada producto cuesta una consulta más")
+    void findAllById_LazyInventario_OneStatementPerProduct() {
+        List<Long> ids = productoRepository.findAll().stream().map(Producto::getId).toList();
+        entityManager.clear();
+        estadisticas.clear();
+
+        List<Producto> productos = productoRepository.findAllById(ids);
+        productos.forEach(producto -> producto.getInventario().getCantidadDisponible());
+
+        assertTrue(estadisticas.getPrepareStatementCount() > productos.size());
+    }
+
+    @Test
+    @DisplayName("Sin plan de carga, la lectura cae en N+1: referencia de lo que evitan los métodos anteriores")
+    void findAll_WithoutFetchPlan_IssuesOneStatementPerAssociation() {
+        List<Orden> ordenes = ordenRepository.findAll();
+        ordenes.forEach(OrdenRepositoryTest::recorrer);
+
+        assertTrue(estadisticas.getPrepareStatementCount() > ordenes.size());
+    }
+}
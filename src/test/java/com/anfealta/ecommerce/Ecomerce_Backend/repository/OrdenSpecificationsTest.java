@@ -0,0 +1,172 @@
+package com.anfealta.ecommerce.ecomerce_backend.repository;
+
+import com.anfealta.ecommerce.ecomerce_backend.config.AppConfig;
+import com.anfealta.ecommerce.ecomerce_backend.dto.FiltroOrdenes;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.entity.OrdenDetalle;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
+import com.anfealta.ecommerce.ecomerce_backend.entity.RolUsuario;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Usuario;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Import(AppConfig.class)
+class OrdenSpecificationsTest {
+
+    private static final Sort ORDEN_PAGINA = Sort.by(Sort.Direction.DESC, "fechaCreacion", "id");
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Usuario cliente1;
+    private Usuario cliente2;
+    private Producto productoA;
+    private Producto productoB;
+    private final List<Orden> ordenes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        cliente1 = usuario("cliente1");
+        cliente2 = usuario("cliente2");
+        productoA = producto("PA-001");
+        productoB = producto("PB-001");
+
+        orden(cliente1, Orden.EstadoOrden.PENDIENTE, "20.00", productoA, productoA);
+        orden(cliente1, Orden.EstadoOrden.ENVIADA, "150.00", productoB);
+        orden(cliente2, Orden.EstadoOrden.PENDIENTE, "75.00", productoA, productoB);
+        orden(cliente2, Orden.EstadoOrden.CANCELADA, "300.00", productoB);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private Usuario usuario(String nombre) {
+        Usuario nuevo = Usuario.builder()
+                .nombreUsuario(nombre)
+                .contrasena("secreta")
+                .email(nombre + "@example.com")
+                .roles(Set.of(RolUsuario.USER))
+                .build();
+        entityManager.persist(nuevo);
+        return nuevo;
+    }
+
+    private Producto producto(String sku) {
+        Producto producto = Producto.builder()
+                .nombre("Producto " + sku)
+                .categoria("General")
+                .sku(sku)
+                .precio(new BigDecimal("10.00"))
+                .activo(true)
+                .build();
+        entityManager.persist(producto);
+        return producto;
+    }
+
+    private void orden(Usuario propietario, Orden.EstadoOrden estado, String total, Producto... productos) {
+        Orden orden = new Orden();
+        orden.setUsuario(propietario);
+        orden.setEstado(estado);
+        orden.setSubtotal(new BigDecimal(total));
+        orden.setDescuentoTotal(BigDecimal.ZERO);
+        orden.setTotal(new BigDecimal(total));
+        for (Producto producto : productos) {
+            OrdenDetalle detalle = new OrdenDetalle();
+            detalle.setProducto(producto);
+            detalle.setCantidad(1);
+            detalle.setPrecioUnitario(new BigDecimal("10.00"));
+            detalle.setSubtotalLinea(new BigDecimal("10.00"));
+            orden.addDetalle(detalle);
+        }
+        entityManager.persist(orden);
+        ordenes.add(orden);
+    }
+
+    private List<Long> buscar(Specification<Orden> criterio) {
+        return ordenRepository.findAll(criterio, ORDEN_PAGINA).stream().map(Orden::getId).toList();
+    }
+
+    private List<Long> ids(int... posiciones) {
+        List<Long> ids = new ArrayList<>();
+        for (int posicion : posiciones) {
+            ids.add(ordenes.get(posicion).getId());
+        }
+        return ids;
+    }
+
+    @Test
+    @DisplayName("Sin filtros debe devolver todas las órdenes")
+    void conFiltro_Empty_ReturnsAll() {
+        assertEquals(4, buscar(OrdenSpecifications.conFiltro(new FiltroOrdenes())).size());
+    }
+
+    @Test
+    @DisplayName("Los filtros presentes deben combinarse con AND")
+    void conFiltro_CombinesPresentFilters() {
+        FiltroOrdenes filtro = FiltroOrdenes.builder()
+                .estado(Orden.EstadoOrden.PENDIENTE)
+                .totalMinimo(new BigDecimal("50.00"))
+                .totalMaximo(new BigDecimal("100.00"))
+                .build();
+        FiltroOrdenes porUsuario = FiltroOrdenes.builder().usuarioId(cliente1.getId()).build();
+
+        assertEquals(ids(2), buscar(OrdenSpecifications.conFiltro(filtro)));
+        assertEquals(Set.copyOf(ids(0, 1)), Set.copyOf(buscar(OrdenSpecifications.conFiltro(porUsuario))));
+    }
+
+    @Test
+    @DisplayName("El filtro por SKU debe devolver cada orden una sola vez aunque tenga varias líneas del producto")
+    void conFiltro_Sku_NoDuplicates() {
+        FiltroOrdenes filtro = FiltroOrdenes.builder().skuProducto("PA-001").build();
+
+        List<Long> encontradas = buscar(OrdenSpecifications.conFiltro(filtro));
+
+        assertEquals(Set.copyOf(ids(0, 2)), Set.copyOf(encontradas));
+        assertEquals(2, encontradas.size());
+    }
+
+    @Test
+    @DisplayName("Continuar desde el cursor debe devolver solo las órdenes siguientes en el orden de las páginas")
+    void despuesDe_ContinuesFromCursor() {
+        List<Long> todas = buscar(OrdenSpecifications.conFiltro(new FiltroOrdenes()));
+        Orden segunda = ordenRepository.findById(todas.get(1)).orElseThrow();
+
+        List<Long> resto = buscar(OrdenSpecifications.conFiltro(new FiltroOrdenes())
+                .and(OrdenSpecifications.despuesDe(segunda.getFechaCreacion(), segunda.getId())));
+
+        assertEquals(todas.subList(2, 4), resto);
+    }
+
+    @Test
+    @DisplayName("La consulta de IDs con límite debe traer solo la primera página, sin cargar las órdenes")
+    void findIdsBy_WithLimit_ReturnsFirstPageWithoutLoadingOrders() {
+        List<Long> todas = buscar(OrdenSpecifications.conFiltro(new FiltroOrdenes()));
+        entityManager.clear();
+
+        List<Long> pagina = ordenRepository.findIdsBy(OrdenSpecifications.conFiltro(new FiltroOrdenes()), ORDEN_PAGINA, 3);
+        List<Long> conSku = ordenRepository.findIdsBy(OrdenSpecifications.conFiltro(
+                FiltroOrdenes.builder().skuProducto("PA-001").build()), ORDEN_PAGINA, 10);
+
+        assertEquals(todas.subList(0, 3), pagina);
+        assertEquals(Set.copyOf(ids(0, 2)), Set.copyOf(conSku));
+        assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+    }
+}
@@ -0,0 +1,149 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.config.AppConfig;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.entity.RolUsuario;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Usuario;
+import com.anfealta.ecommerce.ecomerce_backend.repository.ActividadClienteRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenRepository;
+import com.anfealta.ecommerce.ecomerce_backend.service.clientes.ActividadClientes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Import(AppConfig.class)
+class ActividadClientesTest {
+
+    private static final LocalDate HOY = LocalDate.now();
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ActividadClienteRepository actividadClienteRepository;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    private ActividadClientes actividad;
+    private Usuario cliente1;
+    private Usuario cliente2;
+    private Usuario cliente3;
+
+    @BeforeEach
+    void setUp() {
+        // Un hilo y bloques de un usuario: cada usuario se reconstruye en su propia pasada.
+        actividad = new ActividadClientes(actividadClienteRepository, ordenRepository, entityManager, transactionManager, 100, 366, 1, 1);
+        cliente1 = usuario("cliente1");
+        cliente2 = usuario("cliente2");
+        cliente3 = usuario("cliente3");
+    }
+
+    private Usuario usuario(String nombre) {
+        Usuario usuario = Usuario.builder()
+                .nombreUsuario(nombre)
+                .contrasena("secreta")
+                .email(nombre + "@example.com")
+                .roles(Set.of(RolUsuario.USER))
+                .build();
+        entityManager.persist(usuario);
+        return usuario;
+    }
+
+    private Orden orden(Usuario usuario, Orden.EstadoOrden estado, String total, LocalDateTime fechaCreacion) {
+        Orden orden = new Orden();
+        orden.setUsuario(usuario);
+        orden.setEstado(estado);
+        orden.setSubtotal(new BigDecimal(total));
+        orden.setDescuentoTotal(BigDecimal.ZERO);
+        orden.setTotal(new BigDecimal(total));
+        entityManager.persist(orden);
+        entityManager.flush();
+        entityManager.createQuery("UPDATE Orden o SET o.fechaCreacion = :fecha WHERE o.id = :id")
+                .setParameter("fecha", fechaCreacion)
+                .setParameter("id", orden.getId())
+                .executeUpdate();
+        entityManager.refresh(orden);
+        return orden;
+    }
+
+    private static ActividadClientes.ClienteFrecuente cliente(Usuario usuario, long ordenes, String ingresos) {
+        return new ActividadClientes.ClienteFrecuente(usuario.getId(), ordenes, new BigDecimal(ingresos));
+    }
+
+    /** Compara ingresos por valor, sin depender de la escala que devuelve la base de datos. */
+    private static void assertClientes(List<ActividadClientes.ClienteFrecuente> esperados, List<ActividadClientes.ClienteFrecuente> obtenidos) {
+        assertEquals(esperados.size(), obtenidos.size());
+        for (int i = 0; i < esperados.size(); i++) {
+            assertEquals(esperados.get(i).usuarioId(), obtenidos.get(i).usuarioId());
+            assertEquals(esperados.get(i).ordenes(), obtenidos.get(i).ordenes());
+            assertEquals(0, esperados.get(i).ingresos().compareTo(obtenidos.get(i).ingresos()));
+        }
+    }
+
+    @Test
+    @DisplayName("La reconstrucción por bloques debe agrupar por usuario y día las órdenes en firme, activas y archivadas")
+    void reconstruir_GroupsFirmOrdersPerUserAndDay() {
+        LocalDateTime mediodia = HOY.atTime(12, 0);
+        orden(cliente1, Orden.EstadoOrden.PENDIENTE, "10.00", mediodia);
+        orden(cliente1, Orden.EstadoOrden.COMPLETADA, "20.00", mediodia.minusHours(2));
+        orden(cliente1, Orden.EstadoOrden.CANCELADA, "500.00", mediodia);
+        orden(cliente1, Orden.EstadoOrden.ACEPTADA, "0.00", mediodia);
+        orden(cliente2, Orden.EstadoOrden.ENVIADA, "15.00", mediodia.minusDays(3));
+        orden(cliente3, Orden.EstadoOrden.ENTREGADA, "30.00", mediodia.minusDays(3));
+        orden(cliente3, Orden.EstadoOrden.ENTREGADA, "40.00", mediodia.minusDays(200));
+        orden(cliente3, Orden.EstadoOrden.ENTREGADA, "50.00", mediodia.minusDays(201));
+        entityManager.clear();
+        new ArchivadorOrdenes(entityManager, transactionManager, new SimpleMeterRegistry(), true, 180, 30, 100, 1)
+                .archivarCreadasAntesDe(LocalDateTime.now().minusDays(180));
+
+        int filas = actividad.reconstruir();
+
+        assertEquals(5, filas);
+        assertClientes(List.of(cliente(cliente1, 2, "30.00"), cliente(cliente3, 1, "30.00"), cliente(cliente2, 1, "15.00")),
+                actividad.masFrecuentes(HOY.minusDays(29), HOY, 10));
+        assertClientes(List.of(cliente(cliente3, 3, "120.00"), cliente(cliente1, 2, "30.00")), actividad.masFrecuentes(2));
+        assertClientes(List.of(cliente(cliente1, 2, "30.00")), actividad.masFrecuentes(HOY, HOY, 10));
+    }
+
+    @Test
+    @DisplayName("Registrar y descontar órdenes debe crear la fila del día la primera vez y luego solo actualizarla")
+    void registrarYDescontar_UpdateDailyRows() {
+        LocalDateTime ahora = LocalDateTime.now();
+        Orden primera = orden(cliente1, Orden.EstadoOrden.PENDIENTE, "10.00", ahora);
+        Orden segunda = orden(cliente1, Orden.EstadoOrden.PENDIENTE, "25.00", ahora);
+        Orden otra = orden(cliente2, Orden.EstadoOrden.PENDIENTE, "40.00", ahora);
+
+        actividad.registrarOrden(primera);
+        actividad.registrarOrden(segunda);
+        actividad.registrarOrden(otra);
+        actividad.descontarOrdenes(List.of(otra.getId()));
+        actividad.descontarOrden(primera);
+        entityManager.clear();
+
+        assertClientes(List.of(cliente(cliente1, 1, "25.00")), actividad.masFrecuentes(HOY, HOY, 10));
+        assertEquals(2, actividadClienteRepository.count());
+
+        actividad.descartarUsuario(cliente1.getId());
+
+        assertTrue(actividad.masFrecuentes(HOY, HOY, 10).isEmpty());
+    }
+}
@@ -0,0 +1,180 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.config.AppConfig;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.entity.OrdenArchivada;
+import com.anfealta.ecommerce.ecomerce_backend.entity.OrdenDetalle;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
+import com.anfealta.ecommerce.ecomerce_backend.entity.RolUsuario;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Usuario;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenArchivadaRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenDetalleRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.UsuarioRepository;
+import com.anfealta.ecommerce.ecomerce_backend.service.clientes.ActividadClientes;
+import com.anfealta.ecommerce.ecomerce_backend.service.impl.UsuarioServiceImpl;
+import com.anfealta.ecommerce.ecomerce_backend.service.ventas.VentasProductos;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Import(AppConfig.class)
+class ArchivadorOrdenesTest {
+
+    private static final LocalDateTime ANTIGUA = LocalDateTime.of(2024, 1, 15, 10, 0);
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private OrdenArchivadaRepository ordenArchivadaRepository;
+
+    @Autowired
+    private OrdenDetalleRepository ordenDetalleRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ArchivadorOrdenes archivador;
+    private Usuario usuario;
+    private Producto producto;
+
+    @BeforeEach
+    void setUp() {
+        archivador = new ArchivadorOrdenes(entityManager, transactionManager, meterRegistry, true, 180, 30, 2, 100);
+
+        usuario = Usuario.builder()
+                .nombreUsuario("cliente1")
+                .contrasena("secreta")
+                .email("cliente1@example.com")
+                .roles(Set.of(RolUsuario.USER))
+                .build();
+        entityManager.persist(usuario);
+        producto = Producto.builder()
+                .nombre("Producto A")
+                .categoria("General")
+                .sku("PA-001")
+                .precio(new BigDecimal("10.00"))
+                .activo(true)
+                .build();
+        entityManager.persist(producto);
+    }
+
+    private Long orden(Orden.EstadoOrden estado, LocalDateTime fechaCreacion, int lineas) {
+        Orden orden = new Orden();
+        orden.setUsuario(usuario);
+        orden.setEstado(estado);
+        orden.setSubtotal(new BigDecimal("10.00").multiply(BigDecimal.valueOf(lineas)));
+        orden.setDescuentoTotal(BigDecimal.ZERO);
+        orden.setTotal(orden.getSubtotal());
+        for (int i = 0; i < lineas; i++) {
+            OrdenDetalle detalle = new OrdenDetalle();
+            detalle.setProducto(producto);
+            detalle.setCantidad(1);
+            detalle.setPrecioUnitario(new BigDecimal("10.00"));
+            detalle.setSubtotalLinea(new BigDecimal("10.00"));
+            orden.addDetalle(detalle);
+        }
+        entityManager.persist(orden);
+        entityManager.flush();
+        entityManager.createQuery("UPDATE Orden o SET o.fechaCreacion = :fecha WHERE o.id = :id")
+                .setParameter("fecha", fechaCreacion)
+                .setParameter("id", orden.getId())
+                .executeUpdate();
+        return orden.getId();
+    }
+
+    @Test
+    @DisplayName("Debe mover en lotes solo las órdenes ENTREGADA y CANCELADA anteriores al límite, con sus líneas")
+    void archivar_MovesOnlyOldTerminalOrdersInBatches() {
+        Long entregada = orden(Orden.EstadoOrden.ENTREGADA, ANTIGUA, 2);
+        Long cancelada = orden(Orden.EstadoOrden.CANCELADA, ANTIGUA.plusDays(1), 1);
+        Long otraEntregada = orden(Orden.EstadoOrden.ENTREGADA, ANTIGUA.plusDays(2), 3);
+        Long pendienteAntigua = orden(Orden.EstadoOrden.PENDIENTE, ANTIGUA, 1);
+        Long entregadaReciente = orden(Orden.EstadoOrden.ENTREGADA, LocalDateTime.now(), 1);
+        entityManager.clear();
+
+        int archivadas = archivador.archivarCreadasAntesDe(LocalDateTime.now().minusDays(180));
+        entityManager.clear();
+
+        assertEquals(3, archivadas);
+        assertEquals(Set.of(pendienteAntigua, entregadaReciente),
+                Set.copyOf(ordenRepository.findAll().stream().map(Orden::getId).toList()));
+        assertEquals(Set.of(entregada, cancelada, otraEntregada),
+                Set.copyOf(ordenArchivadaRepository.findAll().stream().map(OrdenArchivada::getId).toList()));
+        OrdenArchivada archivada = ordenArchivadaRepository.findConDetallesById(otraEntregada).orElseThrow();
+        assertEquals(3, archivada.getDetalles().size());
+        assertEquals("PA-001", archivada.getDetalles().get(0).getProducto().getSku());
+        assertEquals("cliente1", archivada.getUsuario().getNombreUsuario());
+        assertEquals(ANTIGUA.plusDays(2), archivada.getFechaCreacion());
+        assertEquals(2.0, meterRegistry.get("app.ordenes.archivo.lote.duracion").timer().count());
+        assertEquals(6.0, meterRegistry.get("app.ordenes.archivo.filas").tag("tabla", "orden_detalles").counter().count());
+    }
+
+    @Test
+    @DisplayName("Las claves por usuario del archivo deben seguir el mismo orden que las de ordenes para mezclar páginas")
+    void archivar_ArchivedKeysOrderedLikeLiveOnes() {
+        Long primera = orden(Orden.EstadoOrden.ENTREGADA, ANTIGUA, 1);
+        Long segunda = orden(Orden.EstadoOrden.CANCELADA, ANTIGUA.plusDays(1), 1);
+        entityManager.clear();
+        archivador.archivarCreadasAntesDe(LocalDateTime.now().minusDays(180));
+
+        List<Object[]> claves = ordenArchivadaRepository.findClavesPrimeraPaginaByUsuarioId(usuario.getId(), PageRequest.of(0, 10));
+
+        assertEquals(List.of(segunda, primera), claves.stream().map(clave -> (Long) clave[0]).toList());
+        assertTrue(ordenArchivadaRepository.findResumenesByUsuarioId(usuario.getId()).stream()
+                .allMatch(resumen -> resumen.getCantidadLineas() == 1));
+    }
+
+    @Test
+    @DisplayName("Eliminar un usuario con órdenes archivadas debe borrar también el archivo y descontar sus ventas archivadas")
+    void eliminarUsuario_WithArchivedOrders_DeletesArchive() {
+        orden(Orden.EstadoOrden.ENTREGADA, ANTIGUA, 2);
+        orden(Orden.EstadoOrden.CANCELADA, ANTIGUA.plusDays(1), 1);
+        orden(Orden.EstadoOrden.PENDIENTE, LocalDateTime.now(), 1);
+        entityManager.clear();
+        archivador.archivarCreadasAntesDe(LocalDateTime.now().minusDays(180));
+        VentasProductos ventasProductos = mock(VentasProductos.class);
+        UsuarioServiceImpl usuarioService = new UsuarioServiceImpl(usuarioRepository, null, mock(ActividadClientes.class),
+                mock(ContadorClientesFrecuentes.class), ventasProductos, ordenArchivadaRepository);
+        List<Object[]> archivadas = ordenDetalleRepository.sumarCantidadesArchivadasPorProductoDeUsuario(usuario.getId());
+
+        assertTrue(usuarioService.eliminarUsuario(usuario.getId()));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertFalse(usuarioRepository.existsById(usuario.getId()));
+        assertEquals(0, ordenRepository.count());
+        assertEquals(0, ordenArchivadaRepository.count());
+        assertEquals(0L, entityManager.createQuery("SELECT COUNT(d) FROM OrdenDetalleArchivada d", Long.class).getSingleResult());
+        // Solo las líneas de la orden entregada: las canceladas no cuentan como vendidas.
+        assertEquals(1, archivadas.size());
+        assertEquals(producto.getId(), archivadas.get(0)[0]);
+        assertEquals(2L, ((Number) archivadas.get(0)[1]).longValue());
+        verify(ventasProductos).descontarVentaUsuario(usuario.getId());
+    }
+}
@@ -0,0 +1,250 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Inventario;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
+import com.anfealta.ecommerce.ecomerce_backend.entity.TomaCarril;
+import com.anfealta.ecommerce.ecomerce_backend.repository.InventarioRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.TomaCarrilRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CarrilesStockTest {
+
+    // Con dos carriles, el producto 1 va al carril 1 y el 2 al carril 0.
+    private static final Long PRODUCTO_A = 1L;
+    private static final Long PRODUCTO_B = 2L;
+
+    @Mock
+    private InventarioRepository inventarioRepository;
+
+    @Mock
+    private TomaCarrilRepository tomaCarrilRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final Map<Long, Inventario> inventarios = new ConcurrentHashMap<>();
+    private final List<TomaCarril> tomas = new CopyOnWriteArrayList<>();
+
+    private CarrilesStock carriles;
+
+    @BeforeEach
+    void setUp() {
+        inventarios.put(PRODUCTO_A, inventario(PRODUCTO_A, 100));
+        inventarios.put(PRODUCTO_B, inventario(PRODUCTO_B, 0));
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        lenient().when(inventarioRepository.findParaActualizarByProductoIdIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(inventarios::get).toList();
+        });
+        lenient().when(tomaCarrilRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            tomas.addAll(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        lenient().when(tomaCarrilRepository.eliminarPorToken(anyString())).thenAnswer(invocation -> {
+            String token = invocation.getArgument(0);
+            return eliminarTomas(toma -> toma.getToken().equals(token));
+        });
+        lenient().when(tomaCarrilRepository.eliminarPorTokenYProductos(anyString(), anyCollection())).thenAnswer(invocation -> {
+            String token = invocation.getArgument(0);
+            Collection<Long> productoIds = invocation.getArgument(1);
+            return eliminarTomas(toma -> toma.getToken().equals(token) && productoIds.contains(toma.getProductoId()));
+        });
+        lenient().when(tomaCarrilRepository.findByFechaCreacionBeforeOrderById(any(LocalDateTime.class), any()))
+                .thenAnswer(invocation -> {
+                    LocalDateTime limite = invocation.getArgument(0);
+                    return tomas.stream().filter(toma -> toma.getFechaCreacion().isBefore(limite)).toList();
+                });
+
+        carriles = crearCarriles(900_000, false);
+    }
+
+    private CarrilesStock crearCarriles(long vencimientoTomasMs, boolean reservasHabilitadas) {
+        CarrilesStock nuevos = new CarrilesStock(inventarioRepository, tomaCarrilRepository, transactionManager,
+                new SimpleMeterRegistry(), true, 2, 100, 5000, 3, vencimientoTomasMs, reservasHabilitadas);
+        nuevos.iniciar();
+        return nuevos;
+    }
+
+    private synchronized int eliminarTomas(Predicate<TomaCarril> condicion) {
+        List<TomaCarril> eliminadas = tomas.stream().filter(condicion).toList();
+        tomas.removeAll(eliminadas);
+        return eliminadas.size();
+    }
+
+    @AfterEach
+    void tearDown() {
+        carriles.detener();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static Inventario inventario(Long productoId, int disponible) {
+        Producto producto = new Producto();
+        producto.setId(productoId);
+        return Inventario.builder().producto(producto).cantidadDisponible(disponible).cantidadReservada(0).build();
+    }
+
+    @Test
+    @DisplayName("No debe sobrevender cuando muchos hilos compran el mismo producto a la vez")
+    void tomarTodos_ConcurrentBuyers_NoOversell() throws Exception {
+        int hilos = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch inicio = new CountDownLatch(1);
+        List<Future<Integer>> resultados = new ArrayList<>();
+        for (int i = 0; i < hilos; i++) {
+            resultados.add(executor.submit(() -> {
+                inicio.await();
+                int exitos = 0;
+                for (int j = 0; j < 20; j++) {
+                    if (carriles.tomarTodos(Map.of(PRODUCTO_A, 1)).faltante().isEmpty()) {
+                        exitos++;
+                    }
+                }
+                return exitos;
+            }));
+        }
+        inicio.countDown();
+        int unidadesVendidas = 0;
+        for (Future<Integer> resultado : resultados) {
+            unidadesVendidas += resultado.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(100, unidadesVendidas);
+        assertEquals(0, inventarios.get(PRODUCTO_A).getCantidadDisponible());
+    }
+
+    @Test
+    @DisplayName("Debe informar el producto sin stock y no descontar nada")
+    void tomarTodos_InsufficientStock_ReportsProduct() {
+        CarrilesStock.Asignacion asignacion = carriles.tomarTodos(Map.of(PRODUCTO_A, 101));
+
+        assertEquals(Optional.of(PRODUCTO_A), asignacion.faltante());
+        assertEquals(100, inventarios.get(PRODUCTO_A).getCantidadDisponible());
+    }
+
+    @Test
+    @DisplayName("Si un carril no tiene stock, lo tomado en los demás carriles debe devolverse")
+    void tomarTodos_MultipleLanes_ReturnsUnitsWhenOneLaneFails() {
+        CarrilesStock.Asignacion asignacion = carriles.tomarTodos(Map.of(PRODUCTO_A, 30, PRODUCTO_B, 1));
+
+        assertEquals(Optional.of(PRODUCTO_B), asignacion.faltante());
+        // El carril atiende en orden: la devolución se aplica antes que esta compra.
+        assertTrue(carriles.tomarTodos(Map.of(PRODUCTO_A, 100)).faltante().isEmpty());
+        assertEquals(0, inventarios.get(PRODUCTO_A).getCantidadDisponible());
+    }
+
+    @Test
+    @DisplayName("Debe devolver las unidades si la transacción de la orden se revierte")
+    void tomarTodos_RollbackReturnsUnits() {
+        TransactionSynchronizationManager.initSynchronization();
+        assertTrue(carriles.tomarTodos(Map.of(PRODUCTO_A, 10)).faltante().isEmpty());
+        assertEquals(90, inventarios.get(PRODUCTO_A).getCantidadDisponible());
+
+        for (TransactionSynchronization sincronizacion : TransactionSynchronizationManager.getSynchronizations()) {
+            sincronizacion.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+
+        assertTrue(carriles.tomarTodos(Map.of(PRODUCTO_A, 100)).faltante().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Una devolución cuya transacción falla debe reintentarse hasta aplicarse")
+    void devolver_TransactionFails_RetriesUntilApplied() {
+        CarrilesStock.Asignacion asignacion = carriles.tomarTodos(Map.of(PRODUCTO_A, 10));
+        assertEquals(90, inventarios.get(PRODUCTO_A).getCantidadDisponible());
+        when(inventarioRepository.findParaActualizarByProductoIdIn(anyCollection()))
+                .thenThrow(new IllegalStateException("Conexión perdida"))
+                .thenAnswer(invocation -> {
+                    Collection<Long> ids = invocation.getArgument(0);
+                    return ids.stream().map(inventarios::get).toList();
+                });
+
+        asignacion.devolver();
+
+        // El carril atiende en orden: esta compra solo alcanza si la devolución se aplicó.
+        assertTrue(carriles.tomarTodos(Map.of(PRODUCTO_A, 100)).faltante().isEmpty());
+        assertEquals(0, inventarios.get(PRODUCTO_A).getCantidadDisponible());
+    }
+
+    @Test
+    @DisplayName("Debe reservar en lugar de descontar cuando las reservas están habilitadas")
+    void tomarTodos_ReservationsEnabled_MovesToReserved() {
+        carriles.detener();
+        carriles = crearCarriles(900_000, true);
+
+        assertTrue(carriles.tomarTodos(Map.of(PRODUCTO_A, 4)).faltante().isEmpty());
+
+        assertEquals(96, inventarios.get(PRODUCTO_A).getCantidadDisponible());
+        assertEquals(4, inventarios.get(PRODUCTO_A).getCantidadReservada());
+    }
+
+    @Test
+    @DisplayName("Una asignación confirmada por su orden no debe devolverse aunque la orden pida devolverla")
+    void confirmar_ConfirmedAllocation_IsNotReturned() {
+        CarrilesStock.Asignacion asignacion = carriles.tomarTodos(Map.of(PRODUCTO_A, 10));
+        assertEquals(1, tomas.size());
+
+        carriles.confirmar(asignacion);
+        asignacion.devolver();
+
+        assertTrue(tomas.isEmpty());
+        // El carril atiende en orden: si la devolución hubiera repuesto unidades, esta compra alcanzaría.
+        assertEquals(Optional.of(PRODUCTO_A), carriles.tomarTodos(Map.of(PRODUCTO_A, 91)).faltante());
+        assertEquals(90, inventarios.get(PRODUCTO_A).getCantidadDisponible());
+    }
+
+    @Test
+    @DisplayName("Las tomas que ninguna orden confirmó deben devolverse, y su orden ya no debe poder confirmarse")
+    void devolverTomasVencidas_UnconfirmedAllocation_ReturnsUnits() throws Exception {
+        carriles.detener();
+        carriles = crearCarriles(0, false);
+        CarrilesStock.Asignacion asignacion = carriles.tomarTodos(Map.of(PRODUCTO_A, 10));
+        assertEquals(90, inventarios.get(PRODUCTO_A).getCantidadDisponible());
+        Thread.sleep(5);
+
+        carriles.devolverTomasVencidas();
+
+        // El carril atiende en orden: esta compra solo alcanza si la devolución se aplicó.
+        assertTrue(carriles.tomarTodos(Map.of(PRODUCTO_A, 100)).faltante().isEmpty());
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> carriles.confirmar(asignacion));
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+        // Una devolución repetida (p. ej. por el rollback de esa orden) no repone nada.
+        asignacion.devolver();
+        assertEquals(Optional.of(PRODUCTO_A), carriles.tomarTodos(Map.of(PRODUCTO_A, 1)).faltante());
+    }
+}
@@ -0,0 +1,167 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ContadorClientesFrecuentesTest {
+
+    private static final Long USUARIO_ID = 1L;
+    private static final int DIAS_PERIODO = 30;
+
+    @Mock
+    private OrdenRepository ordenRepository;
+
+    /** Órdenes "persistidas" del usuario: id y fecha de creación. */
+    private final List<Object[]> ordenes = new ArrayList<>();
+    private long siguienteId = 1;
+
+    private ContadorClientesFrecuentes contador;
+
+    @BeforeEach
+    void setUp() {
+        contador = new ContadorClientesFrecuentes(ordenRepository, true, DIAS_PERIODO, 360, 100);
+        lenient().when(ordenRepository.countByUsuarioIdAndFechaCreacionAfter(anyLong(), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> contarSql(invocation.getArgument(1)));
+        lenient().when(ordenRepository.findIdYFechaCreacionByUsuarioIdDesde(anyLong(), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> {
+                    LocalDateTime desde = invocation.getArgument(1);
+                    return ordenes.stream().filter(orden -> !((LocalDateTime) orden[1]).isBefore(desde)).toList();
+                });
+    }
+
+    /** Lo que devolvería COUNT(o) ... WHERE o.fechaCreacion >= :fechaDesde. */
+    private long contarSql(LocalDateTime fechaDesde) {
+        return ordenes.stream().filter(orden -> !((LocalDateTime) orden[1]).isBefore(fechaDesde)).count();
+    }
+
+    private Object[] crearOrden(LocalDateTime fecha) {
+        Object[] orden = {siguienteId++, fecha};
+        ordenes.add(orden);
+        contador.registrarOrden(USUARIO_ID, (Long) orden[0], fecha);
+        return orden;
+    }
+
+    @Test
+    @DisplayName("Debe coincidir con el conteo SQL en instantes alrededor del límite del periodo")
+    void esClienteFrecuente_MatchesSqlCountAcrossWindowBoundaries() {
+        LocalDateTime ahora = LocalDateTime.of(2025, 7, 1, 0, 0);
+        Random aleatorio = new Random(42);
+        for (int i = 0; i < 15; i++) {
+            ordenes.add(new Object[]{siguienteId++, ahora.minusMinutes(aleatorio.nextInt(60 * 24 * 40))});
+        }
+
+        // El tiempo avanza: se crean órdenes y se consulta en instantes aleatorios y justo en los límites.
+        for (int paso = 0; paso < 3000; paso++) {
+            if (aleatorio.nextInt(4) == 0) {
+                crearOrden(ahora);
+            }
+            if (paso % 3 == 0) {
+                LocalDateTime limite = ((LocalDateTime) ordenes.get(aleatorio.nextInt(ordenes.size()))[1]).plusDays(DIAS_PERIODO);
+                LocalDateTime instante = limite.plusSeconds(aleatorio.nextInt(3) - 1);
+                if (instante.isAfter(ahora)) {
+                    ahora = instante;
+                }
+            } else {
+                ahora = ahora.plusMinutes(aleatorio.nextInt(60 * 12));
+            }
+            int minOrdenes = 1 + aleatorio.nextInt(12);
+            boolean esperado = contarSql(ahora.minusDays(DIAS_PERIODO)) >= minOrdenes;
+
+            assertEquals(esperado, contador.esClienteFrecuente(USUARIO_ID, minOrdenes, DIAS_PERIODO, ahora),
+                    "ahora=" + ahora + ", minOrdenes=" + minOrdenes);
+        }
+        verify(ordenRepository, times(1)).findIdYFechaCreacionByUsuarioIdDesde(anyLong(), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Debe seguir coincidiendo con el conteo SQL al crear y eliminar órdenes después de sembrar")
+    void esClienteFrecuente_TracksCreatedAndDeletedOrders() {
+        LocalDateTime ahora = LocalDateTime.of(2025, 7, 20, 12, 0);
+        crearOrden(ahora.minusDays(40));
+        crearOrden(ahora.minusDays(10));
+        assertFalse(contador.esClienteFrecuente(USUARIO_ID, 3, DIAS_PERIODO, ahora));
+
+        Object[] reciente = crearOrden(ahora.minusDays(1));
+        crearOrden(ahora.minusHours(1));
+        assertTrue(contador.esClienteFrecuente(USUARIO_ID, 3, DIAS_PERIODO, ahora));
+
+        ordenes.remove(reciente);
+        contador.eliminarOrden(USUARIO_ID, (Long) reciente[0], (LocalDateTime) reciente[1]);
+        assertFalse(contador.esClienteFrecuente(USUARIO_ID, 3, DIAS_PERIODO, ahora));
+
+        // 30 días después solo queda la orden de hace una hora dentro del periodo.
+        assertTrue(contador.esClienteFrecuente(USUARIO_ID, 1, DIAS_PERIODO, ahora.plusDays(29)));
+        assertFalse(contador.esClienteFrecuente(USUARIO_ID, 1, DIAS_PERIODO, ahora.plusDays(31)));
+        verify(ordenRepository, times(1)).findIdYFechaCreacionByUsuarioIdDesde(anyLong(), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Debe resolver en memoria, sin contar en la base de datos, cuando el balde del límite no decide")
+    void esClienteFrecuente_AvoidsSqlCountAwayFromBoundary() {
+        LocalDateTime ahora = LocalDateTime.of(2025, 7, 20, 12, 0);
+        for (int i = 1; i <= 6; i++) {
+            ordenes.add(new Object[]{siguienteId++, ahora.minusDays(i)});
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(contador.esClienteFrecuente(USUARIO_ID, 5, DIAS_PERIODO, ahora.plusMinutes(i)));
+        }
+
+        verify(ordenRepository, never()).countByUsuarioIdAndFechaCreacionAfter(anyLong(), any(LocalDateTime.class));
+        verify(ordenRepository, times(1)).findIdYFechaCreacionByUsuarioIdDesde(anyLong(), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("No debe volver a contar una orden que ya estaba incluida en la siembra")
+    void registrarOrden_IgnoresOrdersAlreadySeeded() {
+        LocalDateTime ahora = LocalDateTime.of(2025, 7, 20, 12, 0);
+        ordenes.add(new Object[]{siguienteId++, ahora.minusDays(2)});
+        assertTrue(contador.esClienteFrecuente(USUARIO_ID, 1, DIAS_PERIODO, ahora));
+
+        contador.registrarOrden(USUARIO_ID, 1L, ahora.minusDays(2));
+
+        assertFalse(contador.esClienteFrecuente(USUARIO_ID, 2, DIAS_PERIODO, ahora));
+    }
+
+    @Test
+    @DisplayName("Debe contar una orden confirmada después de la siembra aunque su ID sea menor que los sembrados")
+    void registrarOrden_CountsLowerIdConfirmedAfterSeeding() {
+        LocalDateTime ahora = LocalDateTime.of(2025, 7, 20, 12, 0);
+        // IDs asignados por bloques: otro nodo ya usó el 60 cuando este confirma el 5.
+        ordenes.add(new Object[]{60L, ahora.minusDays(2)});
+        assertTrue(contador.esClienteFrecuente(USUARIO_ID, 1, DIAS_PERIODO, ahora));
+
+        ordenes.add(new Object[]{5L, ahora.minusHours(1)});
+        contador.registrarOrden(USUARIO_ID, 5L, ahora.minusHours(1));
+
+        assertTrue(contador.esClienteFrecuente(USUARIO_ID, 2, DIAS_PERIODO, ahora));
+        verify(ordenRepository, never()).countByUsuarioIdAndFechaCreacionAfter(anyLong(), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Debe consultar la base de datos cuando el periodo pedido no es el configurado")
+    void esClienteFrecuente_OtherPeriod_FallsBackToSql() {
+        LocalDateTime ahora = LocalDateTime.of(2025, 7, 20, 12, 0);
+        ordenes.add(new Object[]{siguienteId++, ahora.minusDays(50)});
+
+        assertTrue(contador.esClienteFrecuente(USUARIO_ID, 1, 60, ahora));
+
+        verify(ordenRepository, never()).findIdYFechaCreacionByUsuarioIdDesde(anyLong(), any(LocalDateTime.class));
+    }
+}
@@ -0,0 +1,125 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.config.AppConfig;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.entity.OrdenDetalle;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
+import com.anfealta.ecommerce.ecomerce_backend.entity.RolUsuario;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Usuario;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Import(AppConfig.class)
+class ExportacionOrdenesTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private ExportacionOrdenes exportacion;
+    private Producto producto;
+
+    @BeforeEach
+    void setUp() {
+        exportacion = new ExportacionOrdenes(entityManager, transactionManager, objectMapper, 2);
+
+        Usuario usuario = Usuario.builder()
+                .nombreUsuario("cliente, \"uno\"")
+                .contrasena("secreta")
+                .email("cliente@example.com")
+                .roles(Set.of(RolUsuario.USER))
+                .build();
+        entityManager.persist(usuario);
+        producto = Producto.builder()
+                .nombre("Producto A")
+                .categoria("General")
+                .sku("PA-001")
+                .precio(new BigDecimal("10.00"))
+                .activo(true)
+                .build();
+        entityManager.persist(producto);
+
+        orden(usuario, Orden.EstadoOrden.PENDIENTE, 3);
+        orden(usuario, Orden.EstadoOrden.ENVIADA, 1);
+        orden(usuario, Orden.EstadoOrden.RECHAZADA, 0);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void orden(Usuario usuario, Orden.EstadoOrden estado, int lineas) {
+        Orden orden = new Orden();
+        orden.setUsuario(usuario);
+        orden.setEstado(estado);
+        orden.setSubtotal(new BigDecimal("10.00").multiply(BigDecimal.valueOf(lineas)));
+        orden.setDescuentoTotal(BigDecimal.ZERO);
+        orden.setTotal(orden.getSubtotal());
+        for (int i = 0; i < lineas; i++) {
+            OrdenDetalle detalle = new OrdenDetalle();
+            detalle.setProducto(producto);
+            detalle.setCantidad(1);
+            detalle.setPrecioUnitario(new BigDecimal("10.00"));
+            detalle.setSubtotalLinea(new BigDecimal("10.00"));
+            orden.addDetalle(detalle);
+        }
+        entityManager.persist(orden);
+    }
+
+    private String exportar(Orden.EstadoOrden estado, ExportacionOrdenes.Formato formato) throws Exception {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        exportacion.exportar(null, null, estado, formato, salida);
+        return salida.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("NDJSON debe escribir una orden por línea con todas sus líneas, incluidas las órdenes sin líneas")
+    void exportar_Ndjson_OneOrderPerLine() throws Exception {
+        List<JsonNode> ordenes = new ArrayList<>();
+        for (String linea : exportar(null, ExportacionOrdenes.Formato.NDJSON).split("\n")) {
+            ordenes.add(objectMapper.readTree(linea));
+        }
+
+        assertEquals(3, ordenes.size());
+        assertEquals(3, ordenes.get(0).get("detalles").size());
+        assertEquals("PA-001", ordenes.get(0).get("detalles").get(0).get("skuProducto").asText());
+        assertEquals(1, ordenes.get(1).get("detalles").size());
+        assertEquals(0, ordenes.get(2).get("detalles").size());
+        assertEquals("RECHAZADA", ordenes.get(2).get("estado").asText());
+        assertTrue(ordenes.get(0).get("id").asLong() < ordenes.get(1).get("id").asLong());
+    }
+
+    @Test
+    @DisplayName("CSV debe escribir una fila por línea de orden, escapando los textos, y respetar el filtro de estado")
+    void exportar_Csv_OneRowPerLineWithFilter() throws Exception {
+        String[] filas = exportar(Orden.EstadoOrden.PENDIENTE, ExportacionOrdenes.Formato.CSV).split("\n");
+
+        assertEquals(4, filas.length);
+        assertTrue(filas[0].startsWith("orden_id,usuario_id,nombre_usuario"));
+        assertTrue(filas[1].contains(",\"cliente, \"\"uno\"\"\","));
+        assertTrue(filas[1].contains(",PENDIENTE,30.00,0.00,30.00,"));
+        assertTrue(filas[3].endsWith(",PA-001,Producto A,1,10.00,10.00"));
+    }
+}
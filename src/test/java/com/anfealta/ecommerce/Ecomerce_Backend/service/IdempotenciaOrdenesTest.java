@@ -0,0 +1,201 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.entity.ClaveIdempotencia;
+import com.anfealta.ecommerce.ecomerce_backend.repository.ClaveIdempotenciaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotenciaOrdenesTest {
+
+    @Mock
+    private ClaveIdempotenciaRepository claveIdempotenciaRepository;
+
+    @Mock
+    private OrdenService ordenService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private IdempotenciaOrdenes idempotencia;
+    private OrdenRequest request;
+    private AtomicInteger creaciones;
+    private Supplier<OrdenResponse> creacion;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        lenient().when(claveIdempotenciaRepository.saveAndFlush(any(ClaveIdempotencia.class))).thenAnswer(invocation -> {
+            ClaveIdempotencia reclamada = invocation.getArgument(0);
+            reclamada.setId(1L);
+            return reclamada;
+        });
+        idempotencia = new IdempotenciaOrdenes(claveIdempotenciaRepository, ordenService, new ObjectMapper(), transactionManager, 24, 60_000, 100);
+        request = new OrdenRequest();
+        request.setUsuarioId(1L);
+        creaciones = new AtomicInteger();
+        creacion = () -> OrdenResponse.builder().id(10L + creaciones.incrementAndGet()).build();
+    }
+
+    private static ClaveIdempotencia clave(String huella, ClaveIdempotencia.EstadoClave estado, Long ordenId) {
+        return ClaveIdempotencia.builder()
+                .id(1L)
+                .usuarioId(1L)
+                .clave("abc")
+                .huella(huella)
+                .estado(estado)
+                .ordenId(ordenId)
+                .intento(1)
+                .venceReclamo(LocalDateTime.now().plusMinutes(1))
+                .fechaCreacion(LocalDateTime.now())
+                .build();
+    }
+
+    @Test
+    @DisplayName("Una clave repetida debe devolver la orden guardada sin volver a crearla")
+    void ejecutar_RepeatedKey_ReturnsStoredResponse() {
+        IdempotenciaOrdenes.Resultado primera = idempotencia.ejecutar("abc", request, creacion);
+        IdempotenciaOrdenes.Resultado segunda = idempotencia.ejecutar("abc", request, creacion);
+
+        assertFalse(primera.repetida());
+        assertTrue(segunda.repetida());
+        assertEquals(11L, segunda.orden().getId());
+        assertEquals(1, creaciones.get());
+        verify(claveIdempotenciaRepository, times(1)).saveAndFlush(any(ClaveIdempotencia.class));
+        verify(claveIdempotenciaRepository).actualizarEstado(1L, 1, ClaveIdempotencia.EstadoClave.COMPLETADA, 11L);
+    }
+
+    @Test
+    @DisplayName("Una clave completada en otro nodo debe reconstruir la respuesta desde la orden registrada")
+    void ejecutar_KeyCompletedElsewhere_LoadsOrderFromDatabase() {
+        when(claveIdempotenciaRepository.saveAndFlush(any(ClaveIdempotencia.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicada"));
+        when(claveIdempotenciaRepository.findByUsuarioIdAndClave(1L, "abc"))
+                .thenReturn(Optional.of(clave(idempotencia.huella(request), ClaveIdempotencia.EstadoClave.COMPLETADA, 7L)));
+        when(ordenService.obtenerOrdenPorId(7L)).thenReturn(Optional.of(OrdenResponse.builder().id(7L).build()));
+
+        IdempotenciaOrdenes.Resultado resultado = idempotencia.ejecutar("abc", request, creacion);
+
+        assertTrue(resultado.repetida());
+        assertEquals(7L, resultado.orden().getId());
+        assertEquals(0, creaciones.get());
+    }
+
+    @Test
+    @DisplayName("Debe responder 409 si la petición original sigue en proceso y 422 si el contenido es distinto")
+    void ejecutar_KeyInProgressOrDifferentPayload_Rejects() {
+        when(claveIdempotenciaRepository.saveAndFlush(any(ClaveIdempotencia.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicada"));
+        when(claveIdempotenciaRepository.findByUsuarioIdAndClave(1L, "abc"))
+                .thenReturn(Optional.of(clave(idempotencia.huella(request), ClaveIdempotencia.EstadoClave.EN_PROCESO, null)),
+                        Optional.of(clave("otra", ClaveIdempotencia.EstadoClave.COMPLETADA, 7L)));
+
+        ResponseStatusException enProceso = assertThrows(ResponseStatusException.class,
+                () -> idempotencia.ejecutar("abc", request, creacion));
+        ResponseStatusException distinta = assertThrows(ResponseStatusException.class,
+                () -> idempotencia.ejecutar("abc", request, creacion));
+
+        assertEquals(HttpStatus.CONFLICT, enProceso.getStatusCode());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, distinta.getStatusCode());
+        assertEquals(0, creaciones.get());
+        verifyNoInteractions(ordenService);
+    }
+
+    @Test
+    @DisplayName("Una clave EN_PROCESO con el reclamo vencido debe retomarse y crear la orden")
+    void ejecutar_InProgressLeaseExpired_TakesOver() {
+        ClaveIdempotencia abandonada = clave(idempotencia.huella(request), ClaveIdempotencia.EstadoClave.EN_PROCESO, null);
+        abandonada.setVenceReclamo(LocalDateTime.now().minusSeconds(1));
+        when(claveIdempotenciaRepository.saveAndFlush(any(ClaveIdempotencia.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicada"));
+        when(claveIdempotenciaRepository.findByUsuarioIdAndClave(1L, "abc")).thenReturn(Optional.of(abandonada));
+        when(claveIdempotenciaRepository.retomar(eq(1L), eq(1), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(1);
+        when(claveIdempotenciaRepository.actualizarEstado(1L, 2, ClaveIdempotencia.EstadoClave.COMPLETADA, 11L)).thenReturn(1);
+
+        IdempotenciaOrdenes.Resultado resultado = idempotencia.ejecutar("abc", request, creacion);
+
+        assertFalse(resultado.repetida());
+        assertEquals(1, creaciones.get());
+        verify(claveIdempotenciaRepository).actualizarEstado(1L, 2, ClaveIdempotencia.EstadoClave.COMPLETADA, 11L);
+    }
+
+    @Test
+    @DisplayName("La misma clave de dos usuarios distintos debe crear dos órdenes")
+    void ejecutar_SameKeyDifferentUsers_CreatesBoth() {
+        OrdenRequest otroUsuario = new OrdenRequest();
+        otroUsuario.setUsuarioId(2L);
+
+        IdempotenciaOrdenes.Resultado primera = idempotencia.ejecutar("abc", request, creacion);
+        IdempotenciaOrdenes.Resultado segunda = idempotencia.ejecutar("abc", otroUsuario, creacion);
+
+        assertFalse(primera.repetida());
+        assertFalse(segunda.repetida());
+        assertEquals(2, creaciones.get());
+    }
+
+    @Test
+    @DisplayName("La huella debe ser un SHA-256 estable del contenido y distinguir solicitudes distintas")
+    void huella_IsSha256OfCanonicalJson() {
+        OrdenRequest igual = new OrdenRequest();
+        igual.setUsuarioId(1L);
+        OrdenRequest distinta = new OrdenRequest();
+        distinta.setUsuarioId(1L);
+        distinta.setAplicarDescuentoAleatorio(true);
+
+        assertEquals(64, idempotencia.huella(request).length());
+        assertEquals(idempotencia.huella(request), idempotencia.huella(igual));
+        assertNotEquals(idempotencia.huella(request), idempotencia.huella(distinta));
+    }
+
+    @Test
+    @DisplayName("Si la creación falla debe liberar la clave para permitir el reintento")
+    void ejecutar_CreationFails_ReleasesKey() {
+        ResponseStatusException sinStock = new ResponseStatusException(HttpStatus.BAD_REQUEST, "No hay suficiente stock");
+
+        ResponseStatusException lanzada = assertThrows(ResponseStatusException.class,
+                () -> idempotencia.ejecutar("abc", request, () -> { throw sinStock; }));
+        IdempotenciaOrdenes.Resultado reintento = idempotencia.ejecutar("abc", request, creacion);
+
+        assertSame(sinStock, lanzada);
+        verify(claveIdempotenciaRepository).eliminarReclamo(1L, 1);
+        assertFalse(reintento.repetida());
+        assertEquals(1, creaciones.get());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar con 400 una clave vacía o demasiado larga")
+    void ejecutar_InvalidKey_ReturnsBadRequest() {
+        ResponseStatusException vacia = assertThrows(ResponseStatusException.class,
+                () -> idempotencia.ejecutar(" ", request, creacion));
+        ResponseStatusException larga = assertThrows(ResponseStatusException.class,
+                () -> idempotencia.ejecutar("x".repeat(151), request, creacion));
+
+        assertEquals(HttpStatus.BAD_REQUEST, vacia.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, larga.getStatusCode());
+        verify(claveIdempotenciaRepository, never()).findByUsuarioIdAndClave(anyLong(), anyString());
+        verifyNoInteractions(transactionManager);
+    }
+}
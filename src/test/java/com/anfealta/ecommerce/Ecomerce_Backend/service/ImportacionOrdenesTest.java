@@ -0,0 +1,94 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImportacionOrdenesTest {
+
+    @Mock
+    private RegistroLoteOrdenes registroLote;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private ImportacionOrdenes importacion;
+
+    @BeforeEach
+    void setUp() {
+        importacion = new ImportacionOrdenes(registroLote, objectMapper, validator, 2);
+        lenient().when(registroLote.registrar(anyList())).thenAnswer(invocation -> {
+            List<OrdenRequest> requests = invocation.getArgument(0);
+            return requests.stream().map(request -> request.getUsuarioId() == 99L
+                    ? new RegistroLoteOrdenes.Resultado(null, new ResponseStatusException(HttpStatus.BAD_REQUEST, "No hay suficiente stock"))
+                    : new RegistroLoteOrdenes.Resultado(OrdenResponse.builder().id(request.getUsuarioId() * 10).build(), null))
+                    .toList();
+        });
+    }
+
+    private static String orden(long usuarioId) {
+        return "{\"usuarioId\":" + usuarioId + ",\"detalles\":[{\"productoId\":1,\"cantidad\":1}]}";
+    }
+
+    private List<JsonNode> importar(String ndjson) throws Exception {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        importacion.importar(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), salida);
+        List<JsonNode> resultados = new ArrayList<>();
+        for (String linea : salida.toString(StandardCharsets.UTF_8).split("\n")) {
+            resultados.add(objectMapper.readTree(linea));
+        }
+        return resultados;
+    }
+
+    @Test
+    @DisplayName("Debe registrar las órdenes en bloques del tamaño configurado y responder una línea por orden")
+    void importar_ProcessesOrdersInChunks() throws Exception {
+        List<JsonNode> resultados = importar(orden(1) + "\n" + orden(2) + "\n\n" + orden(3) + "\n" + orden(4) + "\n" + orden(5));
+
+        verify(registroLote, times(3)).registrar(anyList());
+        assertEquals(5, resultados.size());
+        assertEquals("CREADA", resultados.get(0).get("estado").asText());
+        assertEquals(10L, resultados.get(0).get("orden").get("id").asLong());
+        assertEquals(4, resultados.get(2).get("linea").asInt());
+        assertEquals(50L, resultados.get(4).get("orden").get("id").asLong());
+    }
+
+    @Test
+    @DisplayName("Las líneas inválidas y las órdenes rechazadas deben informar su error sin detener la importación")
+    void importar_ReportsErrorsPerLine() throws Exception {
+        List<JsonNode> resultados = importar("{no es json\n" + orden(99) + "\n{\"detalles\":[]}\n" + orden(4));
+
+        assertEquals(4, resultados.size());
+        assertEquals("ERROR", resultados.get(0).get("estado").asText());
+        assertEquals(400, resultados.get(0).get("codigo").asInt());
+        assertTrue(resultados.get(0).get("mensaje").asText().startsWith("JSON inválido"));
+        assertEquals("No hay suficiente stock", resultados.get(1).get("mensaje").asText());
+        assertEquals(3, resultados.get(2).get("linea").asInt());
+        assertTrue(resultados.get(2).get("mensaje").asText().contains("El ID del usuario no puede ser nulo."));
+        assertEquals("CREADA", resultados.get(3).get("estado").asText());
+        assertFalse(resultados.get(3).has("codigo"));
+        verify(registroLote).registrar(List.of(objectMapper.readValue(orden(99), OrdenRequest.class)));
+    }
+}
@@ -0,0 +1,279 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.jdbc.ReturningWork;
+import org.hibernate.jdbc.Work;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.UnexpectedRollbackException;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IngestaOrdenesTest {
+
+    @Mock
+    private OrdenService ordenService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private Connection conexion;
+
+    @Mock
+    private ProcesadorOrdenesAceptadas procesadorAceptadas;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ReintentadorOptimista reintentador;
+    private IngestaOrdenes ingesta;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        reintentador = new ReintentadorOptimista(meterRegistry, 3, 1, 5);
+        // Los puntos de guardado se toman sobre la conexión JDBC de la sesión.
+        lenient().when(entityManager.unwrap(Session.class)).thenReturn(session);
+        lenient().when(session.doReturningWork(any()))
+                .thenAnswer(invocation -> invocation.<ReturningWork<?>>getArgument(0).execute(conexion));
+        lenient().doAnswer(invocation -> {
+            invocation.<Work>getArgument(0).execute(conexion);
+            return null;
+        }).when(session).doWork(any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (ingesta != null) {
+            ingesta.detener();
+        }
+    }
+
+    private IngestaOrdenes crearIngesta(IngestaOrdenes.Modo modo, int loteMax, long esperaMaxMs, int capacidadCola, long timeoutMs) {
+        RegistroLoteOrdenes registroLote = new RegistroLoteOrdenes(ordenService, reintentador, transactionManager, entityManager);
+        return new IngestaOrdenes(ordenService, reintentador, registroLote, procesadorAceptadas, meterRegistry,
+                modo, loteMax, esperaMaxMs, capacidadCola, timeoutMs);
+    }
+
+    private static OrdenRequest request(long usuarioId) {
+        OrdenRequest request = new OrdenRequest();
+        request.setUsuarioId(usuarioId);
+        return request;
+    }
+
+    private static OrdenResponse respuesta(long id) {
+        return OrdenResponse.builder().id(id).build();
+    }
+
+    @Test
+    @DisplayName("En modo síncrono debe crear la orden en su propia transacción sin encolarla")
+    void crearOrden_SynchronousMode_DelegatesDirectly() {
+        ingesta = crearIngesta(IngestaOrdenes.Modo.SINCRONO, 10, 5, 10, 1000);
+        ingesta.iniciar();
+        when(ordenService.crearOrden(any(OrdenRequest.class))).thenReturn(respuesta(1L));
+
+        OrdenResponse response = ingesta.crearOrden(request(1L));
+
+        assertEquals(1L, response.getId());
+        verify(ordenService, never()).registrarOrden(any(OrdenRequest.class));
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    @DisplayName("En modo asíncrono debe solo aceptar la orden y delegar su creación al procesador")
+    void crearOrden_AsynchronousMode_OnlyAcceptsOrder() {
+        ingesta = crearIngesta(IngestaOrdenes.Modo.ASINCRONO, 10, 5, 10, 1000);
+        ingesta.iniciar();
+        OrdenRequest request = request(1L);
+        when(procesadorAceptadas.aceptar(request)).thenReturn(respuesta(7L));
+
+        assertEquals(7L, ingesta.crearOrden(request).getId());
+
+        verifyNoInteractions(ordenService, transactionManager);
+    }
+
+    @Test
+    @DisplayName("Debe procesar varias órdenes concurrentes en menos transacciones que órdenes")
+    void crearOrden_BatchMode_GroupsConcurrentOrders() throws Exception {
+        ingesta = crearIngesta(IngestaOrdenes.Modo.LOTES, 20, 50, 100, 5000);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(ordenService.registrarOrden(any(OrdenRequest.class)))
+                .thenAnswer(invocation -> respuesta(invocation.<OrdenRequest>getArgument(0).getUsuarioId()));
+        ingesta.iniciar();
+
+        int ordenes = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(ordenes);
+        CountDownLatch inicio = new CountDownLatch(1);
+        List<Future<OrdenResponse>> resultados = new ArrayList<>();
+        for (long i = 1; i <= ordenes; i++) {
+            long usuarioId = i;
+            resultados.add(executor.submit(() -> {
+                inicio.await();
+                return ingesta.crearOrden(request(usuarioId));
+            }));
+        }
+        inicio.countDown();
+        for (int i = 0; i < ordenes; i++) {
+            assertEquals(i + 1L, resultados.get(i).get(10, TimeUnit.SECONDS).getId());
+        }
+        executor.shutdown();
+
+        long transacciones = mockingDetails(transactionManager).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("getTransaction"))
+                .count();
+        assertTrue(transacciones < ordenes, "Se esperaban lotes, hubo " + transacciones + " transacciones");
+        assertEquals(ordenes, meterRegistry.summary("app.ordenes.ingesta.lote.tamano").totalAmount());
+        verify(ordenService, never()).crearOrden(any(OrdenRequest.class));
+    }
+
+    @Test
+    @DisplayName("Una orden fallida dentro del lote solo debe revertir su punto de guardado")
+    void procesarLote_IsolatesFailedOrder() throws Exception {
+        ingesta = crearIngesta(IngestaOrdenes.Modo.LOTES, 10, 5, 10, 1000);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        Savepoint puntoFallido = mock(Savepoint.class);
+        when(conexion.setSavepoint()).thenReturn(mock(Savepoint.class), puntoFallido, mock(Savepoint.class));
+        OrdenRequest fallida = request(2L);
+        when(ordenService.registrarOrden(any(OrdenRequest.class))).thenAnswer(invocation -> {
+            OrdenRequest request = invocation.getArgument(0);
+            if (request == fallida) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No hay suficiente stock para el producto X");
+            }
+            return respuesta(request.getUsuarioId());
+        });
+
+        List<IngestaOrdenes.Pendiente> lote = List.of(
+                new IngestaOrdenes.Pendiente(request(1L)),
+                new IngestaOrdenes.Pendiente(fallida),
+                new IngestaOrdenes.Pendiente(request(3L)));
+        ingesta.procesarLote(lote);
+
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(transactionManager, times(1)).commit(transactionStatus);
+        verify(conexion, times(1)).rollback(puntoFallido);
+        verify(conexion, times(2)).releaseSavepoint(any());
+        // Al volver al punto de guardado, tras el commit y al terminar el lote.
+        verify(entityManager, times(3)).clear();
+        assertEquals(1L, lote.get(0).resultado().get().getId());
+        assertEquals(3L, lote.get(2).resultado().get().getId());
+        assertTrue(lote.get(1).resultado().isCompletedExceptionally());
+    }
+
+    @Test
+    @DisplayName("Volver al punto de guardado debe deshacer los efectos en memoria de la orden fallida y descartar sus confirmaciones")
+    void procesarLote_FailedOrder_UndoesInMemoryEffects() throws Exception {
+        ingesta = crearIngesta(IngestaOrdenes.Modo.LOTES, 10, 5, 10, 1000);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        List<Long> confirmadas = new ArrayList<>();
+        List<Long> revertidas = new ArrayList<>();
+        OrdenRequest fallida = request(2L);
+        when(ordenService.registrarOrden(any(OrdenRequest.class))).thenAnswer(invocation -> {
+            OrdenRequest request = invocation.getArgument(0);
+            // Como el stock caliente o los carriles: toma en memoria y registra cómo deshacerlo.
+            EfectosTransaccion.alRevertir(() -> revertidas.add(request.getUsuarioId()));
+            EfectosTransaccion.alConfirmar(() -> confirmadas.add(request.getUsuarioId()));
+            if (request == fallida) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No hay suficiente stock para el producto X");
+            }
+            return respuesta(request.getUsuarioId());
+        });
+
+        List<IngestaOrdenes.Pendiente> lote = List.of(
+                new IngestaOrdenes.Pendiente(request(1L)),
+                new IngestaOrdenes.Pendiente(fallida),
+                new IngestaOrdenes.Pendiente(request(3L)));
+        ingesta.procesarLote(lote);
+
+        assertEquals(List.of(2L), revertidas);
+        assertEquals(List.of(1L, 3L), confirmadas);
+        assertTrue(lote.get(1).resultado().isCompletedExceptionally());
+    }
+
+    @Test
+    @DisplayName("Si la transacción del lote falla, cada orden debe procesarse de forma individual")
+    void procesarLote_FallsBackToIndividualOnCommitFailure() throws Exception {
+        ingesta = crearIngesta(IngestaOrdenes.Modo.LOTES, 10, 5, 10, 1000);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(ordenService.registrarOrden(any(OrdenRequest.class))).thenReturn(respuesta(0L));
+        doThrow(new UnexpectedRollbackException("rollback-only")).when(transactionManager).commit(transactionStatus);
+        when(ordenService.crearOrden(any(OrdenRequest.class)))
+                .thenAnswer(invocation -> respuesta(invocation.<OrdenRequest>getArgument(0).getUsuarioId()));
+
+        List<IngestaOrdenes.Pendiente> lote = List.of(
+                new IngestaOrdenes.Pendiente(request(1L)),
+                new IngestaOrdenes.Pendiente(request(2L)));
+        ingesta.procesarLote(lote);
+
+        verify(ordenService, times(2)).crearOrden(any(OrdenRequest.class));
+        assertEquals(1L, lote.get(0).resultado().get().getId());
+        assertEquals(2L, lote.get(1).resultado().get().getId());
+    }
+
+    @Test
+    @DisplayName("Si el registro del lote lanza un error, todas sus órdenes deben terminar con ese error")
+    void procesarLote_UnexpectedError_CompletesAllPending() {
+        ingesta = crearIngesta(IngestaOrdenes.Modo.LOTES, 10, 5, 10, 1000);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        AssertionError error = new AssertionError("fallo inesperado");
+        when(ordenService.registrarOrden(any(OrdenRequest.class))).thenThrow(error);
+
+        List<IngestaOrdenes.Pendiente> lote = List.of(
+                new IngestaOrdenes.Pendiente(request(1L)),
+                new IngestaOrdenes.Pendiente(request(2L)));
+
+        assertSame(error, assertThrows(AssertionError.class, () -> ingesta.procesarLote(lote)));
+        for (IngestaOrdenes.Pendiente pendiente : lote) {
+            ExecutionException fallo = assertThrows(ExecutionException.class, () -> pendiente.resultado().get(1, TimeUnit.SECONDS));
+            assertSame(error, fallo.getCause());
+        }
+    }
+
+    @Test
+    @DisplayName("Debe responder 503 si la orden no se procesa a tiempo o la cola está llena")
+    void crearOrden_BatchMode_RejectsWhenSaturated() {
+        ingesta = crearIngesta(IngestaOrdenes.Modo.LOTES, 10, 5, 1, 50);
+
+        ResponseStatusException vencida = assertThrows(ResponseStatusException.class, () -> ingesta.crearOrden(request(1L)));
+        ResponseStatusException llena = assertThrows(ResponseStatusException.class, () -> ingesta.crearOrden(request(2L)));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, vencida.getStatusCode());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, llena.getStatusCode());
+        assertTrue(llena.getReason().contains("Demasiadas órdenes en espera"));
+        verifyNoInteractions(ordenService);
+    }
+}
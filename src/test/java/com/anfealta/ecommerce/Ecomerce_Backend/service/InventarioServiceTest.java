@@ -34,6 +34,9 @@ class InventarioServiceTest {
     @Mock
     private ProductoRepository productoRepository;
 
+    @Mock
+    private LibroStockCaliente libroStockCaliente;
+
     @InjectMocks
     private InventarioService inventarioService; 
 
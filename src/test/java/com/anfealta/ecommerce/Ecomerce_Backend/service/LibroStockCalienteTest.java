@@ -0,0 +1,157 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.entity.Inventario;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
+import com.anfealta.ecommerce.ecomerce_backend.repository.InventarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LibroStockCalienteTest {
+
+    private static final Long PRODUCTO_ID = 7L;
+
+    @Mock
+    private InventarioRepository inventarioRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private LibroStockCaliente libro;
+
+    @BeforeEach
+    void setUp() {
+        Producto producto = new Producto();
+        producto.setId(PRODUCTO_ID);
+        Inventario inventario = Inventario.builder().producto(producto).cantidadDisponible(100).build();
+        when(inventarioRepository.findByProductoIdIn(Set.of(PRODUCTO_ID))).thenReturn(List.of(inventario));
+
+        libro = new LibroStockCaliente(inventarioRepository, transactionManager, true, Set.of(PRODUCTO_ID), 4, 200, 1000, false);
+        libro.recuperar();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Solo debe gestionar los productos configurados como calientes")
+    void gestiona_OnlyConfiguredProducts() {
+        assertTrue(libro.gestiona(PRODUCTO_ID));
+        assertFalse(libro.gestiona(8L));
+        assertEquals(100, libro.disponible(PRODUCTO_ID));
+    }
+
+    @Test
+    @DisplayName("No debe sobrevender cuando muchos hilos toman stock del mismo producto a la vez")
+    void tomar_ConcurrentBuyers_NoOversell() throws Exception {
+        int hilos = 16;
+        int intentosPorHilo = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch inicio = new CountDownLatch(1);
+        List<Future<Integer>> resultados = new ArrayList<>();
+        for (int i = 0; i < hilos; i++) {
+            resultados.add(executor.submit(() -> {
+                inicio.await();
+                int exitos = 0;
+                for (int j = 0; j < intentosPorHilo; j++) {
+                    if (libro.tomar(PRODUCTO_ID, 1 + j % 3)) {
+                        exitos += 1 + j % 3;
+                    }
+                }
+                return exitos;
+            }));
+        }
+        inicio.countDown();
+        int unidadesVendidas = 0;
+        for (Future<Integer> resultado : resultados) {
+            unidadesVendidas += resultado.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(100, unidadesVendidas + libro.disponible(PRODUCTO_ID));
+        assertTrue(libro.disponible(PRODUCTO_ID) < 3);
+    }
+
+    @Test
+    @DisplayName("Debe reunir la cantidad entre varias franjas cuando ninguna alcanza por sí sola")
+    void tomar_GathersAcrossStripes() {
+        assertTrue(libro.tomar(PRODUCTO_ID, 90));
+        assertEquals(10, libro.disponible(PRODUCTO_ID));
+        assertFalse(libro.tomar(PRODUCTO_ID, 11));
+        assertEquals(10, libro.disponible(PRODUCTO_ID));
+    }
+
+    @Test
+    @DisplayName("Debe escribir en la base de datos el delta acumulado en una sola sentencia por producto")
+    void flush_WritesAccumulatedDelta() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        libro.tomar(PRODUCTO_ID, 3);
+        libro.tomar(PRODUCTO_ID, 4);
+
+        libro.flush();
+        libro.flush();
+
+        verify(inventarioRepository, times(1)).ajustarStock(eq(PRODUCTO_ID), eq(-7), eq(0), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Debe conservar el delta pendiente si la escritura en la base de datos falla")
+    void flush_KeepsDeltaOnFailure() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(inventarioRepository.ajustarStock(anyLong(), anyInt(), anyInt(), any(LocalDateTime.class)))
+                .thenThrow(new IllegalStateException("sin conexión"))
+                .thenReturn(1);
+        libro.tomar(PRODUCTO_ID, 5);
+
+        libro.flush();
+        libro.flush();
+
+        verify(inventarioRepository, times(2)).ajustarStock(eq(PRODUCTO_ID), eq(-5), eq(0), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Debe devolver las unidades tomadas si la transacción de la orden se revierte")
+    void tomar_RollbackReturnsUnits() {
+        TransactionSynchronizationManager.initSynchronization();
+        libro.tomar(PRODUCTO_ID, 10);
+        assertEquals(90, libro.disponible(PRODUCTO_ID));
+
+        for (TransactionSynchronization sincronizacion : TransactionSynchronizationManager.getSynchronizations()) {
+            sincronizacion.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+
+        assertEquals(100, libro.disponible(PRODUCTO_ID));
+        libro.flush();
+        verify(inventarioRepository, never()).ajustarStock(anyLong(), anyInt(), anyInt(), any(LocalDateTime.class));
+    }
+}
@@ -0,0 +1,91 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.service.descuentos.ContextoDescuento;
+import com.anfealta.ecommerce.ecomerce_backend.service.descuentos.DescuentosEndpoint;
+import com.anfealta.ecommerce.ecomerce_backend.service.descuentos.PoliticaDescuentos;
+import com.anfealta.ecommerce.ecomerce_backend.service.descuentos.ReglaDescuento;
+import com.anfealta.ecommerce.ecomerce_backend.service.descuentos.ResultadoDescuento;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PoliticaDescuentosTest {
+
+    private final LocalDateTime ahora = LocalDateTime.now();
+
+    @Test
+    @DisplayName("Debe encadenar los descuentos base sobre el total que deja cada regla")
+    void aplicar_ChainsBaseRules() {
+        PoliticaDescuentos politica = new PoliticaDescuentos(ahora.minusHours(1), ahora.plusHours(1), 0.5, List.of(), () -> 0.1);
+
+        ResultadoDescuento resultado = politica.aplicar(new BigDecimal("200.00"), new ContextoDescuento(ahora, true, true));
+
+        assertEquals(0, new BigDecimal("114.50").compareTo(resultado.descuentoTotal()));
+        assertEquals(0, new BigDecimal("85.50").compareTo(resultado.total()));
+    }
+
+    @Test
+    @DisplayName("No debe sortear el descuento aleatorio fuera del periodo de vigencia")
+    void aplicar_OutsideWindow_DoesNotDrawRandom() {
+        AtomicInteger sorteos = new AtomicInteger();
+        PoliticaDescuentos politica = new PoliticaDescuentos(ahora.plusHours(1), ahora.plusHours(2), 1.0, List.of(), () -> {
+            sorteos.incrementAndGet();
+            return 0.0;
+        });
+
+        ResultadoDescuento resultado = politica.aplicar(new BigDecimal("200.00"), new ContextoDescuento(ahora, true, false));
+
+        assertEquals(0, BigDecimal.ZERO.compareTo(resultado.descuentoTotal()));
+        assertEquals(0, sorteos.get());
+    }
+
+    @Test
+    @DisplayName("Debe aplicar la nueva configuración después de recargar")
+    void recargar_ReplacesWindow() {
+        PoliticaDescuentos politica = new PoliticaDescuentos(ahora.plusHours(1), ahora.plusHours(2), 0.0, List.of(), () -> 0.5);
+        ContextoDescuento contexto = new ContextoDescuento(ahora, false, false);
+        assertEquals(0, BigDecimal.ZERO.compareTo(politica.aplicar(new BigDecimal("100.00"), contexto).descuentoTotal()));
+
+        politica.recargar(ahora.minusHours(1), ahora.plusHours(1), 0.0);
+
+        assertEquals(0, new BigDecimal("10.00").compareTo(politica.aplicar(new BigDecimal("100.00"), contexto).descuentoTotal()));
+    }
+
+    @Test
+    @DisplayName("Una recarga con el inicio después del fin o una probabilidad fuera de [0, 1] debe rechazarse con 400 sin cambiar la política")
+    void recargar_InvalidRules_BadRequestAndKeepsChain() {
+        PoliticaDescuentos politica = new PoliticaDescuentos(ahora.minusHours(1), ahora.plusHours(1), 0.5, List.of(), () -> 0.1);
+
+        ResponseStatusException fechas = assertThrows(ResponseStatusException.class,
+                () -> politica.recargar(ahora.plusHours(2), ahora.plusHours(1), 0.5));
+        ResponseStatusException probabilidad = assertThrows(ResponseStatusException.class,
+                () -> politica.recargar(ahora.minusHours(1), ahora.plusHours(1), 1.5));
+        ResponseStatusException formato = assertThrows(ResponseStatusException.class,
+                () -> new DescuentosEndpoint(politica).recargar("mañana", null, null));
+
+        assertEquals(HttpStatus.BAD_REQUEST, fechas.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, probabilidad.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, formato.getStatusCode());
+        assertEquals(ahora.minusHours(1), politica.getRangoFechas().inicio());
+        assertEquals(0.5, politica.getProbabilidadAleatorio());
+    }
+
+    @Test
+    @DisplayName("Debe ejecutar las reglas adicionales después de las reglas base")
+    void aplicar_RunsAdditionalRulesLast() {
+        ReglaDescuento reglaAdicional = contexto -> new BigDecimal("0.5");
+        PoliticaDescuentos politica = new PoliticaDescuentos(ahora.minusHours(1), ahora.plusHours(1), 0.0, List.of(reglaAdicional), () -> 0.5);
+
+        ResultadoDescuento resultado = politica.aplicar(new BigDecimal("100.00"), new ContextoDescuento(ahora, false, false));
+
+        assertEquals(0, new BigDecimal("45.00").compareTo(resultado.total()));
+    }
+}
@@ -0,0 +1,132 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProcesadorOrdenesAceptadasTest {
+
+    @Mock
+    private OrdenService ordenService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ProcesadorOrdenesAceptadas procesador;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        procesador = new ProcesadorOrdenesAceptadas(ordenService, new ReintentadorOptimista(meterRegistry, 3, 1, 5),
+                meterRegistry, 1, 1, 0, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        procesador.detener();
+    }
+
+    private static OrdenResponse orden(long id, Orden.EstadoOrden estado) {
+        return OrdenResponse.builder().id(id).estado(estado).build();
+    }
+
+    @Test
+    @DisplayName("Debe aceptar la orden y completarla en segundo plano")
+    void aceptar_CompletesOrderInBackground() {
+        OrdenRequest request = new OrdenRequest();
+        when(ordenService.aceptarOrden(request)).thenReturn(orden(7L, Orden.EstadoOrden.ACEPTADA));
+        when(ordenService.completarOrdenAceptada(7L)).thenReturn(Optional.of(orden(7L, Orden.EstadoOrden.PENDIENTE)));
+
+        OrdenResponse aceptada = procesador.aceptar(request);
+
+        assertEquals(Orden.EstadoOrden.ACEPTADA, aceptada.getEstado());
+        verify(ordenService, timeout(2000)).completarOrdenAceptada(7L);
+        verify(ordenService, never()).rechazarOrdenAceptada(any(), any());
+    }
+
+    @Test
+    @DisplayName("Si la orden no puede crearse debe rechazarla con el motivo")
+    void procesar_BusinessError_RejectsOrder() {
+        when(ordenService.completarOrdenAceptada(7L))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "No hay suficiente stock para el producto X"));
+        when(ordenService.rechazarOrdenAceptada(7L, "No hay suficiente stock para el producto X"))
+                .thenReturn(Optional.of(orden(7L, Orden.EstadoOrden.RECHAZADA)));
+
+        procesador.procesar(7L);
+
+        verify(ordenService).rechazarOrdenAceptada(7L, "No hay suficiente stock para el producto X");
+        assertEquals(1.0, meterRegistry.counter("app.ordenes.aceptadas.procesadas", "resultado", "rechazada").count());
+    }
+
+    @Test
+    @DisplayName("Un error transitorio no debe rechazar la orden: queda ACEPTADA para el próximo barrido")
+    void procesar_TransientError_LeavesOrderAccepted() {
+        when(ordenService.completarOrdenAceptada(7L))
+                .thenThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "No se pudo asignar el stock a tiempo"))
+                .thenThrow(new ResponseStatusException(HttpStatus.CONFLICT, "Conflicto con una actualización concurrente"))
+                .thenThrow(new IllegalStateException("Conexión perdida"));
+
+        procesador.procesar(7L);
+        procesador.procesar(7L);
+        procesador.procesar(7L);
+
+        verify(ordenService, never()).rechazarOrdenAceptada(any(), any());
+        assertEquals(0.0, meterRegistry.counter("app.ordenes.aceptadas.procesadas", "resultado", "rechazada").count());
+    }
+
+    @Test
+    @DisplayName("Debe responder 503 sin registrar la orden si la cola de trabajo está llena")
+    void aceptar_QueueFull_ReturnsServiceUnavailable() throws Exception {
+        CountDownLatch ocupado = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        when(ordenService.aceptarOrden(any(OrdenRequest.class)))
+                .thenReturn(orden(1L, Orden.EstadoOrden.ACEPTADA), orden(2L, Orden.EstadoOrden.ACEPTADA));
+        when(ordenService.completarOrdenAceptada(anyLong())).thenAnswer(invocation -> {
+            ocupado.countDown();
+            liberar.await(5, TimeUnit.SECONDS);
+            return Optional.empty();
+        });
+
+        procesador.aceptar(new OrdenRequest());
+        assertTrue(ocupado.await(2, TimeUnit.SECONDS));
+        procesador.aceptar(new OrdenRequest());
+        ResponseStatusException llena = assertThrows(ResponseStatusException.class, () -> procesador.aceptar(new OrdenRequest()));
+        double encoladas = meterRegistry.get("app.executor.queued").tag("name", "ordenes-aceptadas").gauge().value();
+        liberar.countDown();
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, llena.getStatusCode());
+        verify(ordenService, times(2)).aceptarOrden(any(OrdenRequest.class));
+        assertEquals(1.0, encoladas);
+    }
+
+    @Test
+    @DisplayName("El barrido debe encolar las órdenes que siguen ACEPTADA")
+    void recuperarAceptadas_EnqueuesStaleOrders() {
+        when(ordenService.obtenerIdsOrdenesAceptadas(any(LocalDateTime.class), anyInt())).thenReturn(List.of(3L));
+        when(ordenService.completarOrdenAceptada(3L)).thenReturn(Optional.of(orden(3L, Orden.EstadoOrden.PENDIENTE)));
+
+        procesador.recuperarAceptadas();
+
+        verify(ordenService, timeout(2000)).completarOrdenAceptada(3L);
+    }
+}
@@ -2,10 +2,12 @@ package com.anfealta.ecommerce.ecomerce_backend.service;
 
 import com.anfealta.ecommerce.ecomerce_backend.dto.ProductoRequest;
 import com.anfealta.ecommerce.ecomerce_backend.dto.ProductoResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.TopSoldProductResponse;
 import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
 import com.anfealta.ecommerce.ecomerce_backend.repository.ProductoRepository;
-import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenDetalleRepository; // Necesario para el mock
 import com.anfealta.ecommerce.ecomerce_backend.service.impl.ProductoServiceImpl; // Importa la implementación concreta
+import com.anfealta.ecommerce.ecomerce_backend.service.ventas.TopVendidos;
+import com.anfealta.ecommerce.ecomerce_backend.service.ventas.VentasProductos;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -16,9 +18,9 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
-import org.springframework.data.domain.PageRequest; // Necesario para PageRequest.of
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
@@ -39,7 +41,10 @@ class ProductoServiceTest {
     private ProductoRepository productoRepository;
 
     @Mock 
-    private OrdenDetalleRepository ordenDetalleRepository;
+    private VentasProductos ventasProductos;
+
+    @Mock
+    private TopVendidos topVendidos;
 
     @InjectMocks 
     private ProductoServiceImpl productoService;
@@ -113,6 +118,7 @@ class ProductoServiceTest {
 
         verify(productoRepository, times(1)).existsBySku(productoRequest.getSku());
         verify(productoRepository, times(1)).save(any(Producto.class));
+        verify(ventasProductos, times(1)).registrarProducto(productoExistente.getId());
     }
 
     @Test
@@ -317,6 +323,7 @@ class ProductoServiceTest {
         assertTrue(eliminado);
         verify(productoRepository, times(1)).existsById(productoExistente.getId());
         verify(productoRepository, times(1)).deleteById(productoExistente.getId());
+        verify(ventasProductos, times(1)).descartarProducto(productoExistente.getId());
     }
 
     @Test
@@ -399,14 +406,22 @@ class ProductoServiceTest {
     @DisplayName("Debe obtener el top 5 de productos más vendidos")
     void obtenerTop5ProductosMasVendidos_Success() {
         
-        List<Object[]> mockResults = Arrays.asList(
-            new Object[]{10L, "Producto A", 100L},
-            new Object[]{20L, "Producto B", 90L},
-            new Object[]{30L, "Producto C", 80L},
-            new Object[]{40L, "Producto D", 70L},
-            new Object[]{50L, "Producto E", 60L}
+        List<VentasProductos.ProductoVendido> mockResults = Arrays.asList(
+            new VentasProductos.ProductoVendido(10L, 100L),
+            new VentasProductos.ProductoVendido(20L, 90L),
+            new VentasProductos.ProductoVendido(30L, 80L),
+            new VentasProductos.ProductoVendido(40L, 70L),
+            new VentasProductos.ProductoVendido(50L, 60L)
         );
-        when(ordenDetalleRepository.findTop5MostSoldProducts(any(PageRequest.class))).thenReturn(mockResults);
+        when(ventasProductos.masVendidos(5)).thenReturn(mockResults);
+        // El repositorio devuelve los productos sin respetar el orden del ranking.
+        when(productoRepository.findAllById(List.of(10L, 20L, 30L, 40L, 50L))).thenReturn(Arrays.asList(
+            Producto.builder().id(50L).nombre("Producto E").build(),
+            Producto.builder().id(30L).nombre("Producto C").build(),
+            Producto.builder().id(10L).nombre("Producto A").build(),
+            Producto.builder().id(40L).nombre("Producto D").build(),
+            Producto.builder().id(20L).nombre("Producto B").build()
+        ));
 
         
         List<ProductoResponse> responseList = productoService.obtenerTop5ProductosMasVendidos();
@@ -416,17 +431,19 @@ class ProductoServiceTest {
         assertEquals(5, responseList.size());
         assertEquals(10L, responseList.get(0).getId());
         assertEquals("Producto A", responseList.get(0).getNombre());
+        assertEquals(100L, responseList.get(0).getTotalVendido());
         assertEquals(50L, responseList.get(4).getId());
         assertEquals("Producto E", responseList.get(4).getNombre());
+        assertEquals(60L, responseList.get(4).getTotalVendido());
 
-        verify(ordenDetalleRepository, times(1)).findTop5MostSoldProducts(any(PageRequest.class));
+        verify(ventasProductos, times(1)).masVendidos(5);
     }
 
     @Test
     @DisplayName("Debe retornar una lista vacía para top 5 productos más vendidos si no hay datos")
     void obtenerTop5ProductosMasVendidos_Empty() {
         
-        when(ordenDetalleRepository.findTop5MostSoldProducts(any(PageRequest.class))).thenReturn(Collections.emptyList());
+        when(ventasProductos.masVendidos(5)).thenReturn(Collections.emptyList());
 
         
         List<ProductoResponse> responseList = productoService.obtenerTop5ProductosMasVendidos();
@@ -434,6 +451,47 @@ class ProductoServiceTest {
         
         assertNotNull(responseList);
         assertTrue(responseList.isEmpty());
-        verify(ordenDetalleRepository, times(1)).findTop5MostSoldProducts(any(PageRequest.class));
+        verify(ventasProductos, times(1)).masVendidos(5);
+    }
+
+    @Test
+    @DisplayName("Debe traducir la ventana y devolver los más vendidos estimados con su error máximo")
+    void obtenerTopVendidos_Success() {
+        when(topVendidos.habilitado()).thenReturn(true);
+        when(topVendidos.capacidad()).thenReturn(100);
+        when(topVendidos.masVendidos(Duration.ofMinutes(30), "Ropa", 2)).thenReturn(List.of(
+            new TopVendidos.Estimacion(20L, 40L, 3L),
+            new TopVendidos.Estimacion(10L, 25L, 3L)
+        ));
+        when(productoRepository.findAllById(List.of(20L, 10L))).thenReturn(Arrays.asList(
+            Producto.builder().id(10L).nombre("Producto A").build(),
+            Producto.builder().id(20L).nombre("Producto B").build()
+        ));
+
+        List<TopSoldProductResponse> responseList = productoService.obtenerTopVendidos("30m", "Ropa", 2);
+
+        assertEquals(2, responseList.size());
+        assertEquals(20L, responseList.get(0).getProductId());
+        assertEquals("Producto B", responseList.get(0).getProductName());
+        assertEquals(40L, responseList.get(0).getTotalSold());
+        assertEquals(3L, responseList.get(0).getMaxError());
+        assertEquals(10L, responseList.get(1).getProductId());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar con 400 una ventana inválida, mayor a siete días o un k fuera de rango")
+    void obtenerTopVendidos_BadRequest() {
+        when(topVendidos.habilitado()).thenReturn(true);
+        lenient().when(topVendidos.capacidad()).thenReturn(100);
+
+        for (String ventana : List.of("1 hora", "0m", "8d", "")) {
+            ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> productoService.obtenerTopVendidos(ventana, null, 10));
+            assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        }
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+            () -> productoService.obtenerTopVendidos("1h", null, 101));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        verify(topVendidos, never()).masVendidos(any(Duration.class), any(), anyInt());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,154 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.config.AppConfig;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.Validation;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Importación con el registrador real y un {@link EntityManager} abierto durante toda la petición, como lo deja
+ * {@code spring.jpa.open-in-view}: cada bloque confirma su propia transacción, así que la prueba no corre dentro
+ * de la transacción de {@code @DataJpaTest} y borra lo que creó al terminar.
+ */
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Import(AppConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RegistroLoteOrdenesTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final OrdenService ordenService = mock(OrdenService.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final AtomicLong creadas = new AtomicLong();
+
+    private EntityManager peticion;
+    private ImportacionOrdenes importacion;
+
+    @BeforeEach
+    void setUp() {
+        peticion = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(peticion));
+
+        // Cada orden deja una entidad administrada en el contexto de persistencia, como registrarOrden.
+        // La orden del usuario 3 falla después de escribir, como una orden sin stock.
+        when(ordenService.registrarOrden(any(OrdenRequest.class))).thenAnswer(invocation -> {
+            OrdenRequest request = invocation.getArgument(0);
+            long numero = creadas.incrementAndGet();
+            Producto producto = Producto.builder()
+                    .nombre("Importado " + numero)
+                    .categoria("General")
+                    .sku("IMP-" + numero)
+                    .precio(new BigDecimal("10.00"))
+                    .activo(true)
+                    .build();
+            entityManager.persist(producto);
+            if (request.getUsuarioId() == 3L) {
+                entityManager.flush();
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No hay suficiente stock");
+            }
+            return OrdenResponse.builder().id(numero).build();
+        });
+        RegistroLoteOrdenes registro = new RegistroLoteOrdenes(
+                ordenService, mock(ReintentadorOptimista.class), transactionManager, entityManager);
+        importacion = new ImportacionOrdenes(registro, objectMapper,
+                Validation.buildDefaultValidatorFactory().getValidator(), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+        peticion.close();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                entityManager.createQuery("DELETE FROM Producto p WHERE p.sku LIKE 'IMP-%'").executeUpdate());
+    }
+
+    private static String ordenes(int cantidad) {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 1; i <= cantidad; i++) {
+            ndjson.append("{\"usuarioId\":").append(i).append(",\"detalles\":[{\"productoId\":1,\"cantidad\":1}]}\n");
+        }
+        return ndjson.toString();
+    }
+
+    private long importados() {
+        return new TransactionTemplate(transactionManager).execute(status -> entityManager
+                .createQuery("SELECT COUNT(p) FROM Producto p WHERE p.sku LIKE 'IMP-%'", Long.class)
+                .getSingleResult());
+    }
+
+    @Test
+    @DisplayName("importar - Open-in-view: el contexto de persistencia queda vacío entre bloques")
+    void importar_OpenInView_ClearsPersistenceContextBetweenChunks() throws Exception {
+        Session sesion = peticion.unwrap(Session.class);
+        List<Integer> entidadesPorBloque = new ArrayList<>();
+        // ImportacionOrdenes vacía la salida al terminar cada bloque.
+        ByteArrayOutputStream salida = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                entidadesPorBloque.add(sesion.getStatistics().getEntityCount());
+            }
+        };
+
+        importacion.importar(new ByteArrayInputStream(ordenes(6).getBytes(StandardCharsets.UTF_8)), salida);
+
+        assertEquals(6, creadas.get());
+        assertTrue(entidadesPorBloque.size() >= 3);
+        assertTrue(entidadesPorBloque.stream().allMatch(cantidad -> cantidad == 0), entidadesPorBloque.toString());
+    }
+
+    @Test
+    @DisplayName("importar - Una orden que falla vuelve a su punto de guardado sin deshacer las demás del bloque")
+    void importar_FailedOrder_RollsBackOnlyItsSavepoint() throws Exception {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        importacion.importar(new ByteArrayInputStream(ordenes(4).getBytes(StandardCharsets.UTF_8)), salida);
+
+        String[] lineas = salida.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lineas.length);
+        assertTrue(lineas[2].contains("\"ERROR\""), lineas[2]);
+        assertTrue(lineas[3].contains("\"CREADA\""), lineas[3]);
+        // Cada orden se registró una sola vez, dentro de su bloque, y solo la fallida no quedó guardada.
+        assertEquals(4, creadas.get());
+        assertEquals(3, importados());
+    }
+}
@@ -0,0 +1,74 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReintentadorOptimistaTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ReintentadorOptimista reintentador;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        reintentador = new ReintentadorOptimista(meterRegistry, 3, 1, 5);
+    }
+
+    @Test
+    @DisplayName("Debe reintentar ante un conflicto optimista y devolver el resultado del intento exitoso")
+    void ejecutar_RetriesThenSucceeds() {
+        AtomicInteger intentos = new AtomicInteger();
+
+        String resultado = reintentador.ejecutar("crearOrden", () -> {
+            if (intentos.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Inventario", 1L);
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", resultado);
+        assertEquals(3, intentos.get());
+        assertEquals(2.0, meterRegistry.counter("app.reintentos.optimistas", "operacion", "crearOrden").count());
+        assertEquals(0.0, meterRegistry.counter("app.reintentos.agotados", "operacion", "crearOrden").count());
+    }
+
+    @Test
+    @DisplayName("Debe responder 409 cuando se agotan los intentos")
+    void ejecutar_ExhaustsAttempts() {
+        AtomicInteger intentos = new AtomicInteger();
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                reintentador.ejecutar("actualizarInventario", () -> {
+                    intentos.incrementAndGet();
+                    throw new OptimisticLockException("conflicto");
+                }));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+        assertEquals(3, intentos.get());
+        assertEquals(1.0, meterRegistry.counter("app.reintentos.agotados", "operacion", "actualizarInventario").count());
+    }
+
+    @Test
+    @DisplayName("No debe reintentar errores que no son de bloqueo optimista")
+    void ejecutar_DoesNotRetryOtherErrors() {
+        AtomicInteger intentos = new AtomicInteger();
+
+        assertThrows(ResponseStatusException.class, () ->
+                reintentador.ejecutar("crearOrden", () -> {
+                    intentos.incrementAndGet();
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "sin stock");
+                }));
+
+        assertEquals(1, intentos.get());
+    }
+}
@@ -0,0 +1,147 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenArchivadaRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RespuestasOrdenTest {
+
+    private static final LocalDateTime ACTUALIZADA = LocalDateTime.of(2025, 7, 1, 10, 30, 15, 123456789);
+
+    @Mock
+    private OrdenService ordenService;
+    @Mock
+    private OrdenRepository ordenRepository;
+    @Mock
+    private OrdenArchivadaRepository ordenArchivadaRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private RespuestasOrden respuestas;
+
+    @BeforeEach
+    void setUp() {
+        respuestas = new RespuestasOrden(ordenService, ordenRepository, ordenArchivadaRepository, objectMapper, 2);
+    }
+
+    private static OrdenResponse orden(Long id, Orden.EstadoOrden estado, LocalDateTime fechaActualizacion) {
+        return OrdenResponse.builder()
+                .id(id)
+                .estado(estado)
+                .fechaActualizacion(fechaActualizacion)
+                .total(new BigDecimal("10.00"))
+                .detalles(List.of())
+                .build();
+    }
+
+    @Test
+    @DisplayName("Con un If-None-Match vigente debe responder sin cuerpo y sin cargar la orden")
+    void leer_MatchingEtag_NotModifiedWithoutLoading() {
+        when(ordenRepository.findFechaActualizacionById(1L)).thenReturn(Optional.of(ACTUALIZADA));
+        String etag = RespuestasOrden.etag(1L, ACTUALIZADA);
+
+        RespuestasOrden.Respuesta respuesta = respuestas.leer(1L, etag::equals).orElseThrow();
+
+        assertEquals(etag, respuesta.etag());
+        assertNull(respuesta.cuerpo());
+        verifyNoInteractions(ordenService);
+    }
+
+    @Test
+    @DisplayName("El ETag debe cambiar con la fecha de actualización y no depender de los nanosegundos que la base descarta")
+    void etag_DependsOnIdAndUpdateTimeAtMicrosecondPrecision() {
+        String etag = RespuestasOrden.etag(1L, ACTUALIZADA);
+
+        assertEquals(etag, RespuestasOrden.etag(1L, ACTUALIZADA.withNano(123456000)));
+        assertNotEquals(etag, RespuestasOrden.etag(1L, ACTUALIZADA.plusSeconds(1)));
+        assertNotEquals(etag, RespuestasOrden.etag(2L, ACTUALIZADA));
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+    }
+
+    @Test
+    @DisplayName("Una orden ENTREGADA debe servirse desde los bytes guardados mientras su versión no cambie")
+    void leer_TerminalOrder_ServedFromSerializedBytes() throws Exception {
+        when(ordenRepository.findFechaActualizacionById(1L)).thenReturn(Optional.of(ACTUALIZADA));
+        when(ordenService.obtenerOrdenPorId(1L)).thenReturn(Optional.of(orden(1L, Orden.EstadoOrden.ENTREGADA, ACTUALIZADA)));
+
+        RespuestasOrden.Respuesta primera = respuestas.leer(1L, etag -> false).orElseThrow();
+        RespuestasOrden.Respuesta segunda = respuestas.leer(1L, etag -> false).orElseThrow();
+
+        assertSame(primera.cuerpo(), segunda.cuerpo());
+        assertEquals("ENTREGADA", objectMapper.readTree(segunda.cuerpo()).get("estado").asText());
+        verify(ordenService, times(1)).obtenerOrdenPorId(1L);
+    }
+
+    @Test
+    @DisplayName("Si la orden en caché cambió de versión, debe volver a cargarse")
+    void leer_TerminalOrderChanged_Reloads() {
+        LocalDateTime despues = ACTUALIZADA.plusMinutes(5);
+        when(ordenRepository.findFechaActualizacionById(1L)).thenReturn(Optional.of(ACTUALIZADA), Optional.of(despues));
+        when(ordenService.obtenerOrdenPorId(1L)).thenReturn(
+                Optional.of(orden(1L, Orden.EstadoOrden.CANCELADA, ACTUALIZADA)),
+                Optional.of(orden(1L, Orden.EstadoOrden.PENDIENTE, despues)));
+
+        respuestas.leer(1L, etag -> false);
+        RespuestasOrden.Respuesta segunda = respuestas.leer(1L, etag -> false).orElseThrow();
+
+        assertEquals(RespuestasOrden.etag(1L, despues), segunda.etag());
+        verify(ordenService, times(2)).obtenerOrdenPorId(1L);
+    }
+
+    @Test
+    @DisplayName("Las órdenes no finales no se guardan y cada lectura vuelve a cargarlas")
+    void leer_NonTerminalOrder_NotCached() {
+        when(ordenRepository.findFechaActualizacionById(1L)).thenReturn(Optional.of(ACTUALIZADA));
+        when(ordenService.obtenerOrdenPorId(1L)).thenReturn(Optional.of(orden(1L, Orden.EstadoOrden.PENDIENTE, ACTUALIZADA)));
+
+        respuestas.leer(1L, etag -> false);
+        respuestas.leer(1L, etag -> false);
+
+        verify(ordenService, times(2)).obtenerOrdenPorId(1L);
+    }
+
+    @Test
+    @DisplayName("Una orden archivada en caché debe responderse sin consultar la base de datos")
+    void leer_ArchivedOrder_NoDatabaseAfterFirstRead() {
+        when(ordenRepository.findFechaActualizacionById(7L)).thenReturn(Optional.empty());
+        when(ordenArchivadaRepository.findFechaActualizacionById(7L)).thenReturn(Optional.of(ACTUALIZADA));
+        when(ordenService.obtenerOrdenPorId(7L)).thenReturn(Optional.of(orden(7L, Orden.EstadoOrden.ENTREGADA, ACTUALIZADA)));
+
+        respuestas.leer(7L, etag -> false);
+        RespuestasOrden.Respuesta segunda = respuestas.leer(7L, etag -> false).orElseThrow();
+
+        assertNotNull(segunda.cuerpo());
+        verify(ordenRepository, times(1)).findFechaActualizacionById(7L);
+        verify(ordenArchivadaRepository, times(1)).findFechaActualizacionById(7L);
+        verify(ordenService, times(1)).obtenerOrdenPorId(7L);
+    }
+
+    @Test
+    @DisplayName("Una orden inexistente debe devolver vacío")
+    void leer_Missing_Empty() {
+        when(ordenRepository.findFechaActualizacionById(9L)).thenReturn(Optional.empty());
+        when(ordenArchivadaRepository.findFechaActualizacionById(9L)).thenReturn(Optional.empty());
+
+        assertTrue(respuestas.leer(9L, etag -> false).isEmpty());
+        verifyNoInteractions(ordenService);
+    }
+}
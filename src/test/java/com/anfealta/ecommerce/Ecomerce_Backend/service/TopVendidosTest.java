@@ -0,0 +1,117 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.service.ventas.TopVendidos;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopVendidosTest {
+
+    private static final LocalDateTime AHORA = LocalDateTime.of(2025, 7, 15, 12, 5);
+    private static final int PRODUCTOS = 5_000;
+
+    private TopVendidos topVendidos;
+
+    @BeforeEach
+    void setUp() {
+        topVendidos = new TopVendidos(true, 50, 4, 1024, 2);
+    }
+
+    /** Producto con distribución aproximadamente Zipf: el producto i se elige con peso 1/i. */
+    private static long productoZipf(Random random, double[] acumulados) {
+        double objetivo = random.nextDouble() * acumulados[acumulados.length - 1];
+        int posicion = Arrays.binarySearch(acumulados, objetivo);
+        return (posicion >= 0 ? posicion : -posicion - 1) + 1;
+    }
+
+    @Test
+    @DisplayName("Los más vendidos de un flujo sesgado deben coincidir con los exactos, sin subestimar ni pasar de errorMaximo")
+    void masVendidos_ZipfStream_WithinErrorBound() {
+        double[] acumulados = new double[PRODUCTOS];
+        double suma = 0;
+        for (int i = 0; i < PRODUCTOS; i++) {
+            suma += 1.0 / (i + 1);
+            acumulados[i] = suma;
+        }
+        Random random = new Random(42);
+        Map<Long, Long> exactos = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            long productoId = productoZipf(random, acumulados);
+            int cantidad = 1 + random.nextInt(3);
+            exactos.merge(productoId, (long) cantidad, Long::sum);
+            topVendidos.registrar(productoId, "General", cantidad, AHORA.minusMinutes(random.nextInt(55)));
+        }
+
+        List<TopVendidos.Estimacion> top = topVendidos.masVendidos(Duration.ofHours(1), null, 10, AHORA);
+
+        List<Long> esperados = exactos.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(10)
+                .map(Map.Entry::getKey)
+                .toList();
+        assertEquals(esperados, top.stream().map(TopVendidos.Estimacion::productoId).toList());
+        for (TopVendidos.Estimacion estimacion : top) {
+            long real = exactos.get(estimacion.productoId());
+            assertTrue(estimacion.unidades() >= real);
+            assertTrue(estimacion.unidades() - real <= estimacion.errorMaximo());
+        }
+    }
+
+    @Test
+    @DisplayName("El filtro por categoría no debe distinguir mayúsculas y debe devolver vacío para categorías sin ventas")
+    void masVendidos_FiltersByCategory() {
+        topVendidos.registrar(1L, "Ropa", 5, AHORA);
+        topVendidos.registrar(2L, "Hogar", 8, AHORA);
+        topVendidos.registrar(3L, " ropa ", 2, AHORA);
+
+        List<TopVendidos.Estimacion> ropa = topVendidos.masVendidos(Duration.ofHours(1), "ROPA", 10, AHORA);
+
+        assertEquals(List.of(1L, 3L), ropa.stream().map(TopVendidos.Estimacion::productoId).toList());
+        assertEquals(List.of(2L, 1L, 3L), topVendidos.masVendidos(Duration.ofHours(1), null, 10, AHORA).stream()
+                .map(TopVendidos.Estimacion::productoId).toList());
+        assertTrue(topVendidos.masVendidos(Duration.ofHours(1), "Juguetes", 10, AHORA).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Las categorías por encima del máximo solo deben contar en el total")
+    void registrar_BeyondMaxCategories_OnlyCountsInTotal() {
+        topVendidos.registrar(1L, "Ropa", 1, AHORA);
+        topVendidos.registrar(2L, "Hogar", 1, AHORA);
+        topVendidos.registrar(3L, "Juguetes", 1, AHORA);
+
+        assertTrue(topVendidos.masVendidos(Duration.ofHours(1), "Juguetes", 10, AHORA).isEmpty());
+        assertEquals(3, topVendidos.masVendidos(Duration.ofHours(1), null, 10, AHORA).size());
+    }
+
+    @Test
+    @DisplayName("Las ventas fuera de la ventana no deben contar, y las ventanas largas deben usar baldes más grandes")
+    void masVendidos_ExcludesExpiredBuckets() {
+        topVendidos.registrar(1L, "General", 10, AHORA.minusHours(3));
+        topVendidos.registrar(2L, "General", 4, AHORA.minusMinutes(5));
+
+        assertEquals(List.of(new TopVendidos.Estimacion(2L, 4, 1)),
+                topVendidos.masVendidos(Duration.ofHours(1), null, 10, AHORA));
+        assertEquals(List.of(1L, 2L), topVendidos.masVendidos(Duration.ofDays(1), null, 10, AHORA).stream()
+                .map(TopVendidos.Estimacion::productoId).toList());
+        assertTrue(topVendidos.masVendidos(Duration.ofHours(1), null, 10, AHORA.plusHours(2)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Una ventana mayor a siete días o un k fuera de la capacidad deben rechazarse")
+    void masVendidos_RejectsOutOfRangeArguments() {
+        assertThrows(IllegalArgumentException.class, () -> topVendidos.masVendidos(Duration.ofDays(8), null, 10, AHORA));
+        assertThrows(IllegalArgumentException.class, () -> topVendidos.masVendidos(Duration.ofHours(1), null, 0, AHORA));
+        assertThrows(IllegalArgumentException.class, () -> topVendidos.masVendidos(Duration.ofHours(1), null, 51, AHORA));
+    }
+}
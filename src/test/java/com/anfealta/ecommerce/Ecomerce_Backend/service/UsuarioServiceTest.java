@@ -1,11 +1,15 @@
 package com.anfealta.ecommerce.ecomerce_backend.service; 
 
+import com.anfealta.ecommerce.ecomerce_backend.dto.TopFrequentCustomerResponse;
 import com.anfealta.ecommerce.ecomerce_backend.dto.UsuarioRequest;
 import com.anfealta.ecommerce.ecomerce_backend.dto.UsuarioResponse;
 import com.anfealta.ecommerce.ecomerce_backend.entity.Usuario;
 import com.anfealta.ecommerce.ecomerce_backend.entity.RolUsuario;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenArchivadaRepository;
 import com.anfealta.ecommerce.ecomerce_backend.repository.UsuarioRepository;
 import com.anfealta.ecommerce.ecomerce_backend.service.impl.UsuarioServiceImpl;
+import com.anfealta.ecommerce.ecomerce_backend.service.clientes.ActividadClientes;
+import com.anfealta.ecommerce.ecomerce_backend.service.ventas.VentasProductos;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -18,8 +22,11 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.http.HttpStatus;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.HashSet;
 import java.util.Arrays; 
@@ -27,6 +34,7 @@ import java.util.Arrays;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*; 
 
 @ExtendWith(MockitoExtension.class) 
@@ -38,6 +46,18 @@ public class UsuarioServiceTest {
     @Mock 
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private ContadorClientesFrecuentes contadorClientesFrecuentes;
+
+    @Mock
+    private VentasProductos ventasProductos;
+
+    @Mock
+    private ActividadClientes actividadClientes;
+
+    @Mock
+    private OrdenArchivadaRepository ordenArchivadaRepository;
+
     @InjectMocks
     private UsuarioServiceImpl usuarioService;
 
@@ -135,4 +155,57 @@ void shouldThrowConflictWhenUsernameAlreadyExists() {
 
         verify(usuarioRepository, times(1)).findById(userId);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Debe resolver si es cliente frecuente con el contador en memoria")
+    void shouldResolveFrequentCustomerFromInMemoryCounter() {
+        when(contadorClientesFrecuentes.esClienteFrecuente(eq(1L), eq(5), eq(30), any(LocalDateTime.class))).thenReturn(true);
+
+        assertTrue(usuarioService.esClienteFrecuente(1L, 5, 30));
+
+        verify(contadorClientesFrecuentes, times(1)).esClienteFrecuente(eq(1L), eq(5), eq(30), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Debe devolver los clientes frecuentes del rango desde el resumen de actividad, con su nombre")
+    void shouldReturnFrequentCustomersFromActivitySummary() {
+        LocalDate desde = LocalDate.of(2025, 7, 1);
+        LocalDate hasta = LocalDate.of(2025, 7, 31);
+        when(actividadClientes.maxDias()).thenReturn(366);
+        when(actividadClientes.maxClientes()).thenReturn(100);
+        when(actividadClientes.masFrecuentes(desde, hasta, 2)).thenReturn(List.of(
+                new ActividadClientes.ClienteFrecuente(2L, 7, new BigDecimal("350.00")),
+                new ActividadClientes.ClienteFrecuente(1L, 4, new BigDecimal("80.00"))));
+        when(usuarioRepository.findAllById(List.of(2L, 1L))).thenReturn(List.of(
+                Usuario.builder().id(1L).nombreUsuario("ana").build(),
+                Usuario.builder().id(2L).nombreUsuario("luis").build()));
+
+        List<TopFrequentCustomerResponse> clientes = usuarioService.obtenerClientesFrecuentes(desde, hasta, 2);
+
+        assertEquals(2, clientes.size());
+        assertEquals(2L, clientes.get(0).getCustomerId());
+        assertEquals("luis", clientes.get(0).getCustomerUsername());
+        assertEquals(7L, clientes.get(0).getTotalOrders());
+        assertEquals(new BigDecimal("350.00"), clientes.get(0).getTotalRevenue());
+        assertEquals("ana", clientes.get(1).getCustomerUsername());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar con 400 un rango invertido, demasiado largo o un k fuera de rango")
+    void shouldRejectInvalidFrequentCustomerRange() {
+        lenient().when(actividadClientes.maxDias()).thenReturn(366);
+        lenient().when(actividadClientes.maxClientes()).thenReturn(100);
+        LocalDate hoy = LocalDate.now();
+
+        for (Runnable consulta : List.<Runnable>of(
+                () -> usuarioService.obtenerClientesFrecuentes(hoy, hoy.minusDays(1), 10),
+                () -> usuarioService.obtenerClientesFrecuentes(hoy.minusDays(366), hoy, 10),
+                () -> usuarioService.obtenerClientesFrecuentes(null, null, 0),
+                () -> usuarioService.obtenerClientesFrecuentes(null, null, 101))) {
+            ResponseStatusException exception = assertThrows(ResponseStatusException.class, consulta::run);
+            assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        }
+        verify(actividadClientes, never()).masFrecuentes(any(), any(), anyInt());
+    }
+}
+
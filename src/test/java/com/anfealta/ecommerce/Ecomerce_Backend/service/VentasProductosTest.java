@@ -0,0 +1,181 @@
+package com.anfealta.ecommerce.ecomerce_backend.service;
+
+import com.anfealta.ecommerce.ecomerce_backend.config.AppConfig;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.entity.OrdenDetalle;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
+import com.anfealta.ecommerce.ecomerce_backend.entity.RolUsuario;
+import com.anfealta.ecommerce.ecomerce_backend.entity.Usuario;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenDetalleRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.ProductoVentasRepository;
+import com.anfealta.ecommerce.ecomerce_backend.service.ventas.VentasProductos;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.transaction.AfterTransaction;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Import(AppConfig.class)
+class VentasProductosTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProductoVentasRepository productoVentasRepository;
+
+    @Autowired
+    private OrdenDetalleRepository ordenDetalleRepository;
+
+    private VentasProductos ventas;
+    private boolean confirmado;
+    private Usuario usuario;
+    private Producto productoA;
+    private Producto productoB;
+    private Producto productoC;
+    private Producto productoSinVentas;
+
+    @BeforeEach
+    void setUp() {
+        ventas = new VentasProductos(productoVentasRepository, ordenDetalleRepository, entityManager, transactionManager, true);
+
+        usuario = Usuario.builder()
+                .nombreUsuario("cliente1")
+                .contrasena("secreta")
+                .email("cliente1@example.com")
+                .roles(Set.of(RolUsuario.USER))
+                .build();
+        entityManager.persist(usuario);
+        productoA = producto("PA-001");
+        productoB = producto("PB-001");
+        productoC = producto("PC-001");
+        productoSinVentas = producto("PD-001");
+    }
+
+    private Producto producto(String sku) {
+        Producto producto = Producto.builder()
+                .nombre("Producto " + sku)
+                .categoria("General")
+                .sku(sku)
+                .precio(new BigDecimal("10.00"))
+                .activo(true)
+                .build();
+        entityManager.persist(producto);
+        return producto;
+    }
+
+    private Long orden(Orden.EstadoOrden estado, Map<Producto, Integer> lineas) {
+        Orden orden = new Orden();
+        orden.setUsuario(usuario);
+        orden.setEstado(estado);
+        orden.setSubtotal(BigDecimal.ZERO);
+        orden.setDescuentoTotal(BigDecimal.ZERO);
+        orden.setTotal(BigDecimal.ZERO);
+        lineas.forEach((producto, cantidad) -> {
+            OrdenDetalle detalle = new OrdenDetalle();
+            detalle.setProducto(producto);
+            detalle.setCantidad(cantidad);
+            detalle.setPrecioUnitario(producto.getPrecio());
+            detalle.setSubtotalLinea(producto.getPrecio().multiply(BigDecimal.valueOf(cantidad)));
+            orden.addDetalle(detalle);
+        });
+        entityManager.persist(orden);
+        entityManager.flush();
+        return orden.getId();
+    }
+
+    private long unidades(Producto producto) {
+        entityManager.flush();
+        entityManager.clear();
+        return productoVentasRepository.findById(producto.getId()).orElseThrow().getUnidadesVendidas();
+    }
+
+    @Test
+    @DisplayName("La reconstrucción debe sumar las líneas activas y archivadas sin contar las órdenes canceladas")
+    void reconstruir_SumsLiveAndArchivedLinesExceptCancelled() {
+        orden(Orden.EstadoOrden.PENDIENTE, Map.of(productoA, 3, productoB, 1));
+        orden(Orden.EstadoOrden.CANCELADA, Map.of(productoB, 5));
+        Long entregada = orden(Orden.EstadoOrden.ENTREGADA, Map.of(productoC, 4));
+        entityManager.createQuery("UPDATE Orden o SET o.fechaCreacion = :fecha WHERE o.id = :id")
+                .setParameter("fecha", LocalDateTime.now().minusDays(400))
+                .setParameter("id", entregada)
+                .executeUpdate();
+        entityManager.clear();
+        new ArchivadorOrdenes(entityManager, transactionManager, new SimpleMeterRegistry(), true, 180, 30, 100, 1)
+                .archivarCreadasAntesDe(LocalDateTime.now().minusDays(180));
+
+        int productos = ventas.reconstruir();
+
+        assertEquals(3, productos);
+        assertEquals(List.of(new VentasProductos.ProductoVendido(productoC.getId(), 4),
+                        new VentasProductos.ProductoVendido(productoA.getId(), 3)),
+                ventas.masVendidos(2));
+        assertEquals(3, ventas.masVendidos(5).size());
+        assertEquals(1, unidades(productoB));
+        assertEquals(0, unidades(productoSinVentas));
+    }
+
+    @Test
+    @DisplayName("Las ventas y cancelaciones deben escribirse al confirmarse, en el flush, creando la fila si falta")
+    void ajustes_WrittenBehindOnFlush() {
+        Long pendiente = orden(Orden.EstadoOrden.PENDIENTE, Map.of(productoA, 3, productoB, 2));
+        orden(Orden.EstadoOrden.PENDIENTE, Map.of(productoB, 1));
+        ventas.reconstruir();
+        Producto nuevo = producto("PE-001");
+        entityManager.flush();
+
+        ventas.descontarVentaOrdenes(List.of(pendiente));
+        ventas.registrarVenta(Map.of(productoA.getId(), 2, nuevo.getId(), 6));
+        assertEquals(3, unidades(productoA));
+
+        // Los ajustes se acumulan al confirmarse la transacción de la orden.
+        confirmado = true;
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        assertEquals(List.of(new VentasProductos.ProductoVendido(nuevo.getId(), 6),
+                        new VentasProductos.ProductoVendido(productoA.getId(), 2),
+                        new VentasProductos.ProductoVendido(productoB.getId(), 1)),
+                ventas.masVendidos(5));
+        assertEquals(3, productoVentasRepository.findById(productoA.getId()).orElseThrow().getUnidadesVendidas());
+        assertTrue(productoVentasRepository.findById(nuevo.getId()).isEmpty());
+
+        ventas.flush();
+
+        assertEquals(2, productoVentasRepository.findById(productoA.getId()).orElseThrow().getUnidadesVendidas());
+        assertEquals(1, productoVentasRepository.findById(productoB.getId()).orElseThrow().getUnidadesVendidas());
+        assertEquals(6, productoVentasRepository.findById(nuevo.getId()).orElseThrow().getUnidadesVendidas());
+    }
+
+    @AfterTransaction
+    void limpiar() {
+        if (!confirmado) {
+            return;
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            entityManager.createQuery("DELETE FROM ProductoVentas").executeUpdate();
+            entityManager.createQuery("DELETE FROM OrdenDetalle").executeUpdate();
+            entityManager.createQuery("DELETE FROM Orden").executeUpdate();
+            entityManager.createQuery("DELETE FROM Producto").executeUpdate();
+            entityManager.remove(entityManager.find(Usuario.class, usuario.getId()));
+        });
+    }
+}
@@ -1,18 +1,33 @@
 package com.anfealta.ecommerce.ecomerce_backend.service.impl;
 
+import com.anfealta.ecommerce.ecomerce_backend.dto.FiltroOrdenes;
 import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenDetalleRequest;
 import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenRequest;
 import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.OrdenResumenResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.PaginaOrdenesResponse;
+import com.anfealta.ecommerce.ecomerce_backend.dto.ResultadoTransicionEstado;
+import com.anfealta.ecommerce.ecomerce_backend.dto.TransicionEstadoResponse;
 import com.anfealta.ecommerce.ecomerce_backend.entity.Inventario;
 import com.anfealta.ecommerce.ecomerce_backend.entity.Orden;
+import com.anfealta.ecommerce.ecomerce_backend.entity.OrdenArchivada;
 import com.anfealta.ecommerce.ecomerce_backend.entity.OrdenDetalle;
 import com.anfealta.ecommerce.ecomerce_backend.entity.Producto;
 import com.anfealta.ecommerce.ecomerce_backend.entity.Usuario;
 import com.anfealta.ecommerce.ecomerce_backend.repository.InventarioRepository;
+import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenArchivadaRepository;
 import com.anfealta.ecommerce.ecomerce_backend.repository.OrdenRepository;
 import com.anfealta.ecommerce.ecomerce_backend.repository.ProductoRepository;
 import com.anfealta.ecommerce.ecomerce_backend.repository.UsuarioRepository;
+import com.anfealta.ecommerce.ecomerce_backend.service.CarrilesStock;
+import com.anfealta.ecommerce.ecomerce_backend.service.ContadorClientesFrecuentes;
+import com.anfealta.ecommerce.ecomerce_backend.service.LibroStockCaliente;
 import com.anfealta.ecommerce.ecomerce_backend.service.UsuarioService;
+import com.anfealta.ecommerce.ecomerce_backend.service.descuentos.PoliticaDescuentos;
+import com.anfealta.ecommerce.ecomerce_backend.service.clientes.ActividadClientes;
+import com.anfealta.ecommerce.ecomerce_backend.service.ventas.TopVendidos;
+import com.anfealta.ecommerce.ecomerce_backend.service.ventas.VentasProductos;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -22,16 +37,20 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 
@@ -44,6 +63,8 @@ class OrdenServiceTest {
     @Mock
     private OrdenRepository ordenRepository;
     @Mock
+    private OrdenArchivadaRepository ordenArchivadaRepository;
+    @Mock
     private UsuarioRepository usuarioRepository;
     @Mock
     private ProductoRepository productoRepository;
@@ -51,9 +72,29 @@ class OrdenServiceTest {
     private InventarioRepository inventarioRepository;
     @Mock
     private UsuarioService usuarioService;
+    @Mock
+    private LibroStockCaliente libroStockCaliente;
+    @Mock
+    private CarrilesStock carrilesStock;
+    @Mock
+    private ContadorClientesFrecuentes contadorClientesFrecuentes;
+    @Mock
+    private VentasProductos ventasProductos;
+    @Mock
+    private TopVendidos topVendidos;
+    @Mock
+    private ActividadClientes actividadClientes;
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @Spy
     private Random random;
+    @Spy
+    private PoliticaDescuentos politicaDescuentos = new PoliticaDescuentos(
+            LocalDateTime.now().minusHours(1), LocalDateTime.now().plusHours(1), 0.8, List.of(), () -> random.nextDouble());
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
 
     @InjectMocks
     private OrdenServiceImpl ordenService;
@@ -65,15 +106,14 @@ class OrdenServiceTest {
     private OrdenRequest ordenRequest;
     private Orden ordenGuardada;
 
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
-
     @BeforeEach
     void setUp() {
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaInicioStr", LocalDateTime.now().minusHours(1).format(FORMATTER));
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaFinStr", LocalDateTime.now().plusHours(1).format(FORMATTER));
-        ReflectionTestUtils.setField(ordenService, "probabilidadDescuentoAleatorio", 0.8); 
+        politicaDescuentos.recargar(LocalDateTime.now().minusHours(1), LocalDateTime.now().plusHours(1), 0.8);
         ReflectionTestUtils.setField(ordenService, "minOrdersForFrequentCustomer", 5);
         ReflectionTestUtils.setField(ordenService, "frequentCustomerPeriodDays", 30);
+        ReflectionTestUtils.setField(ordenService, "limiteMaximoPagina", 500);
+        ReflectionTestUtils.setField(ordenService, "maxOrdenesTransicion", 1000);
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
 
         usuario = Usuario.builder()
                 .id(1L)
@@ -96,6 +136,7 @@ class OrdenServiceTest {
                 .cantidadReservada(0)
                 .cantidadMinima(5)
                 .build();
+        producto1.setInventario(inventario1);
 
         detalleRequest1 = OrdenDetalleRequest.builder()
                 .productoId(producto1.getId())
@@ -134,14 +175,13 @@ class OrdenServiceTest {
     void crearOrden_Success_NoDiscounts() {
         
         when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
-        when(productoRepository.findById(producto1.getId())).thenReturn(Optional.of(producto1));
-        when(inventarioRepository.findByProductoId(producto1.getId())).thenReturn(Optional.of(inventario1));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
+        when(inventarioRepository.descontarDisponible(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
         when(usuarioService.esClienteFrecuente(anyLong(), anyInt(), anyInt())).thenReturn(false); 
         when(ordenRepository.save(any(Orden.class))).thenReturn(ordenGuardada); 
 
         
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaInicioStr", LocalDateTime.now().plusHours(1).format(FORMATTER));
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaFinStr", LocalDateTime.now().plusHours(2).format(FORMATTER));
+        politicaDescuentos.recargar(LocalDateTime.now().plusHours(1), LocalDateTime.now().plusHours(2), 0.8);
 
         
         OrdenResponse response = ordenService.crearOrden(ordenRequest);
@@ -160,11 +200,13 @@ class OrdenServiceTest {
         assertEquals(detalleRequest1.getCantidad(), response.getDetalles().get(0).getCantidad());
 
         verify(usuarioRepository, times(1)).findById(usuario.getId());
-        verify(productoRepository, times(1)).findById(producto1.getId());
-        verify(inventarioRepository, times(1)).findByProductoId(producto1.getId());
-        verify(inventarioRepository, times(1)).save(any(Inventario.class)); 
+        verify(productoRepository, times(1)).findAllConInventarioByIdIn(anySet());
+        verify(inventarioRepository, times(1)).descontarDisponible(eq(producto1.getId()), eq(2), any(LocalDateTime.class)); 
         verify(ordenRepository, times(1)).save(any(Orden.class));
         verify(usuarioService, times(1)).esClienteFrecuente(anyLong(), anyInt(), anyInt());
+        verify(ventasProductos, times(1)).registrarVenta(Map.of(producto1.getId(), 2));
+        verify(topVendidos, times(1)).registrarOrden(any(Orden.class));
+        verify(actividadClientes, times(1)).registrarOrden(any(Orden.class));
     }
 
     @Test
@@ -182,7 +224,7 @@ class OrdenServiceTest {
         assertTrue(exception.getReason().contains("Usuario no encontrado con ID: " + usuario.getId()));
 
         verify(usuarioRepository, times(1)).findById(usuario.getId());
-        verify(productoRepository, never()).findById(anyLong());
+        verify(productoRepository, never()).findAllConInventarioByIdIn(anySet());
         verify(inventarioRepository, never()).findByProductoId(anyLong());
         verify(ordenRepository, never()).save(any(Orden.class));
     }
@@ -192,7 +234,7 @@ class OrdenServiceTest {
     void crearOrden_ProductoNotFound() {
         
         when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
-        when(productoRepository.findById(producto1.getId())).thenReturn(Optional.empty()); 
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(Collections.emptyList()); 
 
          
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
@@ -203,7 +245,7 @@ class OrdenServiceTest {
         assertTrue(exception.getReason().contains("Producto no encontrado con ID: " + producto1.getId()));
 
         verify(usuarioRepository, times(1)).findById(usuario.getId());
-        verify(productoRepository, times(1)).findById(producto1.getId());
+        verify(productoRepository, times(1)).findAllConInventarioByIdIn(anySet());
         verify(inventarioRepository, never()).findByProductoId(anyLong());
         verify(ordenRepository, never()).save(any(Orden.class));
     }
@@ -213,8 +255,8 @@ class OrdenServiceTest {
     void crearOrden_InventarioNotFound() {
         
         when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
-        when(productoRepository.findById(producto1.getId())).thenReturn(Optional.of(producto1));
-        when(inventarioRepository.findByProductoId(producto1.getId())).thenReturn(Optional.empty()); 
+        producto1.setInventario(null);
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1)); 
 
          
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
@@ -225,8 +267,7 @@ class OrdenServiceTest {
         assertTrue(exception.getReason().contains("Inventario no encontrado para el producto con ID: " + producto1.getId()));
 
         verify(usuarioRepository, times(1)).findById(usuario.getId());
-        verify(productoRepository, times(1)).findById(producto1.getId());
-        verify(inventarioRepository, times(1)).findByProductoId(producto1.getId());
+        verify(productoRepository, times(1)).findAllConInventarioByIdIn(anySet());
         verify(ordenRepository, never()).save(any(Orden.class));
     }
 
@@ -236,8 +277,7 @@ class OrdenServiceTest {
         
         inventario1.setCantidadDisponible(1); 
         when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
-        when(productoRepository.findById(producto1.getId())).thenReturn(Optional.of(producto1));
-        when(inventarioRepository.findByProductoId(producto1.getId())).thenReturn(Optional.of(inventario1));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
 
          
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
@@ -248,9 +288,8 @@ class OrdenServiceTest {
         assertTrue(exception.getReason().contains("No hay suficiente stock para el producto " + producto1.getNombre()));
 
         verify(usuarioRepository, times(1)).findById(usuario.getId());
-        verify(productoRepository, times(1)).findById(producto1.getId());
-        verify(inventarioRepository, times(1)).findByProductoId(producto1.getId());
-        verify(inventarioRepository, never()).save(any(Inventario.class));
+        verify(productoRepository, times(1)).findAllConInventarioByIdIn(anySet());
+        verify(inventarioRepository, never()).descontarDisponible(anyLong(), anyInt(), any(LocalDateTime.class));
         verify(ordenRepository, never()).save(any(Orden.class));
     }
 
@@ -258,12 +297,11 @@ class OrdenServiceTest {
     @DisplayName("Debe aplicar el descuento del 10% cuando la orden está dentro del rango de tiempo")
     void crearOrden_Apply10PercentDiscount() {
         
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaInicioStr", LocalDateTime.now().minusHours(1).format(FORMATTER));
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaFinStr", LocalDateTime.now().plusHours(1).format(FORMATTER));
+        politicaDescuentos.recargar(LocalDateTime.now().minusHours(1), LocalDateTime.now().plusHours(1), 0.8);
 
         when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
-        when(productoRepository.findById(producto1.getId())).thenReturn(Optional.of(producto1));
-        when(inventarioRepository.findByProductoId(producto1.getId())).thenReturn(Optional.of(inventario1));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
+        when(inventarioRepository.descontarDisponible(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
         when(usuarioService.esClienteFrecuente(anyLong(), anyInt(), anyInt())).thenReturn(false);
         when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> {
             Orden orden = invocation.getArgument(0);
@@ -289,12 +327,11 @@ class OrdenServiceTest {
     @DisplayName("No debe aplicar el descuento del 10% cuando la orden está fuera del rango de tiempo")
     void crearOrden_DoNotApply10PercentDiscount_OutsideTimeRange() {
         
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaInicioStr", LocalDateTime.now().plusHours(1).format(FORMATTER));
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaFinStr", LocalDateTime.now().plusHours(2).format(FORMATTER));
+        politicaDescuentos.recargar(LocalDateTime.now().plusHours(1), LocalDateTime.now().plusHours(2), 0.8);
 
         when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
-        when(productoRepository.findById(producto1.getId())).thenReturn(Optional.of(producto1));
-        when(inventarioRepository.findByProductoId(producto1.getId())).thenReturn(Optional.of(inventario1));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
+        when(inventarioRepository.descontarDisponible(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
         when(usuarioService.esClienteFrecuente(anyLong(), anyInt(), anyInt())).thenReturn(false);
         when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> {
             Orden orden = invocation.getArgument(0);
@@ -319,16 +356,14 @@ class OrdenServiceTest {
     @DisplayName("Debe aplicar el descuento aleatorio del 50% si las condiciones se cumplen")
     void crearOrden_Apply50PercentRandomDiscount() {
         
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaInicioStr", LocalDateTime.now().minusHours(1).format(FORMATTER));
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaFinStr", LocalDateTime.now().plusHours(1).format(FORMATTER));
-        ReflectionTestUtils.setField(ordenService, "probabilidadDescuentoAleatorio", 1.0); 
+        politicaDescuentos.recargar(LocalDateTime.now().minusHours(1), LocalDateTime.now().plusHours(1), 1.0);
         ordenRequest.setAplicarDescuentoAleatorio(true);
 
         when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
-        when(productoRepository.findById(producto1.getId())).thenReturn(Optional.of(producto1));
-        when(inventarioRepository.findByProductoId(producto1.getId())).thenReturn(Optional.of(inventario1));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
+        when(inventarioRepository.descontarDisponible(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
         when(usuarioService.esClienteFrecuente(anyLong(), anyInt(), anyInt())).thenReturn(false);
-        lenient().when(random.nextDouble()).thenReturn(0.5); 
+        lenient().doReturn(0.5).when(random).nextDouble(); 
         when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> {
             Orden orden = invocation.getArgument(0);
             orden.setId(1L);
@@ -354,17 +389,15 @@ class OrdenServiceTest {
     @DisplayName("No debe aplicar el descuento aleatorio del 50% si el random no cumple la condición")
     void crearOrden_DoNotApply50PercentRandomDiscount_RandomFail() {
         
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaInicioStr", LocalDateTime.now().minusHours(1).format(FORMATTER));
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaFinStr", LocalDateTime.now().plusHours(1).format(FORMATTER));
-        ReflectionTestUtils.setField(ordenService, "probabilidadDescuentoAleatorio", 0.1); 
+        politicaDescuentos.recargar(LocalDateTime.now().minusHours(1), LocalDateTime.now().plusHours(1), 0.1);
         ordenRequest.setAplicarDescuentoAleatorio(true);
 
         when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
-        when(productoRepository.findById(producto1.getId())).thenReturn(Optional.of(producto1));
-        when(inventarioRepository.findByProductoId(producto1.getId())).thenReturn(Optional.of(inventario1));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
+        when(inventarioRepository.descontarDisponible(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
         when(usuarioService.esClienteFrecuente(anyLong(), anyInt(), anyInt())).thenReturn(false);
         
-        lenient().when(random.nextDouble()).thenReturn(0.9); 
+        lenient().doReturn(0.9).when(random).nextDouble(); 
         when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> {
             Orden orden = invocation.getArgument(0);
             orden.setId(1L);
@@ -391,13 +424,12 @@ class OrdenServiceTest {
     @DisplayName("No debe aplicar el descuento aleatorio del 50% si aplicarDescuentoAleatorio es falso")
     void crearOrden_DoNotApply50PercentRandomDiscount_FlagFalse() {
         
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaInicioStr", LocalDateTime.now().minusHours(1).format(FORMATTER));
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaFinStr", LocalDateTime.now().plusHours(1).format(FORMATTER));
+        politicaDescuentos.recargar(LocalDateTime.now().minusHours(1), LocalDateTime.now().plusHours(1), 0.8);
         ordenRequest.setAplicarDescuentoAleatorio(false); 
 
         when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
-        when(productoRepository.findById(producto1.getId())).thenReturn(Optional.of(producto1));
-        when(inventarioRepository.findByProductoId(producto1.getId())).thenReturn(Optional.of(inventario1));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
+        when(inventarioRepository.descontarDisponible(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
         when(usuarioService.esClienteFrecuente(anyLong(), anyInt(), anyInt())).thenReturn(false);
         when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> {
             Orden orden = invocation.getArgument(0);
@@ -425,12 +457,11 @@ class OrdenServiceTest {
     @DisplayName("Debe aplicar el descuento del 5% para cliente frecuente")
     void crearOrden_Apply5PercentFrequentCustomerDiscount() {
         
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaInicioStr", LocalDateTime.now().plusHours(1).format(FORMATTER));
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaFinStr", LocalDateTime.now().plusHours(2).format(FORMATTER));
+        politicaDescuentos.recargar(LocalDateTime.now().plusHours(1), LocalDateTime.now().plusHours(2), 0.8);
 
         when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
-        when(productoRepository.findById(producto1.getId())).thenReturn(Optional.of(producto1));
-        when(inventarioRepository.findByProductoId(producto1.getId())).thenReturn(Optional.of(inventario1));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
+        when(inventarioRepository.descontarDisponible(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
         when(usuarioService.esClienteFrecuente(usuario.getId(), 5, 30)).thenReturn(true); 
         when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> {
             Orden orden = invocation.getArgument(0);
@@ -458,17 +489,15 @@ class OrdenServiceTest {
     @DisplayName("Debe aplicar todos los descuentos: 10%, 50% aleatorio y 5% frecuente")
     void crearOrden_ApplyAllDiscounts() {
         
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaInicioStr", LocalDateTime.now().minusHours(1).format(FORMATTER));
-        ReflectionTestUtils.setField(ordenService, "descuentoFechaFinStr", LocalDateTime.now().plusHours(1).format(FORMATTER));
-        ReflectionTestUtils.setField(ordenService, "probabilidadDescuentoAleatorio", 1.0); 
+        politicaDescuentos.recargar(LocalDateTime.now().minusHours(1), LocalDateTime.now().plusHours(1), 1.0);
         ordenRequest.setAplicarDescuentoAleatorio(true);
 
         when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
-        when(productoRepository.findById(producto1.getId())).thenReturn(Optional.of(producto1));
-        when(inventarioRepository.findByProductoId(producto1.getId())).thenReturn(Optional.of(inventario1));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
+        when(inventarioRepository.descontarDisponible(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
         when(usuarioService.esClienteFrecuente(anyLong(), anyInt(), anyInt())).thenReturn(true); 
         
-        lenient().when(random.nextDouble()).thenReturn(0.5); 
+        lenient().doReturn(0.5).when(random).nextDouble(); 
 
         when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> {
             Orden orden = invocation.getArgument(0);
@@ -492,13 +521,49 @@ class OrdenServiceTest {
         verify(ordenRepository, times(1)).save(any(Orden.class));
     }
 
+    @Test
+    @DisplayName("Debe rechazar la orden si el descuento condicional no afecta filas por una venta concurrente")
+    void crearOrden_ConditionalDecrementLost() {
+        when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
+        when(inventarioRepository.descontarDisponible(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(0);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
+            ordenService.crearOrden(ordenRequest);
+        });
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        assertTrue(exception.getReason().contains("No hay suficiente stock para el producto " + producto1.getNombre()));
+        verify(ordenRepository, never()).save(any(Orden.class));
+    }
+
+    @Test
+    @DisplayName("Debe validar el stock acumulado cuando un producto se repite en varias líneas")
+    void crearOrden_RepeatedProduct_ValidatesAccumulatedStock() {
+        inventario1.setCantidadDisponible(3);
+        ordenRequest.setDetalles(Arrays.asList(
+                OrdenDetalleRequest.builder().productoId(producto1.getId()).cantidad(2).build(),
+                OrdenDetalleRequest.builder().productoId(producto1.getId()).cantidad(2).build()));
+
+        when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
+            ordenService.crearOrden(ordenRequest);
+        });
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        verify(productoRepository, times(1)).findAllConInventarioByIdIn(anySet());
+        verify(ordenRepository, never()).save(any(Orden.class));
+    }
+
+
 
-    
     @Test
     @DisplayName("Debe obtener una orden por ID existente")
     void obtenerOrdenPorId_Found() {
         
-        when(ordenRepository.findById(ordenGuardada.getId())).thenReturn(Optional.of(ordenGuardada));
+        when(ordenRepository.findConDetallesById(ordenGuardada.getId())).thenReturn(Optional.of(ordenGuardada));
 
         
         Optional<OrdenResponse> response = ordenService.obtenerOrdenPorId(ordenGuardada.getId());
@@ -508,21 +573,21 @@ class OrdenServiceTest {
         assertEquals(ordenGuardada.getId(), response.get().getId());
         assertEquals(ordenGuardada.getUsuario().getNombreUsuario(), response.get().getNombreUsuario());
         assertFalse(response.get().getDetalles().isEmpty());
-        verify(ordenRepository, times(1)).findById(ordenGuardada.getId());
+        verify(ordenRepository, times(1)).findConDetallesById(ordenGuardada.getId());
     }
 
     @Test
     @DisplayName("Debe retornar Optional.empty() cuando la orden no se encuentra por ID")
     void obtenerOrdenPorId_NotFound() {
         
-        when(ordenRepository.findById(99L)).thenReturn(Optional.empty());
+        when(ordenRepository.findConDetallesById(99L)).thenReturn(Optional.empty());
 
         
         Optional<OrdenResponse> response = ordenService.obtenerOrdenPorId(99L);
 
         
         assertFalse(response.isPresent());
-        verify(ordenRepository, times(1)).findById(99L);
+        verify(ordenRepository, times(1)).findConDetallesById(99L);
     }
 
     @Test
@@ -548,7 +613,7 @@ class OrdenServiceTest {
         otraOrden.addDetalle(otraOrdenDetalle);
 
         List<Orden> ordenes = Arrays.asList(ordenGuardada, otraOrden);
-        when(ordenRepository.findAll()).thenReturn(ordenes);
+        when(ordenRepository.findAllConDetalles()).thenReturn(ordenes);
 
         
         List<OrdenResponse> responseList = ordenService.obtenerTodasLasOrdenes();
@@ -558,14 +623,14 @@ class OrdenServiceTest {
         assertEquals(2, responseList.size());
         assertEquals(ordenGuardada.getId(), responseList.get(0).getId());
         assertEquals(otraOrden.getId(), responseList.get(1).getId());
-        verify(ordenRepository, times(1)).findAll();
+        verify(ordenRepository, times(1)).findAllConDetalles();
     }
 
     @Test
     @DisplayName("Debe retornar una lista vacía si no hay ordenes")
     void obtenerTodasLasOrdenes_EmptyList() {
         
-        when(ordenRepository.findAll()).thenReturn(Collections.emptyList());
+        when(ordenRepository.findAllConDetalles()).thenReturn(Collections.emptyList());
 
         
         List<OrdenResponse> responseList = ordenService.obtenerTodasLasOrdenes();
@@ -573,7 +638,7 @@ class OrdenServiceTest {
         
         assertNotNull(responseList);
         assertTrue(responseList.isEmpty());
-        verify(ordenRepository, times(1)).findAll();
+        verify(ordenRepository, times(1)).findAllConDetalles();
     }
 
     
@@ -581,9 +646,8 @@ class OrdenServiceTest {
     @DisplayName("Debe obtener ordenes por ID de usuario existente")
     void obtenerOrdenesPorUsuario_UserFound_OrdersFound() {
         
-        when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
         List<Orden> userOrders = Collections.singletonList(ordenGuardada);
-        when(ordenRepository.findByUsuario(usuario)).thenReturn(userOrders);
+        when(ordenRepository.findConDetallesByUsuarioIdOrderByIdAsc(usuario.getId())).thenReturn(userOrders);
 
         
         List<OrdenResponse> responseList = ordenService.obtenerOrdenesPorUsuario(usuario.getId());
@@ -593,15 +657,17 @@ class OrdenServiceTest {
         assertFalse(responseList.isEmpty());
         assertEquals(1, responseList.size());
         assertEquals(usuario.getId(), responseList.get(0).getUsuarioId());
-        verify(usuarioRepository, times(1)).findById(usuario.getId());
-        verify(ordenRepository, times(1)).findByUsuario(usuario);
+        verify(usuarioRepository, never()).existsById(anyLong());
+        verify(usuarioRepository, never()).findById(anyLong());
+        verify(ordenRepository, times(1)).findConDetallesByUsuarioIdOrderByIdAsc(usuario.getId());
     }
 
     @Test
     @DisplayName("Debe lanzar ResponseStatusException si el usuario no es encontrado al buscar sus ordenes")
     void obtenerOrdenesPorUsuario_UserNotFound() {
         
-        when(usuarioRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(ordenRepository.findConDetallesByUsuarioIdOrderByIdAsc(99L)).thenReturn(Collections.emptyList());
+        when(usuarioRepository.existsById(anyLong())).thenReturn(false);
 
          
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
@@ -611,16 +677,16 @@ class OrdenServiceTest {
         assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
         assertTrue(exception.getReason().contains("Usuario no encontrado con ID: 99"));
 
-        verify(usuarioRepository, times(1)).findById(99L);
-        verify(ordenRepository, never()).findByUsuario(any(Usuario.class));
+        verify(usuarioRepository, times(1)).existsById(99L);
+        verify(ordenRepository, times(1)).findConDetallesByUsuarioIdOrderByIdAsc(99L);
     }
 
     @Test
     @DisplayName("Debe retornar una lista vacía si el usuario existe pero no tiene ordenes")
     void obtenerOrdenesPorUsuario_UserFound_NoOrders() {
         
-        when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
-        when(ordenRepository.findByUsuario(usuario)).thenReturn(Collections.emptyList());
+        when(usuarioRepository.existsById(usuario.getId())).thenReturn(true);
+        when(ordenRepository.findConDetallesByUsuarioIdOrderByIdAsc(usuario.getId())).thenReturn(Collections.emptyList());
 
         
         List<OrdenResponse> responseList = ordenService.obtenerOrdenesPorUsuario(usuario.getId());
@@ -628,11 +694,141 @@ class OrdenServiceTest {
         
         assertNotNull(responseList);
         assertTrue(responseList.isEmpty());
-        verify(usuarioRepository, times(1)).findById(usuario.getId());
-        verify(ordenRepository, times(1)).findByUsuario(usuario);
+        verify(usuarioRepository, times(1)).existsById(usuario.getId());
+        verify(ordenRepository, times(1)).findConDetallesByUsuarioIdOrderByIdAsc(usuario.getId());
     }
 
     
+    @Test
+    @DisplayName("La primera página debe traer el límite pedido y un cursor que continúe desde la última orden")
+    void obtenerPaginaOrdenes_FirstPage_ReturnsCursorFromLastOrder() {
+        Orden otraOrden = new Orden();
+        otraOrden.setId(2L);
+        otraOrden.setUsuario(usuario);
+        otraOrden.setFechaCreacion(LocalDateTime.of(2025, 7, 1, 9, 30, 15, 123456000));
+        when(ordenRepository.findIdsPrimeraPagina(PageRequest.of(0, 3))).thenReturn(List.of(1L, 2L, 3L));
+        when(ordenRepository.findConDetallesByIdIn(List.of(1L, 2L))).thenReturn(List.of(otraOrden, ordenGuardada));
+        when(ordenRepository.findIdsPaginaDespuesDe(otraOrden.getFechaCreacion(), 2L, PageRequest.of(0, 3))).thenReturn(List.of(3L));
+        when(ordenRepository.findConDetallesByIdIn(List.of(3L))).thenReturn(List.of());
+
+        PaginaOrdenesResponse<OrdenResponse> primera = ordenService.obtenerPaginaOrdenes(null, 2);
+        PaginaOrdenesResponse<OrdenResponse> segunda = ordenService.obtenerPaginaOrdenes(primera.getSiguienteCursor(), 2);
+
+        assertEquals(List.of(1L, 2L), primera.getOrdenes().stream().map(OrdenResponse::getId).toList());
+        assertNotNull(primera.getSiguienteCursor());
+        assertNull(segunda.getSiguienteCursor());
+        verify(ordenRepository).findIdsPaginaDespuesDe(otraOrden.getFechaCreacion(), 2L, PageRequest.of(0, 3));
+    }
+
+    @Test
+    @DisplayName("La página resumida debe usar la proyección sin cargar entidades ni líneas")
+    void obtenerPaginaResumenes_UsesProjection() {
+        OrdenResumenResponse resumen = OrdenResumenResponse.builder()
+                .id(1L).fechaCreacion(LocalDateTime.of(2025, 7, 1, 9, 0)).cantidadLineas(3L).build();
+        when(ordenRepository.findIdsPrimeraPagina(PageRequest.of(0, 2))).thenReturn(List.of(1L, 2L));
+        when(ordenRepository.findResumenesByIdIn(List.of(1L))).thenReturn(List.of(resumen));
+
+        PaginaOrdenesResponse<OrdenResumenResponse> pagina = ordenService.obtenerPaginaResumenes(null, 1);
+
+        assertEquals(List.of(resumen), pagina.getOrdenes());
+        assertNotNull(pagina.getSiguienteCursor());
+        verify(ordenRepository, never()).findConDetallesByIdIn(any());
+    }
+
+    @Test
+    @DisplayName("Un cursor alterado o un límite fuera de rango deben responder 400")
+    void obtenerPaginaOrdenes_InvalidCursorOrLimit_BadRequest() {
+        ResponseStatusException cursorInvalido = assertThrows(ResponseStatusException.class,
+                () -> ordenService.obtenerPaginaOrdenes("no-es-un-cursor", 10));
+        ResponseStatusException limiteInvalido = assertThrows(ResponseStatusException.class,
+                () -> ordenService.obtenerPaginaOrdenes(null, 501));
+
+        assertEquals(HttpStatus.BAD_REQUEST, cursorInvalido.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, limiteInvalido.getStatusCode());
+        verifyNoInteractions(ordenRepository);
+    }
+
+    @Test
+    @DisplayName("La búsqueda debe rechazar rangos de fecha o de total invertidos sin consultar la base de datos")
+    void buscarOrdenes_InvertedRanges_BadRequest() {
+        FiltroOrdenes fechas = FiltroOrdenes.builder()
+                .desde(LocalDateTime.of(2025, 7, 2, 0, 0))
+                .hasta(LocalDateTime.of(2025, 7, 1, 0, 0))
+                .build();
+        FiltroOrdenes totales = FiltroOrdenes.builder()
+                .totalMinimo(new BigDecimal("100.00"))
+                .totalMaximo(new BigDecimal("10.00"))
+                .build();
+
+        ResponseStatusException fechasInvalidas = assertThrows(ResponseStatusException.class,
+                () -> ordenService.buscarOrdenes(fechas, null, 10));
+        ResponseStatusException totalesInvalidos = assertThrows(ResponseStatusException.class,
+                () -> ordenService.buscarResumenes(totales, null, 10));
+
+        assertEquals(HttpStatus.BAD_REQUEST, fechasInvalidas.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, totalesInvalidos.getStatusCode());
+        verifyNoInteractions(ordenRepository);
+    }
+
+    @Test
+    @DisplayName("Una orden que ya no está en ordenes debe leerse del archivo")
+    void obtenerOrdenPorId_Archived_FallsBackToArchive() {
+        OrdenArchivada archivada = OrdenArchivada.builder()
+                .id(7L).usuarioId(usuario.getId()).usuario(usuario)
+                .fechaCreacion(LocalDateTime.of(2024, 1, 10, 8, 0)).fechaActualizacion(LocalDateTime.of(2024, 1, 12, 8, 0))
+                .estado(Orden.EstadoOrden.ENTREGADA)
+                .subtotal(new BigDecimal("50.00")).descuentoTotal(BigDecimal.ZERO).total(new BigDecimal("50.00"))
+                .detalles(new ArrayList<>())
+                .build();
+        when(ordenRepository.findConDetallesById(7L)).thenReturn(Optional.empty());
+        when(ordenArchivadaRepository.findConDetallesById(7L)).thenReturn(Optional.of(archivada));
+
+        Optional<OrdenResponse> respuesta = ordenService.obtenerOrdenPorId(7L);
+
+        assertTrue(respuesta.isPresent());
+        assertEquals(Orden.EstadoOrden.ENTREGADA, respuesta.get().getEstado());
+        assertEquals(usuario.getNombreUsuario(), respuesta.get().getNombreUsuario());
+    }
+
+    @Test
+    @DisplayName("La página de un usuario debe intercalar por fecha sus órdenes vigentes y archivadas")
+    void obtenerPaginaResumenesPorUsuario_MergesLiveAndArchived() {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        when(ordenRepository.findClavesPrimeraPaginaByUsuarioId(usuario.getId(), PageRequest.of(0, 3)))
+                .thenReturn(List.of(new Object[]{10L, base.plusDays(5)}, new Object[]{4L, base.plusDays(1)}));
+        when(ordenArchivadaRepository.findClavesPrimeraPaginaByUsuarioId(usuario.getId(), PageRequest.of(0, 3)))
+                .thenReturn(List.<Object[]>of(new Object[]{6L, base.plusDays(3)}));
+        when(ordenRepository.findResumenesByIdIn(List.of(10L, 6L)))
+                .thenReturn(List.of(OrdenResumenResponse.builder().id(10L).fechaCreacion(base.plusDays(5)).build()));
+        when(ordenArchivadaRepository.findResumenesByIdIn(List.of(6L)))
+                .thenReturn(List.of(OrdenResumenResponse.builder().id(6L).fechaCreacion(base.plusDays(3)).build()));
+
+        PaginaOrdenesResponse<OrdenResumenResponse> pagina = ordenService.obtenerPaginaResumenesPorUsuario(usuario.getId(), null, 2);
+
+        assertEquals(List.of(10L, 6L), pagina.getOrdenes().stream().map(OrdenResumenResponse::getId).toList());
+        assertNotNull(pagina.getSiguienteCursor());
+        verify(usuarioRepository, never()).existsById(anyLong());
+    }
+
+    @Test
+    @DisplayName("La página de un usuario solo debe comprobar que existe cuando viene vacía")
+    void obtenerPaginaOrdenesPorUsuario_ChecksUserOnlyOnEmptyPage() {
+        when(ordenRepository.findClavesPrimeraPaginaByUsuarioId(usuario.getId(), PageRequest.of(0, 11)))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, ordenGuardada.getFechaCreacion()}));
+        when(ordenRepository.findConDetallesByIdIn(List.of(1L))).thenReturn(List.of(ordenGuardada));
+        when(ordenRepository.findClavesPrimeraPaginaByUsuarioId(99L, PageRequest.of(0, 11))).thenReturn(List.of());
+        when(usuarioRepository.existsById(99L)).thenReturn(false);
+
+        PaginaOrdenesResponse<OrdenResponse> pagina = ordenService.obtenerPaginaOrdenesPorUsuario(usuario.getId(), null, 10);
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> ordenService.obtenerPaginaOrdenesPorUsuario(99L, null, 10));
+
+        assertEquals(1, pagina.getOrdenes().size());
+        assertNull(pagina.getSiguienteCursor());
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        verify(usuarioRepository, never()).existsById(usuario.getId());
+    }
+
     @Test
     @DisplayName("Debe actualizar el estado de una orden existente exitosamente")
     void actualizarEstadoOrden_Success() {
@@ -658,6 +854,99 @@ class OrdenServiceTest {
         verify(ordenRepository, times(1)).save(any(Orden.class));
     }
 
+    @Test
+    @DisplayName("Una transición no permitida debe rechazarse con 409 sin tocar stock, ventas ni actividad")
+    void actualizarEstadoOrden_InvalidTransition_Conflict() {
+        ordenGuardada.setEstado(Orden.EstadoOrden.ENTREGADA);
+        when(ordenRepository.findById(ordenGuardada.getId())).thenReturn(Optional.of(ordenGuardada));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> ordenService.actualizarEstadoOrden(ordenGuardada.getId(), Orden.EstadoOrden.PENDIENTE));
+        Optional<OrdenResponse> igual = ordenService.actualizarEstadoOrden(ordenGuardada.getId(), Orden.EstadoOrden.ENTREGADA);
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+        assertEquals(Orden.EstadoOrden.ENTREGADA, ordenGuardada.getEstado());
+        assertEquals(Orden.EstadoOrden.ENTREGADA, igual.orElseThrow().getEstado());
+        verify(ordenRepository, never()).save(any(Orden.class));
+        verifyNoInteractions(inventarioRepository, ventasProductos, actividadClientes);
+    }
+
+    @Test
+    @DisplayName("El cambio en bloque debe aplicar un solo UPDATE a las transiciones válidas e informar el resultado de cada orden")
+    void actualizarEstadoOrdenes_MixedOutcomes() {
+        when(ordenRepository.findEstadosByIdIn(List.of(1L, 2L, 3L, 4L, 5L))).thenReturn(List.of(
+                new Object[]{1L, Orden.EstadoOrden.PENDIENTE, false},
+                new Object[]{2L, Orden.EstadoOrden.COMPLETADA, false},
+                new Object[]{3L, Orden.EstadoOrden.ENVIADA, false},
+                new Object[]{4L, Orden.EstadoOrden.ENTREGADA, false}));
+        when(ordenRepository.actualizarEstados(eq(List.of(1L, 2L)), any(), eq(Orden.EstadoOrden.ENVIADA), any(LocalDateTime.class)))
+                .thenReturn(2);
+
+        TransicionEstadoResponse respuesta = ordenService.actualizarEstadoOrdenes(List.of(1L, 2L, 3L, 4L, 5L, 1L), null, Orden.EstadoOrden.ENVIADA);
+
+        assertEquals(2, respuesta.getActualizadas());
+        assertEquals(List.of(ResultadoTransicionEstado.Resultado.ACTUALIZADA, ResultadoTransicionEstado.Resultado.ACTUALIZADA,
+                        ResultadoTransicionEstado.Resultado.SIN_CAMBIOS, ResultadoTransicionEstado.Resultado.TRANSICION_INVALIDA,
+                        ResultadoTransicionEstado.Resultado.NO_ENCONTRADA),
+                respuesta.getResultados().stream().map(ResultadoTransicionEstado::getResultado).toList());
+        assertEquals(Orden.EstadoOrden.COMPLETADA, respuesta.getResultados().get(1).getEstadoAnterior());
+        verify(ordenRepository).actualizarEstados(eq(List.of(1L, 2L)),
+                eq(List.of(Orden.EstadoOrden.PENDIENTE, Orden.EstadoOrden.COMPLETADA)), eq(Orden.EstadoOrden.ENVIADA), any(LocalDateTime.class));
+        verify(ordenRepository, never()).findById(anyLong());
+        verify(ordenRepository, never()).findByIdIn(any());
+    }
+
+    @Test
+    @DisplayName("Si una orden cambia entre la lectura y el UPDATE, debe informarse como conflicto")
+    void actualizarEstadoOrdenes_ConcurrentChange_Conflict() {
+        when(ordenRepository.findEstadosByIdIn(List.of(1L, 2L)))
+                .thenReturn(List.of(
+                        new Object[]{1L, Orden.EstadoOrden.PENDIENTE, false},
+                        new Object[]{2L, Orden.EstadoOrden.PENDIENTE, false}))
+                .thenReturn(List.of(
+                        new Object[]{1L, Orden.EstadoOrden.CANCELADA, false},
+                        new Object[]{2L, Orden.EstadoOrden.ENVIADA, false}));
+        when(ordenRepository.actualizarEstados(eq(List.of(1L, 2L)), any(), eq(Orden.EstadoOrden.ENVIADA), any(LocalDateTime.class)))
+                .thenReturn(1);
+
+        TransicionEstadoResponse respuesta = ordenService.actualizarEstadoOrdenes(List.of(1L, 2L), null, Orden.EstadoOrden.ENVIADA);
+
+        assertEquals(1, respuesta.getActualizadas());
+        assertEquals(ResultadoTransicionEstado.Resultado.CONFLICTO, respuesta.getResultados().get(0).getResultado());
+        assertEquals(ResultadoTransicionEstado.Resultado.ACTUALIZADA, respuesta.getResultados().get(1).getResultado());
+    }
+
+    @Test
+    @DisplayName("Las órdenes con stock reservado deben cargarse para confirmar la reserva en lugar de ir al UPDATE")
+    void actualizarEstadoOrdenes_ReservedStock_ConfirmsReservation() {
+        ordenGuardada.setStockReservado(true);
+        when(ordenRepository.findEstadosByIdIn(List.of(ordenGuardada.getId())))
+                .thenReturn(List.<Object[]>of(new Object[]{ordenGuardada.getId(), Orden.EstadoOrden.PENDIENTE, true}));
+        when(ordenRepository.findByIdIn(List.of(ordenGuardada.getId()))).thenReturn(List.of(ordenGuardada));
+        when(libroStockCaliente.gestiona(anyLong())).thenReturn(false);
+        when(inventarioRepository.confirmarReservada(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
+
+        TransicionEstadoResponse respuesta = ordenService.actualizarEstadoOrdenes(List.of(ordenGuardada.getId()), null, Orden.EstadoOrden.ENVIADA);
+
+        assertEquals(1, respuesta.getActualizadas());
+        assertEquals(Orden.EstadoOrden.ENVIADA, ordenGuardada.getEstado());
+        assertFalse(ordenGuardada.getStockReservado());
+        verify(ordenRepository, never()).actualizarEstados(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("El cambio en bloque debe exigir la lista de órdenes o el filtro, no ambos ni ninguno")
+    void actualizarEstadoOrdenes_IdsAndFilter_BadRequest() {
+        ResponseStatusException ambos = assertThrows(ResponseStatusException.class,
+                () -> ordenService.actualizarEstadoOrdenes(List.of(1L), new FiltroOrdenes(), Orden.EstadoOrden.ENVIADA));
+        ResponseStatusException ninguno = assertThrows(ResponseStatusException.class,
+                () -> ordenService.actualizarEstadoOrdenes(List.of(), null, Orden.EstadoOrden.ENVIADA));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ambos.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, ninguno.getStatusCode());
+        verifyNoInteractions(ordenRepository);
+    }
+
     @Test
     @DisplayName("Debe retornar Optional.empty() si la orden a actualizar no se encuentra")
     void actualizarEstadoOrden_NotFound() {
@@ -680,30 +969,289 @@ class OrdenServiceTest {
     @DisplayName("Debe eliminar una orden existente y retornar true")
     void eliminarOrden_Success() {
         
-        when(ordenRepository.existsById(ordenGuardada.getId())).thenReturn(true);
-        doNothing().when(ordenRepository).deleteById(ordenGuardada.getId());
+        when(ordenRepository.findById(ordenGuardada.getId())).thenReturn(Optional.of(ordenGuardada));
+        doNothing().when(ordenRepository).delete(ordenGuardada);
 
         
         boolean eliminado = ordenService.eliminarOrden(ordenGuardada.getId());
 
         
         assertTrue(eliminado);
-        verify(ordenRepository, times(1)).existsById(ordenGuardada.getId());
-        verify(ordenRepository, times(1)).deleteById(ordenGuardada.getId());
+        verify(ordenRepository, times(1)).findById(ordenGuardada.getId());
+        verify(ordenRepository, times(1)).delete(ordenGuardada);
+        verify(inventarioRepository, never()).liberarReservada(anyLong(), anyInt(), any(LocalDateTime.class));
+        verify(contadorClientesFrecuentes, times(1)).eliminarOrden(usuario.getId(), ordenGuardada.getId(), ordenGuardada.getFechaCreacion());
+        verify(ventasProductos, times(1)).descontarVenta(Map.of(producto1.getId(), 2));
+    }
+
+    @Test
+    @DisplayName("Eliminar una orden aceptada o rechazada no debe descontarla del contador de cliente frecuente")
+    void eliminarOrden_NotCountedStates_KeepFrequentCustomerCount() {
+        Orden aceptada = new Orden();
+        aceptada.setId(7L);
+        aceptada.setUsuario(usuario);
+        aceptada.setEstado(Orden.EstadoOrden.ACEPTADA);
+        Orden rechazada = new Orden();
+        rechazada.setId(8L);
+        rechazada.setUsuario(usuario);
+        rechazada.setEstado(Orden.EstadoOrden.RECHAZADA);
+        when(ordenRepository.findById(7L)).thenReturn(Optional.of(aceptada));
+        when(ordenRepository.findById(8L)).thenReturn(Optional.of(rechazada));
+
+        assertTrue(ordenService.eliminarOrden(7L));
+        assertTrue(ordenService.eliminarOrden(8L));
+
+        verify(ordenRepository).delete(aceptada);
+        verify(ordenRepository).delete(rechazada);
+        verify(contadorClientesFrecuentes, never()).eliminarOrden(anyLong(), anyLong(), any());
     }
 
     @Test
     @DisplayName("Debe retornar false cuando se intenta eliminar una orden no existente")
     void eliminarOrden_NotFound() {
         
-        when(ordenRepository.existsById(99L)).thenReturn(false);
+        when(ordenRepository.findById(99L)).thenReturn(Optional.empty());
 
         
         boolean eliminado = ordenService.eliminarOrden(99L);
 
         
         assertFalse(eliminado);
-        verify(ordenRepository, times(1)).existsById(99L);
-        verify(ordenRepository, never()).deleteById(anyLong());
+        verify(ordenRepository, times(1)).findById(99L);
+        verify(ordenRepository, never()).delete(any(Orden.class));
+    }
+
+    @Test
+    @DisplayName("En modo reserva, crear la orden debe mover el stock de disponible a reservado")
+    void crearOrden_ReservationMode_ReservesStock() {
+        ReflectionTestUtils.setField(ordenService, "reservasHabilitadas", true);
+        when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
+        when(inventarioRepository.reservarDisponible(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
+        when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        OrdenResponse response = ordenService.crearOrden(ordenRequest);
+
+        assertEquals(Orden.EstadoOrden.PENDIENTE, response.getEstado());
+        verify(inventarioRepository, times(1)).reservarDisponible(eq(producto1.getId()), eq(2), any(LocalDateTime.class));
+        verify(inventarioRepository, never()).descontarDisponible(anyLong(), anyInt(), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Completar una orden con reserva debe confirmar las unidades reservadas")
+    void actualizarEstadoOrden_ReservedOrder_CommitsReservation() {
+        ordenGuardada.setStockReservado(true);
+        when(ordenRepository.findById(ordenGuardada.getId())).thenReturn(Optional.of(ordenGuardada));
+        when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(inventarioRepository.confirmarReservada(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
+
+        Optional<OrdenResponse> response = ordenService.actualizarEstadoOrden(ordenGuardada.getId(), Orden.EstadoOrden.COMPLETADA);
+
+        assertTrue(response.isPresent());
+        assertFalse(ordenGuardada.getStockReservado());
+        verify(inventarioRepository, times(1)).confirmarReservada(eq(producto1.getId()), eq(2), any(LocalDateTime.class));
+        verify(inventarioRepository, never()).liberarReservada(anyLong(), anyInt(), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Cancelar una orden con reserva debe devolver las unidades a disponible")
+    void actualizarEstadoOrden_ReservedOrder_ReleasesOnCancel() {
+        ordenGuardada.setStockReservado(true);
+        when(ordenRepository.findById(ordenGuardada.getId())).thenReturn(Optional.of(ordenGuardada));
+        when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(inventarioRepository.liberarReservada(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
+
+        Optional<OrdenResponse> response = ordenService.actualizarEstadoOrden(ordenGuardada.getId(), Orden.EstadoOrden.CANCELADA);
+
+        assertTrue(response.isPresent());
+        assertEquals(Orden.EstadoOrden.CANCELADA, response.get().getEstado());
+        verify(inventarioRepository, times(1)).liberarReservada(eq(producto1.getId()), eq(2), any(LocalDateTime.class));
+        verify(inventarioRepository, never()).confirmarReservada(anyLong(), anyInt(), any(LocalDateTime.class));
+        verify(ventasProductos, times(1)).descontarVenta(Map.of(producto1.getId(), 2));
+    }
+
+    @Test
+    @DisplayName("Debe expirar un lote de reservas vencidas liberando el stock agregado por producto")
+    void expirarReservasVencidas_ReleasesBatch() {
+        ordenGuardada.setStockReservado(true);
+        Orden otraOrden = new Orden();
+        otraOrden.setId(2L);
+        otraOrden.setUsuario(usuario);
+        otraOrden.setEstado(Orden.EstadoOrden.PENDIENTE);
+        otraOrden.setStockReservado(true);
+        OrdenDetalle otroDetalle = new OrdenDetalle();
+        otroDetalle.setProducto(producto1);
+        otroDetalle.setCantidad(3);
+        otraOrden.addDetalle(otroDetalle);
+
+        when(ordenRepository.findIdsConReservaVencida(eq(Orden.EstadoOrden.PENDIENTE), any(LocalDateTime.class), any()))
+                .thenReturn(List.of(1L, 2L));
+        when(ordenRepository.findByIdIn(List.of(1L, 2L))).thenReturn(List.of(ordenGuardada, otraOrden));
+        when(inventarioRepository.liberarReservada(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
+
+        int expiradas = ordenService.expirarReservasVencidas(LocalDateTime.now(), 100);
+
+        assertEquals(2, expiradas);
+        assertEquals(Orden.EstadoOrden.CANCELADA, ordenGuardada.getEstado());
+        assertEquals(Orden.EstadoOrden.CANCELADA, otraOrden.getEstado());
+        assertFalse(otraOrden.getStockReservado());
+        verify(inventarioRepository, times(1)).liberarReservada(eq(producto1.getId()), eq(5), any(LocalDateTime.class));
+        verify(ventasProductos, times(1)).descontarVenta(Map.of(producto1.getId(), 5));
+    }
+
+    @Test
+    @DisplayName("Un producto gestionado por el libro de stock caliente no debe escribir su fila de inventario en la compra")
+    void crearOrden_HotProduct_UsesInMemoryLedger() {
+        when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
+        when(libroStockCaliente.gestiona(producto1.getId())).thenReturn(true);
+        when(libroStockCaliente.tomarTodos(Map.of(producto1.getId(), 2))).thenReturn(Optional.empty());
+        when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ordenService.crearOrden(ordenRequest);
+
+        verify(libroStockCaliente, times(1)).tomarTodos(Map.of(producto1.getId(), 2));
+        verify(inventarioRepository, never()).descontarDisponible(anyLong(), anyInt(), any(LocalDateTime.class));
+        verify(inventarioRepository, never()).reservarDisponible(anyLong(), anyInt(), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Con los carriles de stock habilitados, la compra debe asignar el stock en ellos antes de abrir su transacción")
+    void crearOrden_LanesEnabled_AllocatesThroughLanesBeforeTransaction() {
+        CarrilesStock.Asignacion asignacion = mock(CarrilesStock.Asignacion.class);
+        when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
+        when(carrilesStock.habilitado()).thenReturn(true);
+        when(carrilesStock.tomarTodos(Map.of(producto1.getId(), 2))).thenReturn(asignacion);
+        when(asignacion.cantidades()).thenReturn(Map.of(producto1.getId(), 2));
+        when(asignacion.faltante()).thenReturn(Optional.empty());
+        when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ordenService.crearOrden(ordenRequest);
+
+        // La petición no retiene una conexión mientras espera a los carriles.
+        var orden = inOrder(carrilesStock, transactionManager);
+        orden.verify(carrilesStock).tomarTodos(Map.of(producto1.getId(), 2));
+        orden.verify(transactionManager).getTransaction(any());
+        orden.verify(carrilesStock).confirmar(asignacion);
+        verify(carrilesStock, times(1)).tomarTodos(anyMap());
+        verify(inventarioRepository, never()).descontarDisponible(anyLong(), anyInt(), any(LocalDateTime.class));
+        verify(asignacion, never()).devolver();
+    }
+
+    @Test
+    @DisplayName("Si la orden no se crea, el stock asignado en los carriles antes de su transacción debe devolverse")
+    void crearOrden_LanesEnabled_OrderFails_ReturnsLaneAllocation() {
+        CarrilesStock.Asignacion asignacion = mock(CarrilesStock.Asignacion.class);
+        when(carrilesStock.habilitado()).thenReturn(true);
+        when(carrilesStock.tomarTodos(Map.of(producto1.getId(), 2))).thenReturn(asignacion);
+        when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.empty());
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> ordenService.crearOrden(ordenRequest));
+
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        verify(asignacion, times(1)).devolver();
+        verify(carrilesStock, never()).confirmar(any());
+    }
+
+    @Test
+    @DisplayName("Si el libro caliente no alcanza, lo asignado en los carriles debe devolverse")
+    void crearOrden_LanesEnabled_HotProductOutOfStock_ReturnsLaneAllocation() {
+        Producto caliente = Producto.builder().id(102L).nombre("Producto B").precio(new BigDecimal("10.00")).activo(true).build();
+        caliente.setInventario(Inventario.builder().producto(caliente).cantidadDisponible(0).cantidadReservada(0).build());
+        ordenRequest.setDetalles(List.of(detalleRequest1, OrdenDetalleRequest.builder().productoId(102L).cantidad(1).build()));
+        CarrilesStock.Asignacion asignacion = mock(CarrilesStock.Asignacion.class);
+        when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1, caliente));
+        when(libroStockCaliente.gestiona(producto1.getId())).thenReturn(false);
+        when(libroStockCaliente.gestiona(102L)).thenReturn(true);
+        when(carrilesStock.habilitado()).thenReturn(true);
+        when(carrilesStock.tomarTodos(Map.of(producto1.getId(), 2))).thenReturn(asignacion);
+        when(asignacion.cantidades()).thenReturn(Map.of(producto1.getId(), 2));
+        when(asignacion.faltante()).thenReturn(Optional.empty());
+        when(libroStockCaliente.tomarTodos(Map.of(102L, 1))).thenReturn(Optional.of(102L));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> ordenService.crearOrden(ordenRequest));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        assertTrue(exception.getReason().contains("Producto B"));
+        verify(asignacion, atLeastOnce()).devolver();
+        verify(carrilesStock, never()).confirmar(any());
+        verify(ordenRepository, never()).save(any(Orden.class));
+    }
+
+    @Test
+    @DisplayName("Aceptar una orden debe registrarla sin tomar stock ni calcular precios")
+    void aceptarOrden_PersistsRequestWithoutTouchingStock() {
+        when(usuarioRepository.findById(usuario.getId())).thenReturn(Optional.of(usuario));
+        when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> {
+            Orden orden = invocation.getArgument(0);
+            orden.setId(7L);
+            return orden;
+        });
+
+        OrdenResponse response = ordenService.aceptarOrden(ordenRequest);
+
+        assertEquals(7L, response.getId());
+        assertEquals(Orden.EstadoOrden.ACEPTADA, response.getEstado());
+        assertTrue(response.getDetalles().isEmpty());
+        verify(ordenRepository).save(argThat(orden -> orden.getSolicitud().contains("\"productoId\":101")));
+        verifyNoInteractions(productoRepository, inventarioRepository, usuarioService, contadorClientesFrecuentes);
+    }
+
+    @Test
+    @DisplayName("Completar una orden aceptada debe tomar el stock, calcular precios y dejarla PENDIENTE")
+    void completarOrdenAceptada_AllocatesStockAndPrices() throws Exception {
+        Orden aceptada = new Orden();
+        aceptada.setId(7L);
+        aceptada.setUsuario(usuario);
+        aceptada.setEstado(Orden.EstadoOrden.ACEPTADA);
+        aceptada.setSolicitud(objectMapper.writeValueAsString(ordenRequest));
+        when(ordenRepository.findById(7L)).thenReturn(Optional.of(aceptada));
+        when(productoRepository.findAllConInventarioByIdIn(anySet())).thenReturn(List.of(producto1));
+        when(inventarioRepository.descontarDisponible(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
+        when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        politicaDescuentos.recargar(LocalDateTime.now().plusHours(1), LocalDateTime.now().plusHours(2), 0.8);
+
+        OrdenResponse response = ordenService.completarOrdenAceptada(7L).orElseThrow();
+
+        assertEquals(Orden.EstadoOrden.PENDIENTE, response.getEstado());
+        assertEquals(0, new BigDecimal("200.00").compareTo(response.getTotal()));
+        assertEquals(1, response.getDetalles().size());
+        assertNull(aceptada.getSolicitud());
+        verify(inventarioRepository).descontarDisponible(eq(producto1.getId()), eq(2), any(LocalDateTime.class));
+        verify(contadorClientesFrecuentes).registrarOrden(eq(usuario.getId()), eq(7L), any());
+    }
+
+    @Test
+    @DisplayName("Una orden que ya no está ACEPTADA no debe completarse ni rechazarse")
+    void completarOrdenAceptada_AlreadyProcessed_IsIgnored() {
+        when(ordenRepository.findById(1L)).thenReturn(Optional.of(ordenGuardada));
+
+        assertTrue(ordenService.completarOrdenAceptada(1L).isEmpty());
+        assertTrue(ordenService.rechazarOrdenAceptada(1L, "No hay suficiente stock").isEmpty());
+
+        verify(ordenRepository, never()).save(any(Orden.class));
+        verifyNoInteractions(inventarioRepository, contadorClientesFrecuentes);
+    }
+
+    @Test
+    @DisplayName("Rechazar una orden aceptada debe guardar el motivo")
+    void rechazarOrdenAceptada_StoresReason() {
+        Orden aceptada = new Orden();
+        aceptada.setId(7L);
+        aceptada.setUsuario(usuario);
+        aceptada.setEstado(Orden.EstadoOrden.ACEPTADA);
+        aceptada.setSolicitud("{}");
+        when(ordenRepository.findById(7L)).thenReturn(Optional.of(aceptada));
+        when(ordenRepository.save(any(Orden.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        OrdenResponse response = ordenService.rechazarOrdenAceptada(7L, "No hay suficiente stock para el producto Producto A").orElseThrow();
+
+        assertEquals(Orden.EstadoOrden.RECHAZADA, response.getEstado());
+        assertEquals("No hay suficiente stock para el producto Producto A", response.getMotivoRechazo());
+        assertNull(aceptada.getSolicitud());
     }
-}
\ No newline at end of file
+}